@@ -0,0 +1,58 @@
+package my.project.qri3a.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import my.project.qri3a.jobs.AmqpJobQueue;
+import my.project.qri3a.jobs.JobDispatcher;
+import my.project.qri3a.jobs.JobHandler;
+
+/**
+ * Topologie RabbitMQ de la file de travaux, redéclarée par RabbitAdmin à chaque connexion
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.jobs.transport", havingValue = "amqp")
+public class AmqpJobQueueConfig {
+
+    @Bean
+    public Declarables jobQueueDeclarables(JobDispatcher jobDispatcher,
+                                           @Value("${app.jobs.retry-delay-ms:10000}") long retryDelayMs) {
+        DirectExchange exchange = new DirectExchange(AmqpJobQueue.EXCHANGE, true, false);
+        DirectExchange deadLetterExchange = new DirectExchange(AmqpJobQueue.DEAD_LETTER_EXCHANGE, true, false);
+
+        List<Declarable> declarables = new ArrayList<>(List.of(exchange, deadLetterExchange));
+        for (JobHandler<?> handler : jobDispatcher.handlers()) {
+            String job = handler.type().name();
+            Queue queue = QueueBuilder.durable(AmqpJobQueue.queueName(job))
+                    .deadLetterExchange(AmqpJobQueue.DEAD_LETTER_EXCHANGE)
+                    .deadLetterRoutingKey(job)
+                    .build();
+            // Une file d'attente par niveau de tentative, chacune avec un délai fixe
+            for (int attempt = 1; attempt < jobDispatcher.settings(job).maxAttempts(); attempt++) {
+                long delay = AmqpJobQueue.retryDelay(retryDelayMs, attempt);
+                declarables.add(QueueBuilder.durable(AmqpJobQueue.retryQueueName(job, delay))
+                        .ttl((int) Math.min(delay, Integer.MAX_VALUE))
+                        .deadLetterExchange(AmqpJobQueue.EXCHANGE)
+                        .deadLetterRoutingKey(job)
+                        .build());
+            }
+            Queue deadLetterQueue = QueueBuilder.durable(AmqpJobQueue.deadLetterQueueName(job)).build();
+            Binding binding = BindingBuilder.bind(queue).to(exchange).with(job);
+            Binding deadLetterBinding = BindingBuilder.bind(deadLetterQueue).to(deadLetterExchange).with(job);
+            declarables.addAll(List.of(queue, deadLetterQueue, binding, deadLetterBinding));
+        }
+        return new Declarables(declarables);
+    }
+}
@@ -39,6 +39,18 @@ public class OpenSearchConfig {
     @Value("${opensearch.password}")
     private String password;
 
+    @Value("${opensearch.connect-timeout-ms:1000}")
+    private int connectTimeoutMs;
+
+    @Value("${opensearch.socket-timeout-ms:10000}")
+    private int socketTimeoutMs;
+
+    @Value("${opensearch.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${opensearch.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+
     @Bean
     public RestHighLevelClient openSearchClient() throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
         final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
@@ -52,9 +64,15 @@ public class OpenSearchConfig {
 
         RestClientBuilder builder = RestClient.builder(
                         new HttpHost(host, port, scheme))
+                // Délais bornés : un cluster lent ne doit pas retenir les connexions indéfiniment
+                .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
+                        .setConnectTimeout(connectTimeoutMs)
+                        .setSocketTimeout(socketTimeoutMs))
                 .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
                         .setDefaultCredentialsProvider(credentialsProvider)
-                        .setSSLContext(sslContext));
+                        .setSSLContext(sslContext)
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnectionsPerRoute));
 
         return new RestHighLevelClient(builder);
     }
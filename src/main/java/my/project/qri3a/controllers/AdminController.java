@@ -8,6 +8,7 @@ import my.project.qri3a.dtos.requests.UserRequestDTO;
 import my.project.qri3a.dtos.requests.UserUpdateRequestDTO;
 import my.project.qri3a.dtos.responses.ProductListingDTO;
 import my.project.qri3a.dtos.responses.ProductResponseDTO;
+import my.project.qri3a.dtos.responses.ReindexStatusDTO;
 import my.project.qri3a.dtos.responses.UserResponseDTO;
 import my.project.qri3a.entities.User;
 import my.project.qri3a.enums.ProductStatus;
@@ -18,6 +19,7 @@ import my.project.qri3a.exceptions.ResourceNotValidException;
 import my.project.qri3a.mappers.UserMapper;
 import my.project.qri3a.responses.ApiResponse;
 import my.project.qri3a.services.AdminService;
+import my.project.qri3a.services.ProductReindexJob;
 import my.project.qri3a.services.ProductService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -38,6 +40,7 @@ public class AdminController {
     private final AdminService adminService;
     private final UserMapper userMapper;
     private final ProductService productService;
+    private final ProductReindexJob productReindexJob;
 
     /**
      * GET /api/v1/admin/users?page=0&size=10&sort=name,asc
@@ -360,4 +363,35 @@ public class AdminController {
         
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    /**
+     * POST /api/v1/admin/search/reindex
+     * Lance la réindexation complète des produits vers un nouvel index, puis bascule l'alias (admin only)
+     */
+    @PostMapping("/search/reindex")
+    public ResponseEntity<ApiResponse<ReindexStatusDTO>> startReindex() {
+        log.info("Admin Controller: Starting full product reindex");
+
+        ReindexStatusDTO status = productReindexJob.start();
+        ApiResponse<ReindexStatusDTO> response = new ApiResponse<>(
+                status,
+                "Reindex started.",
+                HttpStatus.ACCEPTED.value()
+        );
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    /**
+     * GET /api/v1/admin/search/reindex
+     * Avancement, débit et erreurs de la dernière réindexation (admin only)
+     */
+    @GetMapping("/search/reindex")
+    public ResponseEntity<ApiResponse<ReindexStatusDTO>> getReindexStatus() {
+        ApiResponse<ReindexStatusDTO> response = new ApiResponse<>(
+                productReindexJob.getStatus(),
+                "Reindex status fetched successfully.",
+                HttpStatus.OK.value()
+        );
+        return ResponseEntity.ok(response);
+    }
+}
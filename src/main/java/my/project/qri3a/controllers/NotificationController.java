@@ -1,4 +1,6 @@
 package my.project.qri3a.controllers;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import my.project.qri3a.dtos.requests.NotificationRequestDTO;
 import my.project.qri3a.dtos.responses.NotificationResponseDTO;
@@ -11,14 +13,17 @@ import my.project.qri3a.mappers.NotificationMapper;
 import my.project.qri3a.repositories.ProductRepository;
 import my.project.qri3a.repositories.UserRepository;
 import my.project.qri3a.services.NotificationService;
+import my.project.qri3a.services.NotificationStreamService;
 import my.project.qri3a.services.UserService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -29,6 +34,7 @@ import java.util.stream.Collectors;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationStreamService notificationStreamService;
     private final UserService userService;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
@@ -55,11 +61,23 @@ public class NotificationController {
     @GetMapping("/unread-count")
     public UnreadCountDTO getUnreadCount(Authentication authentication) {
         String email = authentication.getName();
-        User user = userService.getUserByEmail(email);
-        long count = notificationService.getUnreadCount(user);
+        long count = notificationService.getUnreadCountByEmail(email);
         return new UnreadCountDTO(count);
     }
 
+    /**
+     * Flux SSE des nouvelles notifications ; à la reconnexion, le navigateur renvoie Last-Event-ID et seules les
+     * notifications manquées sont rejouées
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void streamNotifications(Authentication authentication,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                    HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+        User user = userService.getUserByEmail(authentication.getName());
+        notificationStreamService.subscribe(user.getId(), lastEventId, request, response);
+    }
+
     @PutMapping("/mark-all-as-seen")
     public void markAllAsSeen(Authentication authentication) {
         String email = authentication.getName();
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import my.project.qri3a.enums.ProductStatus;
@@ -32,6 +33,8 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import my.project.qri3a.documents.ProductDoc;
 import my.project.qri3a.dtos.requests.ProductRequestDTO;
+import my.project.qri3a.dtos.responses.CursorPageDTO;
+import my.project.qri3a.dtos.responses.SearchCursorPageDTO;
 import my.project.qri3a.dtos.responses.ProductListingDTO;
 import my.project.qri3a.dtos.responses.ProductResponseDTO;
 import my.project.qri3a.dtos.responses.ProductSuggestionDTO;
@@ -43,6 +46,7 @@ import my.project.qri3a.responses.ApiResponse;
 import my.project.qri3a.services.ProductService;
 import my.project.qri3a.entities.UserSearchHistory;
 import my.project.qri3a.mappers.UserSearchHistoryMapper;
+import my.project.qri3a.utils.GeoDistanceFilter;
 
 @RestController
 @AllArgsConstructor
@@ -79,6 +83,31 @@ public class ProductController {
 
 
 
+    /**
+     * GET /api/v1/products/feed
+     * Variante paginée par curseur de GET /api/v1/products (distribution équitable sans OFFSET ni COUNT)
+     * Example: /api/v1/products/feed?size=20&category=LAPTOPS puis /api/v1/products/feed?size=20&cursor={nextCursor}
+     */
+    @GetMapping("/feed")
+    public ResponseEntity<ApiResponse<CursorPageDTO<ProductListingDTO>>> getProductsFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String location,
+            @RequestParam(required = false) String condition,
+            @RequestParam(required = false) UUID sellerId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) String city
+    ) throws ResourceNotValidException {
+        log.info("Controller: Fetching products feed by cursor: size={}, category={}, location={}, condition={}, sellerId={}, minPrice={}, maxPrice={}, city={}",
+                size, category, location, condition, sellerId, minPrice, maxPrice, city);
+
+        CursorPageDTO<ProductListingDTO> feed = productService.getAllProductsByCursor(cursor, size, category, location, condition, sellerId, minPrice, maxPrice, city);
+        ApiResponse<CursorPageDTO<ProductListingDTO>> response = new ApiResponse<>(feed, "Products fetched successfully.", HttpStatus.OK.value());
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * GET /api/v1/products/{id}
      * Endpoint enrichi avec des métadonnées JSON-LD pour le SEO
@@ -244,7 +273,7 @@ public class ProductController {
 
     @GetMapping("/search")
     public ResponseEntity<ApiResponse<Page<ProductListingDTO>>> searchProducts(
-            @RequestParam String query,
+            @RequestParam(defaultValue = "") String query,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "createdAt,desc") String sort,
@@ -254,6 +283,10 @@ public class ProductController {
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
             @RequestParam(required = false) String city,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lon,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(defaultValue = "false") boolean sortByDistance,
             Authentication authentication
     ) {
         log.info("Controller: Recherche de produits avec le terme: {} et filtres - category: {}, location: {}, condition: {}, minPrice: {}, maxPrice: {}, city: {}",
@@ -267,12 +300,14 @@ public class ProductController {
             searchTermService.recordUserSearchHistory(query, category, location, authentication);
         }
 
+        // sort=relevance,desc classe les résultats par pertinence (ts_rank) quand la recherche plein texte est active
         String[] sortParams = sort.split(",");
         Sort sortOrder = Sort.by(Sort.Direction.fromString(sortParams[1]), sortParams[0]);
         Pageable pageable = PageRequest.of(page, size, sortOrder);
 
-        // Appeler la méthode de recherche avec filtres
-        Page<ProductListingDTO> results = productService.searchProducts(query, pageable, category, location, condition, minPrice, maxPrice, city);
+        // Appeler la méthode de recherche avec filtres ; lat/lon restreignent au rayon radiusKm (25 km par défaut)
+        GeoDistanceFilter geo = GeoDistanceFilter.of(lat, lon, radiusKm, sortByDistance);
+        Page<ProductListingDTO> results = productService.searchProducts(query, pageable, category, location, condition, minPrice, maxPrice, city, geo);
 
         ApiResponse<Page<ProductListingDTO>> response = new ApiResponse<>(
                 results,
@@ -283,8 +318,8 @@ public class ProductController {
     }
 
     @GetMapping("/search-elastic")
-    public ResponseEntity<ApiResponse<Page<ProductDoc>>> searchProductsElastic(
-            @RequestParam String query,
+    public CompletableFuture<ResponseEntity<ApiResponse<Page<ProductDoc>>>> searchProductsElastic(
+            @RequestParam(defaultValue = "") String query,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) String category,
@@ -294,6 +329,11 @@ public class ProductController {
             @RequestParam(required = false) BigDecimal maxPrice,
             @RequestParam(required = false) String city,
             @RequestParam(required = false) String delivery,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lon,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(defaultValue = "false") boolean sortByDistance,
+            @RequestParam(defaultValue = "false") boolean facets,
             Authentication authentication) {
 
         log.info("Controller: Elasticsearch search with query: {} and filters - category: {}, location: {}, condition: {}, minPrice: {}, maxPrice: {}, city: {}, delivery: {}",
@@ -307,12 +347,47 @@ public class ProductController {
             searchTermService.recordUserSearchHistory(query, category, location, authentication);
         }
 
+        // La réponse est écrite quand la recherche aboutit : le thread de requête est libéré pendant l'attente
+        GeoDistanceFilter geo = GeoDistanceFilter.of(lat, lon, radiusKm, sortByDistance);
         Pageable pageable = PageRequest.of(page, size);
-        Page<ProductDoc> results = productService.searchProductsElastic(query, pageable, category, location, condition, minPrice, maxPrice, city, delivery);
-        ApiResponse<Page<ProductDoc>> response = new ApiResponse<>(results, "Elasticsearch search results fetched successfully.", HttpStatus.OK.value());
-        return ResponseEntity.ok(response);
+        return productService.searchProductsElastic(query, pageable, category, location, condition, minPrice, maxPrice, city, delivery, geo, facets)
+                .thenApply(results -> ResponseEntity.ok(
+                        new ApiResponse<>(results, "Elasticsearch search results fetched successfully.", HttpStatus.OK.value())));
     }
 
+    /**
+     * GET /api/v1/products/search-elastic/cursor
+     * Recherche pour le défilement infini : curseur opaque au lieu de page, total plafonné
+     */
+    @GetMapping("/search-elastic/cursor")
+    public CompletableFuture<ResponseEntity<ApiResponse<SearchCursorPageDTO<ProductDoc>>>> searchProductsElasticByCursor(
+            @RequestParam String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String location,
+            @RequestParam(required = false) String condition,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) String city,
+            @RequestParam(required = false) String delivery,
+            Authentication authentication) {
+
+        log.info("Controller: Elasticsearch cursor search with query: {}, size: {}", query, size);
+
+        // Le terme n'est enregistré qu'une fois, à la première page
+        if (cursor == null || cursor.isBlank()) {
+            searchTermService.recordSearchTerm(query, category, location);
+            if (authentication != null) {
+                searchTermService.recordUserSearchHistory(query, category, location, authentication);
+            }
+        }
+
+        return productService.searchProductsElasticByCursor(
+                        query, cursor, size, category, location, condition, minPrice, maxPrice, city, delivery)
+                .thenApply(results -> ResponseEntity.ok(
+                        new ApiResponse<>(results, "Elasticsearch search results fetched successfully.", HttpStatus.OK.value())));
+    }
 
     @GetMapping("/find-all")
     public ResponseEntity<ApiResponse<Page<ProductDoc>>> findAll(
@@ -331,30 +406,30 @@ public class ProductController {
     }
 
     @GetMapping("/search-suggestions")
-    public ResponseEntity<ApiResponse<List<ProductSuggestionDTO>>> getSuggestions(
+    public CompletableFuture<ResponseEntity<ApiResponse<List<ProductSuggestionDTO>>>> getSuggestions(
             @RequestParam String query,
             @RequestParam(required = false) String category,
             @RequestParam(defaultValue = "10") int limit) {
 
         log.info("Controller: Récupération des suggestions de recherche pour le terme: {} using Elastic Search", query);
-        List<ProductDoc> suggestions = productService.searchProductSuggestionsElastic(query,category,limit);
-
-        List<ProductSuggestionDTO> suggestionDTOs = suggestions.stream()
-                .limit(limit)
-                .map(doc -> {
-                    ProductSuggestionDTO dto = new ProductSuggestionDTO();
-                    dto.setId(doc.getId());
-                    dto.setTitle(doc.getTitle());
-                    return dto;
-                })
-                .collect(Collectors.toList());
-
-        ApiResponse<List<ProductSuggestionDTO>> response = new ApiResponse<>(
-                suggestionDTOs,
-                "Suggestions de recherche récupérées avec succès.",
-                HttpStatus.OK.value());
+        return productService.searchProductSuggestionsElastic(query, category, limit).thenApply(suggestions -> {
+            List<ProductSuggestionDTO> suggestionDTOs = suggestions.stream()
+                    .limit(limit)
+                    .map(doc -> {
+                        ProductSuggestionDTO dto = new ProductSuggestionDTO();
+                        dto.setId(doc.getId());
+                        dto.setTitle(doc.getTitle());
+                        return dto;
+                    })
+                    .collect(Collectors.toList());
 
-        return ResponseEntity.ok(response);
+            ApiResponse<List<ProductSuggestionDTO>> response = new ApiResponse<>(
+                    suggestionDTOs,
+                    "Suggestions de recherche récupérées avec succès.",
+                    HttpStatus.OK.value());
+
+            return ResponseEntity.ok(response);
+        });
     }
 
 
@@ -581,9 +656,51 @@ public class ProductController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * GET /api/v1/products/main-category/{mainCategory}/feed
+     * Variante paginée par curseur de GET /api/v1/products/main-category/{mainCategory}
+     */
+    @GetMapping("/main-category/{mainCategory}/feed")
+    public ResponseEntity<ApiResponse<CursorPageDTO<ProductListingDTO>>> getProductsFeedByMainCategory(
+            @PathVariable String mainCategory,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        log.info("Controller: Fetching products feed by cursor for main category: {}, size={}", mainCategory, size);
+
+        CursorPageDTO<ProductListingDTO> feed = productService.getProductsByMainCategoryByCursor(mainCategory, cursor, size);
+        ApiResponse<CursorPageDTO<ProductListingDTO>> response = new ApiResponse<>(
+                feed,
+                "Products fetched successfully for main category " + mainCategory,
+                HttpStatus.OK.value()
+        );
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * GET /api/v1/products/fair-feed
+     * Fil équitable : les produits les moins exposés d'abord, sans tri en base
+     */
+    @GetMapping("/fair-feed")
+    public ResponseEntity<ApiResponse<CursorPageDTO<ProductListingDTO>>> getFairFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long seed,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String city) {
+        log.info("Controller: Fetching fair feed with category={}, city={}, size={}", category, city, size);
+
+        CursorPageDTO<ProductListingDTO> feed = productService.getFairFeed(category, city, seed, cursor, size);
+        ApiResponse<CursorPageDTO<ProductListingDTO>> response = new ApiResponse<>(
+                feed,
+                "Products fetched successfully.",
+                HttpStatus.OK.value()
+        );
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * GET /api/v1/products/popular-searches
-     * Récupère les termes de recherche populaires
+     * Récupère les termes de recherche populaires (tendances des dernières heures)
      */
     @GetMapping("/popular-searches")
     public ResponseEntity<ApiResponse<List<String>>> getPopularSearchTerms(
@@ -592,18 +709,8 @@ public class ProductController {
         
         log.info("Controller: Récupération des termes de recherche populaires, catégorie: {}, limite: {}", category, limit);
         
-        List<String> popularTerms;
-        if (category != null && !category.isEmpty()) {
-            popularTerms = searchTermService.getTopSearchTermsByCategory(category, limit)
-                    .stream()
-                    .map(term -> term.getTerm())
-                    .collect(Collectors.toList());
-        } else {
-            popularTerms = searchTermService.getTopSearchTerms(limit)
-                    .stream()
-                    .map(term -> term.getTerm())
-                    .collect(Collectors.toList());
-        }
+        // Tendances récentes servies depuis la mémoire, sans accès à la base
+        List<String> popularTerms = searchTermService.getTrendingSearchTerms(category, limit);
         
         ApiResponse<List<String>> response = new ApiResponse<>(
                 popularTerms,
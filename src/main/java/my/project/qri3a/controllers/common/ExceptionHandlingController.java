@@ -130,6 +130,18 @@ public class ExceptionHandlingController {
     }
 
 
+    @ExceptionHandler(SearchUnavailableException.class)
+    public ResponseEntity<ApiError> handleSearchUnavailableException(SearchUnavailableException ex, WebRequest request) {
+        log.warn("Search unavailable: {}", ex.getMessage());
+        ApiError error = new ApiError(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Search is temporarily unavailable, please retry.",
+                LocalDateTime.now(),
+                null
+        );
+        return new ResponseEntity<>(error, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiError> handleGlobalException(Exception ex, WebRequest request) {
         log.error("An unexpected error occurred: {}", ex.getMessage(), ex);
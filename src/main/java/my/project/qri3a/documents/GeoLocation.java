@@ -0,0 +1,24 @@
+package my.project.qri3a.documents;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Position d'un produit dans l'index, sérialisée en {"lat": ..., "lon": ...} pour le champ geo_point
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeoLocation {
+
+    private double lat;
+    private double lon;
+
+    /**
+     * @return La position, null si l'une des coordonnées manque
+     */
+    public static GeoLocation of(Double lat, Double lon) {
+        return lat == null || lon == null ? null : new GeoLocation(lat, lon);
+    }
+}
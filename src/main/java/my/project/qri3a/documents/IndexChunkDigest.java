@@ -0,0 +1,24 @@
+package my.project.qri3a.documents;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Empreinte d'un tronçon d'identifiants de produits : nombre de documents et somme de leurs empreintes de
+ * synchronisation. Deux tronçons identiques côté base et côté index se comparent en une seule égalité.
+ */
+@Getter
+@AllArgsConstructor
+public class IndexChunkDigest {
+
+    // Dernier identifiant du tronçon côté base, null côté index ou si la table est épuisée
+    private final UUID lastId;
+    private final long count;
+    private final long hashSum;
+
+    public boolean matches(IndexChunkDigest other) {
+        return count == other.count && hashSum == other.hashSum;
+    }
+}
@@ -1,6 +1,11 @@
 package my.project.qri3a.documents;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.UUID;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.elasticsearch.annotations.Document;
@@ -48,4 +53,24 @@ public class ProductDoc {
     private String deliveryZones;
     private String deliveryTime;
 
+    // Champ geo_point : filtre et tri par distance
+    private GeoLocation geoLocation;
+
+    // Empreinte de (id, statut, updatedAt) comparée par le réconciliateur base / index
+    private Long syncHash;
+
+    /**
+     * Empreinte de synchronisation : 32 premiers bits du MD5 de "id|statut|updatedAt en millisecondes UTC".
+     * Doit rester identique à l'expression SQL de ProductRepositoryCustomImpl (SYNC_HASH_SQL).
+     */
+    public static long syncHash(UUID id, String status, LocalDateTime updatedAt) {
+        long updatedAtMillis = updatedAt == null ? 0 : updatedAt.toInstant(ZoneOffset.UTC).toEpochMilli();
+        String key = id + "|" + status + "|" + updatedAtMillis;
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ((digest[0] & 0xFFL) << 24) | ((digest[1] & 0xFFL) << 16) | ((digest[2] & 0xFFL) << 8) | (digest[3] & 0xFFL);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
 }
@@ -0,0 +1,21 @@
+package my.project.qri3a.dtos.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page de résultats paginée par curseur, sans nombre total d'éléments
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageDTO<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    // Jeton opaque à renvoyer pour obtenir la page suivante, null s'il n'y en a plus
+    private String nextCursor;
+}
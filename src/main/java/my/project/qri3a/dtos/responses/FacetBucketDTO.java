@@ -0,0 +1,16 @@
+package my.project.qri3a.dtos.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Valeur d'une facette de recherche et nombre de produits correspondants
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FacetBucketDTO {
+    private String key;
+    private long count;
+}
@@ -0,0 +1,23 @@
+package my.project.qri3a.dtos.responses;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Page de résultats accompagnée de ses facettes : sérialisée comme une page ordinaire avec un champ "facets" en plus
+ */
+public class FacetedPageDTO<T> extends PageImpl<T> {
+
+    private final transient SearchFacetsDTO facets;
+
+    public FacetedPageDTO(List<T> content, Pageable pageable, long total, SearchFacetsDTO facets) {
+        super(content, pageable, total);
+        this.facets = facets;
+    }
+
+    public SearchFacetsDTO getFacets() {
+        return facets;
+    }
+}
@@ -21,4 +21,6 @@ public class NotificationResponseDTO {
     private String createdAt;
     // New field for the first image of the product
     private ImageResponseDTO firstProductImage;
+    // Nombre de notifications non lues du destinataire, renseigné dans les envois WebSocket
+    private Long unreadCount;
 }
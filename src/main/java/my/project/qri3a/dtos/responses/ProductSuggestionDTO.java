@@ -8,6 +8,6 @@ import java.util.UUID;
 @Getter
 @Setter
 public class ProductSuggestionDTO {
-    private UUID id;
+    private UUID id; // null pour un terme de recherche populaire (suggestion servie en mémoire)
     private String title;
 }
@@ -0,0 +1,32 @@
+package my.project.qri3a.dtos.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import my.project.qri3a.enums.ReindexState;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Avancement de la réindexation complète des produits
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReindexStatusDTO {
+    private ReindexState state;
+    private String targetIndex;
+    private String previousIndex;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long documentsRead;
+    private long documentsIndexed;
+    private long documentsFailed;
+    private long batchesSent;
+    private double documentsPerSecond;
+    // Premiers messages d'erreur, pour diagnostic
+    private List<String> errors;
+}
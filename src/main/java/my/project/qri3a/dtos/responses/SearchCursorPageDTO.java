@@ -0,0 +1,25 @@
+package my.project.qri3a.dtos.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page de résultats de recherche paginée par curseur, avec un nombre total plafonné
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchCursorPageDTO<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    // Jeton opaque à renvoyer pour obtenir la page suivante, null s'il n'y en a plus
+    private String nextCursor;
+    // Nombre de résultats, compté au plus jusqu'au seuil configuré
+    private long totalHits;
+    // false si totalHits est une borne basse (seuil atteint)
+    private boolean totalHitsExact;
+}
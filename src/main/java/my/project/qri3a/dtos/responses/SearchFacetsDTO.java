@@ -0,0 +1,28 @@
+package my.project.qri3a.dtos.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Comptes par catégorie, ville, état, mode de livraison et tranche de prix, calculés sur les résultats d'une recherche
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchFacetsDTO {
+    private List<FacetBucketDTO> categories;
+    private List<FacetBucketDTO> cities;
+    private List<FacetBucketDTO> conditions;
+    private List<FacetBucketDTO> deliveries;
+    // Clé = borne basse de la tranche de prix
+    private List<FacetBucketDTO> priceHistogram;
+
+    public int bucketCount() {
+        return categories.size() + cities.size() + conditions.size() + deliveries.size() + priceHistogram.size();
+    }
+}
@@ -19,7 +19,12 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+        // Comptage des non lues et recalage des compteurs par utilisateur
+        @Index(name = "idx_notification_user_read", columnList = "user_id, read"),
+        // Reprise du flux SSE par clé après le dernier événement reçu
+        @Index(name = "idx_notification_user_created_id", columnList = "user_id, created_at, id")
+})
 public class Notification {
 
     @Id
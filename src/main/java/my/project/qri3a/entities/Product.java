@@ -6,6 +6,7 @@ import lombok.*;
 import my.project.qri3a.enums.ProductCategory;
 import my.project.qri3a.enums.ProductCondition;
 import my.project.qri3a.enums.ProductStatus;
+import my.project.qri3a.utils.GeoDistanceFilter;
 import my.project.qri3a.utils.SlugGenerator;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.OnDelete;
@@ -20,7 +21,12 @@ import java.util.*;
 @Entity
 @Table(name = "products", indexes = {
         @Index(name = "idx_product_slug", columnList = "slug"),
-        @Index(name = "idx_product_views_count", columnList = "views_count")
+        @Index(name = "idx_product_views_count", columnList = "views_count"),
+        // Index composites pour la pagination par clé du fil équitable
+        @Index(name = "idx_product_status_views_count_id", columnList = "status, views_count, id"),
+        @Index(name = "idx_product_status_category_views_count_id", columnList = "status, category, views_count, id"),
+        // Préfiltre par rectangle englobant des recherches par rayon
+        @Index(name = "idx_product_geo_lat_lon", columnList = "geo_lat, geo_lon")
 })
 @Getter
 @Setter
@@ -77,6 +83,13 @@ public class Product {
     @Column(nullable = true)
     private String latitude;
 
+    // Copies numériques de latitude / longitude, maintenues à l'enregistrement (null si le texte est invalide)
+    @Column(name = "geo_lat", nullable = true)
+    private Double geoLat;
+
+    @Column(name = "geo_lon", nullable = true)
+    private Double geoLon;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "seller_id")
     @OnDelete(action = OnDeleteAction.CASCADE)
@@ -124,12 +137,25 @@ public class Product {
 
     @PrePersist
     @PreUpdate
+    private void beforeSave() {
+        generateSlug();
+        syncGeoCoordinates();
+    }
+
     private void generateSlug() {
         if (id != null && title != null) {
             this.slug = SlugGenerator.generateProductSlug(title, id.toString());
         }
     }
 
+    private void syncGeoCoordinates() {
+        Double lat = GeoDistanceFilter.parseLatitude(latitude);
+        Double lon = GeoDistanceFilter.parseLongitude(longitude);
+        boolean valid = lat != null && lon != null;
+        this.geoLat = valid ? lat : null;
+        this.geoLon = valid ? lon : null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,53 @@
+package my.project.qri3a.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import my.project.qri3a.enums.IndexOperation;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Entrée de la boîte d'envoi (outbox) de l'index de recherche.
+ * Écrite dans la même transaction que la modification du produit, puis consommée par l'indexeur en masse.
+ */
+@Entity
+@Table(name = "product_index_outbox", indexes = {
+        @Index(name = "idx_product_index_outbox_next_attempt", columnList = "next_attempt_at, id"),
+        @Index(name = "idx_product_index_outbox_product", columnList = "product_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductIndexOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private UUID productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private IndexOperation operation;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Renseigné quand l'entrée a épuisé ses tentatives : elle n'est plus traitée
+    @Column(name = "dead_lettered_at")
+    private LocalDateTime deadLetteredAt;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -12,6 +12,8 @@ import java.util.UUID;
 /**
  * Entité qui représente un terme de recherche utilisé par les utilisateurs
  * Permet de suivre les recherches populaires et d'améliorer le SEO
+ * Le couple (term, category) est unique : index uk_search_term_term_category (NULLS NOT DISTINCT), créé par le script
+ * db/search-terms.sql, sur lequel s'appuie l'écriture par lots des compteurs
  */
 @Entity
 @Table(name = "search_terms")
@@ -0,0 +1,41 @@
+package my.project.qri3a.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nombre de recherches d'un couple (terme, catégorie) pendant une heure, servant à reconstruire les tendances
+ * au démarrage ; purgé au-delà de la fenêtre des tendances.
+ * Le triplet (term, category, hour) est unique : index uk_search_term_hourly_term_category_hour (NULLS NOT DISTINCT),
+ * créé par le script db/search-terms.sql, sur lequel s'appuie l'écriture par lots des compteurs
+ */
+@Entity
+@Table(name = "search_term_hourly", indexes = @Index(name = "idx_search_term_hourly_hour", columnList = "hour"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchTermHourly {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String term;
+
+    @Column(nullable = true)
+    private String category;
+
+    // Début de l'heure
+    @Column(nullable = false)
+    private LocalDateTime hour;
+
+    @Column(nullable = false)
+    private long count;
+}
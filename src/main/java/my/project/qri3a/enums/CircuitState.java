@@ -0,0 +1,21 @@
+package my.project.qri3a.enums;
+
+/**
+ * États du disjoncteur protégeant les appels à OpenSearch
+ */
+public enum CircuitState {
+    /**
+     * Appels autorisés, les échecs consécutifs sont comptés.
+     */
+    CLOSED,
+
+    /**
+     * Appels refusés sans contacter le cluster jusqu'à la fin du délai d'ouverture.
+     */
+    OPEN,
+
+    /**
+     * Un seul appel d'essai est autorisé pour décider de la réouverture ou de la fermeture.
+     */
+    HALF_OPEN
+}
@@ -0,0 +1,9 @@
+package my.project.qri3a.enums;
+
+/**
+ * Opération à propager vers l'index de recherche des produits
+ */
+public enum IndexOperation {
+    UPSERT,
+    DELETE
+}
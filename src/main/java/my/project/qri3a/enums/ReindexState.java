@@ -0,0 +1,11 @@
+package my.project.qri3a.enums;
+
+/**
+ * État d'une réindexation complète de l'index des produits
+ */
+public enum ReindexState {
+    IDLE,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,182 @@
+package my.project.qri3a.jobs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * File de travaux AMQP (RabbitMQ), partagée par toutes les instances.
+ * Chaque type de travail a des files durables : la file principale, liée à l'échange {@link #EXCHANGE} ; une file
+ * d'attente sans consommateur par niveau de nouvelle tentative, dont les messages expirés reviennent sur la file
+ * principale ; une file morte, alimentée par l'échange {@link #DEAD_LETTER_EXCHANGE} quand le nombre maximal de
+ * tentatives est atteint. Les files sont déclarées par {@link my.project.qri3a.config.AmqpJobQueueConfig}.
+ * Chaque file d'attente a un délai fixe (x-message-ttl) : RabbitMQ n'expire que le message en tête de file, des
+ * délais différents dans une même file feraient attendre les messages courts derrière les longs.
+ */
+@Component
+@ConditionalOnProperty(name = "app.jobs.transport", havingValue = "amqp")
+@Slf4j
+public class AmqpJobQueue implements JobQueue {
+
+    public static final String EXCHANGE = "qri3a.jobs";
+    public static final String DEAD_LETTER_EXCHANGE = "qri3a.jobs.dlx";
+    private static final String ATTEMPT_HEADER = "x-job-attempt";
+    private static final String ENQUEUED_AT_HEADER = "x-job-enqueued-at";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ConnectionFactory connectionFactory;
+    private final ObjectMapper objectMapper;
+    private final JobDispatcher dispatcher;
+    private final long retryDelayMs;
+    private final List<SimpleMessageListenerContainer> containers = new ArrayList<>();
+
+    public AmqpJobQueue(RabbitTemplate rabbitTemplate,
+                        ConnectionFactory connectionFactory,
+                        ObjectMapper objectMapper,
+                        JobDispatcher dispatcher,
+                        @Value("${app.jobs.retry-delay-ms:10000}") long retryDelayMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.connectionFactory = connectionFactory;
+        this.objectMapper = objectMapper;
+        this.dispatcher = dispatcher;
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    public static String queueName(String job) {
+        return EXCHANGE + "." + job;
+    }
+
+    /**
+     * File d'attente des messages à retenter après le délai donné. Le délai fait partie du nom : un changement de
+     * app.jobs.retry-delay-ms déclare de nouvelles files au lieu d'entrer en conflit avec le x-message-ttl existant.
+     */
+    public static String retryQueueName(String job, long delayMs) {
+        return queueName(job) + ".retry." + delayMs;
+    }
+
+    /**
+     * Délai avant la tentative suivant la tentative donnée, croissant avec le nombre de tentatives
+     */
+    public static long retryDelay(long retryDelayMs, int attempt) {
+        return retryDelayMs * attempt;
+    }
+
+    public static String deadLetterQueueName(String job) {
+        return queueName(job) + ".dead";
+    }
+
+    @Override
+    public <T> void enqueue(JobType<T> type, T payload) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Job payload for " + type.name() + " is not serializable", e);
+        }
+        try {
+            rabbitTemplate.send(EXCHANGE, type.name(), message(body, System.currentTimeMillis(), 1));
+        } catch (AmqpException e) {
+            // Courtier injoignable : le travail est exécuté sur place plutôt que perdu
+            log.error("Error publishing job {}, running it in the calling thread: {}", type.name(), e.getMessage());
+            dispatcher.run(type.name(), payload, System.currentTimeMillis(), 1);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startConsumers() {
+        for (JobHandler<?> handler : dispatcher.handlers()) {
+            String job = handler.type().name();
+            JobDispatcher.QueueSettings settings = dispatcher.settings(job);
+
+            SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+            container.setQueueNames(queueName(job));
+            container.setConcurrentConsumers(settings.concurrency());
+            container.setPrefetchCount(settings.prefetch());
+            // Un message rejeté part dans la file morte au lieu de revenir en tête de file
+            container.setDefaultRequeueRejected(false);
+            container.setMissingQueuesFatal(false);
+            container.setMessageListener(message -> onMessage(handler, message));
+            container.afterPropertiesSet();
+            container.start();
+            containers.add(container);
+            log.info("Started {} consumers on job queue {} (prefetch {})", settings.concurrency(), queueName(job), settings.prefetch());
+        }
+    }
+
+    @PreDestroy
+    public void stopConsumers() {
+        containers.forEach(SimpleMessageListenerContainer::stop);
+    }
+
+    private void onMessage(JobHandler<?> handler, Message message) {
+        String job = handler.type().name();
+        MessageProperties properties = message.getMessageProperties();
+        int attempt = headerAsNumber(properties, ATTEMPT_HEADER, 1).intValue();
+        long enqueuedAt = headerAsNumber(properties, ENQUEUED_AT_HEADER, System.currentTimeMillis()).longValue();
+
+        Object payload;
+        try {
+            payload = objectMapper.readValue(message.getBody(), handler.type().payloadType());
+        } catch (IOException e) {
+            dispatcher.deadLettered(job);
+            throw new AmqpRejectAndDontRequeueException("Unreadable payload for job " + job, e);
+        }
+
+        if (dispatcher.run(job, payload, enqueuedAt, attempt)) {
+            return;
+        }
+        if (attempt >= dispatcher.settings(job).maxAttempts()) {
+            dispatcher.deadLettered(job);
+            throw new AmqpRejectAndDontRequeueException("Job " + job + " failed after " + attempt + " attempts");
+        }
+
+        // Nouvelle tentative différée : le message expire dans la file d'attente de son niveau puis revient sur la file
+        // principale
+        long delay = retryDelay(retryDelayMs, attempt);
+        try {
+            rabbitTemplate.send("", retryQueueName(job, delay),
+                    message(message.getBody(), System.currentTimeMillis() + delay, attempt + 1));
+        } catch (AmqpException e) {
+            // Sans copie dans la file d'attente, le message est remis en file plutôt que rejeté vers la file morte
+            log.warn("Error scheduling retry of job {}, requeueing it: {}", job, e.getMessage());
+            throw new ImmediateRequeueAmqpException("Could not schedule retry of job " + job, e);
+        }
+        dispatcher.retried(job);
+    }
+
+    private static Message message(byte[] body, long enqueuedAt, int attempt) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        properties.setHeader(ATTEMPT_HEADER, attempt);
+        properties.setHeader(ENQUEUED_AT_HEADER, enqueuedAt);
+        return MessageBuilder.withBody(body).andProperties(properties).build();
+    }
+
+    private static Number headerAsNumber(MessageProperties properties, String header, long defaultValue) {
+        Object value = properties.getHeader(header);
+        return value instanceof Number number ? number : defaultValue;
+    }
+}
@@ -0,0 +1,119 @@
+package my.project.qri3a.jobs;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * File de travaux en mémoire, pour une instance unique et les tests.
+ * Chaque file a son pool de workers et sa file bornée ; quand elle est pleine, le travail est exécuté par
+ * l'appelant plutôt que perdu. Les travaux en attente sont perdus à l'arrêt de l'instance.
+ */
+@Component
+@ConditionalOnProperty(name = "app.jobs.transport", havingValue = "memory", matchIfMissing = true)
+@Slf4j
+public class InMemoryJobQueue implements JobQueue {
+
+    private final JobDispatcher dispatcher;
+    private final MeterRegistry meterRegistry;
+    private final int queueCapacity;
+    private final long retryDelayMs;
+    private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("jobs-retry"));
+
+    public InMemoryJobQueue(JobDispatcher dispatcher,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.jobs.memory.queue-capacity:10000}") int queueCapacity,
+                            @Value("${app.jobs.retry-delay-ms:10000}") long retryDelayMs) {
+        this.dispatcher = dispatcher;
+        this.meterRegistry = meterRegistry;
+        this.queueCapacity = queueCapacity;
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    @Override
+    public <T> void enqueue(JobType<T> type, T payload) {
+        submit(type.name(), payload, System.currentTimeMillis(), 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+        try {
+            for (Map.Entry<String, ThreadPoolExecutor> entry : executors.entrySet()) {
+                if (!entry.getValue().awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("Job queue {} stopped with {} jobs still pending", entry.getKey(), entry.getValue().getQueue().size());
+                    entry.getValue().shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+        }
+    }
+
+    private void submit(String queue, Object payload, long enqueuedAtMillis, int attempt) {
+        Runnable task = () -> process(queue, payload, enqueuedAtMillis, attempt);
+        try {
+            executors.computeIfAbsent(queue, this::createExecutor).execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Job queue {} full, running job in the calling thread", queue);
+            task.run();
+        }
+    }
+
+    private void process(String queue, Object payload, long enqueuedAtMillis, int attempt) {
+        if (dispatcher.run(queue, payload, enqueuedAtMillis, attempt)) {
+            return;
+        }
+        if (attempt >= dispatcher.settings(queue).maxAttempts()) {
+            dispatcher.deadLettered(queue);
+            return;
+        }
+        dispatcher.retried(queue);
+        long delay = retryDelayMs * attempt;
+        try {
+            retryScheduler.schedule(() -> submit(queue, payload, System.currentTimeMillis(), attempt + 1),
+                    delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Job {} not retried, job queue is shutting down", queue);
+        }
+    }
+
+    private ThreadPoolExecutor createExecutor(String queue) {
+        int workers = dispatcher.settings(queue).concurrency();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), namedThreads("jobs-" + queue));
+        Gauge.builder("jobs.queued", executor, e -> e.getQueue().size())
+                .tag("queue", queue)
+                .description("Travaux en attente d'un worker")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
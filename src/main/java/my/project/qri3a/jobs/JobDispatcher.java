@@ -0,0 +1,153 @@
+package my.project.qri3a.jobs;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Partie commune aux implémentations de {@link JobQueue} : gestionnaires par nom de file, réglages par file et
+ * métriques (attente avant traitement, durée, issues).
+ * Les réglages par défaut de app.jobs.* peuvent être surchargés par file : app.jobs.queues.&lt;file&gt;.concurrency,
+ * .prefetch et .max-attempts.
+ */
+@Component
+@Slf4j
+public class JobDispatcher {
+
+    private final ObjectProvider<JobHandler<?>> handlerProvider;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+    private final int defaultConcurrency;
+    private final int defaultPrefetch;
+    private final int defaultMaxAttempts;
+    private final Map<String, QueueMeters> meters = new ConcurrentHashMap<>();
+
+    // Résolu au premier usage : les gestionnaires dépendent eux-mêmes de la file de travaux
+    private volatile Map<String, JobHandler<?>> handlers;
+
+    public JobDispatcher(ObjectProvider<JobHandler<?>> handlerProvider,
+                         MeterRegistry meterRegistry,
+                         Environment environment,
+                         @Value("${app.jobs.concurrency:2}") int defaultConcurrency,
+                         @Value("${app.jobs.prefetch:10}") int defaultPrefetch,
+                         @Value("${app.jobs.max-attempts:3}") int defaultMaxAttempts) {
+        this.handlerProvider = handlerProvider;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+        this.defaultConcurrency = defaultConcurrency;
+        this.defaultPrefetch = defaultPrefetch;
+        this.defaultMaxAttempts = defaultMaxAttempts;
+    }
+
+    /**
+     * Réglages d'une file
+     * @param prefetch Messages réservés d'avance par consommateur (AMQP uniquement)
+     */
+    public record QueueSettings(int concurrency, int prefetch, int maxAttempts) {
+    }
+
+    public Collection<JobHandler<?>> handlers() {
+        return handlersByQueue().values();
+    }
+
+    public JobHandler<?> handler(String queue) {
+        JobHandler<?> handler = handlersByQueue().get(queue);
+        if (handler == null) {
+            throw new IllegalStateException("No job handler registered for queue " + queue);
+        }
+        return handler;
+    }
+
+    public QueueSettings settings(String queue) {
+        String prefix = "app.jobs.queues." + queue + ".";
+        return new QueueSettings(
+                Math.max(1, environment.getProperty(prefix + "concurrency", Integer.class, defaultConcurrency)),
+                Math.max(1, environment.getProperty(prefix + "prefetch", Integer.class, defaultPrefetch)),
+                Math.max(1, environment.getProperty(prefix + "max-attempts", Integer.class, defaultMaxAttempts)));
+    }
+
+    /**
+     * Exécute un travail et mesure son attente et sa durée
+     * @param enqueuedAtMillis Instant de dépôt (ou de fin du délai de nouvelle tentative)
+     * @return true si le traitement a réussi
+     */
+    @SuppressWarnings("unchecked")
+    public boolean run(String queue, Object payload, long enqueuedAtMillis, int attempt) {
+        QueueMeters queueMeters = meters(queue);
+        queueMeters.latency.record(Math.max(0, System.currentTimeMillis() - enqueuedAtMillis), TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        try {
+            ((JobHandler<Object>) handler(queue)).handle(payload);
+            queueMeters.succeeded.increment();
+            return true;
+        } catch (Exception e) {
+            log.warn("Job {} failed on attempt {}: {}", queue, attempt, e.getMessage());
+            return false;
+        } finally {
+            queueMeters.duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void retried(String queue) {
+        meters(queue).retried.increment();
+    }
+
+    public void deadLettered(String queue) {
+        // La charge utile n'est pas journalisée : elle peut contenir des jetons ou des adresses
+        meters(queue).deadLettered.increment();
+        log.error("Job {} dead-lettered after {} attempts", queue, settings(queue).maxAttempts());
+    }
+
+    private Map<String, JobHandler<?>> handlersByQueue() {
+        Map<String, JobHandler<?>> resolved = handlers;
+        if (resolved == null) {
+            resolved = new LinkedHashMap<>();
+            for (JobHandler<?> handler : handlerProvider.orderedStream().toList()) {
+                if (resolved.putIfAbsent(handler.type().name(), handler) != null) {
+                    throw new IllegalStateException("Several job handlers registered for queue " + handler.type().name());
+                }
+            }
+            handlers = resolved;
+        }
+        return resolved;
+    }
+
+    private QueueMeters meters(String queue) {
+        return meters.computeIfAbsent(queue, q -> new QueueMeters(meterRegistry, q));
+    }
+
+    private static final class QueueMeters {
+        private final Timer latency;
+        private final Timer duration;
+        private final Counter succeeded;
+        private final Counter retried;
+        private final Counter deadLettered;
+
+        private QueueMeters(MeterRegistry meterRegistry, String queue) {
+            this.latency = Timer.builder("jobs.latency").tag("queue", queue)
+                    .description("Attente entre le dépôt d'un travail et le début de son traitement")
+                    .register(meterRegistry);
+            this.duration = Timer.builder("jobs.duration").tag("queue", queue)
+                    .description("Durée de traitement d'un travail")
+                    .register(meterRegistry);
+            this.succeeded = Counter.builder("jobs.processed").tag("queue", queue).tag("result", "success")
+                    .register(meterRegistry);
+            this.retried = Counter.builder("jobs.processed").tag("queue", queue).tag("result", "retry")
+                    .register(meterRegistry);
+            this.deadLettered = Counter.builder("jobs.processed").tag("queue", queue).tag("result", "dead")
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package my.project.qri3a.jobs;
+
+/**
+ * Traitement d'un type de travail. Chaque bean qui implémente cette interface ouvre une file du même nom.
+ * Un travail peut être rejoué après un échec : le traitement doit pouvoir être répété sans effet indésirable.
+ */
+public interface JobHandler<T> {
+
+    JobType<T> type();
+
+    /**
+     * Traite un travail. Toute exception déclenche une nouvelle tentative, puis la mise en file morte
+     * une fois le nombre maximal de tentatives atteint.
+     */
+    void handle(T payload) throws Exception;
+}
@@ -0,0 +1,24 @@
+package my.project.qri3a.jobs;
+
+import my.project.qri3a.utils.TransactionHooks;
+
+/**
+ * File de travaux en arrière-plan.
+ * Deux implémentations, choisies par app.jobs.transport : en mémoire (une seule instance, tests) ou AMQP
+ * (files durables partagées par toutes les instances).
+ */
+public interface JobQueue {
+
+    /**
+     * Dépose un travail immédiatement
+     */
+    <T> void enqueue(JobType<T> type, T payload);
+
+    /**
+     * Dépose un travail après le commit de la transaction en cours, qu'il ne voie que des données validées ;
+     * rien n'est déposé si la transaction est annulée
+     */
+    default <T> void enqueueAfterCommit(JobType<T> type, T payload) {
+        TransactionHooks.afterCommit(() -> enqueue(type, payload));
+    }
+}
@@ -0,0 +1,8 @@
+package my.project.qri3a.jobs;
+
+/**
+ * Type de travail : le nom sert de nom de file, la classe de la charge utile sert à la désérialiser
+ * côté consommateur. La charge utile doit être sérialisable en JSON (records, DTO).
+ */
+public record JobType<T>(String name, Class<T> payloadType) {
+}
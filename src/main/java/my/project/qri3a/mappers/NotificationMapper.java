@@ -2,8 +2,10 @@ package my.project.qri3a.mappers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.dtos.responses.ImageResponseDTO;
 import my.project.qri3a.dtos.responses.NotificationResponseDTO;
 import my.project.qri3a.entities.Notification;
+import my.project.qri3a.repositories.NotificationRepositoryCustom.NotificationRow;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Component;
 
@@ -44,15 +46,7 @@ public class NotificationMapper {
         }
 
         // Formatage du champ createdAt en ISO 8601 (en UTC)
-        LocalDateTime createdAt = notification.getCreatedAt();
-        String createdAtStr = "";
-        if (createdAt != null) {
-            ZonedDateTime utcDateTime = createdAt.atZone(ZoneId.systemDefault())
-                    .withZoneSameInstant(ZoneId.of("UTC"));
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
-            createdAtStr = utcDateTime.format(formatter);
-        }
-        dto.setCreatedAt(createdAtStr);
+        dto.setCreatedAt(formatCreatedAt(notification.getCreatedAt()));
 
         // Si le produit associé possède des images, mapper la première image
         if (notification.getProduct() != null
@@ -66,4 +60,31 @@ public class NotificationMapper {
         log.info("Mapped NotificationResponseDTO: {}", dto);
         return dto;
     }
+
+    /**
+     * DTO d'une notification insérée par lots, sans entité chargée
+     * @param firstProductImage Première image du produit, calculée une fois pour tous les destinataires
+     */
+    public NotificationResponseDTO toDTO(NotificationRow row, ImageResponseDTO firstProductImage) {
+        return NotificationResponseDTO.builder()
+                .id(row.id())
+                .body(row.body())
+                .category(row.category())
+                .productId(row.productId())
+                .userId(row.userId())
+                .read(false)
+                .createdAt(formatCreatedAt(row.createdAt()))
+                .firstProductImage(firstProductImage)
+                .build();
+    }
+
+    private static String formatCreatedAt(LocalDateTime createdAt) {
+        if (createdAt == null) {
+            return "";
+        }
+        ZonedDateTime utcDateTime = createdAt.atZone(ZoneId.systemDefault())
+                .withZoneSameInstant(ZoneId.of("UTC"));
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        return utcDateTime.format(formatter);
+    }
 }
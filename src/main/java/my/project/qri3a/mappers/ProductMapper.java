@@ -15,6 +15,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Component;
 
 import lombok.RequiredArgsConstructor;
+import my.project.qri3a.documents.GeoLocation;
 import my.project.qri3a.documents.ProductDoc;
 import my.project.qri3a.dtos.requests.ProductRequestDTO;
 import my.project.qri3a.dtos.responses.ImageResponseDTO;
@@ -23,6 +24,7 @@ import my.project.qri3a.dtos.responses.ProductResponseDTO;
 import my.project.qri3a.dtos.responses.UserDTO;
 import my.project.qri3a.entities.Product;
 import my.project.qri3a.entities.User;
+import my.project.qri3a.utils.GeoDistanceFilter;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -162,6 +164,23 @@ public class ProductMapper {
     }
 
     public ProductDoc toProductDoc(Product product, int nbOfImages) {
+        // Map images from Product to ImageResponseDTO
+        List<ImageResponseDTO> imageDTOs = product.getImages().stream()
+                .sorted(Comparator.comparingInt(Image::getOrder))
+                .map(imageMapper::toDTO)
+                .toList();
+
+        return toProductDoc(product,
+                imageDTOs.isEmpty() ? null : imageDTOs.get(0).getUrl(),
+                nbOfImages == 0 ? imageDTOs.size() : nbOfImages);
+    }
+
+    /**
+     * Variante sans accès à la collection d'images, utilisée par l'indexation en masse
+     * @param firstImageUrl URL de la première image selon l'ordre, null s'il n'y en a pas
+     * @param numberOfImages Nombre d'images du produit
+     */
+    public ProductDoc toProductDoc(Product product, String firstImageUrl, int numberOfImages) {
         LocalDateTime createdAt = product.getCreatedAt();
         String createdAtStr = null; // Initialisez à null au lieu de chaîne vide
         if (createdAt != null) {
@@ -174,12 +193,6 @@ public class ProductMapper {
             createdAtStr = utcDateTime.format(formatter);
         }
 
-        // Map images from Product to ImageResponseDTO
-        List<ImageResponseDTO> imageDTOs = product.getImages().stream()
-                .sorted(Comparator.comparingInt(Image::getOrder))
-                .map(imageMapper::toDTO)
-                .toList();
-
         return ProductDoc.builder()
                 .id(product.getId())
                 .title(product.getTitle())
@@ -192,14 +205,43 @@ public class ProductMapper {
                 .category(product.getCategory().name())
                 .condition(product.getCondition().name())
                 .createdAt(createdAtStr) // Cette valeur peut maintenant être null
-                .firstImageUrl(imageDTOs.isEmpty() ? null : imageDTOs.get(0).getUrl())
-                .numberOfImages(nbOfImages == 0 ? imageDTOs.size() : nbOfImages)
+                .firstImageUrl(firstImageUrl)
+                .numberOfImages(numberOfImages)
                 // Ajout des informations de livraison
                 .delivery(product.getDelivery())
                 .deliveryFee(product.getDeliveryFee())
                 .deliveryAllMorocco(product.getDeliveryAllMorocco())
                 .deliveryZones(product.getDeliveryZones())
                 .deliveryTime(product.getDeliveryTime())
+                .geoLocation(GeoLocation.of(product.getGeoLat(), product.getGeoLon()))
+                .syncHash(ProductDoc.syncHash(product.getId(), product.getStatus().name(), product.getUpdatedAt()))
+                .build();
+    }
+
+    /**
+     * Document de recherche reconstruit depuis une ligne de listing, pour le repli SQL de la recherche OpenSearch
+     */
+    public ProductDoc toProductDoc(ProductListingDTO listing) {
+        return ProductDoc.builder()
+                .id(listing.getId())
+                .title(listing.getTitle())
+                .slug(listing.getSlug())
+                .price(listing.getPrice())
+                .location(listing.getLocation())
+                .city(listing.getCity())
+                .status(listing.getStatus() != null ? listing.getStatus().name() : null)
+                .category(listing.getCategory() != null ? listing.getCategory().name() : null)
+                .condition(listing.getCondition() != null ? listing.getCondition().name() : null)
+                .createdAt(listing.getCreatedAt())
+                .firstImageUrl(listing.getImage() != null ? listing.getImage().getUrl() : null)
+                .numberOfImages(listing.getNumberOfImages())
+                .delivery(listing.getDelivery())
+                .deliveryFee(listing.getDeliveryFee())
+                .deliveryAllMorocco(listing.getDeliveryAllMorocco())
+                .deliveryZones(listing.getDeliveryZones() != null ? String.join(",", listing.getDeliveryZones()) : null)
+                .deliveryTime(listing.getDeliveryTime())
+                .geoLocation(GeoLocation.of(GeoDistanceFilter.parseLatitude(listing.getLatitude()),
+                        GeoDistanceFilter.parseLongitude(listing.getLongitude())))
                 .build();
     }
 }
@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -23,6 +24,21 @@ public interface NotificationPreferenceRepository extends JpaRepository<Notifica
 
     boolean existsByIdAndUser(UUID id, User user);
 
+    /**
+     * Critères de toutes les préférences, sans charger les entités, pour l'index en mémoire
+     * @return Liste de tableaux [id, userId, productCategory, productState, minPrice, maxPrice, city]
+     */
+    @Query("SELECT np.id, np.user.id, np.productCategory, np.productState, np.minPrice, np.maxPrice, np.city " +
+            "FROM NotificationPreference np")
+    List<Object[]> findAllCriteria();
+
+    /**
+     * Fourchettes de prix des préférences de plusieurs utilisateurs en une requête
+     * @return Liste de tableaux [userId, minPrice, maxPrice]
+     */
+    @Query("SELECT np.user.id, np.minPrice, np.maxPrice FROM NotificationPreference np WHERE np.user.id IN :userIds")
+    List<Object[]> findPriceRangesByUserIds(@Param("userIds") Collection<UUID> userIds);
+
     @Query("SELECT DISTINCT np.user FROM NotificationPreference np WHERE " +
             "(np.productCategory IS NULL OR np.productCategory = :category) AND " +
             "(np.productState = 'BOTH' OR np.productState IS NULL OR np.productState = :condition) AND " +
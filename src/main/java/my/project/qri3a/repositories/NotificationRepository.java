@@ -10,14 +10,47 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface NotificationRepository extends JpaRepository<Notification, UUID> {
+public interface NotificationRepository extends JpaRepository<Notification, UUID>, NotificationRepositoryCustom {
     Page<Notification> findByUser(User user, Pageable pageable);
 
     long countByUserAndReadFalse(User user);
 
+    @Query("SELECT n.createdAt FROM Notification n WHERE n.id = :id AND n.user.id = :userId")
+    Optional<LocalDateTime> findCreatedAtByIdAndUserId(@Param("id") UUID id, @Param("userId") UUID userId);
+
+    /**
+     * Identifiants des notifications d'un utilisateur postérieures à une position (date de création, identifiant),
+     * dans l'ordre de création ; parcours par clé sur l'index (user_id, created_at, id)
+     */
+    @Query(value = "SELECT n.id FROM notifications n WHERE n.user_id = :userId " +
+            "AND (n.created_at, n.id) > (:createdAt, :id) ORDER BY n.created_at, n.id LIMIT :limit", nativeQuery = true)
+    List<UUID> findIdsAfter(@Param("userId") UUID userId, @Param("createdAt") LocalDateTime createdAt,
+                            @Param("id") UUID id, @Param("limit") int limit);
+
+    /**
+     * Notifications avec leur produit et ses images, pour les convertir en DTO en une requête
+     */
+    @Query("SELECT DISTINCT n FROM Notification n LEFT JOIN FETCH n.product p LEFT JOIN FETCH p.images WHERE n.id IN :ids")
+    List<Notification> findWithProductImagesByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId AND n.read = false")
+    long countUnreadByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Nombre de notifications non lues par utilisateur, en une requête ; les utilisateurs sans notification non lue
+     * sont absents du résultat
+     * @return Lignes [userId, count]
+     */
+    @Query("SELECT n.user.id, COUNT(n) FROM Notification n WHERE n.read = false AND n.user.id IN :userIds GROUP BY n.user.id")
+    List<Object[]> countUnreadByUserIds(@Param("userIds") Collection<UUID> userIds);
+
     @Modifying
     @Query("UPDATE Notification n SET n.read = true WHERE n.user = :user AND n.read = false")
     int markAllAsSeenByUser(@Param("user") User user);
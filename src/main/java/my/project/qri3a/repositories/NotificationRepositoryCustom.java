@@ -0,0 +1,33 @@
+package my.project.qri3a.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import my.project.qri3a.enums.ProductCategory;
+
+/**
+ * Opérations JDBC sur la table des notifications qui ne passent pas par le contexte de persistance JPA
+ */
+public interface NotificationRepositoryCustom {
+
+    /**
+     * Notification à insérer, identifiant attribué par l'appelant pour pouvoir la pousser sans relecture
+     */
+    record NotificationRow(UUID id, UUID userId, UUID productId, ProductCategory category, String body,
+                           LocalDateTime createdAt) {
+    }
+
+    /**
+     * Insère les notifications (non lues) par lots JDBC ; une notification dont l'identifiant existe déjà est ignorée
+     * @return Notifications effectivement insérées
+     */
+    List<NotificationRow> insertAll(List<NotificationRow> rows);
+
+    /**
+     * Publie des messages sur un canal Postgres (NOTIFY) en une seule instruction ; ils sont remis aux sessions à
+     * l'écoute dans l'ordre de la liste
+     * @param payloads Messages, chacun sous la limite de taille de Postgres (8000 octets par défaut)
+     */
+    void publish(String channel, List<String> payloads);
+}
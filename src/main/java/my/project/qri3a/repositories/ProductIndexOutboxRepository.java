@@ -0,0 +1,67 @@
+package my.project.qri3a.repositories;
+
+import my.project.qri3a.entities.ProductIndexOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository de la boîte d'envoi de l'index de recherche des produits
+ */
+@Repository
+public interface ProductIndexOutboxRepository extends JpaRepository<ProductIndexOutbox, Long> {
+
+    /**
+     * Entrées prêtes à être traitées, dans l'ordre d'écriture, verrouillées pour la transaction en cours.
+     * Les lignes déjà verrouillées par une autre instance sont sautées au lieu d'être attendues.
+     */
+    @Query(value = "SELECT * FROM product_index_outbox WHERE next_attempt_at <= :now AND dead_lettered_at IS NULL " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<ProductIndexOutbox> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Réserve des entrées jusqu'à l'échéance donnée : les autres instances ne les voient plus comme dues
+     */
+    @Modifying
+    @Query("UPDATE ProductIndexOutbox o SET o.nextAttemptAt = :leaseUntil WHERE o.id IN :ids")
+    int lease(@Param("ids") Collection<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Supprime les entrées traitées ; une modification enregistrée pendant l'envoi reste en attente
+     */
+    @Modifying
+    @Query("DELETE FROM ProductIndexOutbox o WHERE o.id IN :ids")
+    int deleteProcessed(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Reporte des entrées en échec avec un compteur de tentatives incrémenté
+     */
+    @Modifying
+    @Query("UPDATE ProductIndexOutbox o SET o.attempts = o.attempts + 1, o.nextAttemptAt = :nextAttemptAt " +
+           "WHERE o.id IN :ids")
+    int postpone(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    /**
+     * Écarte des entrées qui ont épuisé leurs tentatives : elles restent en table pour analyse, sans être retraitées
+     */
+    @Modifying
+    @Query("UPDATE ProductIndexOutbox o SET o.attempts = o.attempts + 1, o.deadLetteredAt = :now WHERE o.id IN :ids")
+    int deadLetter(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Produits ayant encore une opération en attente (hors entrées écartées), parmi ceux donnés
+     */
+    @Query("SELECT DISTINCT o.productId FROM ProductIndexOutbox o " +
+           "WHERE o.productId IN :productIds AND o.deadLetteredAt IS NULL")
+    List<UUID> findPendingProductIds(@Param("productIds") Collection<UUID> productIds);
+
+    @Query("SELECT MIN(o.createdAt) FROM ProductIndexOutbox o WHERE o.deadLetteredAt IS NULL")
+    LocalDateTime findOldestCreatedAt();
+}
@@ -15,11 +15,13 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 @Repository
-public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product>, ProductRepositoryCustom {
 
     Page<Product> findBySeller(User seller, Pageable pageable);
     Page<Product> findBySellerAndStatusOrderByCreatedAtDesc(User seller, ProductStatus status, Pageable pageable);
@@ -37,9 +39,40 @@ public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpec
     @Query("UPDATE Product p SET p.viewsCount = p.viewsCount + :increment WHERE p.id IN :productIds")
     void incrementViewsCount(@Param("productIds") List<UUID> productIds, @Param("increment") int increment);
 
+    /**
+     * Récupère le rôle du vendeur de chaque produit, sans charger les entités
+     * @param productIds Les identifiants des produits
+     * @return Liste de tableaux [id du produit, rôle du vendeur]
+     */
+    @Query("SELECT p.id, s.role FROM Product p LEFT JOIN p.seller s WHERE p.id IN :productIds")
+    List<Object[]> findSellerRolesByProductIds(@Param("productIds") Collection<UUID> productIds);
+
+    /**
+     * Projection minimale des produits d'un statut pour l'ordonnanceur d'exposition
+     * @param status Le statut des produits
+     * @return Liste de tableaux [id, catégorie, ville, viewsCount]
+     */
+    @Query("SELECT p.id, p.category, p.city, p.viewsCount FROM Product p WHERE p.status = :status")
+    List<Object[]> findExposureRowsByStatus(@Param("status") ProductStatus status);
+
+    /**
+     * Titres des produits d'un statut, du plus vu au moins vu, pour les suggestions servies en mémoire
+     * @return Liste de tableaux [id, titre, viewsCount]
+     */
+    @Query("SELECT p.id, p.title, p.viewsCount FROM Product p WHERE p.status = :status ORDER BY p.viewsCount DESC, p.id")
+    List<Object[]> findPopularTitlesByStatus(@Param("status") ProductStatus status, Pageable pageable);
+
+    @Query("SELECT p.id FROM Product p WHERE p.updatedAt >= :since")
+    List<UUID> findIdsUpdatedSince(@Param("since") LocalDateTime since);
+
     @Query("SELECT p FROM User u JOIN u.wishlist p WHERE u.id = :userId")
     Page<Product> findWishlistByUserId(@Param("userId") UUID userId, Pageable pageable);
 
+    // Identifiants seuls : les lignes affichées sont lues ensuite par findListingsByIds
+    @Query(value = "SELECT p.id FROM User u JOIN u.wishlist p WHERE u.id = :userId",
+            countQuery = "SELECT COUNT(p) FROM User u JOIN u.wishlist p WHERE u.id = :userId")
+    Page<UUID> findWishlistProductIdsByUserId(@Param("userId") UUID userId, Pageable pageable);
+
     @Query(
             value = "SELECT p FROM Product p " +
                     "WHERE p.id <> :productId " +
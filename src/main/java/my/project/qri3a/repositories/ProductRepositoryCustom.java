@@ -0,0 +1,89 @@
+package my.project.qri3a.repositories;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import my.project.qri3a.documents.IndexChunkDigest;
+import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.dtos.responses.ProductListingDTO;
+import my.project.qri3a.enums.ProductCategory;
+import my.project.qri3a.enums.ProductCondition;
+import my.project.qri3a.utils.GeoDistanceFilter;
+
+/**
+ * Opérations JDBC sur la table des produits qui ne passent pas par le contexte de persistance JPA
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * Applique en une seule requête UPDATE les incréments de viewsCount accumulés
+     * @param deltas Incrément à ajouter pour chaque identifiant de produit
+     * @return Nombre de lignes mises à jour
+     */
+    int applyViewsCountDeltas(Map<UUID, Integer> deltas);
+
+    /**
+     * Charge les lignes de listing (colonnes affichées, première image par ordre et nombre d'images)
+     * en une seule requête, sans matérialiser les entités Image
+     * @param productIds Identifiants des produits, dans l'ordre d'affichage
+     * @return Les lignes de listing dans le même ordre ; les produits introuvables sont omis
+     */
+    List<ProductListingDTO> findListingsByIds(List<UUID> productIds);
+
+    /**
+     * Vérifie la présence de la colonne tsvector générée et des index GIN / pg_trgm utilisés par la recherche plein
+     * texte, créés par le script db/fulltext-search.sql
+     * @return Les éléments manquants ou invalides, vide si le schéma est prêt
+     */
+    List<String> findFullTextSchemaProblems();
+
+    /**
+     * Recherche plein texte classée des annonces actives : correspondance par préfixe sur la colonne tsvector
+     * (français, anglais, arabe) ou sous-chaîne du titre via l'index trigramme
+     * @param query Texte saisi par l'utilisateur, peut être vide si un filtre de distance est fourni
+     * @param geo Filtre par rayon, null sans restriction géographique : préfiltre par rectangle englobant sur l'index
+     *            (geo_lat, geo_lon) puis distance exacte (haversine)
+     * @param pageable Pagination ; le tri "relevance" classe par ts_rank, sinon createdAt, price, title ou viewsCount
+     * @return Page des identifiants correspondants, les lignes sont lues ensuite par findListingsByIds
+     */
+    Page<UUID> searchIdsByFullText(String query, ProductCategory category, String location, ProductCondition condition,
+                                   BigDecimal minPrice, BigDecimal maxPrice, String city, GeoDistanceFilter geo, Pageable pageable);
+
+    /**
+     * Renseigne geo_lat / geo_lon depuis les colonnes texte latitude / longitude pour les lignes antérieures
+     * à ces colonnes ; les valeurs illisibles ou hors limites restent nulles
+     * @return Nombre de lignes mises à jour
+     */
+    int backfillGeoCoordinates();
+
+    /**
+     * Parcourt tous les produits, quel que soit leur statut (comme l'indexation courante, le filtrage par statut se
+     * fait à la recherche), avec un curseur côté serveur, sous forme de documents d'index prêts à envoyer.
+     * Doit être appelé dans une transaction pour que PostgreSQL utilise réellement un curseur.
+     * @param fetchSize Nombre de lignes lues par aller-retour
+     * @param consumer Reçoit chaque document, dans l'ordre de lecture
+     */
+    void streamIndexDocuments(int fetchSize, Consumer<ProductDoc> consumer);
+
+    /**
+     * Empreinte du tronçon suivant de la table des produits, dans l'ordre des identifiants
+     * @param afterId Borne basse exclue, null pour commencer au début
+     * @param chunkSize Nombre maximal de produits du tronçon
+     * @return Le dernier identifiant du tronçon (null si la table est épuisée), le nombre de produits et la somme
+     *         de leurs empreintes de synchronisation
+     */
+    IndexChunkDigest digestNextChunk(UUID afterId, int chunkSize);
+
+    /**
+     * Empreintes de synchronisation produit par produit, pour localiser les écarts d'un tronçon divergent
+     * @param afterId Borne basse exclue, null pour aucune
+     * @param upToId Borne haute incluse, null pour aucune
+     */
+    Map<UUID, Long> findSyncHashes(UUID afterId, UUID upToId);
+}
@@ -16,7 +16,7 @@ import java.util.UUID;
  * Utilisé pour le suivi et l'analyse des recherches populaires
  */
 @Repository
-public interface SearchTermRepository extends JpaRepository<SearchTerm, UUID> {
+public interface SearchTermRepository extends JpaRepository<SearchTerm, UUID>, SearchTermRepositoryCustom {
     
     /**
      * Trouve un terme de recherche par son texte exact
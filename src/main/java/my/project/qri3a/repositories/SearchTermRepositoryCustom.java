@@ -0,0 +1,52 @@
+package my.project.qri3a.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Opérations JDBC sur la table des termes de recherche qui ne passent pas par le contexte de persistance JPA
+ */
+public interface SearchTermRepositoryCustom {
+
+    /**
+     * Compteur à ajouter pour un couple (terme, catégorie)
+     * @param location Dernière localisation associée, null pour conserver celle enregistrée
+     */
+    record TermDelta(String term, String category, String location, long count) {
+    }
+
+    /**
+     * Nombre de recherches d'un couple (terme, catégorie) pendant une heure
+     * @param hour Début de l'heure
+     */
+    record HourlyCount(String term, String category, LocalDateTime hour, long count) {
+    }
+
+    /**
+     * Vérifie la présence des index uniques utilisés par {@link #upsertCounts} sur les compteurs et sur les agrégats
+     * horaires, créés par le script db/search-terms.sql
+     * @return Les index manquants ou invalides, vide si le schéma est prêt
+     */
+    List<String> findUpsertSchemaProblems();
+
+    /**
+     * Ajoute les compteurs en une seule instruction INSERT ... ON CONFLICT DO UPDATE : les termes inconnus sont créés,
+     * les autres voient leur compteur incrémenté par la base, sans lecture préalable.
+     * Les mêmes compteurs sont ajoutés à l'agrégat de l'heure donnée, dans la même transaction.
+     * @param hour Début de l'heure à laquelle les recherches sont attribuées
+     * @return Nombre de lignes insérées ou mises à jour
+     */
+    int upsertCounts(List<TermDelta> deltas, LocalDateTime hour);
+
+    /**
+     * Agrégats horaires depuis l'heure donnée, les plus forts d'abord
+     * @param limit Nombre maximal de lignes lues
+     */
+    List<HourlyCount> findHourlyCountsSince(LocalDateTime since, int limit);
+
+    /**
+     * Supprime les agrégats horaires antérieurs à l'heure donnée
+     * @return Nombre de lignes supprimées
+     */
+    int deleteHourlyCountsBefore(LocalDateTime before);
+}
@@ -2,8 +2,11 @@ package my.project.qri3a.repositories;
 
 import my.project.qri3a.entities.UserPreference;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -12,4 +15,11 @@ import java.util.UUID;
 public interface UserPreferenceRepository extends JpaRepository<UserPreference, UUID> {
     List<UserPreference> findByUserId(UUID userId);
     Optional<UserPreference> findByUserIdAndKey(UUID userId, String key);
+
+    /**
+     * Valeur d'une préférence pour plusieurs utilisateurs en une requête
+     * @return Liste de tableaux [userId, value]
+     */
+    @Query("SELECT p.user.id, p.value FROM UserPreference p WHERE p.key = :key AND p.user.id IN :userIds")
+    List<Object[]> findValuesByKeyAndUserIds(@Param("key") String key, @Param("userIds") Collection<UUID> userIds);
 }
\ No newline at end of file
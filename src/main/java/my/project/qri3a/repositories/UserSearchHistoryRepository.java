@@ -14,7 +14,7 @@ import java.util.UUID;
  * Repository pour gérer l'historique de recherche des utilisateurs
  */
 @Repository
-public interface UserSearchHistoryRepository extends JpaRepository<UserSearchHistory, UUID> {
+public interface UserSearchHistoryRepository extends JpaRepository<UserSearchHistory, UUID>, UserSearchHistoryRepositoryCustom {
     
     /**
      * Récupère l'historique de recherche d'un utilisateur spécifique, trié par date de création
@@ -0,0 +1,42 @@
+package my.project.qri3a.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Opérations JDBC sur l'historique de recherche qui ne passent pas par le contexte de persistance JPA
+ */
+public interface UserSearchHistoryRepositoryCustom {
+
+    /**
+     * Recherche à enregistrer dans l'historique d'un utilisateur
+     * @param email Email de l'utilisateur, résolu en identifiant au moment de l'écriture
+     * @param searchedAt Date de la recherche, qui devient la date de l'entrée
+     */
+    record HistoryRow(String email, String searchTerm, String category, String location, LocalDateTime searchedAt) {
+    }
+
+    /**
+     * Vérifie la présence de l'index unique (utilisateur, terme) utilisé par {@link #upsertAll}, créé par le script
+     * db/user-search-history.sql
+     * @return L'index manquant ou invalide, vide si le schéma est prêt
+     */
+    List<String> findUpsertSchemaProblems();
+
+    /**
+     * Écrit les entrées par lots JDBC : un terme déjà présent dans l'historique de l'utilisateur est remonté
+     * en tête (date, catégorie et localisation mises à jour) au lieu d'être dupliqué.
+     * Les entrées d'un email sans utilisateur (compte supprimé) sont ignorées, sans faire échouer le lot.
+     * @return Nombre d'entrées écrites
+     */
+    int upsertAll(List<HistoryRow> rows);
+
+    /**
+     * Ne conserve que les entrées les plus récentes de chaque utilisateur
+     * @param emails Emails des utilisateurs dont l'historique vient d'être écrit
+     * @param maxEntriesPerUser Nombre d'entrées conservées par utilisateur
+     * @return Nombre d'entrées supprimées
+     */
+    int trimToLatest(Collection<String> emails, int maxEntriesPerUser);
+}
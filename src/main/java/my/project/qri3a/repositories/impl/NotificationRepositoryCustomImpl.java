@@ -0,0 +1,67 @@
+package my.project.qri3a.repositories.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+import my.project.qri3a.repositories.NotificationRepositoryCustom;
+
+@Repository
+@RequiredArgsConstructor
+public class NotificationRepositoryCustomImpl implements NotificationRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO notifications (id, user_id, product_id, category, body, read, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, false, ?) ON CONFLICT (id) DO NOTHING";
+
+    private static final String PUBLISH_SQL = "SELECT pg_notify(?, payload) FROM unnest(CAST(? AS text[])) AS payload";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<NotificationRow> insertAll(List<NotificationRow> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(),
+                (PreparedStatement ps, NotificationRow row) -> setRow(ps, row));
+
+        // Un seul lot : counts[0] suit l'ordre des lignes, 0 pour une ligne déjà présente
+        List<NotificationRow> inserted = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (counts[0][i] != 0) {
+                inserted.add(rows.get(i));
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public void publish(String channel, List<String> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        String[] values = payloads.toArray(new String[0]);
+        jdbcTemplate.query(PUBLISH_SQL, ps -> {
+            ps.setString(1, channel);
+            ps.setArray(2, ps.getConnection().createArrayOf("text", values));
+        }, (RowCallbackHandler) rs -> {
+        });
+    }
+
+    private static void setRow(PreparedStatement ps, NotificationRow row) throws SQLException {
+        ps.setObject(1, row.id());
+        ps.setObject(2, row.userId());
+        ps.setObject(3, row.productId());
+        ps.setString(4, row.category() == null ? null : row.category().name());
+        ps.setString(5, row.body());
+        ps.setTimestamp(6, Timestamp.valueOf(row.createdAt()));
+    }
+}
@@ -0,0 +1,464 @@
+package my.project.qri3a.repositories.impl;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+import my.project.qri3a.documents.GeoLocation;
+import my.project.qri3a.documents.IndexChunkDigest;
+import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.dtos.responses.ImageResponseDTO;
+import my.project.qri3a.dtos.responses.ProductListingDTO;
+import my.project.qri3a.enums.ProductCategory;
+import my.project.qri3a.enums.ProductCondition;
+import my.project.qri3a.enums.ProductStatus;
+import my.project.qri3a.repositories.ProductRepositoryCustom;
+import my.project.qri3a.utils.GeoDistanceFilter;
+
+@Repository
+@RequiredArgsConstructor
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    // Les identifiants et les incréments sont passés comme deux tableaux parallèles
+    // afin que tout le lot soit appliqué par une seule instruction
+    private static final String APPLY_VIEWS_COUNT_DELTAS_SQL =
+            "UPDATE products p SET views_count = p.views_count + d.delta " +
+            "FROM unnest(CAST(? AS uuid[]), CAST(? AS integer[])) AS d(id, delta) " +
+            "WHERE p.id = d.id";
+
+    // Seules les colonnes du listing sont lues ; la première image et le nombre d'images
+    // sont calculés par la base au lieu de charger toute la collection
+    private static final String FIND_LISTINGS_BY_IDS_SQL =
+            "SELECT p.id, p.title, p.slug, p.price, p.location, p.category, p.city, p.status, p.condition, " +
+            "p.created_at, p.longitude, p.latitude, p.delivery, p.delivery_fee, p.delivery_all_morocco, " +
+            "p.delivery_zones, p.delivery_time, " +
+            "fi.id AS image_id, fi.url AS image_url, fi.\"order\" AS image_order, " +
+            "(SELECT COUNT(*) FROM images c WHERE c.product_id = p.id) AS number_of_images " +
+            "FROM products p " +
+            "LEFT JOIN LATERAL (" +
+            "SELECT i.id, i.url, i.\"order\" FROM images i WHERE i.product_id = p.id " +
+            "ORDER BY i.\"order\" NULLS LAST, i.id LIMIT 1" +
+            ") fi ON TRUE " +
+            "WHERE p.id = ANY(CAST(? AS uuid[]))";
+
+    // Mêmes informations que ProductMapper.toProductDoc, sans charger les entités ni leurs images
+    // Miroir SQL de ProductDoc.syncHash : 32 premiers bits du MD5 de "id|statut|updatedAt en millisecondes UTC"
+    private static final String SYNC_HASH_SQL =
+            "('x' || lpad(substr(md5(p.id::text || '|' || p.status || '|' || " +
+            "COALESCE(floor(extract(epoch FROM p.updated_at) * 1000)::bigint, 0)), 1, 8), 16, '0'))::bit(64)::bigint";
+
+    private static final String STREAM_INDEX_DOCUMENTS_SQL =
+            "SELECT p.id, p.title, p.slug, p.description, p.price, p.location, p.city, p.status, p.category, " +
+            "p.condition, p.created_at, p.delivery, p.delivery_fee, p.delivery_all_morocco, p.delivery_zones, " +
+            "p.delivery_time, p.geo_lat, p.geo_lon, fi.url AS first_image_url, " + SYNC_HASH_SQL + " AS sync_hash, " +
+            "(SELECT COUNT(*) FROM images c WHERE c.product_id = p.id) AS number_of_images " +
+            "FROM products p " +
+            "LEFT JOIN LATERAL (" +
+            "SELECT i.url FROM images i WHERE i.product_id = p.id " +
+            "ORDER BY i.\"order\" NULLS LAST, i.id LIMIT 1" +
+            ") fi ON TRUE";
+
+    // Un tronçon = les N identifiants suivants dans l'ordre de la clé primaire ; seuls l'identifiant, le statut
+    // et updated_at sont lus, l'agrégat (nombre, somme des empreintes) remplace la comparaison ligne à ligne
+    private static final String DIGEST_NEXT_CHUNK_SQL =
+            "SELECT (array_agg(c.id ORDER BY c.id DESC))[1] AS last_id, COUNT(*) AS doc_count, COALESCE(SUM(c.sync_hash), 0) AS hash_sum " +
+            "FROM (SELECT p.id, " + SYNC_HASH_SQL + " AS sync_hash FROM products p " +
+            "WHERE p.id > COALESCE(CAST(? AS uuid), '00000000-0000-0000-0000-000000000000'::uuid) " +
+            "ORDER BY p.id LIMIT ?) c";
+
+    private static final String FIND_SYNC_HASHES_SQL =
+            "SELECT p.id, " + SYNC_HASH_SQL + " AS sync_hash FROM products p " +
+            "WHERE p.id > COALESCE(CAST(? AS uuid), '00000000-0000-0000-0000-000000000000'::uuid) " +
+            "AND (CAST(? AS uuid) IS NULL OR p.id <= CAST(? AS uuid)) " +
+            "ORDER BY p.id";
+
+    // Le schéma plein texte (colonne générée search_vector, index GIN et pg_trgm) est créé hors démarrage par
+    // src/main/resources/db/fulltext-search.sql ; au démarrage, on vérifie seulement sa présence et la validité
+    // des index (une création CONCURRENTLY interrompue laisse un index INVALID, ignoré par le planificateur)
+    private static final String FULL_TEXT_COLUMN_SQL =
+            "SELECT COUNT(*) FROM pg_attribute " +
+            "WHERE attrelid = to_regclass('products') AND attname = 'search_vector' AND NOT attisdropped";
+
+    private static final String FULL_TEXT_INDEXES_SQL =
+            "SELECT c.relname, i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+            "WHERE c.relname IN ('idx_product_search_vector', 'idx_product_title_trgm')";
+
+    private static final List<String> FULL_TEXT_INDEXES = List.of("idx_product_search_vector", "idx_product_title_trgm");
+
+    // La requête est analysée avec chacune des trois configurations puis combinée en OR,
+    // de sorte que le radical calculé corresponde à celui stocké dans search_vector
+    private static final String FULL_TEXT_QUERY_CTE =
+            "WITH q AS (SELECT to_tsquery('french', ?) || to_tsquery('english', ?) || to_tsquery('arabic', ?) AS tsq) ";
+
+    private static final String FULL_TEXT_MATCH =
+            "(p.search_vector @@ q.tsq OR lower(p.title) LIKE ?)";
+
+    // Distance en kilomètres (formule de haversine) ; paramètres : latitude, latitude, longitude du centre
+    private static final String DISTANCE_KM_SQL =
+            "(2 * " + GeoDistanceFilter.EARTH_RADIUS_KM + " * asin(least(1, sqrt(" +
+            "power(sin(radians(p.geo_lat - ?) / 2), 2) + " +
+            "cos(radians(?)) * cos(radians(p.geo_lat)) * power(sin(radians(p.geo_lon - ?) / 2), 2)))))";
+
+    // Le rectangle englobant est résolu par l'index (geo_lat, geo_lon), la distance exacte n'est calculée
+    // que sur les lignes qu'il retient
+    private static final String GEO_DISTANCE_MATCH =
+            "p.geo_lat BETWEEN ? AND ? AND p.geo_lon BETWEEN ? AND ? AND " + DISTANCE_KM_SQL + " <= ?";
+
+    // Les casts ne sont évalués que sur des valeurs numériques (CASE garantit l'ordre d'évaluation)
+    private static final String NUMERIC_PATTERN = "'^\\s*-?[0-9]+(\\.[0-9]+)?\\s*$'";
+    private static final String BACKFILL_GEO_COORDINATES_SQL =
+            "UPDATE products SET geo_lat = CAST(latitude AS double precision), geo_lon = CAST(longitude AS double precision) " +
+            "WHERE geo_lat IS NULL AND CASE WHEN latitude ~ " + NUMERIC_PATTERN + " AND longitude ~ " + NUMERIC_PATTERN + " " +
+            "THEN abs(CAST(latitude AS double precision)) <= 90 AND abs(CAST(longitude AS double precision)) <= 180 " +
+            "ELSE FALSE END";
+
+    private static final Map<String, String> FULL_TEXT_SORT_COLUMNS = Map.of(
+            "createdAt", "p.created_at",
+            "price", "p.price",
+            "title", "p.title",
+            "viewsCount", "p.views_count"
+    );
+
+    private static final String RELEVANCE_SORT = "relevance";
+
+    private static final Pattern SEARCH_TOKEN = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    private static final DateTimeFormatter CREATED_AT_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int applyViewsCountDeltas(Map<UUID, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        UUID[] ids = new UUID[deltas.size()];
+        Integer[] increments = new Integer[deltas.size()];
+        int i = 0;
+        for (Map.Entry<UUID, Integer> entry : deltas.entrySet()) {
+            ids[i] = entry.getKey();
+            increments[i] = entry.getValue();
+            i++;
+        }
+
+        return jdbcTemplate.update(APPLY_VIEWS_COUNT_DELTAS_SQL, ps -> {
+            Array idArray = ps.getConnection().createArrayOf("uuid", ids);
+            Array deltaArray = ps.getConnection().createArrayOf("integer", increments);
+            ps.setArray(1, idArray);
+            ps.setArray(2, deltaArray);
+        });
+    }
+
+    @Override
+    public List<ProductListingDTO> findListingsByIds(List<UUID> productIds) {
+        if (productIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        UUID[] ids = productIds.toArray(new UUID[0]);
+        List<ProductListingDTO> rows = jdbcTemplate.query(FIND_LISTINGS_BY_IDS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids)),
+                (rs, rowNum) -> mapListing(rs));
+
+        // Rétablir l'ordre demandé, la requête ne le garantit pas
+        Map<UUID, ProductListingDTO> byId = new HashMap<>(rows.size() * 2);
+        for (ProductListingDTO row : rows) {
+            byId.put(row.getId(), row);
+        }
+        List<ProductListingDTO> ordered = new ArrayList<>(rows.size());
+        for (UUID id : productIds) {
+            ProductListingDTO row = byId.get(id);
+            if (row != null) {
+                ordered.add(row);
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public void streamIndexDocuments(int fetchSize, Consumer<ProductDoc> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(STREAM_INDEX_DOCUMENTS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, rs -> {
+            consumer.accept(mapIndexDocument(rs));
+        });
+    }
+
+    @Override
+    public IndexChunkDigest digestNextChunk(UUID afterId, int chunkSize) {
+        String after = afterId == null ? null : afterId.toString();
+        return jdbcTemplate.queryForObject(DIGEST_NEXT_CHUNK_SQL, (rs, rowNum) -> {
+            return new IndexChunkDigest(
+                    rs.getObject("last_id", UUID.class),
+                    rs.getLong("doc_count"),
+                    rs.getLong("hash_sum"));
+        }, after, chunkSize);
+    }
+
+    @Override
+    public Map<UUID, Long> findSyncHashes(UUID afterId, UUID upToId) {
+        String after = afterId == null ? null : afterId.toString();
+        String upTo = upToId == null ? null : upToId.toString();
+        Map<UUID, Long> hashes = new HashMap<>();
+        jdbcTemplate.query(FIND_SYNC_HASHES_SQL, rs -> {
+            hashes.put(rs.getObject("id", UUID.class), rs.getLong("sync_hash"));
+        }, after, upTo, upTo);
+        return hashes;
+    }
+
+    @Override
+    public List<String> findFullTextSchemaProblems() {
+        List<String> problems = new ArrayList<>();
+        Long columns = jdbcTemplate.queryForObject(FULL_TEXT_COLUMN_SQL, Long.class);
+        if (columns == null || columns == 0) {
+            problems.add("column products.search_vector is missing");
+        }
+        Map<String, Boolean> indexes = new HashMap<>();
+        jdbcTemplate.query(FULL_TEXT_INDEXES_SQL, rs -> {
+            indexes.put(rs.getString("relname"), rs.getBoolean("indisvalid"));
+        });
+        for (String index : FULL_TEXT_INDEXES) {
+            Boolean valid = indexes.get(index);
+            if (valid == null) {
+                problems.add("index " + index + " is missing");
+            } else if (!valid) {
+                problems.add("index " + index + " is INVALID");
+            }
+        }
+        return problems;
+    }
+
+    @Override
+    public int backfillGeoCoordinates() {
+        return jdbcTemplate.update(BACKFILL_GEO_COORDINATES_SQL);
+    }
+
+    @Override
+    public Page<UUID> searchIdsByFullText(String query, ProductCategory category, String location, ProductCondition condition,
+                                          BigDecimal minPrice, BigDecimal maxPrice, String city, GeoDistanceFilter geo,
+                                          Pageable pageable) {
+        String tsQuery = toPrefixTsQuery(query);
+        boolean textMatch = !tsQuery.isEmpty();
+        if (!textMatch && geo == null) {
+            return Page.empty(pageable);
+        }
+
+        List<Object> args = new ArrayList<>();
+        // Recherche publique : seules les annonces actives sont visibles, quel que soit l'appelant
+        StringBuilder where = new StringBuilder(" WHERE p.status = '" + ProductStatus.ACTIVE.name() + "' AND ");
+        if (textMatch) {
+            args.add(tsQuery);
+            args.add(tsQuery);
+            args.add(tsQuery);
+            where.append(FULL_TEXT_MATCH);
+            args.add("%" + escapeLike(query.trim().toLowerCase(Locale.ROOT)) + "%");
+        } else {
+            where.append("TRUE");
+        }
+        if (geo != null) {
+            where.append(" AND ").append(GEO_DISTANCE_MATCH);
+            args.add(geo.minLat());
+            args.add(geo.maxLat());
+            args.add(geo.minLon());
+            args.add(geo.maxLon());
+            addDistanceArgs(args, geo);
+            args.add(geo.radiusKm());
+        }
+        if (category != null) {
+            where.append(" AND p.category = ?");
+            args.add(category.name());
+        }
+        if (location != null && !location.isEmpty()) {
+            where.append(" AND p.location = ?");
+            args.add(location);
+        }
+        if (condition != null) {
+            where.append(" AND p.condition = ?");
+            args.add(condition.name());
+        }
+        if (minPrice != null) {
+            where.append(" AND p.price >= ?");
+            args.add(minPrice);
+        }
+        if (maxPrice != null) {
+            where.append(" AND p.price <= ?");
+            args.add(maxPrice);
+        }
+        if (city != null && !city.isEmpty()) {
+            where.append(" AND p.city = ?");
+            args.add(city);
+        }
+
+        String from = textMatch
+                ? FULL_TEXT_QUERY_CTE + "SELECT %s FROM products p CROSS JOIN q" + where
+                : "SELECT %s FROM products p" + where;
+
+        List<Object> pageArgs = new ArrayList<>(args);
+        String orderBy = buildFullTextOrderBy(pageable.getSort(), query, textMatch, geo, pageArgs);
+        pageArgs.add(pageable.getPageSize());
+        pageArgs.add(pageable.getOffset());
+
+        List<UUID> ids = jdbcTemplate.query(String.format(from, "p.id") + orderBy + " LIMIT ? OFFSET ?",
+                (rs, rowNum) -> rs.getObject(1, UUID.class), pageArgs.toArray());
+
+        // Le COUNT n'est exécuté que si la taille de la page ne suffit pas à déduire le total
+        return PageableExecutionUtils.getPage(ids, pageable,
+                () -> jdbcTemplate.queryForObject(String.format(from, "COUNT(*)"), Long.class, args.toArray()));
+    }
+
+    /**
+     * Transforme la saisie en requête tsquery par préfixe : "iphone 13 pro" devient "iphone:* & 13:* & pro:*".
+     * Seuls les lettres et chiffres sont conservés, la saisie ne peut donc pas produire une syntaxe tsquery invalide.
+     */
+    private static String toPrefixTsQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        StringBuilder tsQuery = new StringBuilder();
+        Matcher matcher = SEARCH_TOKEN.matcher(query.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            if (tsQuery.length() > 0) {
+                tsQuery.append(" & ");
+            }
+            tsQuery.append(matcher.group()).append(":*");
+        }
+        return tsQuery.toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static void addDistanceArgs(List<Object> args, GeoDistanceFilter geo) {
+        args.add(geo.lat());
+        args.add(geo.lat());
+        args.add(geo.lon());
+    }
+
+    private static String buildFullTextOrderBy(Sort sort, String query, boolean textMatch, GeoDistanceFilter geo, List<Object> args) {
+        StringBuilder orderBy = new StringBuilder(" ORDER BY ");
+        if (geo != null && geo.sortByDistance()) {
+            orderBy.append(DISTANCE_KM_SQL).append(" ASC, ");
+            addDistanceArgs(args, geo);
+        }
+        boolean relevance = sort.isUnsorted() || sort.getOrderFor(RELEVANCE_SORT) != null;
+        if (relevance) {
+            // Sans texte, il n'y a pas de pertinence : seul le départage s'applique
+            if (textMatch) {
+                orderBy.append("ts_rank(p.search_vector, q.tsq) + similarity(lower(p.title), ?) DESC, ");
+                args.add(query.trim().toLowerCase(Locale.ROOT));
+            }
+        } else {
+            for (Sort.Order order : sort) {
+                // Propriété inconnue : ignorée, le départage par défaut s'applique
+                String column = FULL_TEXT_SORT_COLUMNS.get(order.getProperty());
+                if (column != null) {
+                    orderBy.append(column).append(order.isAscending() ? " ASC, " : " DESC, ");
+                }
+            }
+        }
+        // Départage stable pour une pagination par offset cohérente
+        return orderBy.append("p.created_at DESC, p.id").toString();
+    }
+
+    private ProductListingDTO mapListing(ResultSet rs) throws SQLException {
+        ProductListingDTO dto = new ProductListingDTO();
+        dto.setId(rs.getObject("id", UUID.class));
+        dto.setTitle(rs.getString("title"));
+        dto.setSlug(rs.getString("slug"));
+        dto.setPrice(rs.getBigDecimal("price"));
+        dto.setLocation(rs.getString("location"));
+        dto.setCategory(ProductCategory.valueOf(rs.getString("category")));
+        dto.setCity(rs.getString("city"));
+        dto.setStatus(ProductStatus.valueOf(rs.getString("status")));
+        dto.setCondition(ProductCondition.valueOf(rs.getString("condition")));
+        dto.setLongitude(rs.getString("longitude"));
+        dto.setLatitude(rs.getString("latitude"));
+        dto.setDelivery(rs.getString("delivery"));
+        dto.setDeliveryFee(rs.getBigDecimal("delivery_fee"));
+        dto.setDeliveryAllMorocco(rs.getObject("delivery_all_morocco", Boolean.class));
+        dto.setDeliveryTime(rs.getString("delivery_time"));
+
+        String deliveryZones = rs.getString("delivery_zones");
+        if (deliveryZones != null && !deliveryZones.isEmpty()) {
+            dto.setDeliveryZones(Arrays.asList(deliveryZones.split(",")));
+        }
+
+        UUID imageId = rs.getObject("image_id", UUID.class);
+        if (imageId != null) {
+            dto.setImage(new ImageResponseDTO(imageId, rs.getString("image_url"), rs.getObject("image_order", Integer.class)));
+            dto.setNumberOfImages(rs.getInt("number_of_images"));
+        }
+
+        dto.setCreatedAt(formatCreatedAt(rs.getTimestamp("created_at")));
+        return dto;
+    }
+
+    private ProductDoc mapIndexDocument(ResultSet rs) throws SQLException {
+        return ProductDoc.builder()
+                .id(rs.getObject("id", UUID.class))
+                .title(rs.getString("title"))
+                .slug(rs.getString("slug"))
+                .description(rs.getString("description"))
+                .price(rs.getBigDecimal("price"))
+                .location(rs.getString("location"))
+                .city(rs.getString("city"))
+                .status(rs.getString("status"))
+                .category(rs.getString("category"))
+                .condition(rs.getString("condition"))
+                .createdAt(formatCreatedAt(rs.getTimestamp("created_at")))
+                .firstImageUrl(rs.getString("first_image_url"))
+                .numberOfImages(rs.getInt("number_of_images"))
+                .delivery(rs.getString("delivery"))
+                .deliveryFee(rs.getBigDecimal("delivery_fee"))
+                .deliveryAllMorocco(rs.getObject("delivery_all_morocco", Boolean.class))
+                .deliveryZones(rs.getString("delivery_zones"))
+                .deliveryTime(rs.getString("delivery_time"))
+                .geoLocation(GeoLocation.of(rs.getObject("geo_lat", Double.class), rs.getObject("geo_lon", Double.class)))
+                .syncHash(rs.getLong("sync_hash"))
+                .build();
+    }
+
+    /**
+     * Même format que ProductMapper : ISO 8601 en UTC
+     */
+    private static String formatCreatedAt(Timestamp createdAt) {
+        if (createdAt == null) {
+            return null;
+        }
+        LocalDateTime localCreatedAt = createdAt.toLocalDateTime();
+        ZonedDateTime utcDateTime = localCreatedAt.atZone(ZoneId.systemDefault())
+                .withZoneSameInstant(ZoneId.of("UTC"));
+        return utcDateTime.format(CREATED_AT_FORMATTER);
+    }
+}
@@ -0,0 +1,116 @@
+package my.project.qri3a.repositories.impl;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.RequiredArgsConstructor;
+import my.project.qri3a.repositories.SearchTermRepositoryCustom;
+
+@Repository
+@RequiredArgsConstructor
+public class SearchTermRepositoryCustomImpl implements SearchTermRepositoryCustom {
+
+    private static final String UPSERT_INDEXES_SQL =
+            "SELECT c.relname, i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+            "WHERE c.relname IN ('uk_search_term_term_category', 'uk_search_term_hourly_term_category_hour')";
+
+    private static final List<String> UPSERT_INDEXES =
+            List.of("uk_search_term_term_category", "uk_search_term_hourly_term_category_hour");
+
+    // Les colonnes sont passées comme tableaux parallèles afin que tout le lot soit appliqué par une seule instruction
+    private static final String UPSERT_COUNTS_SQL =
+            "INSERT INTO search_terms (id, term, category, location, count, last_searched) " +
+            "SELECT gen_random_uuid(), d.term, d.category, d.location, d.delta, now() " +
+            "FROM unnest(CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[]), CAST(? AS integer[])) " +
+            "AS d(term, category, location, delta) " +
+            "ON CONFLICT (term, category) DO UPDATE SET count = search_terms.count + EXCLUDED.count, " +
+            "last_searched = EXCLUDED.last_searched, location = COALESCE(EXCLUDED.location, search_terms.location)";
+
+    private static final String UPSERT_HOURLY_SQL =
+            "INSERT INTO search_term_hourly (term, category, hour, count) " +
+            "SELECT d.term, d.category, ?, d.delta " +
+            "FROM unnest(CAST(? AS text[]), CAST(? AS text[]), CAST(? AS bigint[])) AS d(term, category, delta) " +
+            "ON CONFLICT (term, category, hour) DO UPDATE SET count = search_term_hourly.count + EXCLUDED.count";
+
+    private static final String FIND_HOURLY_SINCE_SQL =
+            "SELECT term, category, hour, count FROM search_term_hourly WHERE hour >= ? ORDER BY count DESC LIMIT ?";
+
+    private static final String DELETE_HOURLY_BEFORE_SQL = "DELETE FROM search_term_hourly WHERE hour < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<String> findUpsertSchemaProblems() {
+        Map<String, Boolean> indexes = new HashMap<>();
+        jdbcTemplate.query(UPSERT_INDEXES_SQL, rs -> {
+            indexes.put(rs.getString("relname"), rs.getBoolean("indisvalid"));
+        });
+        List<String> problems = new ArrayList<>();
+        for (String index : UPSERT_INDEXES) {
+            Boolean valid = indexes.get(index);
+            if (valid == null) {
+                problems.add("index " + index + " is missing");
+            } else if (!valid) {
+                problems.add("index " + index + " is INVALID");
+            }
+        }
+        return problems;
+    }
+
+    @Override
+    @Transactional
+    public int upsertCounts(List<TermDelta> deltas, LocalDateTime hour) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        String[] terms = new String[deltas.size()];
+        String[] categories = new String[deltas.size()];
+        String[] locations = new String[deltas.size()];
+        Integer[] counts = new Integer[deltas.size()];
+        Long[] hourlyCounts = new Long[deltas.size()];
+        for (int i = 0; i < deltas.size(); i++) {
+            TermDelta delta = deltas.get(i);
+            terms[i] = delta.term();
+            categories[i] = delta.category();
+            locations[i] = delta.location();
+            counts[i] = (int) Math.min(delta.count(), Integer.MAX_VALUE);
+            hourlyCounts[i] = delta.count();
+        }
+
+        int updated = jdbcTemplate.update(UPSERT_COUNTS_SQL, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("text", terms));
+            ps.setArray(2, ps.getConnection().createArrayOf("text", categories));
+            ps.setArray(3, ps.getConnection().createArrayOf("text", locations));
+            ps.setArray(4, ps.getConnection().createArrayOf("integer", counts));
+        });
+        jdbcTemplate.update(UPSERT_HOURLY_SQL, ps -> {
+            ps.setTimestamp(1, Timestamp.valueOf(hour));
+            ps.setArray(2, ps.getConnection().createArrayOf("text", terms));
+            ps.setArray(3, ps.getConnection().createArrayOf("text", categories));
+            ps.setArray(4, ps.getConnection().createArrayOf("bigint", hourlyCounts));
+        });
+        return updated;
+    }
+
+    @Override
+    public List<HourlyCount> findHourlyCountsSince(LocalDateTime since, int limit) {
+        return jdbcTemplate.query(FIND_HOURLY_SINCE_SQL,
+                (rs, rowNum) -> new HourlyCount(rs.getString("term"), rs.getString("category"),
+                        rs.getTimestamp("hour").toLocalDateTime(), rs.getLong("count")),
+                Timestamp.valueOf(since), limit);
+    }
+
+    @Override
+    public int deleteHourlyCountsBefore(LocalDateTime before) {
+        return jdbcTemplate.update(DELETE_HOURLY_BEFORE_SQL, Timestamp.valueOf(before));
+    }
+}
@@ -0,0 +1,85 @@
+package my.project.qri3a.repositories.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+import my.project.qri3a.repositories.UserSearchHistoryRepositoryCustom;
+
+@Repository
+@RequiredArgsConstructor
+public class UserSearchHistoryRepositoryCustomImpl implements UserSearchHistoryRepositoryCustom {
+
+    private static final String UPSERT_INDEX_SQL =
+            "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+            "WHERE c.relname = 'uk_user_search_history_user_term'";
+
+    // L'utilisateur est résolu par son email dans l'instruction : un compte supprimé entre-temps n'insère aucune ligne
+    // au lieu de violer la clé étrangère et de faire échouer tout le lot
+    private static final String UPSERT_SQL =
+            "INSERT INTO user_search_history (id, user_id, search_term, category, location, created_at) " +
+            "SELECT gen_random_uuid(), u.id, ?, ?, ?, ? FROM users u WHERE u.email = ? " +
+            "ON CONFLICT (user_id, search_term) DO UPDATE SET category = EXCLUDED.category, " +
+            "location = EXCLUDED.location, created_at = EXCLUDED.created_at";
+
+    // Les entrées au-delà des N plus récentes de chaque utilisateur concerné sont supprimées
+    private static final String TRIM_TO_LATEST_SQL =
+            "DELETE FROM user_search_history h USING (" +
+            "SELECT id, row_number() OVER (PARTITION BY user_id ORDER BY created_at DESC NULLS LAST, id) AS rn " +
+            "FROM user_search_history WHERE user_id IN (SELECT id FROM users WHERE email = ANY(CAST(? AS text[])))" +
+            ") r WHERE h.id = r.id AND r.rn > ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<String> findUpsertSchemaProblems() {
+        List<Boolean> valid = jdbcTemplate.queryForList(UPSERT_INDEX_SQL, Boolean.class);
+        if (valid.isEmpty()) {
+            return List.of("index uk_user_search_history_user_term is missing");
+        }
+        return Boolean.TRUE.equals(valid.get(0)) ? List.of() : List.of("index uk_user_search_history_user_term is INVALID");
+    }
+
+    @Override
+    public int upsertAll(List<HistoryRow> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(UPSERT_SQL, rows, rows.size(), (PreparedStatement ps, HistoryRow row) -> setRow(ps, row));
+        int written = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // Le pilote peut ne pas connaître le nombre de lignes d'une instruction du lot
+                written += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+        }
+        return written;
+    }
+
+    @Override
+    public int trimToLatest(Collection<String> emails, int maxEntriesPerUser) {
+        if (emails.isEmpty()) {
+            return 0;
+        }
+        String[] values = emails.toArray(new String[0]);
+        return jdbcTemplate.update(TRIM_TO_LATEST_SQL, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("text", values));
+            ps.setInt(2, maxEntriesPerUser);
+        });
+    }
+
+    private static void setRow(PreparedStatement ps, HistoryRow row) throws SQLException {
+        ps.setString(1, row.searchTerm());
+        ps.setString(2, row.category());
+        ps.setString(3, row.location());
+        ps.setTimestamp(4, Timestamp.valueOf(row.searchedAt()));
+        ps.setString(5, row.email());
+    }
+}
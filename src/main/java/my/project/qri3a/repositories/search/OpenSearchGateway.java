@@ -0,0 +1,204 @@
+package my.project.qri3a.repositories.search;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.opensearch.OpenSearchStatusException;
+import org.opensearch.action.search.CreatePitRequest;
+import org.opensearch.action.search.CreatePitResponse;
+import org.opensearch.action.search.DeletePitRequest;
+import org.opensearch.action.search.DeletePitResponse;
+import org.opensearch.action.search.SearchRequest;
+import org.opensearch.action.search.SearchResponse;
+import org.opensearch.client.Cancellable;
+import org.opensearch.client.RequestOptions;
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.core.action.ActionListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.exceptions.SearchUnavailableException;
+
+/**
+ * Accès non bloquant aux recherches OpenSearch (recherches et points-in-time).
+ * Les requêtes partent par l'API asynchrone du client : aucun thread n'attend la réponse du cluster.
+ * Chaque appel a une échéance, au-delà de laquelle la requête HTTP est annulée ; les échecs alimentent un disjoncteur
+ * qui, une fois ouvert, fait échouer immédiatement les appels pour que l'appelant bascule sur PostgreSQL.
+ * La suite des traitements (lecture des résultats, repli SQL) s'exécute sur un pool borné, jamais sur les threads
+ * d'entrée-sortie du client.
+ */
+@Slf4j
+@Component
+public class OpenSearchGateway {
+
+    private final RestHighLevelClient openSearchClient;
+    private final SearchCircuitBreaker circuitBreaker;
+    private final Duration searchTimeout;
+    private final ThreadPoolExecutor callbackExecutor;
+    private final Counter timeoutCounter;
+    private final Counter rejectedCounter;
+    private final Counter saturatedCounter;
+
+    public OpenSearchGateway(RestHighLevelClient openSearchClient,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.search.gateway.search-timeout-ms:2000}") long searchTimeoutMs,
+                             @Value("${app.search.gateway.failure-threshold:5}") int failureThreshold,
+                             @Value("${app.search.gateway.open-duration-ms:30000}") long openDurationMs,
+                             @Value("${app.search.gateway.callback-threads:8}") int callbackThreads,
+                             @Value("${app.search.gateway.callback-queue-size:200}") int callbackQueueSize) {
+        this.openSearchClient = openSearchClient;
+        this.circuitBreaker = new SearchCircuitBreaker(failureThreshold, Duration.ofMillis(openDurationMs), Clock.systemUTC());
+        this.searchTimeout = Duration.ofMillis(searchTimeoutMs);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.callbackExecutor = new ThreadPoolExecutor(callbackThreads, callbackThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(callbackQueueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "opensearch-callback-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // Pool saturé : refus plutôt que d'exécuter la suite sur un thread d'entrée-sortie ou d'échéance
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("opensearch.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("État du disjoncteur OpenSearch (0 fermé, 1 ouvert, 2 demi-ouvert)")
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("opensearch.search.timeouts")
+                .description("Recherches annulées après l'échéance")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("opensearch.search.rejected")
+                .description("Recherches refusées par le disjoncteur ouvert")
+                .register(meterRegistry);
+        this.saturatedCounter = Counter.builder("opensearch.callback.saturated")
+                .description("Suites de recherche refusées, pool de suite saturé")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indique si le disjoncteur est ouvert : les appelants peuvent passer directement au repli
+     */
+    public boolean isCircuitOpen() {
+        return circuitBreaker.isOpen();
+    }
+
+    /**
+     * Pool sur lequel enchaîner les traitements qui suivent une recherche. Quand il est saturé, la tâche est refusée
+     * avec {@link SearchUnavailableException} (503), jamais exécutée sur le thread qui la soumet.
+     */
+    public Executor callbackExecutor() {
+        return this::executeCallback;
+    }
+
+    private void executeCallback(Runnable task) {
+        try {
+            callbackExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            saturatedCounter.increment();
+            throw new SearchUnavailableException("OpenSearch callback pool is saturated", e);
+        }
+    }
+
+    /**
+     * Lance une recherche avec l'échéance par défaut
+     */
+    public CompletableFuture<SearchResponse> search(SearchRequest request) {
+        return search(request, searchTimeout);
+    }
+
+    /**
+     * Lance une recherche asynchrone
+     * @return Une réponse complétée sur le pool de suite, ou en échec avec {@link SearchUnavailableException}
+     *         si le disjoncteur est ouvert, l'échéance dépassée ou le cluster en erreur
+     */
+    public CompletableFuture<SearchResponse> search(SearchRequest request, Duration timeout) {
+        return call("search", timeout, listener -> openSearchClient.searchAsync(request, RequestOptions.DEFAULT, listener));
+    }
+
+    /**
+     * Ouvre un point-in-time, avec l'échéance et le disjoncteur des recherches
+     */
+    public CompletableFuture<CreatePitResponse> createPit(CreatePitRequest request) {
+        return call("point-in-time creation", searchTimeout,
+                listener -> openSearchClient.createPitAsync(request, RequestOptions.DEFAULT, listener));
+    }
+
+    /**
+     * Ferme un point-in-time sans attendre la réponse ; en cas d'échec il expire de lui-même à la fin de son keep-alive
+     */
+    public void deletePit(String pitId) {
+        openSearchClient.deletePitAsync(new DeletePitRequest(pitId), RequestOptions.DEFAULT, new ActionListener<DeletePitResponse>() {
+            @Override
+            public void onResponse(DeletePitResponse response) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                log.debug("Could not delete point-in-time: {}", e.getMessage());
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> call(String operation, Duration timeout, Function<ActionListener<T>, Cancellable> request) {
+        if (!circuitBreaker.tryAcquire()) {
+            rejectedCounter.increment();
+            return CompletableFuture.failedFuture(new SearchUnavailableException("OpenSearch circuit breaker is open"));
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Cancellable cancellable = request.apply(new ActionListener<>() {
+            @Override
+            public void onResponse(T response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        // Le bilan du disjoncteur, quelques compteurs sans blocage, se fait sur le thread qui complète ; la suite passe
+        // ensuite sur le pool, et un refus du pool fait échouer la recherche sans fausser le disjoncteur
+        return future
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((response, error) -> {
+                    if (error == null) {
+                        circuitBreaker.onSuccess();
+                        return response;
+                    }
+                    // Une requête refusée par le cluster (4xx) ne dit rien de sa disponibilité
+                    if (error instanceof OpenSearchStatusException statusException && statusException.status().getStatus() < 500) {
+                        circuitBreaker.onSuccess();
+                        throw statusException;
+                    }
+                    circuitBreaker.onFailure();
+                    if (error instanceof TimeoutException) {
+                        timeoutCounter.increment();
+                        cancellable.cancel();
+                        throw new SearchUnavailableException("OpenSearch " + operation + " timed out after " + timeout.toMillis() + " ms", error);
+                    }
+                    throw new SearchUnavailableException("OpenSearch " + operation + " failed: " + error.getMessage(), error);
+                })
+                .thenApplyAsync(Function.identity(), this::executeCallback);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callbackExecutor.shutdown();
+    }
+}
@@ -2,8 +2,11 @@ package my.project.qri3a.repositories.search;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.opensearch.action.bulk.BulkRequest;
@@ -15,8 +18,12 @@ import org.opensearch.action.search.SearchResponse;
 import org.opensearch.client.RequestOptions;
 import org.opensearch.client.RestHighLevelClient;
 import org.opensearch.common.xcontent.XContentType;
+import org.opensearch.index.query.Operator;
 import org.opensearch.index.query.QueryBuilders;
+import org.opensearch.index.query.RangeQueryBuilder;
 import org.opensearch.search.SearchHit;
+import org.opensearch.search.aggregations.AggregationBuilders;
+import org.opensearch.search.aggregations.metrics.Sum;
 import org.opensearch.search.builder.SearchSourceBuilder;
 import org.opensearch.search.sort.SortBuilders;
 import org.opensearch.search.sort.SortOrder;
@@ -30,18 +37,24 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.documents.IndexChunkDigest;
 import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.dtos.responses.SearchCursorPageDTO;
+import my.project.qri3a.utils.GeoDistanceFilter;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class ProductDocRepository implements ProductDocRepositoryCustom {
 
-    private static final String INDEX_NAME = "products_idx";
+    private static final String INDEX_NAME = ProductIndexManager.INDEX_ALIAS;
+    private static final String SYNC_HASH_FIELD = "syncHash";
+    private static final String SYNC_HASH_SUM = "sync_hash_sum";
 
     private final RestHighLevelClient openSearchClient;
     private final ObjectMapper objectMapper;
     private final ProductDocRepositoryCustom productDocRepositoryCustom;
+    private final ProductHitDecoder productHitDecoder;
 
     /**
      * Enregistre un document produit dans OpenSearch
@@ -97,6 +110,88 @@ public class ProductDocRepository implements ProductDocRepositoryCustom {
         }
     }
 
+    /**
+     * Construit la requête d'indexation d'un document, pour un envoi groupé
+     */
+    public IndexRequest buildIndexRequest(ProductDoc productDoc) throws IOException {
+        return buildIndexRequest(INDEX_NAME, productDoc);
+    }
+
+    /**
+     * Variante ciblant un index physique précis, utilisée pendant une réindexation complète
+     */
+    public IndexRequest buildIndexRequest(String index, ProductDoc productDoc) throws IOException {
+        return new IndexRequest(index)
+                .id(productDoc.getId().toString())
+                .source(objectMapper.writeValueAsString(productDoc), XContentType.JSON);
+    }
+
+    /**
+     * Construit la requête de suppression d'un document, pour un envoi groupé
+     */
+    public DeleteRequest buildDeleteRequest(UUID id) {
+        return new DeleteRequest(INDEX_NAME, id.toString());
+    }
+
+    /**
+     * Exécute une requête groupée ; les échecs par document sont laissés à l'appelant
+     */
+    public BulkResponse bulk(BulkRequest bulkRequest) throws IOException {
+        return openSearchClient.bulk(bulkRequest, RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Empreinte d'un tronçon d'identifiants côté index : nombre de documents et somme des empreintes de
+     * synchronisation, calculés par agrégation sans rapatrier les documents
+     * @param afterId Borne basse exclue, null pour aucune
+     * @param upToId Borne haute incluse, null pour aucune
+     */
+    public IndexChunkDigest digestRange(UUID afterId, UUID upToId) throws IOException {
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .query(idRangeQuery(afterId, upToId))
+                .size(0)
+                .trackTotalHits(true)
+                .aggregation(AggregationBuilders.sum(SYNC_HASH_SUM).field(SYNC_HASH_FIELD));
+        SearchResponse response = openSearchClient.search(new SearchRequest(INDEX_NAME).source(searchSourceBuilder), RequestOptions.DEFAULT);
+
+        Sum hashSum = response.getAggregations().get(SYNC_HASH_SUM);
+        // Sommes d'entiers sur 32 bits : exactes en double tant que le tronçon compte moins de 2^21 documents
+        return new IndexChunkDigest(null, response.getHits().getTotalHits().value, (long) hashSum.getValue());
+    }
+
+    /**
+     * Empreintes de synchronisation document par document d'un tronçon divergent
+     * @param maxDocuments Nombre maximal de documents lus
+     */
+    public Map<UUID, Long> findSyncHashes(UUID afterId, UUID upToId, int maxDocuments) throws IOException {
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .query(idRangeQuery(afterId, upToId))
+                .size(maxDocuments)
+                .fetchSource(new String[]{SYNC_HASH_FIELD}, null)
+                .sort(SortBuilders.fieldSort("id").order(SortOrder.ASC));
+        SearchResponse response = openSearchClient.search(new SearchRequest(INDEX_NAME).source(searchSourceBuilder), RequestOptions.DEFAULT);
+
+        Map<UUID, Long> hashes = new HashMap<>();
+        for (SearchHit hit : response.getHits().getHits()) {
+            Object syncHash = hit.getSourceAsMap().get(SYNC_HASH_FIELD);
+            // Document indexé avant l'ajout de l'empreinte : toujours considéré comme divergent
+            hashes.put(UUID.fromString(hit.getId()), syncHash instanceof Number number ? number.longValue() : -1L);
+        }
+        return hashes;
+    }
+
+    // Le champ id est un keyword : l'ordre lexicographique des UUID en minuscules est celui de PostgreSQL
+    private static RangeQueryBuilder idRangeQuery(UUID afterId, UUID upToId) {
+        RangeQueryBuilder range = QueryBuilders.rangeQuery("id");
+        if (afterId != null) {
+            range.gt(afterId.toString());
+        }
+        if (upToId != null) {
+            range.lte(upToId.toString());
+        }
+        return range;
+    }
+
     /**
      * Supprime un document produit par ID
      *
@@ -160,6 +255,7 @@ public class ProductDocRepository implements ProductDocRepositoryCustom {
             // Configurer le tri par date de création
             searchSourceBuilder.sort(SortBuilders.fieldSort("createdAt").order(SortOrder.DESC));
 
+            productHitDecoder.withListFields(searchSourceBuilder);
             searchRequest.source(searchSourceBuilder);
 
             // Exécuter la recherche
@@ -189,8 +285,8 @@ public class ProductDocRepository implements ProductDocRepositoryCustom {
             // Construire la requête pour le titre ou la description
             searchSourceBuilder.query(
                     QueryBuilders.boolQuery()
-                            .should(QueryBuilders.wildcardQuery("title", "*" + title + "*"))
-                            .should(QueryBuilders.wildcardQuery("description", "*" + description + "*"))
+                            .should(QueryBuilders.matchQuery("title.ngram", title).operator(Operator.AND))
+                            .should(QueryBuilders.matchQuery("description.ngram", description).operator(Operator.AND))
             );
 
             // Configurer la pagination
@@ -198,6 +294,7 @@ public class ProductDocRepository implements ProductDocRepositoryCustom {
             searchSourceBuilder.from(from);
             searchSourceBuilder.size(pageable.getPageSize());
 
+            productHitDecoder.withListFields(searchSourceBuilder);
             searchRequest.source(searchSourceBuilder);
 
             // Exécuter la recherche
@@ -221,7 +318,26 @@ public class ProductDocRepository implements ProductDocRepositoryCustom {
     }
 
     @Override
-    public List<ProductDoc> findTop10ByTitleOrDescription(String title, String category) {
+    public CompletableFuture<Page<ProductDoc>> searchProductsElasticAsync(String query, String category, String location, String condition,
+                                                                         java.math.BigDecimal minPrice, java.math.BigDecimal maxPrice, String city, String delivery,
+                                                                         GeoDistanceFilter geo, Pageable pageable, boolean withFacets) {
+        return productDocRepositoryCustom.searchProductsElasticAsync(query, category, location, condition, minPrice, maxPrice, city, delivery, geo, pageable, withFacets);
+    }
+
+    @Override
+    public CompletableFuture<List<ProductDoc>> findSuggestions(String text, String category, int limit) {
+        return productDocRepositoryCustom.findSuggestions(text, category, limit);
+    }
+
+    @Override
+    public CompletableFuture<SearchCursorPageDTO<ProductDoc>> searchProductsElasticByCursor(String query, String category, String location, String condition,
+                                                                                           java.math.BigDecimal minPrice, java.math.BigDecimal maxPrice, String city, String delivery,
+                                                                                           String cursor, int size) {
+        return productDocRepositoryCustom.searchProductsElasticByCursor(query, category, location, condition, minPrice, maxPrice, city, delivery, cursor, size);
+    }
+
+    @Override
+    public CompletableFuture<List<ProductDoc>> findTop10ByTitleOrDescription(String title, String category) {
         return productDocRepositoryCustom.findTop10ByTitleOrDescription(title, category);
     }
 
@@ -232,11 +348,9 @@ public class ProductDocRepository implements ProductDocRepositoryCustom {
         List<ProductDoc> productDocs = new ArrayList<>();
 
         for (SearchHit hit : searchResponse.getHits().getHits()) {
-            try {
-                ProductDoc productDoc = objectMapper.readValue(hit.getSourceAsString(), ProductDoc.class);
+            ProductDoc productDoc = productHitDecoder.decode(hit);
+            if (productDoc != null) {
                 productDocs.add(productDoc);
-            } catch (IOException e) {
-                log.error("Erreur lors de la conversion du résultat de recherche en ProductDoc", e);
             }
         }
 
@@ -2,11 +2,14 @@ package my.project.qri3a.repositories.search;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.dtos.responses.SearchCursorPageDTO;
+import my.project.qri3a.utils.GeoDistanceFilter;
 
 public interface ProductDocRepositoryCustom {
     Page<ProductDoc> searchProductsElastic(String query,
@@ -19,6 +22,51 @@ public interface ProductDocRepositoryCustom {
                                            String delivery,
                                            Pageable pageable);
 
-    List<ProductDoc> findTop10ByTitleOrDescription(String title, String category);
+    /**
+     * Même recherche que searchProductsElastic, sans bloquer le thread appelant : le résultat est en échec avec
+     * SearchUnavailableException si le cluster est indisponible, trop lent ou protégé par le disjoncteur
+     * @param geo Filtre (et tri éventuel) par distance autour d'une position, null sans restriction géographique
+     * @param withFacets Ajoute les facettes (catégorie, ville, état, livraison, tranches de prix) : la page renvoyée
+     *                   est alors un FacetedPageDTO
+     */
+    CompletableFuture<Page<ProductDoc>> searchProductsElasticAsync(String query,
+                                                                  String category,
+                                                                  String location,
+                                                                  String condition,
+                                                                  BigDecimal minPrice,
+                                                                  BigDecimal maxPrice,
+                                                                  String city,
+                                                                  String delivery,
+                                                                  GeoDistanceFilter geo,
+                                                                  Pageable pageable,
+                                                                  boolean withFacets);
+
+    /**
+     * Recherche paginée par curseur : point-in-time et search_after sur (_score, createdAt, id), sans offset.
+     * Les critères doivent être renvoyés à l'identique avec le curseur de la page suivante.
+     * Comme searchProductsElasticAsync, le résultat est en échec avec SearchUnavailableException si le cluster est
+     * indisponible, trop lent ou protégé par le disjoncteur.
+     * @param cursor Jeton renvoyé par la page précédente, null pour la première page
+     */
+    CompletableFuture<SearchCursorPageDTO<ProductDoc>> searchProductsElasticByCursor(String query,
+                                                                                    String category,
+                                                                                    String location,
+                                                                                    String condition,
+                                                                                    BigDecimal minPrice,
+                                                                                    BigDecimal maxPrice,
+                                                                                    String city,
+                                                                                    String delivery,
+                                                                                    String cursor,
+                                                                                    int size);
+
+    CompletableFuture<List<ProductDoc>> findTop10ByTitleOrDescription(String title, String category);
+
+    /**
+     * Suggestions de saisie sur le sous-champ search_as_you_type title.suggest (requête bool_prefix),
+     * bien moins coûteuses que le phrase_prefix de findTop10ByTitleOrDescription
+     * @return Les produits actifs correspondants, réduits à leur identifiant et leur titre ; en échec avec
+     *         SearchUnavailableException si le cluster est indisponible
+     */
+    CompletableFuture<List<ProductDoc>> findSuggestions(String text, String category, int limit);
 
 }
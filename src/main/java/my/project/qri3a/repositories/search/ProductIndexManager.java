@@ -0,0 +1,347 @@
+package my.project.qri3a.repositories.search;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.opensearch.OpenSearchException;
+import org.opensearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.opensearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.opensearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.opensearch.action.admin.indices.refresh.RefreshRequest;
+import org.opensearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.opensearch.client.GetAliasesResponse;
+import org.opensearch.client.RequestOptions;
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.client.indices.CreateIndexRequest;
+import org.opensearch.client.indices.GetIndexRequest;
+import org.opensearch.client.indices.GetIndexResponse;
+import org.opensearch.client.indices.GetMappingsRequest;
+import org.opensearch.client.indices.GetMappingsResponse;
+import org.opensearch.client.indices.PutMappingRequest;
+import org.opensearch.cluster.metadata.AliasMetadata;
+import org.opensearch.cluster.metadata.MappingMetadata;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.common.unit.TimeValue;
+import org.opensearch.common.xcontent.XContentType;
+import org.opensearch.index.reindex.BulkByScrollResponse;
+import org.opensearch.index.reindex.ReindexRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gestion du mapping explicite de l'index des produits.
+ * Les lectures et écritures passent toujours par l'alias {@link #INDEX_ALIAS}, qui pointe vers un index physique
+ * versionné (products_idx_v1, products_idx_v2...). Le mapping (analyseurs n-gram, champs keyword, scaled_float, date)
+ * est décrit dans opensearch/products_idx-mapping.json ; toute modification incompatible doit incrémenter
+ * {@link #MAPPING_VERSION}.
+ * v2 : ajout du champ geo_point geoLocation.
+ * v3 : ajout du sous-champ search_as_you_type title.suggest (suggestions de saisie).
+ * v4 : retrait du sous-champ description.prefix, jamais interrogé.
+ */
+@Slf4j
+@Component
+public class ProductIndexManager {
+
+    public static final String INDEX_ALIAS = "products_idx";
+    public static final int MAPPING_VERSION = 4;
+
+    private static final String MAPPING_RESOURCE = "opensearch/products_idx-mapping.json";
+    private static final String META_FIELD = "_meta";
+    private static final String MAPPING_VERSION_FIELD = "mapping_version";
+    private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+    private static final String WRITE_BLOCK_SETTING = "index.blocks.write";
+    private static final String CREATION_DATE_SETTING = "index.creation_date";
+
+    private final RestHighLevelClient openSearchClient;
+    private final ObjectMapper objectMapper;
+    private final boolean bootstrapEnabled;
+    private final boolean migrateLegacyIndex;
+    private final long legacyReindexTimeoutMinutes;
+    private volatile boolean migrating;
+
+    public ProductIndexManager(RestHighLevelClient openSearchClient,
+                               ObjectMapper objectMapper,
+                               @Value("${app.search.index.bootstrap-enabled:true}") boolean bootstrapEnabled,
+                               @Value("${app.search.index.migrate-legacy:true}") boolean migrateLegacyIndex,
+                               @Value("${app.search.index.legacy-reindex-timeout-minutes:30}") long legacyReindexTimeoutMinutes) {
+        this.openSearchClient = openSearchClient;
+        this.objectMapper = objectMapper;
+        this.bootstrapEnabled = bootstrapEnabled;
+        this.migrateLegacyIndex = migrateLegacyIndex;
+        this.legacyReindexTimeoutMinutes = legacyReindexTimeoutMinutes;
+    }
+
+    /**
+     * Indique si la migration de l'ancien index est en cours : ses écritures sont bloquées jusqu'à la bascule
+     */
+    public boolean isMigrating() {
+        return migrating;
+    }
+
+    /**
+     * Nom de l'index physique pour une version de mapping
+     */
+    public static String versionedIndexName(int version) {
+        return INDEX_ALIAS + "_v" + version;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (!bootstrapEnabled) {
+            return;
+        }
+        try {
+            String currentIndex = resolveAliasTarget();
+            if (currentIndex != null) {
+                int liveVersion = readMappingVersion(currentIndex);
+                if (liveVersion < MAPPING_VERSION) {
+                    addMissingFields(currentIndex);
+                    log.warn("OpenSearch index {} uses mapping v{}, v{} is available: a reindex is required",
+                            currentIndex, liveVersion, MAPPING_VERSION);
+                } else {
+                    log.info("OpenSearch alias {} -> {} (mapping v{})", INDEX_ALIAS, currentIndex, liveVersion);
+                }
+                return;
+            }
+
+            boolean legacyIndexExists = openSearchClient.indices().exists(new GetIndexRequest(INDEX_ALIAS), RequestOptions.DEFAULT);
+            if (!legacyIndexExists) {
+                String index = createVersionedIndex(MAPPING_VERSION);
+                swapAlias(index, null);
+                log.info("OpenSearch index {} created with mapping v{}", index, MAPPING_VERSION);
+            } else if (migrateLegacyIndex) {
+                migrateLegacyIndex();
+            } else {
+                log.warn("OpenSearch index {} has a dynamic mapping; set app.search.index.migrate-legacy=true to migrate it",
+                        INDEX_ALIAS);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Error bootstrapping OpenSearch index mapping: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Crée l'index physique d'une version avec le mapping explicite
+     * @return Le nom de l'index créé
+     */
+    public String createVersionedIndex(int version) throws IOException {
+        return createIndex(versionedIndexName(version));
+    }
+
+    /**
+     * Crée un nouvel index physique pour une réindexation complète, avec le rafraîchissement désactivé
+     * pendant le chargement (à rétablir par {@link #finishBulkLoad(String)})
+     * @return Le nom de l'index créé, par exemple products_idx_v1_1760000000000
+     */
+    public String createReindexTarget() throws IOException {
+        String index = createIndex(versionedIndexName(MAPPING_VERSION) + "_" + System.currentTimeMillis());
+        updateRefreshInterval(index, "-1");
+        return index;
+    }
+
+    /**
+     * Rétablit le rafraîchissement par défaut et rend visibles les documents chargés
+     */
+    public void finishBulkLoad(String index) throws IOException {
+        updateRefreshInterval(index, null);
+        openSearchClient.indices().refresh(new RefreshRequest(index), RequestOptions.DEFAULT);
+    }
+
+    private String createIndex(String index) throws IOException {
+        CreateIndexRequest request = new CreateIndexRequest(index).source(loadMapping(), XContentType.JSON);
+        openSearchClient.indices().create(request, RequestOptions.DEFAULT);
+        return index;
+    }
+
+    private void updateRefreshInterval(String index, String interval) throws IOException {
+        // Une valeur nulle rétablit le réglage par défaut du cluster
+        Settings.Builder settings = interval == null
+                ? Settings.builder().putNull(REFRESH_INTERVAL_SETTING)
+                : Settings.builder().put(REFRESH_INTERVAL_SETTING, interval);
+        UpdateSettingsRequest request = new UpdateSettingsRequest(index).settings(settings.build());
+        openSearchClient.indices().putSettings(request, RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Index physique actuellement pointé par l'alias, null si l'alias n'existe pas
+     */
+    public String resolveAliasTarget() throws IOException {
+        GetAliasesResponse response = openSearchClient.indices()
+                .getAlias(new GetAliasesRequest(INDEX_ALIAS), RequestOptions.DEFAULT);
+        Map<String, Set<AliasMetadata>> aliases = response.getAliases();
+        for (Map.Entry<String, Set<AliasMetadata>> entry : aliases.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bascule atomiquement l'alias vers un nouvel index
+     * @param newIndex Index qui devient la cible des lectures et des écritures
+     * @param previousIndex Ancienne cible de l'alias, null s'il n'y en a pas
+     */
+    public void swapAlias(String newIndex, String previousIndex) throws IOException {
+        IndicesAliasesRequest request = new IndicesAliasesRequest();
+        if (previousIndex != null) {
+            request.addAliasAction(IndicesAliasesRequest.AliasActions.remove().index(previousIndex).alias(INDEX_ALIAS));
+        }
+        request.addAliasAction(IndicesAliasesRequest.AliasActions.add().index(newIndex).alias(INDEX_ALIAS).writeIndex(true));
+        openSearchClient.indices().updateAliases(request, RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Index versionnés qui ne sont plus la cible de l'alias, relus depuis le cluster. Un index en cours de chargement
+     * (rafraîchissement désactivé par {@link #createReindexTarget()}, éventuellement sur une autre instance) n'est pas
+     * retenu.
+     * @return Pour chaque index, une borne inférieure de l'instant où il a été détaché : la plus récente de sa date
+     * de création et de celle de la cible actuelle de l'alias. Vide si l'alias n'existe pas
+     */
+    public Map<String, Instant> findDetachedIndices() throws IOException {
+        GetIndexResponse response = openSearchClient.indices()
+                .get(new GetIndexRequest(INDEX_ALIAS + "_v*"), RequestOptions.DEFAULT);
+        String aliasTarget = null;
+        for (Map.Entry<String, List<AliasMetadata>> entry : response.getAliases().entrySet()) {
+            for (AliasMetadata alias : entry.getValue()) {
+                if (INDEX_ALIAS.equals(alias.alias())) {
+                    aliasTarget = entry.getKey();
+                }
+            }
+        }
+        if (aliasTarget == null) {
+            return Map.of();
+        }
+
+        Instant aliasTargetCreatedAt = creationDate(response, aliasTarget);
+        Map<String, Instant> detached = new HashMap<>();
+        for (String index : response.getIndices()) {
+            if (index.equals(aliasTarget) || "-1".equals(response.getSetting(index, REFRESH_INTERVAL_SETTING))) {
+                continue;
+            }
+            Instant createdAt = creationDate(response, index);
+            detached.put(index, createdAt.isAfter(aliasTargetCreatedAt) ? createdAt : aliasTargetCreatedAt);
+        }
+        return detached;
+    }
+
+    /**
+     * Supprime un index physique qui n'est plus la cible de l'alias
+     * @throws IllegalStateException si l'alias pointe encore sur cet index
+     */
+    public void deleteIndex(String index) throws IOException {
+        if (index.equals(resolveAliasTarget())) {
+            throw new IllegalStateException("Index " + index + " is still the target of " + INDEX_ALIAS);
+        }
+        openSearchClient.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Ajoute à l'index en service les champs apparus depuis sa création (ajout seulement, sans toucher au _meta) :
+     * les requêtes sur ces champs fonctionnent tout de suite, les documents existants les reçoivent à la réindexation
+     */
+    private void addMissingFields(String index) {
+        try {
+            JsonNode properties = objectMapper.readTree(loadMapping()).path("mappings").path("properties");
+            String source = objectMapper.createObjectNode().set("properties", properties).toString();
+            openSearchClient.indices().putMapping(new PutMappingRequest(index).source(source, XContentType.JSON),
+                    RequestOptions.DEFAULT);
+        } catch (IOException | OpenSearchException e) {
+            log.warn("Could not add new fields to OpenSearch index {}: {}", index, e.getMessage());
+        }
+    }
+
+    private int readMappingVersion(String index) throws IOException {
+        GetMappingsResponse response = openSearchClient.indices()
+                .getMapping(new GetMappingsRequest().indices(index), RequestOptions.DEFAULT);
+        MappingMetadata mapping = response.mappings().get(index);
+        if (mapping == null) {
+            return 0;
+        }
+        Object meta = mapping.getSourceAsMap().get(META_FIELD);
+        if (meta instanceof Map<?, ?> metaMap && metaMap.get(MAPPING_VERSION_FIELD) instanceof Number version) {
+            return version.intValue();
+        }
+        return 0;
+    }
+
+    /**
+     * Migre l'ancien index à mapping dynamique : copie côté serveur vers l'index versionné, puis suppression de
+     * l'ancien index et création de l'alias du même nom en une seule opération.
+     * Les écritures sur l'ancien index sont bloquées (index.blocks.write) pendant la copie, qui ne verrait pas les
+     * modifications faites après son démarrage ; l'indexeur suspend ses envois pendant ce temps et les reprend
+     * sur le nouvel index après la bascule. En cas d'échec, le blocage est levé et l'ancien index reste en place.
+     */
+    private void migrateLegacyIndex() throws IOException {
+        String index = createVersionedIndex(MAPPING_VERSION);
+        log.info("Migrating legacy OpenSearch index {} to {}", INDEX_ALIAS, index);
+
+        migrating = true;
+        boolean swapped = false;
+        try {
+            updateWriteBlock(INDEX_ALIAS, true);
+            ReindexRequest reindexRequest = new ReindexRequest()
+                    .setSourceIndices(INDEX_ALIAS)
+                    .setDestIndex(index)
+                    .setRefresh(true);
+            reindexRequest.setTimeout(TimeValue.timeValueMinutes(legacyReindexTimeoutMinutes));
+            BulkByScrollResponse response = openSearchClient.reindex(reindexRequest, RequestOptions.DEFAULT);
+            if (!response.getBulkFailures().isEmpty() || !response.getSearchFailures().isEmpty()) {
+                log.error("Legacy index migration failed ({} bulk failures), keeping {} in place",
+                        response.getBulkFailures().size(), INDEX_ALIAS);
+                return;
+            }
+
+            IndicesAliasesRequest request = new IndicesAliasesRequest();
+            request.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(INDEX_ALIAS));
+            request.addAliasAction(IndicesAliasesRequest.AliasActions.add().index(index).alias(INDEX_ALIAS).writeIndex(true));
+            openSearchClient.indices().updateAliases(request, RequestOptions.DEFAULT);
+            swapped = true;
+            log.info("Legacy OpenSearch index migrated: {} documents copied to {}", response.getCreated(), index);
+        } finally {
+            if (!swapped) {
+                try {
+                    updateWriteBlock(INDEX_ALIAS, false);
+                } catch (IOException | OpenSearchException e) {
+                    log.error("Could not lift the write block on legacy OpenSearch index {}: {}", INDEX_ALIAS, e.getMessage());
+                }
+            }
+            migrating = false;
+        }
+    }
+
+    // Sans date lisible, l'index est considéré comme créé maintenant : sa suppression est repoussée, jamais avancée
+    private static Instant creationDate(GetIndexResponse response, String index) {
+        String creationDate = response.getSetting(index, CREATION_DATE_SETTING);
+        try {
+            return creationDate == null ? Instant.now() : Instant.ofEpochMilli(Long.parseLong(creationDate));
+        } catch (NumberFormatException e) {
+            return Instant.now();
+        }
+    }
+
+    private void updateWriteBlock(String index, boolean blocked) throws IOException {
+        Settings settings = blocked
+                ? Settings.builder().put(WRITE_BLOCK_SETTING, true).build()
+                : Settings.builder().putNull(WRITE_BLOCK_SETTING).build();
+        openSearchClient.indices().putSettings(new UpdateSettingsRequest(index).settings(settings), RequestOptions.DEFAULT);
+    }
+
+    private String loadMapping() throws IOException {
+        return StreamUtils.copyToString(new ClassPathResource(MAPPING_RESOURCE).getInputStream(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package my.project.qri3a.repositories.search;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import my.project.qri3a.enums.CircuitState;
+
+/**
+ * Disjoncteur à seuil d'échecs consécutifs.
+ * Après {@code failureThreshold} échecs, les appels sont refusés pendant {@code openDuration} ; un appel d'essai
+ * est ensuite autorisé : son succès referme le circuit, son échec le rouvre pour une nouvelle période.
+ */
+public class SearchCircuitBreaker {
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMillis;
+    private boolean trialInFlight;
+
+    public SearchCircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * Indique si un appel peut partir ; en demi-ouverture, réserve l'unique appel d'essai
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == CircuitState.OPEN && clock.millis() - openedAtMillis >= openDuration.toMillis()) {
+            state = CircuitState.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInFlight) {
+                    yield false;
+                }
+                trialInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = CircuitState.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = CircuitState.OPEN;
+            openedAtMillis = clock.millis();
+        }
+    }
+
+    /**
+     * Vrai tant que le circuit est ouvert, sans réserver d'appel d'essai
+     */
+    public synchronized boolean isOpen() {
+        return state == CircuitState.OPEN && clock.millis() - openedAtMillis < openDuration.toMillis();
+    }
+
+    public synchronized CircuitState getState() {
+        return state;
+    }
+}
@@ -8,19 +8,36 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import org.apache.lucene.search.TotalHits;
+import org.opensearch.OpenSearchStatusException;
+import org.opensearch.action.search.CreatePitRequest;
+import org.opensearch.action.search.CreatePitResponse;
 import org.opensearch.action.search.SearchRequest;
 import org.opensearch.action.search.SearchResponse;
 import org.opensearch.client.RequestOptions;
 import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.common.unit.DistanceUnit;
+import org.opensearch.common.unit.TimeValue;
+import org.opensearch.core.rest.RestStatus;
 import org.opensearch.index.query.BoolQueryBuilder;
+import org.opensearch.index.query.MultiMatchQueryBuilder;
+import org.opensearch.index.query.Operator;
 import org.opensearch.index.query.QueryBuilders;
 import org.opensearch.index.query.RangeQueryBuilder;
 import org.opensearch.search.SearchHit;
+import org.opensearch.search.aggregations.AggregationBuilders;
+import org.opensearch.search.aggregations.Aggregations;
+import org.opensearch.search.aggregations.bucket.histogram.Histogram;
+import org.opensearch.search.aggregations.bucket.terms.Terms;
+import org.opensearch.search.builder.PointInTimeBuilder;
 import org.opensearch.search.builder.SearchSourceBuilder;
 import org.opensearch.search.sort.SortBuilders;
 import org.opensearch.search.sort.SortOrder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -28,30 +45,52 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import lombok.extern.slf4j.Slf4j;
 import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.dtos.responses.FacetBucketDTO;
+import my.project.qri3a.dtos.responses.FacetedPageDTO;
+import my.project.qri3a.dtos.responses.SearchCursorPageDTO;
+import my.project.qri3a.dtos.responses.SearchFacetsDTO;
 import my.project.qri3a.enums.ProductCategory;
 import my.project.qri3a.enums.ProductStatus;
+import my.project.qri3a.exceptions.SearchUnavailableException;
 import my.project.qri3a.repositories.search.ProductDocRepositoryCustom;
+import my.project.qri3a.repositories.search.OpenSearchGateway;
+import my.project.qri3a.repositories.search.ProductHitDecoder;
+import my.project.qri3a.repositories.search.ProductIndexManager;
+import my.project.qri3a.utils.GeoDistanceFilter;
+import my.project.qri3a.utils.SearchAfterCursor;
+import my.project.qri3a.utils.SearchTextNormalizer;
 
 @Slf4j
 @Repository
 public class ProductDocRepositoryCustomImpl implements ProductDocRepositoryCustom {
 
-    private static final String INDEX_NAME = "products_idx";
+    private static final String INDEX_NAME = ProductIndexManager.INDEX_ALIAS;
     private static final String STATUS_FIELD = "status";
     private static final String TITLE_FIELD = "title";
     private static final String DESCRIPTION_FIELD = "description";
-    private static final String CATEGORY_FIELD = "category.keyword";
-    private static final String LOCATION_FIELD = "location.keyword";
-    private static final String CONDITION_FIELD = "condition.keyword";
-    private static final String CITY_FIELD = "city.keyword";
+    // Sous-champs n-gram du mapping explicite (voir opensearch/products_idx-mapping.json)
+    private static final String TITLE_PREFIX_FIELD = "title.prefix";
+    private static final String TITLE_NGRAM_FIELD = "title.ngram";
+    // search_as_you_type : le champ et ses shingles de 2 et 3 mots
+    private static final String TITLE_SUGGEST_FIELD = "title.suggest";
+    private static final String TITLE_SUGGEST_2GRAM_FIELD = "title.suggest._2gram";
+    private static final String TITLE_SUGGEST_3GRAM_FIELD = "title.suggest._3gram";
+    private static final String DESCRIPTION_NGRAM_FIELD = "description.ngram";
+    private static final String CATEGORY_FIELD = "category";
+    private static final String LOCATION_FIELD = "location";
+    private static final String CONDITION_FIELD = "condition";
+    private static final String CITY_FIELD = "city";
     private static final String PRICE_FIELD = "price";
-    private static final String DELIVERY_FIELD = "delivery.keyword";
+    private static final String DELIVERY_FIELD = "delivery";
     private static final String CREATED_AT_FIELD = "createdAt";
+    private static final String ID_FIELD = "id";
+    private static final String GEO_LOCATION_FIELD = "geoLocation";
     private static final int MAX_SEARCH_RESULTS = 10;
+    private static final int FACET_CATEGORY_SIZE = 100;
+    private static final int FACET_CITY_SIZE = 50;
+    private static final int FACET_SMALL_SIZE = 10;
 
     // Définir les mappings des catégories principales vers leurs sous-catégories
     private static final Set<String> MARKET_SUBCATEGORIES = new HashSet<>(Arrays.asList(
@@ -104,12 +143,25 @@ public class ProductDocRepositoryCustomImpl implements ProductDocRepositoryCusto
     ));
 
     private final RestHighLevelClient openSearchClient;
-    private final ObjectMapper objectMapper;
+    private final OpenSearchGateway openSearchGateway;
+    private final ProductHitDecoder productHitDecoder;
+    private final int trackTotalHitsUpTo;
+    private final TimeValue pitKeepAlive;
+    private final double priceHistogramInterval;
 
     // Constructeur avec dépendances standard
-    public ProductDocRepositoryCustomImpl(RestHighLevelClient openSearchClient, ObjectMapper objectMapper) {
+    public ProductDocRepositoryCustomImpl(RestHighLevelClient openSearchClient,
+                                          OpenSearchGateway openSearchGateway,
+                                          ProductHitDecoder productHitDecoder,
+                                          @Value("${app.search.track-total-hits-up-to:1000}") int trackTotalHitsUpTo,
+                                          @Value("${app.search.cursor.keep-alive-minutes:1}") long pitKeepAliveMinutes,
+                                          @Value("${app.search.facets.price-interval:500}") double priceHistogramInterval) {
         this.openSearchClient = openSearchClient;
-        this.objectMapper = objectMapper;
+        this.openSearchGateway = openSearchGateway;
+        this.productHitDecoder = productHitDecoder;
+        this.trackTotalHitsUpTo = trackTotalHitsUpTo;
+        this.pitKeepAlive = TimeValue.timeValueMinutes(pitKeepAliveMinutes);
+        this.priceHistogramInterval = priceHistogramInterval;
     }
 
     @Override
@@ -125,27 +177,7 @@ public class ProductDocRepositoryCustomImpl implements ProductDocRepositoryCusto
         log.debug("Searching products with criteria: {}", searchText);
 
         try {
-            // Construire la requête de recherche
-            SearchRequest searchRequest = new SearchRequest(INDEX_NAME);
-            SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-
-            // Construire la requête de base
-            BoolQueryBuilder boolQuery = buildBaseQuery(searchText);
-
-            // Ajouter les filtres supplémentaires
-            addFilterQueries(boolQuery, category, location, condition, minPrice, maxPrice, city, delivery);
-
-            // Configurer la pagination
-            int from = pageable.getPageNumber() * pageable.getPageSize();
-            searchSourceBuilder.from(from);
-            searchSourceBuilder.size(pageable.getPageSize());
-
-            // Configurer le tri
-            configureSorting(searchSourceBuilder, searchText, pageable);
-
-            // Finaliser la requête
-            searchSourceBuilder.query(boolQuery);
-            searchRequest.source(searchSourceBuilder);
+            SearchRequest searchRequest = buildSearchRequest(searchText, category, location, condition, minPrice, maxPrice, city, delivery, null, pageable, false);
 
             // Exécuter la recherche
             SearchResponse searchResponse = openSearchClient.search(searchRequest, RequestOptions.DEFAULT);
@@ -160,67 +192,295 @@ public class ProductDocRepositoryCustomImpl implements ProductDocRepositoryCusto
     }
 
     @Override
-    public List<ProductDoc> findTop10ByTitleOrDescription(String title, String category) {
+    public CompletableFuture<Page<ProductDoc>> searchProductsElasticAsync(String searchText,
+                                                                         String category,
+                                                                         String location,
+                                                                         String condition,
+                                                                         BigDecimal minPrice,
+                                                                         BigDecimal maxPrice,
+                                                                         String city,
+                                                                         String delivery,
+                                                                         GeoDistanceFilter geo,
+                                                                         Pageable pageable,
+                                                                         boolean withFacets) {
+        log.debug("Searching products asynchronously with criteria: {}", searchText);
+
+        SearchRequest searchRequest = buildSearchRequest(searchText, category, location, condition, minPrice, maxPrice, city, delivery, geo, pageable, withFacets);
+        return openSearchGateway.search(searchRequest)
+                .thenApply(searchResponse -> processSearchResponse(searchResponse, pageable));
+    }
+
+    private SearchRequest buildSearchRequest(String searchText,
+                                             String category,
+                                             String location,
+                                             String condition,
+                                             BigDecimal minPrice,
+                                             BigDecimal maxPrice,
+                                             String city,
+                                             String delivery,
+                                             GeoDistanceFilter geo,
+                                             Pageable pageable,
+                                             boolean withFacets) {
+        // Construire la requête de recherche
+        SearchRequest searchRequest = new SearchRequest(INDEX_NAME);
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+
+        // Construire la requête de base
+        BoolQueryBuilder boolQuery = buildBaseQuery(searchText);
+
+        // Ajouter les filtres supplémentaires
+        addFilterQueries(boolQuery, category, location, condition, minPrice, maxPrice, city, delivery);
+
+        // Filtre par rayon ; ignoreUnmapped tant que l'index en service n'a pas encore le champ geo_point
+        if (geo != null) {
+            boolQuery.filter(QueryBuilders.geoDistanceQuery(GEO_LOCATION_FIELD)
+                    .point(geo.lat(), geo.lon())
+                    .distance(geo.radiusKm(), DistanceUnit.KILOMETERS)
+                    .ignoreUnmapped(true));
+        }
+
+        // Configurer la pagination ; le total reste exact, la pagination par numéro de page en dépend
+        int from = pageable.getPageNumber() * pageable.getPageSize();
+        searchSourceBuilder.from(from);
+        searchSourceBuilder.size(pageable.getPageSize());
+        searchSourceBuilder.trackTotalHits(true);
+
+        // Configurer le tri, la distance passant en premier si elle est demandée
+        if (geo != null && geo.sortByDistance()) {
+            searchSourceBuilder.sort(SortBuilders.geoDistanceSort(GEO_LOCATION_FIELD, geo.lat(), geo.lon())
+                    .unit(DistanceUnit.KILOMETERS)
+                    .order(SortOrder.ASC)
+                    .ignoreUnmapped(true));
+        }
+        configureSorting(searchSourceBuilder, searchText, pageable);
+
+        // Finaliser la requête, en ne rapatriant que les champs de la liste
+        searchSourceBuilder.query(boolQuery);
+        productHitDecoder.withListFields(searchSourceBuilder);
+
+        // Facettes calculées dans le même aller-retour, sur les résultats filtrés
+        if (withFacets) {
+            addFacetAggregations(searchSourceBuilder);
+        }
+        return searchRequest.source(searchSourceBuilder);
+    }
+
+    private void addFacetAggregations(SearchSourceBuilder searchSourceBuilder) {
+        searchSourceBuilder.aggregation(AggregationBuilders.terms(CATEGORY_FIELD).field(CATEGORY_FIELD).size(FACET_CATEGORY_SIZE));
+        searchSourceBuilder.aggregation(AggregationBuilders.terms(CITY_FIELD).field(CITY_FIELD).size(FACET_CITY_SIZE));
+        searchSourceBuilder.aggregation(AggregationBuilders.terms(CONDITION_FIELD).field(CONDITION_FIELD).size(FACET_SMALL_SIZE));
+        searchSourceBuilder.aggregation(AggregationBuilders.terms(DELIVERY_FIELD).field(DELIVERY_FIELD).size(FACET_SMALL_SIZE));
+        searchSourceBuilder.aggregation(AggregationBuilders.histogram(PRICE_FIELD).field(PRICE_FIELD)
+                .interval(priceHistogramInterval)
+                .minDocCount(1));
+    }
+
+    private SearchFacetsDTO extractFacets(Aggregations aggregations) {
+        List<FacetBucketDTO> priceHistogram = new ArrayList<>();
+        Histogram prices = aggregations.get(PRICE_FIELD);
+        for (Histogram.Bucket bucket : prices.getBuckets()) {
+            priceHistogram.add(new FacetBucketDTO(BigDecimal.valueOf(((Number) bucket.getKey()).doubleValue()).stripTrailingZeros().toPlainString(),
+                    bucket.getDocCount()));
+        }
+        return SearchFacetsDTO.builder()
+                .categories(termBuckets(aggregations, CATEGORY_FIELD))
+                .cities(termBuckets(aggregations, CITY_FIELD))
+                .conditions(termBuckets(aggregations, CONDITION_FIELD))
+                .deliveries(termBuckets(aggregations, DELIVERY_FIELD))
+                .priceHistogram(priceHistogram)
+                .build();
+    }
+
+    private static List<FacetBucketDTO> termBuckets(Aggregations aggregations, String name) {
+        Terms terms = aggregations.get(name);
+        List<FacetBucketDTO> buckets = new ArrayList<>(terms.getBuckets().size());
+        for (Terms.Bucket bucket : terms.getBuckets()) {
+            buckets.add(new FacetBucketDTO(bucket.getKeyAsString(), bucket.getDocCount()));
+        }
+        return buckets;
+    }
+
+    @Override
+    public CompletableFuture<SearchCursorPageDTO<ProductDoc>> searchProductsElasticByCursor(String searchText,
+                                                                                           String category,
+                                                                                           String location,
+                                                                                           String condition,
+                                                                                           BigDecimal minPrice,
+                                                                                           BigDecimal maxPrice,
+                                                                                           String city,
+                                                                                           String delivery,
+                                                                                           String cursor,
+                                                                                           int size) {
+        log.debug("Searching products by cursor with criteria: {}", searchText);
+
+        SearchAfterCursor after = SearchAfterCursor.decode(cursor);
+        BoolQueryBuilder boolQuery = buildBaseQuery(searchText);
+        addFilterQueries(boolQuery, category, location, condition, minPrice, maxPrice, city, delivery);
+
+        CompletableFuture<SearchCursorPageDTO<ProductDoc>> page;
+        if (after == null) {
+            // Première page sans point-in-time : il n'est ouvert que si le client demande la suite
+            page = searchAfter(boolQuery, null, null, size)
+                    .thenApply(searchResponse -> toCursorPage(searchResponse, null, size));
+        } else {
+            CompletableFuture<String> pit = after.getPitId() != null
+                    ? CompletableFuture.completedFuture(after.getPitId())
+                    : openPit();
+            page = pit.thenCompose(pitId -> searchAfter(boolQuery, pitId, after, size)
+                    .thenApply(searchResponse -> toCursorPage(searchResponse, pitId, size))
+                    .exceptionallyCompose(error -> {
+                        OpenSearchStatusException statusException = statusException(error);
+                        if (pitId == null || statusException == null || statusException.status() != RestStatus.NOT_FOUND) {
+                            return CompletableFuture.failedFuture(error);
+                        }
+                        // Point-in-time expiré : on reprend après le même résultat sur un nouvel instantané
+                        log.debug("Point-in-time expired, resuming search on a new one");
+                        return openPit().thenCompose(newPitId -> searchAfter(boolQuery, newPitId, after, size)
+                                .thenApply(searchResponse -> toCursorPage(searchResponse, newPitId, size)));
+                    }));
+        }
+        return page.exceptionally(error -> {
+            throw unavailable("cursor search", error);
+        });
+    }
+
+    private SearchCursorPageDTO<ProductDoc> toCursorPage(SearchResponse searchResponse, String pitId, int size) {
+        SearchHit[] hits = searchResponse.getHits().getHits();
+        boolean hasNext = hits.length > size;
+        int count = Math.min(hits.length, size);
+        List<ProductDoc> productDocs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ProductDoc productDoc = productHitDecoder.decode(hits[i]);
+            if (productDoc != null) {
+                productDocs.add(productDoc);
+            }
+        }
+
+        // Le point-in-time peut être renouvelé par le cluster : toujours reprendre l'identifiant renvoyé
+        String nextPitId = pitId == null ? null
+                : searchResponse.pointInTimeId() != null ? searchResponse.pointInTimeId() : pitId;
+        String nextCursor = null;
+        if (hasNext) {
+            Object[] sortValues = hits[count - 1].getSortValues();
+            nextCursor = new SearchAfterCursor(nextPitId,
+                    ((Number) sortValues[0]).floatValue(),
+                    ((Number) sortValues[1]).longValue(),
+                    String.valueOf(sortValues[2])).encode();
+        } else if (nextPitId != null) {
+            openSearchGateway.deletePit(nextPitId);
+        }
+
+        TotalHits totalHits = searchResponse.getHits().getTotalHits();
+        long total = totalHits != null ? totalHits.value : productDocs.size();
+        boolean exact = totalHits != null && totalHits.relation == TotalHits.Relation.EQUAL_TO;
+        return new SearchCursorPageDTO<>(productDocs, productDocs.size(), hasNext, nextCursor, total, exact);
+    }
+
+    @Override
+    public CompletableFuture<List<ProductDoc>> findTop10ByTitleOrDescription(String title, String category) {
         log.debug("Finding top 10 products with search term: {} and category: {}", title, category);
 
         if (!StringUtils.hasText(title)) {
-            return Collections.emptyList();
+            return CompletableFuture.completedFuture(Collections.emptyList());
         }
 
-        try {
-            // Construire la requête de recherche
-            SearchRequest searchRequest = new SearchRequest(INDEX_NAME);
-            SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        // Construire la requête de recherche
+        SearchRequest searchRequest = new SearchRequest(INDEX_NAME);
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+
+        // Construire la requête de base mais en utilisant des requêtes plus souples
+        BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
 
-            // Construire la requête de base mais en utilisant des requêtes plus souples
-            BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
+        // Filtre pour produits actifs
+        boolQuery.must(QueryBuilders.termQuery(STATUS_FIELD, ProductStatus.ACTIVE.toString()));
 
-            // Filtre pour produits actifs
-            boolQuery.must(QueryBuilders.termQuery(STATUS_FIELD, ProductStatus.ACTIVE.toString()));
+        // Nettoyer le texte
+        String cleanedText = cleanSearchText(title);
 
-            // Nettoyer le texte
-            String cleanedText = cleanSearchText(title);
+        // Utiliser un multi_match pour une meilleure correspondance textuelle
+        boolQuery.must(QueryBuilders.multiMatchQuery(cleanedText, TITLE_FIELD, DESCRIPTION_FIELD)
+                .type("phrase_prefix")
+                .slop(3));
 
-            // Utiliser un multi_match pour une meilleure correspondance textuelle
-            boolQuery.must(QueryBuilders.multiMatchQuery(cleanedText, TITLE_FIELD, DESCRIPTION_FIELD)
-                    .type("phrase_prefix")
-                    .slop(3));
+        // Ajouter le filtre de catégorie si spécifié
+        if (StringUtils.hasText(category)) {
+            addCategoryFilter(boolQuery, category);
+        }
 
-            // Ajouter le filtre de catégorie si spécifié
-            if (StringUtils.hasText(category)) {
-                addCategoryFilter(boolQuery, category);
-            }
+        // Limiter à 10 résultats, avec les seuls champs de la liste
+        searchSourceBuilder.size(MAX_SEARCH_RESULTS);
+        productHitDecoder.withListFields(searchSourceBuilder);
 
-            // Limiter à 10 résultats
-            searchSourceBuilder.size(MAX_SEARCH_RESULTS);
+        // Configurer le tri par score puis par date
+        searchSourceBuilder.sort(SortBuilders.scoreSort().order(SortOrder.DESC));
+        searchSourceBuilder.sort(SortBuilders.fieldSort(CREATED_AT_FIELD).order(SortOrder.DESC));
 
-            // Configurer le tri par score puis par date
-            searchSourceBuilder.sort(SortBuilders.scoreSort().order(SortOrder.DESC));
-            searchSourceBuilder.sort(SortBuilders.fieldSort(CREATED_AT_FIELD).order(SortOrder.DESC));
+        // Finaliser la requête
+        searchSourceBuilder.query(boolQuery);
+        searchRequest.source(searchSourceBuilder);
+
+        return openSearchGateway.search(searchRequest)
+                .thenApply(this::decodeHits)
+                .exceptionally(error -> {
+                    throw unavailable("top 10 search", error);
+                });
+    }
 
-            // Finaliser la requête
-            searchSourceBuilder.query(boolQuery);
-            searchRequest.source(searchSourceBuilder);
+    @Override
+    public CompletableFuture<List<ProductDoc>> findSuggestions(String text, String category, int limit) {
+        if (!StringUtils.hasText(text)) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
 
-            // Exécuter la recherche
-            SearchResponse searchResponse = openSearchClient.search(searchRequest, RequestOptions.DEFAULT);
+        BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
+        boolQuery.filter(QueryBuilders.termQuery(STATUS_FIELD, ProductStatus.ACTIVE.toString()));
+        // Tous les mots saisis doivent correspondre, le dernier en tant que préfixe
+        boolQuery.must(QueryBuilders.multiMatchQuery(cleanSearchText(text),
+                        TITLE_SUGGEST_FIELD, TITLE_SUGGEST_2GRAM_FIELD, TITLE_SUGGEST_3GRAM_FIELD)
+                .type(MultiMatchQueryBuilder.Type.BOOL_PREFIX)
+                .operator(Operator.AND));
+        addCategoryFilter(boolQuery, category);
 
-            // Transformer les résultats
-            List<ProductDoc> products = new ArrayList<>();
-            for (SearchHit hit : searchResponse.getHits().getHits()) {
-                try {
-                    ProductDoc product = objectMapper.readValue(hit.getSourceAsString(), ProductDoc.class);
-                    products.add(product);
-                } catch (IOException e) {
-                    log.error("Error converting SearchHit to ProductDoc", e);
-                }
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .query(boolQuery)
+                .size(Math.min(limit, MAX_SEARCH_RESULTS))
+                .trackTotalHits(false);
+        productHitDecoder.withSuggestionFields(searchSourceBuilder);
+
+        return openSearchGateway.search(new SearchRequest(INDEX_NAME).source(searchSourceBuilder))
+                .thenApply(this::decodeHits)
+                .exceptionally(error -> {
+                    throw unavailable("suggestion search", error);
+                });
+    }
+
+    private List<ProductDoc> decodeHits(SearchResponse searchResponse) {
+        List<ProductDoc> products = new ArrayList<>();
+        for (SearchHit hit : searchResponse.getHits().getHits()) {
+            ProductDoc product = productHitDecoder.decode(hit);
+            if (product != null) {
+                products.add(product);
             }
-            return products;
+        }
+        return products;
+    }
 
-        } catch (IOException e) {
-            log.error("Error executing OpenSearch query for top 10 products", e);
-            return Collections.emptyList();
+    /**
+     * Erreur d'une recherche passée par la passerelle : un rejet du cluster (surcharge, curseur inexploitable) est,
+     * comme une panne ou une échéance dépassée, une indisponibilité temporaire (503), jamais un résultat vide
+     */
+    private static SearchUnavailableException unavailable(String operation, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof SearchUnavailableException unavailable) {
+            return unavailable;
         }
+        log.warn("OpenSearch rejected the {}: {}", operation, cause.getMessage());
+        return new SearchUnavailableException("OpenSearch " + operation + " failed: " + cause.getMessage(), cause);
+    }
+
+    private static OpenSearchStatusException statusException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof OpenSearchStatusException statusException ? statusException : null;
     }
 
     // Méthodes privées d'assistance
@@ -245,9 +505,10 @@ public class ProductDocRepositoryCustomImpl implements ProductDocRepositoryCusto
                 textQuery.should(QueryBuilders.matchPhrasePrefixQuery(TITLE_FIELD, term));
                 textQuery.should(QueryBuilders.matchPhrasePrefixQuery(DESCRIPTION_FIELD, term));
 
-                // Recherche wildcard comme fallback
-                textQuery.should(QueryBuilders.wildcardQuery(TITLE_FIELD, "*" + term + "*"));
-                textQuery.should(QueryBuilders.wildcardQuery(DESCRIPTION_FIELD, "*" + term + "*"));
+                // Début de mot via l'edge n-gram, sous-chaîne via le n-gram : remplace les wildcards "*term*"
+                textQuery.should(QueryBuilders.matchQuery(TITLE_PREFIX_FIELD, term).boost(2.0f));
+                textQuery.should(QueryBuilders.matchQuery(TITLE_NGRAM_FIELD, term).operator(Operator.AND));
+                textQuery.should(QueryBuilders.matchQuery(DESCRIPTION_NGRAM_FIELD, term).operator(Operator.AND).boost(0.5f));
             }
 
             // Utiliser un multi_match pour la requête complète également
@@ -347,45 +608,68 @@ public class ProductDocRepositoryCustomImpl implements ProductDocRepositoryCusto
         }
     }
 
+    /**
+     * Page suivante, sur un point-in-time s'il y en a un : tri stable (_score, createdAt, id) et un résultat de plus
+     * que demandé pour savoir s'il reste une page, sans jamais utiliser from
+     * @param pitId Point-in-time, null pour interroger l'index directement
+     */
+    private CompletableFuture<SearchResponse> searchAfter(BoolQueryBuilder boolQuery, String pitId, SearchAfterCursor after, int size) {
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .query(boolQuery)
+                .size(size + 1)
+                .trackTotalHitsUpTo(trackTotalHitsUpTo)
+                .sort(SortBuilders.scoreSort().order(SortOrder.DESC))
+                .sort(SortBuilders.fieldSort(CREATED_AT_FIELD).order(SortOrder.DESC).missing("_last"))
+                .sort(SortBuilders.fieldSort(ID_FIELD).order(SortOrder.ASC));
+        productHitDecoder.withListFields(searchSourceBuilder);
+        if (after != null) {
+            searchSourceBuilder.searchAfter(after.getSortValues());
+        }
+        if (pitId == null) {
+            return openSearchGateway.search(new SearchRequest(INDEX_NAME).source(searchSourceBuilder));
+        }
+        // Avec un point-in-time, la requête ne doit cibler aucun index
+        searchSourceBuilder.pointInTimeBuilder(new PointInTimeBuilder(pitId).setKeepAlive(pitKeepAlive));
+        return openSearchGateway.search(new SearchRequest().source(searchSourceBuilder));
+    }
+
+    /**
+     * Ouvre un point-in-time pour les pages suivantes
+     * @return Son identifiant, ou null si le cluster a atteint sa limite de points-in-time ouverts : la suite se fait
+     * alors sans instantané, directement sur l'index
+     */
+    private CompletableFuture<String> openPit() {
+        return openSearchGateway.createPit(new CreatePitRequest(pitKeepAlive, true, INDEX_NAME))
+                .thenApply(CreatePitResponse::getId)
+                .exceptionally(error -> {
+                    OpenSearchStatusException statusException = statusException(error);
+                    if (statusException == null || statusException.status() != RestStatus.TOO_MANY_REQUESTS) {
+                        throw error instanceof CompletionException completionException
+                                ? completionException : new CompletionException(error);
+                    }
+                    log.warn("Point-in-time limit reached, paging without a snapshot: {}", statusException.getMessage());
+                    return null;
+                });
+    }
+
     private Page<ProductDoc> processSearchResponse(SearchResponse searchResponse, Pageable pageable) {
         List<ProductDoc> productDocs = new ArrayList<>();
 
         for (SearchHit hit : searchResponse.getHits().getHits()) {
-            try {
-                ProductDoc productDoc = objectMapper.readValue(hit.getSourceAsString(), ProductDoc.class);
+            ProductDoc productDoc = productHitDecoder.decode(hit);
+            if (productDoc != null) {
                 productDocs.add(productDoc);
-            } catch (IOException e) {
-                log.error("Error converting SearchHit to ProductDoc", e);
             }
         }
 
         long totalHits = searchResponse.getHits().getTotalHits().value;
+        if (searchResponse.getAggregations() != null && searchResponse.getAggregations().get(PRICE_FIELD) != null) {
+            return new FacetedPageDTO<>(productDocs, pageable, totalHits, extractFacets(searchResponse.getAggregations()));
+        }
         return new PageImpl<>(productDocs, pageable, totalHits);
     }
 
     private String cleanSearchText(String text) {
-        // Vérification des entrées nulles ou vides
-        if (text == null || text.trim().isEmpty()) {
-            return "";
-        }
-
-        // Limiter la longueur maximale de la recherche
-        final int MAX_QUERY_LENGTH = 100;
-        if (text.length() > MAX_QUERY_LENGTH) {
-            text = text.substring(0, MAX_QUERY_LENGTH);
-        }
-
-        // Convertir en minuscules
-        text = text.toLowerCase();
-
-        // Supprimer uniquement les caractères dangereux pour Elasticsearch
-        // Ne PAS échapper les chiffres ou autres caractères normaux
-        String cleaned = text.replaceAll("[\\p{Cntrl}]", "");
-
-        // Normaliser les espaces multiples
-        cleaned = cleaned.replaceAll("\\s+", " ");
-
-        // Enlever les espaces de début et de fin
-        return cleaned.trim();
+        return SearchTextNormalizer.normalize(text);
     }
 }
\ No newline at end of file
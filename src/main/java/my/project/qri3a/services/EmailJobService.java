@@ -0,0 +1,100 @@
+package my.project.qri3a.services;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.entities.PasswordResetToken;
+import my.project.qri3a.entities.VerificationCode;
+import my.project.qri3a.jobs.JobHandler;
+import my.project.qri3a.jobs.JobQueue;
+import my.project.qri3a.jobs.JobType;
+import my.project.qri3a.repositories.ContactRepository;
+import my.project.qri3a.repositories.PasswordResetTokenRepository;
+import my.project.qri3a.repositories.VerificationCodeRepository;
+
+/**
+ * Envoi des emails transactionnels par la file de travaux, après le commit de la transaction qui les déclenche.
+ * La requête n'attend plus le serveur SMTP ; un envoi en échec est retenté puis mis en file morte.
+ * Les travaux ne portent que l'identifiant de la ligne à envoyer : jetons de réinitialisation, codes de vérification
+ * et adresses sont relus en base au moment de l'envoi et ne sont jamais écrits dans les messages de la file (ni
+ * dans sa file morte). Un jeton ou un code remplacé, consommé ou expiré entre-temps n'est pas envoyé.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailJobService implements JobHandler<EmailJobService.EmailJob> {
+
+    public static final JobType<EmailJob> JOB = new JobType<>("email", EmailJob.class);
+
+    private final EmailService emailService;
+    private final ContactRepository contactRepository;
+    private final PasswordResetTokenRepository passwordResetTokenRepository;
+    private final VerificationCodeRepository verificationCodeRepository;
+    private final JobQueue jobQueue;
+
+    public enum EmailKind {
+        PASSWORD_RESET,
+        VERIFICATION,
+        CONTACT
+    }
+
+    /**
+     * Email à envoyer
+     * @param referenceId Jeton de réinitialisation, code de vérification ou formulaire de contact selon le type,
+     *                    relu au moment de l'envoi
+     */
+    public record EmailJob(EmailKind kind, UUID referenceId) {
+    }
+
+    @Override
+    public JobType<EmailJob> type() {
+        return JOB;
+    }
+
+    public void sendPasswordResetEmail(UUID passwordResetTokenId) {
+        jobQueue.enqueueAfterCommit(JOB, new EmailJob(EmailKind.PASSWORD_RESET, passwordResetTokenId));
+    }
+
+    public void sendVerificationEmail(UUID verificationCodeId) {
+        jobQueue.enqueueAfterCommit(JOB, new EmailJob(EmailKind.VERIFICATION, verificationCodeId));
+    }
+
+    /**
+     * Notification à l'administrateur et confirmation à l'expéditeur d'un formulaire de contact
+     */
+    public void sendContactEmails(UUID contactId) {
+        jobQueue.enqueueAfterCommit(JOB, new EmailJob(EmailKind.CONTACT, contactId));
+    }
+
+    @Override
+    public void handle(EmailJob job) throws Exception {
+        switch (job.kind()) {
+            case PASSWORD_RESET -> {
+                Optional<PasswordResetToken> token = passwordResetTokenRepository.findById(job.referenceId());
+                if (token.isEmpty() || token.get().isExpired()) {
+                    log.info("Password reset token {} used, replaced or expired, email not sent", job.referenceId());
+                    return;
+                }
+                emailService.sendPasswordResetEmail(token.get().getUser().getEmail(), token.get().getToken(),
+                        token.get().getUser().getName());
+            }
+            case VERIFICATION -> {
+                Optional<VerificationCode> code = verificationCodeRepository.findById(job.referenceId());
+                if (code.isEmpty() || code.get().isExpired()) {
+                    log.info("Verification code {} used or expired, email not sent", job.referenceId());
+                    return;
+                }
+                emailService.sendVerificationEmail(code.get().getUser().getEmail(), code.get().getCode(),
+                        code.get().getUser().getName());
+            }
+            case CONTACT -> contactRepository.findById(job.referenceId()).ifPresentOrElse(contact -> {
+                emailService.sendContactNotificationToAdmin(contact);
+                emailService.sendContactConfirmationEmail(contact);
+            }, () -> log.warn("Contact {} no longer exists, emails not sent", job.referenceId()));
+        }
+    }
+}
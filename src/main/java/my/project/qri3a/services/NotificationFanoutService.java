@@ -0,0 +1,383 @@
+package my.project.qri3a.services;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.dtos.responses.ImageResponseDTO;
+import my.project.qri3a.dtos.responses.NotificationResponseDTO;
+import my.project.qri3a.entities.Product;
+import my.project.qri3a.enums.ProductCategory;
+import my.project.qri3a.jobs.JobHandler;
+import my.project.qri3a.jobs.JobQueue;
+import my.project.qri3a.jobs.JobType;
+import my.project.qri3a.mappers.ImageMapper;
+import my.project.qri3a.mappers.NotificationMapper;
+import my.project.qri3a.repositories.NotificationPreferenceRepository;
+import my.project.qri3a.repositories.NotificationRepository;
+import my.project.qri3a.repositories.NotificationRepositoryCustom.NotificationRow;
+import my.project.qri3a.repositories.UserPreferenceRepository;
+
+/**
+ * Diffusion en arrière-plan des alertes de nouvelle annonce.
+ * L'approbation ne fait que découper les destinataires en tranches, déposées dans la file de travaux après son
+ * commit ; chaque tranche est ensuite traitée par n'importe quelle instance : langues et fourchettes de prix chargées
+ * en une requête chacune, messages rendus en mémoire, notifications insérées par lots JDBC dans une transaction,
+ * puis poussées par WebSocket.
+ * Les identifiants des notifications sont dérivés de la tranche et du destinataire : une tranche rejouée après un
+ * échec n'insère ni ne pousse deux fois la même notification.
+ */
+@Service
+@Slf4j
+public class NotificationFanoutService implements JobHandler<NotificationFanoutService.FanoutChunk> {
+
+    public static final JobType<FanoutChunk> JOB = new JobType<>("notification-fanout", FanoutChunk.class);
+
+    private static final String LANGUAGE_KEY = "lang";
+    private static final String DEFAULT_LANGUAGE = "fr";
+
+    private final NotificationRepository notificationRepository;
+    private final UserPreferenceRepository userPreferenceRepository;
+    private final NotificationPreferenceRepository notificationPreferenceRepository;
+    private final NotificationRelay notificationRelay;
+    private final NotificationMapper notificationMapper;
+    private final ImageMapper imageMapper;
+    private final JobQueue jobQueue;
+    private final UnreadNotificationCounter unreadNotificationCounter;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Counter deliveredCounter;
+
+    public NotificationFanoutService(NotificationRepository notificationRepository,
+                                     UserPreferenceRepository userPreferenceRepository,
+                                     NotificationPreferenceRepository notificationPreferenceRepository,
+                                     NotificationRelay notificationRelay,
+                                     NotificationMapper notificationMapper,
+                                     ImageMapper imageMapper,
+                                     JobQueue jobQueue,
+                                     UnreadNotificationCounter unreadNotificationCounter,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.notifications.fanout.chunk-size:500}") int chunkSize) {
+        this.notificationRepository = notificationRepository;
+        this.userPreferenceRepository = userPreferenceRepository;
+        this.notificationPreferenceRepository = notificationPreferenceRepository;
+        this.notificationRelay = notificationRelay;
+        this.notificationMapper = notificationMapper;
+        this.imageMapper = imageMapper;
+        this.jobQueue = jobQueue;
+        this.unreadNotificationCounter = unreadNotificationCounter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+
+        this.deliveredCounter = Counter.builder("notifications.fanout.delivered")
+                .description("Notifications d'alerte enregistrées")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Alerte à diffuser, figée au moment de l'approbation
+     */
+    public record ListingAlert(UUID productId, String title, ProductCategory category, ImageResponseDTO firstProductImage) {
+    }
+
+    /**
+     * Tranche de destinataires d'une alerte
+     * @param batchId Identifiant de la diffusion, dont sont dérivés les identifiants des notifications
+     */
+    public record FanoutChunk(ListingAlert alert, UUID batchId, List<UUID> recipientIds) {
+    }
+
+    private record PriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+    }
+
+    @Override
+    public JobType<FanoutChunk> type() {
+        return JOB;
+    }
+
+    /**
+     * Programme la diffusion d'une nouvelle annonce, après le commit de la transaction en cours.
+     * Ne fait aucun accès à la base en dehors de la lecture de la première image du produit.
+     * @return Nombre de destinataires programmés
+     */
+    public int submit(Product product, Collection<UUID> recipientIds) {
+        if (recipientIds.isEmpty()) {
+            return 0;
+        }
+        ImageResponseDTO firstImage = product.getImages() == null || product.getImages().isEmpty()
+                ? null : imageMapper.toDTO(product.getImages().get(0));
+        ListingAlert alert = new ListingAlert(product.getId(), product.getTitle(), product.getCategory(), firstImage);
+        UUID batchId = UUID.randomUUID();
+        List<UUID> recipients = List.copyOf(recipientIds);
+        for (int from = 0; from < recipients.size(); from += chunkSize) {
+            List<UUID> chunk = recipients.subList(from, Math.min(from + chunkSize, recipients.size()));
+            jobQueue.enqueueAfterCommit(JOB, new FanoutChunk(alert, batchId, List.copyOf(chunk)));
+        }
+        return recipients.size();
+    }
+
+    @Override
+    public void handle(FanoutChunk chunk) {
+        ListingAlert alert = chunk.alert();
+        List<UUID> recipientIds = chunk.recipientIds();
+
+        Map<UUID, String> languages = new HashMap<>();
+        for (Object[] row : userPreferenceRepository.findValuesByKeyAndUserIds(LANGUAGE_KEY, recipientIds)) {
+            languages.put((UUID) row[0], (String) row[1]);
+        }
+        // Comme auparavant, la première préférence de l'utilisateur fournit la fourchette de prix du message
+        Map<UUID, PriceRange> priceRanges = new HashMap<>();
+        for (Object[] row : notificationPreferenceRepository.findPriceRangesByUserIds(recipientIds)) {
+            priceRanges.putIfAbsent((UUID) row[0], new PriceRange((BigDecimal) row[1], (BigDecimal) row[2]));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, String> categoryNames = new HashMap<>();
+        List<NotificationRow> rows = new ArrayList<>(recipientIds.size());
+        for (UUID userId : recipientIds) {
+            String lang = languages.getOrDefault(userId, DEFAULT_LANGUAGE);
+            String categoryName = categoryNames.computeIfAbsent(lang, l -> getTranslatedCategoryName(alert.category(), l));
+            String body = buildNotificationMessage(alert, categoryName, priceRanges.get(userId), lang);
+            UUID notificationId = UUID.nameUUIDFromBytes((chunk.batchId() + ":" + userId).getBytes(StandardCharsets.UTF_8));
+            rows.add(new NotificationRow(notificationId, userId, alert.productId(), alert.category(), body, now));
+        }
+
+        long writeStartedAt = System.nanoTime();
+        List<NotificationRow> inserted = transactionTemplate.execute(status -> notificationRepository.insertAll(rows));
+
+        // Poussées seulement une fois la tranche enregistrée ; un échec d'envoi ne rejoue pas la tranche
+        Map<UUID, Long> unreadCounts = unreadNotificationCounter.increment(
+                inserted.stream().map(NotificationRow::userId).toList(), writeStartedAt);
+        List<NotificationResponseDTO> dtos = new ArrayList<>(inserted.size());
+        for (NotificationRow row : inserted) {
+            NotificationResponseDTO dto = notificationMapper.toDTO(row, alert.firstProductImage());
+            dto.setUnreadCount(unreadCounts.get(row.userId()));
+            dtos.add(dto);
+        }
+        notificationRelay.sendNotifications(dtos);
+        deliveredCounter.increment(inserted.size());
+        log.debug("Delivered {} of {} alerts for product {}", inserted.size(), recipientIds.size(), alert.productId());
+    }
+
+    /**
+     * Construit le message de notification dans la langue demandée
+     */
+    private String buildNotificationMessage(ListingAlert alert, String categoryName, PriceRange preference, String lang) {
+        String baseMessage;
+
+        switch (lang) {
+            case "en":
+                baseMessage = String.format(
+                        "A new listing matching your criteria has been published: %s matches your search (%s",
+                        alert.title(), categoryName);
+
+                // Ajouter les détails de prix si disponibles
+                if (preference != null && preference.minPrice() != null && preference.maxPrice() != null) {
+                    baseMessage += String.format(", price between %d MAD and %d MAD",
+                            preference.minPrice().intValue(),
+                            preference.maxPrice().intValue());
+                }
+                break;
+
+            case "arm":
+                baseMessage = String.format(
+                        "إعلان جديد يتوافق مع معاييرك تم نشره: %s يتطابق مع بحثك (%s",
+                        alert.title(), categoryName);
+
+                // Ajouter les détails de prix si disponibles
+                if (preference != null && preference.minPrice() != null && preference.maxPrice() != null) {
+                    baseMessage += String.format("، السعر بين %d درهم و %d درهم",
+                            preference.minPrice().intValue(),
+                            preference.maxPrice().intValue());
+                }
+                break;
+
+            case "fr":
+            default:
+                baseMessage = String.format(
+                        "Une nouvelle annonce correspondant à vos critères a été publiée: %s correspond à votre recherche (%s",
+                        alert.title(), categoryName);
+
+                // Ajouter les détails de prix si disponibles
+                if (preference != null && preference.minPrice() != null && preference.maxPrice() != null) {
+                    baseMessage += String.format(", prix entre %d MAD et %d MAD",
+                            preference.minPrice().intValue(),
+                            preference.maxPrice().intValue());
+                }
+                break;
+        }
+
+        return baseMessage + ")";
+    }
+
+    /**
+     * Traduit le nom de la catégorie selon la langue demandée
+     */
+    private String getTranslatedCategoryName(Enum<?> category, String lang) {
+        String categoryString = category.toString();
+
+        // Français (par défaut)
+        if ("fr".equals(lang)) {
+            return getCategoryDisplayNameFr(categoryString);
+        }
+        // Anglais
+        else if ("en".equals(lang)) {
+            return getCategoryDisplayNameEn(categoryString);
+        }
+        // Arabe marocain
+        else if ("arm".equals(lang)) {
+            return getCategoryDisplayNameArm(categoryString);
+        }
+        // Autre langue non prise en charge -> français par défaut
+        else {
+            return getCategoryDisplayNameFr(categoryString);
+        }
+    }
+
+    /**
+     * Nom des catégories en français
+     */
+    private String getCategoryDisplayNameFr(String categoryString) {
+        switch (categoryString) {
+            case "SMARTPHONES_AND_TELEPHONES":
+                return "Smartphones et Téléphones";
+            case "TABLETS_AND_E_BOOKS":
+                return "Tablettes et E-books";
+            case "LAPTOPS":
+                return "Ordinateurs Portables";
+            case "DESKTOP_COMPUTERS":
+                return "Ordinateurs de Bureau";
+            case "TELEVISIONS":
+                return "Télévisions";
+            case "ELECTRO_MENAGE":
+                return "Électroménager";
+            case "ACCESSORIES_FOR_SMARTPHONES_AND_TABLETS":
+                return "Accessoires pour Smartphones et Tablettes";
+            case "SMARTWATCHES_AND_ACCESSORIES":
+                return "Smartwatches et Accessoires";
+            case "AUDIO_AND_HIFI":
+                return "Audio et Hi-Fi";
+            case "COMPUTER_COMPONENTS":
+                return "Composants Informatiques";
+            case "STORAGE_AND_PERIPHERALS":
+                return "Stockage et Périphériques";
+            case "PRINTERS_AND_SCANNERS":
+                return "Imprimantes et Scanners";
+            case "DRONES_AND_ACCESSORIES":
+                return "Drones et Accessoires";
+            case "NETWORK_EQUIPMENT":
+                return "Équipement Réseau";
+            case "SMART_HOME_DEVICES":
+                return "Appareils de Maison Intelligente";
+            case "GAMING_ACCESSORIES":
+                return "Accessoires de Jeu";
+            case "PHOTO_AND_VIDEO_EQUIPMENT":
+                return "Équipement Photo et Vidéo";
+            default:
+                return categoryString.replace("_", " ");
+        }
+    }
+
+    /**
+     * Nom des catégories en anglais
+     */
+    private String getCategoryDisplayNameEn(String categoryString) {
+        switch (categoryString) {
+            case "SMARTPHONES_AND_TELEPHONES":
+                return "Smartphones and Phones";
+            case "TABLETS_AND_E_BOOKS":
+                return "Tablets and E-books";
+            case "LAPTOPS":
+                return "Laptops";
+            case "DESKTOP_COMPUTERS":
+                return "Desktop Computers";
+            case "TELEVISIONS":
+                return "Televisions";
+            case "ELECTRO_MENAGE":
+                return "Home Appliances";
+            case "ACCESSORIES_FOR_SMARTPHONES_AND_TABLETS":
+                return "Accessories for Smartphones and Tablets";
+            case "SMARTWATCHES_AND_ACCESSORIES":
+                return "Smartwatches and Accessories";
+            case "AUDIO_AND_HIFI":
+                return "Audio and Hi-Fi";
+            case "COMPUTER_COMPONENTS":
+                return "Computer Components";
+            case "STORAGE_AND_PERIPHERALS":
+                return "Storage and Peripherals";
+            case "PRINTERS_AND_SCANNERS":
+                return "Printers and Scanners";
+            case "DRONES_AND_ACCESSORIES":
+                return "Drones and Accessories";
+            case "NETWORK_EQUIPMENT":
+                return "Network Equipment";
+            case "SMART_HOME_DEVICES":
+                return "Smart Home Devices";
+            case "GAMING_ACCESSORIES":
+                return "Gaming Accessories";
+            case "PHOTO_AND_VIDEO_EQUIPMENT":
+                return "Photo and Video Equipment";
+            default:
+                return categoryString.replace("_", " ");
+        }
+    }
+
+    /**
+     * Nom des catégories en arabe marocain
+     */
+    private String getCategoryDisplayNameArm(String categoryString) {
+        switch (categoryString) {
+            case "SMARTPHONES_AND_TELEPHONES":
+                return "الهواتف الذكية";
+            case "TABLETS_AND_E_BOOKS":
+                return "الأجهزة اللوحية والكتب الإلكترونية";
+            case "LAPTOPS":
+                return "أجهزة الكمبيوتر المحمولة";
+            case "DESKTOP_COMPUTERS":
+                return "أجهزة الكمبيوتر المكتبية";
+            case "TELEVISIONS":
+                return "أجهزة التلفزيون";
+            case "ELECTRO_MENAGE":
+                return "الأجهزة المنزلية";
+            case "ACCESSORIES_FOR_SMARTPHONES_AND_TABLETS":
+                return "إكسسوارات للهواتف الذكية والأجهزة اللوحية";
+            case "SMARTWATCHES_AND_ACCESSORIES":
+                return "الساعات الذكية والإكسسوارات";
+            case "AUDIO_AND_HIFI":
+                return "الصوت والهاي فاي";
+            case "COMPUTER_COMPONENTS":
+                return "مكونات الكمبيوتر";
+            case "STORAGE_AND_PERIPHERALS":
+                return "التخزين والأجهزة الطرفية";
+            case "PRINTERS_AND_SCANNERS":
+                return "الطابعات والماسحات الضوئية";
+            case "DRONES_AND_ACCESSORIES":
+                return "الطائرات بدون طيار والإكسسوارات";
+            case "NETWORK_EQUIPMENT":
+                return "معدات الشبكة";
+            case "SMART_HOME_DEVICES":
+                return "أجهزة المنزل الذكية";
+            case "GAMING_ACCESSORIES":
+                return "إكسسوارات الألعاب";
+            case "PHOTO_AND_VIDEO_EQUIPMENT":
+                return "معدات الصور والفيديو";
+            default:
+                return categoryString.replace("_", " ");
+        }
+    }
+}
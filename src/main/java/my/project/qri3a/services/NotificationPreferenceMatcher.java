@@ -0,0 +1,316 @@
+package my.project.qri3a.services;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.entities.NotificationPreference;
+import my.project.qri3a.entities.Product;
+import my.project.qri3a.enums.ProductCategory;
+import my.project.qri3a.enums.ProductCondition;
+import my.project.qri3a.repositories.NotificationPreferenceRepository;
+import my.project.qri3a.utils.TransactionHooks;
+
+/**
+ * Index en mémoire des préférences de notification, utilisé à l'approbation d'un produit.
+ * Les préférences sont rangées par (catégorie, état, ville normalisée), un critère absent étant rangé sous la valeur
+ * nulle ; un produit ne consulte donc qu'au plus huit groupes. Dans chaque groupe, les fourchettes de prix forment
+ * un arbre d'intervalles statique (triées par prix minimal, augmentées du plus grand prix maximal de chaque
+ * sous-arbre), qui ne visite que les branches pouvant contenir le prix du produit.
+ * Les groupes sont immuables : une modification de préférence reconstruit le groupe concerné après le commit et
+ * les lectures se font sans verrou. Un rechargement périodique intègre les modifications des autres instances ;
+ * les modifications appliquées pendant qu'il lit la base sont rejouées après le remplacement, la lecture pouvant
+ * avoir précédé leur commit.
+ */
+@Service
+@Slf4j
+public class NotificationPreferenceMatcher {
+
+    private final NotificationPreferenceRepository notificationPreferenceRepository;
+    private final ConcurrentHashMap<GroupKey, PriceIndex> groups = new ConcurrentHashMap<>();
+    // Source des groupes, modifiée sous le verrou de l'instance
+    private final Map<GroupKey, Map<UUID, Criteria>> criteriaByGroup = new HashMap<>();
+    private final Map<UUID, Criteria> criteriaById = new HashMap<>();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    // Modifications appliquées depuis le début du rechargement en cours, null hors rechargement
+    private List<Runnable> changesDuringReload;
+
+    private volatile boolean ready;
+
+    public NotificationPreferenceMatcher(NotificationPreferenceRepository notificationPreferenceRepository,
+                                         MeterRegistry meterRegistry) {
+        this.notificationPreferenceRepository = notificationPreferenceRepository;
+
+        Gauge.builder("notifications.preferences.indexed", this, matcher -> matcher.size())
+                .description("Préférences de notification indexées en mémoire")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true quand l'index a été chargé et peut remplacer la requête SQL
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Identifiants des utilisateurs dont au moins une préférence correspond au produit.
+     * Mêmes règles que {@link NotificationPreferenceRepository#findInterestedUsersByProductCriteria} : un critère absent
+     * accepte tout, l'état BOTH accepte les deux états, la ville est comparée sans casse.
+     */
+    public Set<UUID> findInterestedUserIds(Product product) {
+        Set<UUID> userIds = new HashSet<>();
+        String city = normalizeCity(product.getCity());
+        Set<GroupKey> keys = new HashSet<>();
+        for (ProductCategory category : Arrays.asList(product.getCategory(), null)) {
+            for (ProductCondition condition : Arrays.asList(normalizeCondition(product.getCondition()), null)) {
+                for (String groupCity : Arrays.asList(city, null)) {
+                    keys.add(new GroupKey(category, condition, groupCity));
+                }
+            }
+        }
+        for (GroupKey key : keys) {
+            PriceIndex index = groups.get(key);
+            if (index != null) {
+                index.collect(product.getPrice(), userIds);
+            }
+        }
+        return userIds;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.notifications.matcher.reload-interval-ms:300000}",
+            fixedDelayString = "${app.notifications.matcher.reload-interval-ms:300000}")
+    public void reload() {
+        if (!reloadLock.tryLock()) {
+            return;
+        }
+        synchronized (this) {
+            changesDuringReload = new ArrayList<>();
+        }
+        try {
+            List<Criteria> loaded = new ArrayList<>();
+            for (Object[] row : notificationPreferenceRepository.findAllCriteria()) {
+                loaded.add(new Criteria((UUID) row[0], (UUID) row[1], (ProductCategory) row[2], (ProductCondition) row[3],
+                        (BigDecimal) row[4], (BigDecimal) row[5], (String) row[6]));
+            }
+
+            synchronized (this) {
+                criteriaById.clear();
+                criteriaByGroup.clear();
+                for (Criteria criteria : loaded) {
+                    criteriaById.put(criteria.id(), criteria);
+                    criteriaByGroup.computeIfAbsent(criteria.groupKey(), k -> new HashMap<>()).put(criteria.id(), criteria);
+                }
+                Map<GroupKey, PriceIndex> rebuilt = new HashMap<>();
+                criteriaByGroup.forEach((key, members) -> rebuilt.put(key, new PriceIndex(members.values())));
+                groups.putAll(rebuilt);
+                groups.keySet().retainAll(rebuilt.keySet());
+                // Idempotentes, elles sont rejouées dans leur ordre d'application
+                changesDuringReload.forEach(Runnable::run);
+            }
+            ready = true;
+            log.info("Notification preference matcher loaded {} preferences in {} groups", loaded.size(), criteriaByGroup.size());
+        } catch (DataAccessException e) {
+            // Sans index chargé, la recherche des utilisateurs intéressés repasse par la base
+            log.error("Error loading notification preferences into the matcher: {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                changesDuringReload = null;
+            }
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Indexe une préférence créée ou modifiée, après le commit de la transaction en cours
+     */
+    public void onSaved(NotificationPreference preference) {
+        Criteria criteria = new Criteria(preference.getId(), preference.getUser().getId(), preference.getProductCategory(),
+                preference.getProductState(), preference.getMinPrice(), preference.getMaxPrice(), preference.getCity());
+        TransactionHooks.afterCommit(() -> apply(() -> put(criteria)));
+    }
+
+    /**
+     * Retire une préférence supprimée, après le commit de la transaction en cours
+     */
+    public void onDeleted(UUID preferenceId) {
+        TransactionHooks.afterCommit(() -> apply(() -> remove(List.of(preferenceId))));
+    }
+
+    /**
+     * Retire toutes les préférences d'un utilisateur supprimé, après le commit de la transaction en cours
+     */
+    public void onUserDeleted(UUID userId) {
+        TransactionHooks.afterCommit(() -> apply(() -> remove(criteriaById.values().stream()
+                .filter(criteria -> criteria.userId().equals(userId))
+                .map(Criteria::id)
+                .toList())));
+    }
+
+    private synchronized int size() {
+        return criteriaById.size();
+    }
+
+    /**
+     * Applique une modification, et la retient pour la rejouer si un rechargement est en cours
+     */
+    private synchronized void apply(Runnable change) {
+        change.run();
+        if (changesDuringReload != null) {
+            changesDuringReload.add(change);
+        }
+    }
+
+    private void put(Criteria criteria) {
+        Criteria previous = criteriaById.put(criteria.id(), criteria);
+        if (previous != null && !previous.groupKey().equals(criteria.groupKey())) {
+            detach(previous);
+        }
+        criteriaByGroup.computeIfAbsent(criteria.groupKey(), k -> new HashMap<>()).put(criteria.id(), criteria);
+        rebuildGroup(criteria.groupKey());
+    }
+
+    private void remove(Collection<UUID> preferenceIds) {
+        for (UUID preferenceId : preferenceIds) {
+            Criteria previous = criteriaById.remove(preferenceId);
+            if (previous != null) {
+                detach(previous);
+            }
+        }
+    }
+
+    private void detach(Criteria criteria) {
+        Map<UUID, Criteria> members = criteriaByGroup.get(criteria.groupKey());
+        if (members != null) {
+            members.remove(criteria.id());
+            rebuildGroup(criteria.groupKey());
+        }
+    }
+
+    private void rebuildGroup(GroupKey key) {
+        Map<UUID, Criteria> members = criteriaByGroup.get(key);
+        if (members == null || members.isEmpty()) {
+            criteriaByGroup.remove(key);
+            groups.remove(key);
+        } else {
+            groups.put(key, new PriceIndex(members.values()));
+        }
+    }
+
+    private static String normalizeCity(String city) {
+        return city == null || city.trim().isEmpty() ? null : city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static ProductCondition normalizeCondition(ProductCondition condition) {
+        return condition == ProductCondition.BOTH ? null : condition;
+    }
+
+    private record GroupKey(ProductCategory category, ProductCondition condition, String city) {
+    }
+
+    private record Criteria(UUID id, UUID userId, ProductCategory category, ProductCondition condition,
+                            BigDecimal minPrice, BigDecimal maxPrice, String city) {
+
+        GroupKey groupKey() {
+            return new GroupKey(category, normalizeCondition(condition), normalizeCity(city));
+        }
+    }
+
+    /**
+     * Arbre d'intervalles statique sur un tableau trié par prix minimal : le nœud d'une tranche [lo, hi) est son
+     * milieu, qui porte le plus grand prix maximal de la tranche. Une borne absente vaut l'infini.
+     */
+    private static final class PriceIndex {
+        private final UUID[] userIds;
+        private final double[] minPrices;
+        private final double[] maxPrices;
+        private final double[] subtreeMaxPrices;
+
+        private PriceIndex(Collection<Criteria> members) {
+            List<Criteria> sorted = new ArrayList<>(members);
+            sorted.sort(Comparator.comparingDouble(criteria -> lower(criteria.minPrice())));
+            int size = sorted.size();
+            this.userIds = new UUID[size];
+            this.minPrices = new double[size];
+            this.maxPrices = new double[size];
+            this.subtreeMaxPrices = new double[size];
+            for (int i = 0; i < size; i++) {
+                Criteria criteria = sorted.get(i);
+                userIds[i] = criteria.userId();
+                minPrices[i] = lower(criteria.minPrice());
+                maxPrices[i] = upper(criteria.maxPrice());
+            }
+            buildSubtreeMax(0, size);
+        }
+
+        private void collect(BigDecimal price, Set<UUID> result) {
+            if (price == null) {
+                // Comme en SQL, un produit sans prix ne correspond qu'aux préférences sans fourchette
+                for (int i = 0; i < userIds.length; i++) {
+                    if (minPrices[i] == Double.NEGATIVE_INFINITY && maxPrices[i] == Double.POSITIVE_INFINITY) {
+                        result.add(userIds[i]);
+                    }
+                }
+                return;
+            }
+            collect(price.doubleValue(), 0, userIds.length, result);
+        }
+
+        private void collect(double price, int lo, int hi, Set<UUID> result) {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (subtreeMaxPrices[mid] < price) {
+                return;
+            }
+            collect(price, lo, mid, result);
+            if (minPrices[mid] > price) {
+                return; // Tous les intervalles suivants commencent après le prix
+            }
+            if (maxPrices[mid] >= price) {
+                result.add(userIds[mid]);
+            }
+            collect(price, mid + 1, hi, result);
+        }
+
+        private double buildSubtreeMax(int lo, int hi) {
+            if (lo >= hi) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            int mid = (lo + hi) >>> 1;
+            double max = Math.max(maxPrices[mid], Math.max(buildSubtreeMax(lo, mid), buildSubtreeMax(mid + 1, hi)));
+            subtreeMaxPrices[mid] = max;
+            return max;
+        }
+
+        private static double lower(BigDecimal minPrice) {
+            return minPrice == null ? Double.NEGATIVE_INFINITY : minPrice.doubleValue();
+        }
+
+        private static double upper(BigDecimal maxPrice) {
+            return maxPrice == null ? Double.POSITIVE_INFINITY : maxPrice.doubleValue();
+        }
+    }
+}
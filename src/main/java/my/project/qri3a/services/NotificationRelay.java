@@ -0,0 +1,380 @@
+package my.project.qri3a.services;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.dtos.responses.NotificationResponseDTO;
+import my.project.qri3a.dtos.responses.UnreadCountDTO;
+import my.project.qri3a.entities.Notification;
+import my.project.qri3a.mappers.NotificationMapper;
+import my.project.qri3a.repositories.NotificationRepository;
+
+/**
+ * Envoi des notifications WebSocket (et SSE) à toutes les instances.
+ * Le broker simple ne connaît que les sessions de l'instance qui envoie : le message est remis localement, puis
+ * publié sur un canal Postgres (NOTIFY) que chaque instance écoute pour le remettre à ses propres sessions.
+ * Les messages publiés ne portent que l'identifiant de la notification et le nombre de non lues ; ils sont regroupés
+ * sous la limite de taille de Postgres. L'instance qui les reçoit recale ses compteurs de non lues, puis ne recharge,
+ * en une requête, que les notifications des utilisateurs connectés chez elle (session WebSocket ou flux SSE).
+ * L'écoute utilise une connexion dédiée, hors du pool, rouverte avec un délai croissant après une coupure ; les
+ * messages publiés pendant une coupure sont perdus pour cette instance (les clients se recalent via l'API).
+ */
+@Service
+@Slf4j
+public class NotificationRelay {
+
+    public static final String NOTIFICATIONS_DESTINATION = "/notifications";
+    public static final String UNREAD_COUNT_DESTINATION = "/notifications/unread-count";
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry simpUserRegistry;
+    private final NotificationRepository notificationRepository;
+    private final NotificationMapper notificationMapper;
+    private final NotificationStreamService notificationStreamService;
+    private final UnreadNotificationCounter unreadNotificationCounter;
+    private final ObjectMapper objectMapper;
+    private final DataSourceProperties dataSourceProperties;
+    private final TransactionTemplate readTransaction;
+    private final UUID nodeId = UUID.randomUUID();
+    private final boolean enabled;
+    private final String channel;
+    private final int maxPayloadBytes;
+    private final int pollTimeoutMs;
+    private final long keepaliveIntervalMs;
+    private final long reconnectInitialDelayMs;
+    private final long reconnectMaxDelayMs;
+    private final Counter publishedCounter;
+    private final Counter publishFailuresCounter;
+    private final Counter receivedCounter;
+    private final Counter skippedCounter;
+    private final Counter pushFailuresCounter;
+
+    private volatile boolean running;
+    private volatile boolean listening;
+    private Thread listenerThread;
+
+    public NotificationRelay(SimpMessagingTemplate messagingTemplate,
+                             SimpUserRegistry simpUserRegistry,
+                             NotificationRepository notificationRepository,
+                             NotificationMapper notificationMapper,
+                             NotificationStreamService notificationStreamService,
+                             UnreadNotificationCounter unreadNotificationCounter,
+                             ObjectMapper objectMapper,
+                             DataSourceProperties dataSourceProperties,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.websocket.relay.enabled:true}") boolean enabled,
+                             @Value("${app.websocket.relay.channel:qri3a_user_messages}") String channel,
+                             @Value("${app.websocket.relay.max-payload-bytes:7900}") int maxPayloadBytes,
+                             @Value("${app.websocket.relay.poll-timeout-ms:1000}") int pollTimeoutMs,
+                             @Value("${app.websocket.relay.keepalive-interval-ms:30000}") long keepaliveIntervalMs,
+                             @Value("${app.websocket.relay.reconnect-initial-delay-ms:1000}") long reconnectInitialDelayMs,
+                             @Value("${app.websocket.relay.reconnect-max-delay-ms:30000}") long reconnectMaxDelayMs) {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid notification relay channel name: " + channel);
+        }
+        this.messagingTemplate = messagingTemplate;
+        this.simpUserRegistry = simpUserRegistry;
+        this.notificationRepository = notificationRepository;
+        this.notificationMapper = notificationMapper;
+        this.notificationStreamService = notificationStreamService;
+        this.unreadNotificationCounter = unreadNotificationCounter;
+        this.objectMapper = objectMapper;
+        this.dataSourceProperties = dataSourceProperties;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.channel = channel;
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.pollTimeoutMs = pollTimeoutMs;
+        this.keepaliveIntervalMs = keepaliveIntervalMs;
+        this.reconnectInitialDelayMs = reconnectInitialDelayMs;
+        this.reconnectMaxDelayMs = reconnectMaxDelayMs;
+
+        Gauge.builder("notifications.relay.listening", this, relay -> relay.listening ? 1 : 0)
+                .description("1 si l'écoute du canal des autres instances est active")
+                .register(meterRegistry);
+        this.publishedCounter = Counter.builder("notifications.relay.published")
+                .description("Messages publiés pour les autres instances")
+                .register(meterRegistry);
+        this.publishFailuresCounter = Counter.builder("notifications.relay.publish.failures")
+                .description("Lots de messages dont la publication a échoué (remis localement seulement)")
+                .register(meterRegistry);
+        this.receivedCounter = Counter.builder("notifications.relay.received")
+                .description("Messages reçus des autres instances")
+                .register(meterRegistry);
+        this.skippedCounter = Counter.builder("notifications.relay.skipped")
+                .description("Messages reçus pour des utilisateurs sans session sur cette instance")
+                .register(meterRegistry);
+        this.pushFailuresCounter = Counter.builder("notifications.push.failures")
+                .description("Envois WebSocket locaux en échec")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Message échangé entre instances : une notification à recharger, ou seulement un nombre de non lues
+     * @param notificationId Null pour un simple nombre de non lues
+     */
+    record Delivery(UUID userId, UUID notificationId, Long unreadCount) {
+    }
+
+    record Envelope(UUID origin, List<Delivery> deliveries) {
+    }
+
+    /**
+     * Envoie des notifications à leurs destinataires, sur toutes les instances. À appeler après le commit.
+     */
+    public void sendNotifications(List<NotificationResponseDTO> notifications) {
+        List<Delivery> deliveries = new ArrayList<>(notifications.size());
+        for (NotificationResponseDTO dto : notifications) {
+            deliverLocally(dto);
+            deliveries.add(new Delivery(dto.getUserId(), dto.getId(), dto.getUnreadCount()));
+        }
+        publish(deliveries);
+    }
+
+    public void sendNotification(NotificationResponseDTO notification) {
+        sendNotifications(List.of(notification));
+    }
+
+    /**
+     * Envoie le nombre de notifications non lues d'un utilisateur, sur toutes les instances
+     */
+    public void sendUnreadCount(UUID userId, long unreadCount) {
+        pushLocally(userId, UNREAD_COUNT_DESTINATION, new UnreadCountDTO(unreadCount));
+        publish(List.of(new Delivery(userId, null, unreadCount)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "notification-relay-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void publish(List<Delivery> deliveries) {
+        if (!enabled || deliveries.isEmpty()) {
+            return;
+        }
+        try {
+            notificationRepository.publish(channel, toPayloads(deliveries));
+            publishedCounter.increment(deliveries.size());
+        } catch (DataAccessException | JsonProcessingException e) {
+            publishFailuresCounter.increment();
+            log.error("Error publishing {} WebSocket messages to other nodes: {}", deliveries.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Regroupe les messages en enveloppes dont la taille JSON reste sous la limite
+     */
+    private List<String> toPayloads(List<Delivery> deliveries) throws JsonProcessingException {
+        int overhead = objectMapper.writeValueAsBytes(new Envelope(nodeId, List.of())).length;
+        List<String> payloads = new ArrayList<>();
+        List<Delivery> current = new ArrayList<>();
+        int size = overhead;
+        for (Delivery delivery : deliveries) {
+            // Virgule de séparation comprise
+            int deliverySize = objectMapper.writeValueAsBytes(delivery).length + 1;
+            if (!current.isEmpty() && size + deliverySize > maxPayloadBytes) {
+                payloads.add(objectMapper.writeValueAsString(new Envelope(nodeId, current)));
+                current = new ArrayList<>();
+                size = overhead;
+            }
+            current.add(delivery);
+            size += deliverySize;
+        }
+        if (!current.isEmpty()) {
+            payloads.add(objectMapper.writeValueAsString(new Envelope(nodeId, current)));
+        }
+        return payloads;
+    }
+
+    private void listen() {
+        long reconnectDelayMs = reconnectInitialDelayMs;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                listening = true;
+                reconnectDelayMs = reconnectInitialDelayMs;
+                log.info("Notification relay listening on channel {} (node {})", channel, nodeId);
+
+                long lastCheck = System.currentTimeMillis();
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMs);
+                    if (notifications != null && notifications.length > 0) {
+                        deliver(notifications);
+                    }
+                    // Une connexion coupée sans erreur réseau ne se voit qu'en l'utilisant
+                    if (System.currentTimeMillis() - lastCheck >= keepaliveIntervalMs) {
+                        try (Statement statement = connection.createStatement()) {
+                            statement.execute("SELECT 1");
+                        }
+                        lastCheck = System.currentTimeMillis();
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Notification relay connection lost, reconnecting in {} ms: {}", reconnectDelayMs, e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in notification relay listener, reconnecting in {} ms", reconnectDelayMs, e);
+            } finally {
+                listening = false;
+            }
+
+            try {
+                Thread.sleep(reconnectDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            reconnectDelayMs = Math.min(reconnectDelayMs * 2, reconnectMaxDelayMs);
+        }
+        log.info("Notification relay listener stopped");
+    }
+
+    private void deliver(PGNotification[] notifications) {
+        List<Delivery> deliveries = new ArrayList<>();
+        for (PGNotification notification : notifications) {
+            try {
+                Envelope envelope = objectMapper.readValue(notification.getParameter(), Envelope.class);
+                if (!nodeId.equals(envelope.origin())) {
+                    deliveries.addAll(envelope.deliveries());
+                }
+            } catch (JsonProcessingException e) {
+                log.warn("Ignoring malformed notification relay message ({} bytes): {}",
+                        notification.getParameter().getBytes(StandardCharsets.UTF_8).length, e.getMessage());
+            }
+        }
+        if (deliveries.isEmpty()) {
+            return;
+        }
+        receivedCounter.increment(deliveries.size());
+
+        // Les compteurs de non lues de cette instance sont recalés pour tous les utilisateurs, connectés ou non
+        List<Delivery> local = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            if (delivery.unreadCount() != null) {
+                unreadNotificationCounter.update(delivery.userId(), delivery.unreadCount());
+            } else {
+                unreadNotificationCounter.invalidate(delivery.userId());
+            }
+            if (hasLocalSession(delivery.userId())) {
+                local.add(delivery);
+            }
+        }
+        skippedCounter.increment(deliveries.size() - local.size());
+        if (local.isEmpty()) {
+            return;
+        }
+
+        // Les notifications des utilisateurs connectés ici sont rechargées en une requête
+        Set<UUID> notificationIds = new LinkedHashSet<>();
+        local.forEach(delivery -> {
+            if (delivery.notificationId() != null) {
+                notificationIds.add(delivery.notificationId());
+            }
+        });
+        Map<UUID, NotificationResponseDTO> loaded = new HashMap<>();
+        if (!notificationIds.isEmpty()) {
+            try {
+                readTransaction.executeWithoutResult(status -> {
+                    for (Notification notification : notificationRepository.findWithProductImagesByIdIn(notificationIds)) {
+                        loaded.put(notification.getId(), notificationMapper.toDTO(notification));
+                    }
+                });
+            } catch (DataAccessException e) {
+                log.error("Error loading {} relayed notifications: {}", notificationIds.size(), e.getMessage());
+            }
+        }
+
+        for (Delivery delivery : local) {
+            if (delivery.notificationId() == null) {
+                pushLocally(delivery.userId(), UNREAD_COUNT_DESTINATION, new UnreadCountDTO(delivery.unreadCount()));
+                continue;
+            }
+            NotificationResponseDTO dto = loaded.get(delivery.notificationId());
+            if (dto != null) {
+                dto.setUnreadCount(delivery.unreadCount());
+                deliverLocally(dto);
+            }
+        }
+    }
+
+    /**
+     * @return true si l'utilisateur a une session WebSocket ou un flux SSE ouvert sur cette instance
+     */
+    private boolean hasLocalSession(UUID userId) {
+        return simpUserRegistry.getUser(userId.toString()) != null || notificationStreamService.hasSubscribers(userId);
+    }
+
+    /**
+     * Remet une notification aux sessions WebSocket et aux flux SSE ouverts sur cette instance
+     */
+    private void deliverLocally(NotificationResponseDTO dto) {
+        pushLocally(dto.getUserId(), NOTIFICATIONS_DESTINATION, dto);
+        notificationStreamService.publish(dto);
+    }
+
+    private void pushLocally(UUID userId, String destination, Object payload) {
+        try {
+            messagingTemplate.convertAndSendToUser(userId.toString(), destination, payload);
+        } catch (MessagingException e) {
+            pushFailuresCounter.increment();
+            log.warn("Error pushing {} to user {}: {}", destination, userId, e.getMessage());
+        }
+    }
+}
@@ -16,5 +16,6 @@ public interface NotificationService {
     void deleteNotification(UUID id);
     Page<Notification> getMyNotifications(User user, Pageable pageable);
     long getUnreadCount(User user);
+    long getUnreadCountByEmail(String email);
     void markAllAsSeen(User user);
 }
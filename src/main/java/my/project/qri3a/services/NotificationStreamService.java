@@ -0,0 +1,451 @@
+package my.project.qri3a.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.dtos.responses.NotificationResponseDTO;
+import my.project.qri3a.entities.Notification;
+import my.project.qri3a.mappers.NotificationMapper;
+import my.project.qri3a.repositories.NotificationRepository;
+
+/**
+ * Flux Server-Sent Events des notifications de l'utilisateur authentifié.
+ * Une connexion ne garde aucun thread : la requête passe en mode asynchrone et les événements sont écrits en
+ * entrées-sorties non bloquantes (WriteListener) ; une écriture n'a lieu que si le conteneur peut l'accepter, sinon
+ * elle reprend quand la socket se libère. Chaque connexion a une file bornée : un client qui ne la vide pas assez vite
+ * (file pleine, ou socket bloquée plus longtemps que le délai de garde) est déconnecté et reprend à sa reconnexion.
+ * L'identifiant de chaque événement est celui de la notification : à la reconnexion, le navigateur le renvoie
+ * (Last-Event-ID) et seules les notifications suivantes sont rejouées, par un parcours par clé sur
+ * (user_id, created_at, id). Quand la reprise est impossible (notification supprimée, trop d'événements manqués),
+ * un événement « resync » demande au client de recharger la liste.
+ */
+@Service
+@Slf4j
+public class NotificationStreamService {
+
+    private static final String NOTIFICATION_EVENT = "notification";
+    private static final String RESYNC_EVENT = "resync";
+    private static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+    // Première trame : envoie les en-têtes sans attendre le premier événement
+    private static final byte[] OPENED = ": connected\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationMapper notificationMapper;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readTransaction;
+    private final Map<UUID, List<Subscriber>> subscribersByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final long timeoutMs;
+    private final int bufferSize;
+    private final int maxReplay;
+    private final int maxConnectionsPerUser;
+    private final long stallTimeoutMs;
+    private final Counter droppedCounter;
+    private final Counter stalledCounter;
+    private final Counter replayedCounter;
+    private final Counter resyncCounter;
+
+    public NotificationStreamService(NotificationRepository notificationRepository,
+                                     NotificationMapper notificationMapper,
+                                     ObjectMapper objectMapper,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.notifications.stream.timeout-ms:1800000}") long timeoutMs,
+                                     @Value("${app.notifications.stream.buffer-size:64}") int bufferSize,
+                                     @Value("${app.notifications.stream.max-replay:50}") int maxReplay,
+                                     @Value("${app.notifications.stream.max-connections-per-user:5}") int maxConnectionsPerUser,
+                                     @Value("${app.notifications.stream.stall-timeout-ms:10000}") long stallTimeoutMs) {
+        this.notificationRepository = notificationRepository;
+        this.notificationMapper = notificationMapper;
+        this.objectMapper = objectMapper;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.timeoutMs = timeoutMs;
+        this.bufferSize = bufferSize;
+        // La reprise passe par la file de la connexion
+        this.maxReplay = Math.min(maxReplay, bufferSize);
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.stallTimeoutMs = stallTimeoutMs;
+
+        Gauge.builder("notifications.stream.connections", connections, AtomicInteger::get)
+                .description("Connexions SSE de notifications ouvertes")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("notifications.stream.dropped")
+                .description("Connexions SSE fermées car leur file était pleine")
+                .register(meterRegistry);
+        this.stalledCounter = Counter.builder("notifications.stream.stalled")
+                .description("Connexions SSE fermées car la socket n'acceptait plus d'écriture")
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("notifications.stream.replayed")
+                .description("Notifications rejouées à la reprise d'un flux SSE")
+                .register(meterRegistry);
+        this.resyncCounter = Counter.builder("notifications.stream.resync")
+                .description("Reprises de flux SSE impossibles, client invité à recharger la liste")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ouvre un flux pour un utilisateur : la requête passe en mode asynchrone et reste ouverte après le retour
+     * @param lastEventId Dernier événement reçu par le client (en-tête Last-Event-ID), null à la première connexion
+     */
+    public void subscribe(UUID userId, String lastEventId, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "no-cache");
+        // Désactive la mise en tampon des proxys nginx
+        response.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(timeoutMs);
+        Subscriber subscriber = new Subscriber(userId, asyncContext, response.getOutputStream());
+        asyncContext.addListener(subscriber);
+
+        // Inscrit avant la reprise : les notifications envoyées pendant la lecture sont gardées, puis dédoublonnées
+        register(subscriber);
+        List<Event> replay = replay(userId, lastEventId);
+        subscriber.start(replay);
+    }
+
+    /**
+     * Envoie une notification aux flux ouverts sur cette instance par son destinataire
+     */
+    public void publish(NotificationResponseDTO notification) {
+        List<Subscriber> subscribers = subscribersByUser.get(notification.getUserId());
+        if (subscribers == null) {
+            return;
+        }
+        Event event = toEvent(notification);
+        if (event == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    /**
+     * @return true si l'utilisateur a au moins un flux ouvert sur cette instance
+     */
+    public boolean hasSubscribers(UUID userId) {
+        return subscribersByUser.containsKey(userId);
+    }
+
+    /**
+     * Commentaire périodique : garde la connexion ouverte à travers les proxys et détecte les clients partis
+     */
+    @Scheduled(fixedDelayString = "${app.notifications.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        Event heartbeat = new Event(null, HEARTBEAT);
+        forEachSubscriber(subscriber -> subscriber.offer(heartbeat));
+    }
+
+    /**
+     * Ferme les connexions dont la socket refuse toute écriture depuis plus que le délai de garde
+     */
+    @Scheduled(fixedDelayString = "${app.notifications.stream.watchdog-interval-ms:5000}")
+    public void closeStalledSubscribers() {
+        long now = System.currentTimeMillis();
+        forEachSubscriber(subscriber -> {
+            long stalledSince = subscriber.stalledSince;
+            if (stalledSince > 0 && now - stalledSince > stallTimeoutMs) {
+                stalledCounter.increment();
+                log.debug("Closing stalled notification stream for user {}", subscriber.userId);
+                subscriber.close();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        forEachSubscriber(Subscriber::close);
+    }
+
+    private void forEachSubscriber(Consumer<Subscriber> action) {
+        subscribersByUser.values().forEach(subscribers -> subscribers.forEach(action));
+    }
+
+    private void register(Subscriber subscriber) {
+        List<Subscriber> evicted = new ArrayList<>();
+        subscribersByUser.compute(subscriber.userId, (userId, subscribers) -> {
+            List<Subscriber> updated = subscribers == null ? new CopyOnWriteArrayList<>() : subscribers;
+            updated.add(subscriber);
+            // Onglets oubliés : les connexions les plus anciennes laissent la place
+            while (updated.size() > maxConnectionsPerUser) {
+                evicted.add(updated.remove(0));
+            }
+            return updated;
+        });
+        connections.incrementAndGet();
+        evicted.forEach(Subscriber::close);
+    }
+
+    /**
+     * @return false si la connexion était déjà fermée
+     */
+    private boolean unregister(Subscriber subscriber) {
+        if (!subscriber.markClosed()) {
+            return false;
+        }
+        subscribersByUser.computeIfPresent(subscriber.userId, (userId, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        connections.decrementAndGet();
+        return true;
+    }
+
+    private List<Event> replay(UUID userId, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return List.of();
+        }
+        try {
+            UUID lastId = UUID.fromString(lastEventId.trim());
+            Optional<LocalDateTime> lastCreatedAt = notificationRepository.findCreatedAtByIdAndUserId(lastId, userId);
+            if (lastCreatedAt.isEmpty()) {
+                resyncCounter.increment();
+                return List.of(resyncEvent());
+            }
+
+            // Un de plus que la limite pour savoir si des notifications seraient laissées de côté
+            List<UUID> ids = notificationRepository.findIdsAfter(userId, lastCreatedAt.get(), lastId, maxReplay + 1);
+            if (ids.size() > maxReplay) {
+                resyncCounter.increment();
+                return List.of(resyncEvent());
+            }
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+
+            Map<UUID, NotificationResponseDTO> loaded = readTransaction.execute(status -> {
+                Map<UUID, NotificationResponseDTO> dtos = new HashMap<>();
+                for (Notification notification : notificationRepository.findWithProductImagesByIdIn(ids)) {
+                    dtos.put(notification.getId(), notificationMapper.toDTO(notification));
+                }
+                return dtos;
+            });
+            List<Event> events = new ArrayList<>(ids.size());
+            for (UUID id : ids) {
+                Event event = toEvent(loaded.get(id));
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+            replayedCounter.increment(events.size());
+            return events;
+        } catch (IllegalArgumentException | DataAccessException e) {
+            log.warn("Cannot replay notifications after event {} for user {}: {}", lastEventId, userId, e.getMessage());
+            resyncCounter.increment();
+            return List.of(resyncEvent());
+        }
+    }
+
+    /**
+     * Trame SSE d'une notification, sérialisée une fois pour toutes les connexions du destinataire
+     */
+    private Event toEvent(NotificationResponseDTO notification) {
+        if (notification == null) {
+            return null;
+        }
+        try {
+            String frame = "id:" + notification.getId() + "\nevent:" + NOTIFICATION_EVENT + "\ndata:"
+                    + objectMapper.writeValueAsString(notification) + "\n\n";
+            return new Event(notification.getId(), frame.getBytes(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing notification {} for the SSE stream: {}", notification.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static Event resyncEvent() {
+        return new Event(null, ("event:" + RESYNC_EVENT + "\ndata:\n\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Trame prête à écrire
+     * @param notificationId Notification portée, null pour un commentaire ou une demande de rechargement
+     */
+    private record Event(UUID notificationId, byte[] frame) {
+    }
+
+    /**
+     * Connexion ouverte. Les écritures se font sous le verrou de la connexion et seulement quand la socket les accepte
+     * (isReady) : elles ne bloquent jamais. Quand la socket se remplit, la file attend l'appel de onWritePossible.
+     */
+    private final class Subscriber implements WriteListener, AsyncListener {
+        private final UUID userId;
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream out;
+        private final Deque<Event> queue = new ArrayDeque<>();
+        private boolean started;
+        private boolean closed;
+        // Début de l'attente de la socket, 0 quand elle accepte les écritures ; lu par la surveillance
+        private volatile long stalledSince;
+
+        private Subscriber(UUID userId, AsyncContext asyncContext, ServletOutputStream out) {
+            this.userId = userId;
+            this.asyncContext = asyncContext;
+            this.out = out;
+        }
+
+        /**
+         * Démarre l'envoi : les événements rejoués passent en tête, les notifications reçues pendant la reprise et
+         * déjà rejouées sont retirées
+         */
+        private synchronized void start(List<Event> replay) {
+            Set<UUID> replayedIds = new HashSet<>();
+            replay.forEach(event -> replayedIds.add(event.notificationId()));
+            queue.removeIf(event -> event.notificationId() != null && replayedIds.contains(event.notificationId()));
+            for (int i = replay.size() - 1; i >= 0; i--) {
+                queue.addFirst(replay.get(i));
+            }
+            queue.addFirst(new Event(null, OPENED));
+            started = true;
+            // Le conteneur appelle onWritePossible dès que la socket est prête, ce qui vide la file
+            out.setWriteListener(this);
+        }
+
+        private void offer(Event event) {
+            boolean overflow;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                overflow = queue.size() >= bufferSize;
+                if (!overflow) {
+                    queue.addLast(event);
+                    if (started) {
+                        writeAvailable();
+                    }
+                }
+            }
+            if (overflow) {
+                droppedCounter.increment();
+                log.debug("Dropping slow notification stream consumer for user {}", userId);
+                close();
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            synchronized (this) {
+                writeAvailable();
+            }
+        }
+
+        /**
+         * Écrit tant que la socket accepte, sous le verrou de la connexion
+         */
+        private void writeAvailable() {
+            if (closed) {
+                return;
+            }
+            try {
+                boolean wrote = false;
+                while (!queue.isEmpty()) {
+                    if (!out.isReady()) {
+                        // Reprise par onWritePossible ; la surveillance ferme la connexion si l'attente dure
+                        if (stalledSince == 0) {
+                            stalledSince = System.currentTimeMillis();
+                        }
+                        return;
+                    }
+                    out.write(queue.pollFirst().frame());
+                    wrote = true;
+                }
+                if (wrote && out.isReady()) {
+                    out.flush();
+                }
+                stalledSince = 0;
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Notification stream for user {} closed while writing: {}", userId, e.getMessage());
+                close();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.debug("Notification stream for user {} failed: {}", userId, throwable.getMessage());
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            unregister(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private synchronized boolean markClosed() {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            queue.clear();
+            return true;
+        }
+
+        /**
+         * Ferme la connexion ; sans effet si elle l'est déjà
+         */
+        private void close() {
+            if (unregister(this)) {
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException e) {
+                    // Requête déjà terminée par le conteneur
+                }
+            }
+        }
+    }
+}
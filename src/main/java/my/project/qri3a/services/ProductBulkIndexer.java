@@ -0,0 +1,359 @@
+package my.project.qri3a.services;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.opensearch.action.DocWriteRequest;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.bulk.BulkResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.dtos.responses.ProductListingDTO;
+import my.project.qri3a.entities.Product;
+import my.project.qri3a.entities.ProductIndexOutbox;
+import my.project.qri3a.enums.IndexOperation;
+import my.project.qri3a.mappers.ProductMapper;
+import my.project.qri3a.repositories.ProductIndexOutboxRepository;
+import my.project.qri3a.repositories.ProductRepository;
+import my.project.qri3a.repositories.search.ProductDocRepository;
+import my.project.qri3a.repositories.search.ProductIndexManager;
+
+/**
+ * Indexeur en masse alimenté par la boîte d'envoi product_index_outbox.
+ * Les entrées d'un même produit sont fusionnées (seule la dernière opération compte), les documents sont relus
+ * depuis la base au moment de l'envoi, puis expédiés par requêtes groupées bornées en nombre et en octets.
+ * Chaque lot est réservé dans une courte transaction (SELECT ... FOR UPDATE SKIP LOCKED puis report de son échéance
+ * pendant la durée du bail) : plusieurs instances vident la boîte d'envoi sans traiter les mêmes entrées, et une
+ * instance arrêtée en cours d'envoi laisse ses entrées revenir à l'échéance du bail. Les échecs sont replanifiés
+ * entrée par entrée avec un délai exponentiel, puis écartés après un nombre maximal de tentatives ; aucun appel
+ * OpenSearch n'est fait dans une transaction.
+ */
+@Service
+@Slf4j
+public class ProductBulkIndexer {
+
+    private final ProductIndexOutboxRepository productIndexOutboxRepository;
+    private final ProductRepository productRepository;
+    private final ProductDocRepository productDocRepository;
+    private final ProductMapper productMapper;
+    private final ProductReindexJob productReindexJob;
+    private final ProductIndexManager productIndexManager;
+    private final SearchResultCache searchResultCache;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    private final int batchSize;
+    private final int bulkMaxActions;
+    private final long bulkMaxBytes;
+    private final long retryBaseDelayMs;
+    private final long retryMaxDelayMs;
+    private final int maxAttempts;
+    private final Duration leaseDuration;
+
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Counter indexedCounter;
+    private final Counter failedCounter;
+    private final Counter deadLetteredCounter;
+    private final Timer bulkTimer;
+
+    public ProductBulkIndexer(ProductIndexOutboxRepository productIndexOutboxRepository,
+                              ProductRepository productRepository,
+                              ProductDocRepository productDocRepository,
+                              ProductMapper productMapper,
+                              ProductReindexJob productReindexJob,
+                              ProductIndexManager productIndexManager,
+                              SearchResultCache searchResultCache,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.search.indexer.batch-size:500}") int batchSize,
+                              @Value("${app.search.indexer.bulk-max-actions:500}") int bulkMaxActions,
+                              @Value("${app.search.indexer.bulk-max-bytes:5242880}") long bulkMaxBytes,
+                              @Value("${app.search.indexer.retry-base-delay-ms:1000}") long retryBaseDelayMs,
+                              @Value("${app.search.indexer.retry-max-delay-ms:300000}") long retryMaxDelayMs,
+                              @Value("${app.search.indexer.max-attempts:10}") int maxAttempts,
+                              @Value("${app.search.indexer.lease-seconds:300}") long leaseSeconds) {
+        this.productIndexOutboxRepository = productIndexOutboxRepository;
+        this.productRepository = productRepository;
+        this.productDocRepository = productDocRepository;
+        this.productMapper = productMapper;
+        this.productReindexJob = productReindexJob;
+        this.productIndexManager = productIndexManager;
+        this.searchResultCache = searchResultCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.batchSize = batchSize;
+        this.bulkMaxActions = bulkMaxActions;
+        this.bulkMaxBytes = bulkMaxBytes;
+        this.retryBaseDelayMs = retryBaseDelayMs;
+        this.retryMaxDelayMs = retryMaxDelayMs;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+
+        Gauge.builder("products.index.outbox.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("Âge de la plus ancienne entrée de la boîte d'envoi non encore indexée")
+                .register(meterRegistry);
+        this.indexedCounter = Counter.builder("products.index.bulk.documents")
+                .tag("result", "success")
+                .description("Documents envoyés avec succès à OpenSearch")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("products.index.bulk.documents")
+                .tag("result", "failure")
+                .description("Documents en échec, replanifiés avec un délai")
+                .register(meterRegistry);
+        this.deadLetteredCounter = Counter.builder("products.index.outbox.dead-lettered")
+                .description("Entrées écartées après épuisement de leurs tentatives")
+                .register(meterRegistry);
+        this.bulkTimer = Timer.builder("products.index.bulk.duration")
+                .description("Durée des requêtes bulk OpenSearch")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.indexer.poll-interval-ms:1000}")
+    public void scheduledDrain() {
+        drain();
+    }
+
+    /**
+     * Traite les entrées dues jusqu'à épuisement ou jusqu'à un lot entièrement en échec
+     * @return Nombre de produits propagés avec succès
+     */
+    public int drain() {
+        // L'ancien index refuse les écritures pendant sa migration : les entrées attendent la bascule
+        if (productIndexManager.isMigrating() || !drainLock.tryLock()) {
+            return 0;
+        }
+        try {
+            int processed = 0;
+            while (true) {
+                List<ProductIndexOutbox> entries = claimBatch();
+                if (entries.isEmpty()) {
+                    break;
+                }
+                int succeeded = processBatch(entries);
+                processed += succeeded;
+                if (succeeded == 0 || entries.size() < batchSize) {
+                    break;
+                }
+            }
+            updateLag();
+            return processed;
+        } catch (RuntimeException e) {
+            log.error("Error draining product index outbox: {}", e.getMessage());
+            return 0;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Verrouille les entrées dues et les réserve pour la durée du bail, dans une transaction courte
+     */
+    private List<ProductIndexOutbox> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<ProductIndexOutbox> entries = productIndexOutboxRepository.lockDue(now, batchSize);
+            if (!entries.isEmpty()) {
+                productIndexOutboxRepository.lease(entries.stream().map(ProductIndexOutbox::getId).toList(),
+                        now.plus(leaseDuration));
+            }
+            return entries;
+        });
+    }
+
+    private int processBatch(List<ProductIndexOutbox> entries) {
+        // Fusion par produit : la dernière opération enregistrée l'emporte
+        Map<UUID, ProductIndexOutbox> latestByProduct = new LinkedHashMap<>();
+        for (ProductIndexOutbox entry : entries) {
+            latestByProduct.put(entry.getProductId(), entry);
+        }
+
+        List<DocWriteRequest<?>> requests = buildRequests(latestByProduct);
+
+        // Une réindexation complète en cours doit aussi retirer ces produits de son nouvel index
+        List<UUID> deleted = new ArrayList<>();
+        for (DocWriteRequest<?> request : requests) {
+            if (request.opType() == DocWriteRequest.OpType.DELETE) {
+                deleted.add(UUID.fromString(request.id()));
+            }
+        }
+        productReindexJob.recordDeleted(deleted);
+
+        Set<UUID> failed = new HashSet<>();
+        for (BulkRequest bulkRequest : partition(requests)) {
+            failed.addAll(send(bulkRequest));
+        }
+
+        Set<UUID> succeeded = new HashSet<>(latestByProduct.keySet());
+        succeeded.removeAll(failed);
+
+        // Chaque entrée en échec est reportée selon ses propres tentatives, ou écartée si elles sont épuisées
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> processedIds = new ArrayList<>();
+        List<Long> deadLetterIds = new ArrayList<>();
+        Map<Integer, List<Long>> retryIdsByAttempts = new HashMap<>();
+        for (ProductIndexOutbox entry : entries) {
+            if (!failed.contains(entry.getProductId())) {
+                processedIds.add(entry.getId());
+            } else if (entry.getAttempts() + 1 >= maxAttempts) {
+                deadLetterIds.add(entry.getId());
+            } else {
+                retryIdsByAttempts.computeIfAbsent(entry.getAttempts() + 1, attempts -> new ArrayList<>()).add(entry.getId());
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!processedIds.isEmpty()) {
+                productIndexOutboxRepository.deleteProcessed(processedIds);
+            }
+            retryIdsByAttempts.forEach((attempts, ids) -> productIndexOutboxRepository.postpone(ids,
+                    now.plus(Duration.ofMillis(backoffDelayMs(attempts)))));
+            if (!deadLetterIds.isEmpty()) {
+                productIndexOutboxRepository.deadLetter(deadLetterIds, now);
+            }
+        });
+
+        // Les pages de recherche en cache ne reflètent plus l'index
+        if (!succeeded.isEmpty()) {
+            searchResultCache.bumpIndexVersion();
+        }
+        indexedCounter.increment(succeeded.size());
+        failedCounter.increment(failed.size());
+        deadLetteredCounter.increment(deadLetterIds.size());
+        if (!failed.isEmpty()) {
+            log.warn("Product indexing failed for {} products, {} entries rescheduled", failed.size(),
+                    entries.size() - processedIds.size() - deadLetterIds.size());
+        }
+        if (!deadLetterIds.isEmpty()) {
+            log.error("{} product index outbox entries dead-lettered after {} attempts: {}", deadLetterIds.size(),
+                    maxAttempts, deadLetterIds);
+        }
+        return succeeded.size();
+    }
+
+    /**
+     * Relit les produits à indexer en deux requêtes (entités et projection d'images) et construit les requêtes
+     */
+    private List<DocWriteRequest<?>> buildRequests(Map<UUID, ProductIndexOutbox> latestByProduct) {
+        List<UUID> upsertIds = new ArrayList<>();
+        List<DocWriteRequest<?>> requests = new ArrayList<>(latestByProduct.size());
+        for (ProductIndexOutbox entry : latestByProduct.values()) {
+            if (entry.getOperation() == IndexOperation.UPSERT) {
+                upsertIds.add(entry.getProductId());
+            } else {
+                requests.add(productDocRepository.buildDeleteRequest(entry.getProductId()));
+            }
+        }
+        if (upsertIds.isEmpty()) {
+            return requests;
+        }
+
+        List<ProductDoc> docs = readOnlyTransactionTemplate.execute(status -> {
+            Map<UUID, ProductListingDTO> listings = new HashMap<>();
+            for (ProductListingDTO listing : productRepository.findListingsByIds(upsertIds)) {
+                listings.put(listing.getId(), listing);
+            }
+            List<ProductDoc> result = new ArrayList<>(upsertIds.size());
+            for (Product product : productRepository.findAllById(upsertIds)) {
+                ProductListingDTO listing = listings.get(product.getId());
+                String firstImageUrl = listing != null && listing.getImage() != null ? listing.getImage().getUrl() : null;
+                int numberOfImages = listing != null ? listing.getNumberOfImages() : 0;
+                result.add(productMapper.toProductDoc(product, firstImageUrl, numberOfImages));
+            }
+            return result;
+        });
+
+        Set<UUID> found = new HashSet<>();
+        for (ProductDoc doc : docs) {
+            found.add(doc.getId());
+            try {
+                requests.add(productDocRepository.buildIndexRequest(doc));
+            } catch (IOException e) {
+                log.error("Error serializing product {} for indexing: {}", doc.getId(), e.getMessage());
+            }
+        }
+        // Produit supprimé entre l'écriture de l'entrée et son traitement
+        for (UUID productId : upsertIds) {
+            if (!found.contains(productId)) {
+                requests.add(productDocRepository.buildDeleteRequest(productId));
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Découpe les requêtes en lots bornés par le nombre d'actions et la taille estimée en octets
+     */
+    private List<BulkRequest> partition(List<DocWriteRequest<?>> requests) {
+        List<BulkRequest> batches = new ArrayList<>();
+        BulkRequest current = new BulkRequest();
+        for (DocWriteRequest<?> request : requests) {
+            if (current.numberOfActions() > 0
+                    && (current.numberOfActions() >= bulkMaxActions || current.estimatedSizeInBytes() >= bulkMaxBytes)) {
+                batches.add(current);
+                current = new BulkRequest();
+            }
+            current.add(request);
+        }
+        if (current.numberOfActions() > 0) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Envoie un lot et renvoie les produits en échec
+     */
+    private Set<UUID> send(BulkRequest bulkRequest) {
+        Set<UUID> failed = new HashSet<>();
+        try {
+            BulkResponse response = bulkTimer.recordCallable(() -> productDocRepository.bulk(bulkRequest));
+            if (response != null && response.hasFailures()) {
+                for (BulkItemResponse item : response.getItems()) {
+                    if (item.isFailed()) {
+                        failed.add(UUID.fromString(item.getId()));
+                    }
+                }
+                log.error("Bulk indexing partially failed: {}", response.buildFailureMessage());
+            }
+        } catch (Exception e) {
+            log.error("Error sending bulk request with {} actions: {}", bulkRequest.numberOfActions(), e.getMessage());
+            for (DocWriteRequest<?> request : bulkRequest.requests()) {
+                failed.add(UUID.fromString(request.id()));
+            }
+        }
+        return failed;
+    }
+
+    private long backoffDelayMs(int attempts) {
+        int exponent = Math.min(attempts - 1, 20);
+        return Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.max(0, exponent));
+    }
+
+    private void updateLag() {
+        LocalDateTime oldest = productIndexOutboxRepository.findOldestCreatedAt();
+        lagSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()));
+    }
+}
@@ -0,0 +1,248 @@
+package my.project.qri3a.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.enums.ProductCategory;
+import my.project.qri3a.enums.ProductStatus;
+import my.project.qri3a.repositories.ProductRepository;
+import my.project.qri3a.utils.FairFeedCursor;
+
+/**
+ * Ordonnanceur d'exposition pour le fil équitable.
+ * Un instantané compact des produits actifs (id, catégorie, ville, viewsCount) est reconstruit
+ * périodiquement depuis la base. Pour chaque combinaison catégories/ville demandée, un index trié par
+ * exposition croissante (le plus grand déficit d'abord) est matérialisé à la demande, de sorte qu'une page
+ * se lit en O(taille de page) sans tri ni requête côté base. Seules les villes présentes dans l'instantané donnent
+ * un bucket filtré : une ville inconnue retombe sur le bucket sans filtre de ville, ce qui borne le nombre de
+ * buckets construits quelle que soit la saisie.
+ */
+@Service
+@Slf4j
+public class ProductExposureScheduler {
+
+    private static final String ANY_CITY = "*";
+
+    private final ProductRepository productRepository;
+    private final int rotationWindow;
+    private final long maxBuckets;
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    // L'instantané précédent est conservé pour que les curseurs en cours restent stables après une reconstruction
+    private volatile Snapshot current;
+    private volatile Snapshot previous;
+
+    public ProductExposureScheduler(ProductRepository productRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.feed.rotation-window:200}") int rotationWindow,
+                                    @Value("${app.feed.max-buckets:2000}") long maxBuckets) {
+        this.productRepository = productRepository;
+        this.rotationWindow = Math.max(1, rotationWindow);
+        this.maxBuckets = maxBuckets;
+
+        Gauge.builder("products.feed.snapshot.size", this, scheduler -> {
+                    Snapshot snapshot = scheduler.current;
+                    return snapshot == null ? 0 : snapshot.ids.length;
+                })
+                .description("Produits actifs présents dans l'instantané du fil équitable")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reconstruit l'instantané depuis la base. Exécuté en tâche de fond, y compris au démarrage.
+     */
+    @Scheduled(fixedDelayString = "${app.feed.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            long start = System.nanoTime();
+            List<Object[]> rows = productRepository.findExposureRowsByStatus(ProductStatus.ACTIVE);
+
+            int size = rows.size();
+            UUID[] ids = new UUID[size];
+            ProductCategory[] categories = new ProductCategory[size];
+            String[] cities = new String[size];
+            int[] exposures = new int[size];
+            for (int i = 0; i < size; i++) {
+                Object[] row = rows.get(i);
+                ids[i] = (UUID) row[0];
+                categories[i] = (ProductCategory) row[1];
+                cities[i] = normalizeCity((String) row[2]);
+                exposures[i] = row[3] == null ? 0 : (Integer) row[3];
+            }
+
+            Snapshot snapshot = new Snapshot(versionSequence.incrementAndGet(), ids, categories, cities, exposures, maxBuckets);
+            previous = current;
+            current = snapshot;
+            log.debug("Exposure snapshot v{} rebuilt with {} active products in {} ms",
+                    snapshot.version, size, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } catch (RuntimeException e) {
+            log.error("Error rebuilding exposure snapshot: {}", e.getMessage());
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Renvoie la fenêtre de produits à afficher pour une session
+     * @param categories Catégories acceptées, null ou vide pour toutes
+     * @param city Ville filtrée, null ou vide pour toutes ; une ville sans produit actif dans l'instantané donne
+     *             une fenêtre vide
+     * @param cursor Curseur de la page précédente, null pour la première page ; un curseur dont l'instantané
+     *               n'est plus disponible reprend au début du nouvel instantané, avec la même graine
+     * @param seed Graine de session utilisée pour la première page, tirée au hasard si null
+     * @param size Nombre de produits par page
+     * @return Les identifiants de la page, dans l'ordre d'affichage, et le curseur suivant
+     */
+    public Window nextWindow(Collection<ProductCategory> categories, String city, FairFeedCursor cursor, Long seed, int size) {
+        Snapshot snapshot = resolveSnapshot(cursor);
+        if (snapshot == null) {
+            return new Window(Collections.emptyList(), false, null);
+        }
+
+        long sessionSeed = cursor != null ? cursor.getSeed()
+                : seed != null ? seed : ThreadLocalRandom.current().nextLong();
+        // Une position n'a de sens que dans l'ordre de l'instantané qui l'a produite
+        int position = cursor != null && cursor.getSnapshotVersion() == snapshot.version ? cursor.getPosition() : 0;
+
+        // Une ville absente de l'instantané ne crée pas de groupe : aucun produit ne peut lui correspondre
+        String normalizedCity = normalizeCity(city);
+        if (!snapshot.cities.contains(normalizedCity)) {
+            return new Window(Collections.emptyList(), false, null);
+        }
+        int[] order = snapshot.bucket(categories, normalizedCity);
+        int total = order.length;
+        int span = Math.min(total, rotationWindow);
+        int start = span == 0 ? 0 : Math.floorMod(mix(sessionSeed ^ snapshot.version), span);
+
+        int end = Math.min(total, position + size);
+        List<UUID> productIds = new ArrayList<>(Math.max(0, end - position));
+        for (int k = position; k < end; k++) {
+            // La tête la plus en déficit est parcourue en rotation selon la graine, le reste dans l'ordre
+            int index = k < span ? order[(start + k) % span] : order[k];
+            productIds.add(snapshot.ids[index]);
+        }
+
+        boolean hasNext = end < total;
+        String nextCursor = hasNext ? new FairFeedCursor(snapshot.version, sessionSeed, end).encode() : null;
+        return new Window(productIds, hasNext, nextCursor);
+    }
+
+    private Snapshot resolveSnapshot(FairFeedCursor cursor) {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            // Premier appel avant la fin du chargement initial : attendre une reconstruction
+            reconcile();
+            snapshot = current;
+        }
+        if (cursor != null) {
+            Snapshot older = previous;
+            if (older != null && older.version == cursor.getSnapshotVersion()) {
+                return older;
+            }
+        }
+        return snapshot;
+    }
+
+    private static String normalizeCity(String city) {
+        if (city == null || city.isBlank()) {
+            return ANY_CITY;
+        }
+        return city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Mélangeur de bits (SplitMix64) pour répartir les graines de session
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Window {
+        private final List<UUID> productIds;
+        private final boolean hasNext;
+        private final String nextCursor;
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final UUID[] ids;
+        private final ProductCategory[] categories;
+        private final String[] productCities;
+        // Villes distinctes de l'instantané, seules valeurs acceptées comme filtre
+        private final Set<String> cities;
+        private final int[] exposures;
+        private final Cache<String, int[]> buckets;
+
+        private Snapshot(long version, UUID[] ids, ProductCategory[] categories, String[] cities, int[] exposures, long maxBuckets) {
+            this.version = version;
+            this.ids = ids;
+            this.categories = categories;
+            this.productCities = cities;
+            this.cities = new HashSet<>(Arrays.asList(cities));
+            this.cities.add(ANY_CITY);
+            this.exposures = exposures;
+            this.buckets = Caffeine.newBuilder().maximumSize(maxBuckets).build();
+        }
+
+        private int[] bucket(Collection<ProductCategory> categoryFilter, String city) {
+            Set<ProductCategory> accepted = categoryFilter == null || categoryFilter.isEmpty()
+                    ? null : EnumSet.copyOf(categoryFilter);
+            String key = (accepted == null ? ANY_CITY : accepted.toString()) + "|" + city;
+            return buckets.get(key, k -> buildBucket(accepted, city));
+        }
+
+        /**
+         * Indices des produits du bucket triés par exposition croissante puis par id, pour un ordre total stable
+         */
+        private int[] buildBucket(Set<ProductCategory> accepted, String city) {
+            List<Integer> members = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                if (accepted != null && !accepted.contains(categories[i])) {
+                    continue;
+                }
+                if (!ANY_CITY.equals(city) && !city.equals(productCities[i])) {
+                    continue;
+                }
+                members.add(i);
+            }
+            Integer[] sorted = members.toArray(new Integer[0]);
+            Arrays.sort(sorted, (a, b) -> {
+                int byExposure = Integer.compare(exposures[a], exposures[b]);
+                return byExposure != 0 ? byExposure : ids[a].compareTo(ids[b]);
+            });
+            int[] order = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                order[i] = sorted[i];
+            }
+            return order;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package my.project.qri3a.services;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.enums.ProductCategory;
+import my.project.qri3a.enums.ProductCondition;
+import my.project.qri3a.repositories.ProductRepository;
+import my.project.qri3a.utils.GeoDistanceFilter;
+
+/**
+ * Recherche plein texte PostgreSQL (tsvector + pg_trgm), utilisée par le chemin SQL de la recherche,
+ * notamment quand OpenSearch n'est pas configuré.
+ * Le schéma est créé hors démarrage par le script db/fulltext-search.sql (l'ajout de la colonne générée réécrit
+ * la table sous verrou exclusif) ; le démarrage vérifie seulement qu'il est en place, avec des index valides, et la
+ * recherche retombe sur les LIKE historiques sinon.
+ */
+@Service
+@Slf4j
+public class ProductFullTextSearchService {
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private volatile boolean available;
+
+    public ProductFullTextSearchService(ProductRepository productRepository,
+                                       @Value("${app.search.sql.fulltext-enabled:true}") boolean enabled) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepareSchema() {
+        if (!enabled) {
+            log.info("Full-text SQL search disabled, using LIKE search");
+            return;
+        }
+        try {
+            List<String> problems = productRepository.findFullTextSchemaProblems();
+            if (problems.isEmpty()) {
+                available = true;
+                log.info("Full-text SQL search schema ready");
+            } else {
+                log.warn("Full-text SQL search unavailable, falling back to LIKE search ({}); run db/fulltext-search.sql",
+                        String.join(", ", problems));
+            }
+        } catch (DataAccessException e) {
+            log.warn("Full-text SQL search unavailable, falling back to LIKE search: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Indique si la colonne tsvector et ses index sont en place
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Recherche classée par pertinence (ou selon le tri demandé), avec correspondance par préfixe
+     * @param geo Filtre par rayon autour d'une position, null sans restriction géographique
+     * @return Page des identifiants de produits correspondants
+     */
+    public Page<UUID> search(String query, ProductCategory category, String location, ProductCondition condition,
+                             BigDecimal minPrice, BigDecimal maxPrice, String city, GeoDistanceFilter geo, Pageable pageable) {
+        return productRepository.searchIdsByFullText(query, category, location, condition, minPrice, maxPrice, city, geo, pageable);
+    }
+}
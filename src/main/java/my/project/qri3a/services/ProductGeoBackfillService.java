@@ -0,0 +1,43 @@
+package my.project.qri3a.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.repositories.ProductRepository;
+
+/**
+ * Renseigne au démarrage les coordonnées numériques (geo_lat, geo_lon) des produits enregistrés avant leur ajout.
+ * Les nouvelles écritures les maintiennent elles-mêmes (Product#beforeSave) : après un premier passage,
+ * seules les lignes sans position valide sont encore relues.
+ */
+@Service
+@Slf4j
+public class ProductGeoBackfillService {
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+
+    public ProductGeoBackfillService(ProductRepository productRepository,
+                                     @Value("${app.search.geo.backfill-enabled:true}") boolean enabled) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCoordinates() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int updated = productRepository.backfillGeoCoordinates();
+            log.info("Geo coordinates backfilled for {} products in {} ms", updated, System.currentTimeMillis() - start);
+        } catch (DataAccessException e) {
+            log.warn("Geo coordinates backfill failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package my.project.qri3a.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.documents.IndexChunkDigest;
+import my.project.qri3a.repositories.ProductIndexOutboxRepository;
+import my.project.qri3a.repositories.ProductRepository;
+import my.project.qri3a.repositories.search.ProductDocRepository;
+
+/**
+ * Réconciliation périodique entre la table des produits et l'index OpenSearch.
+ * Les identifiants sont parcourus par tronçons dans l'ordre de la clé primaire ; pour chaque tronçon, la base et
+ * l'index calculent chacun le nombre de documents et la somme des empreintes de (id, statut, updatedAt).
+ * Les deux côtés portent tous les statuts : l'index contient tous les produits, comme l'écrivent l'indexation
+ * courante et la réindexation complète.
+ * Un tronçon identique coûte une requête de chaque côté ; seuls les tronçons divergents sont comparés produit par
+ * produit, et les écarts sont remis dans la boîte d'envoi pour être réparés par lots.
+ */
+@Service
+@Slf4j
+public class ProductIndexReconciler {
+
+    // Fenêtre de résultats par défaut d'OpenSearch (index.max_result_window)
+    private static final int MAX_INDEX_DOCUMENTS_PER_CHUNK = 10_000;
+
+    private final ProductRepository productRepository;
+    private final ProductDocRepository productDocRepository;
+    private final ProductIndexOutboxRepository productIndexOutboxRepository;
+    private final ProductIndexService productIndexService;
+    private final ProductReindexJob productReindexJob;
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    private final boolean enabled;
+    private final int chunkSize;
+
+    private final AtomicLong lastRunDrift = new AtomicLong();
+    private final Counter matchingChunks;
+    private final Counter divergentChunks;
+    private final Counter missingDocuments;
+    private final Counter staleDocuments;
+    private final Counter orphanDocuments;
+    private final Timer reconcileTimer;
+
+    public ProductIndexReconciler(ProductRepository productRepository,
+                                  ProductDocRepository productDocRepository,
+                                  ProductIndexOutboxRepository productIndexOutboxRepository,
+                                  ProductIndexService productIndexService,
+                                  ProductReindexJob productReindexJob,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.search.reconcile.enabled:true}") boolean enabled,
+                                  @Value("${app.search.reconcile.chunk-size:1000}") int chunkSize) {
+        this.productRepository = productRepository;
+        this.productDocRepository = productDocRepository;
+        this.productIndexOutboxRepository = productIndexOutboxRepository;
+        this.productIndexService = productIndexService;
+        this.productReindexJob = productReindexJob;
+        this.enabled = enabled;
+        this.chunkSize = Math.min(Math.max(1, chunkSize), MAX_INDEX_DOCUMENTS_PER_CHUNK);
+
+        Gauge.builder("products.index.drift.last", lastRunDrift, AtomicLong::get)
+                .description("Documents divergents trouvés lors de la dernière réconciliation")
+                .register(meterRegistry);
+        this.matchingChunks = chunkCounter(meterRegistry, "match");
+        this.divergentChunks = chunkCounter(meterRegistry, "divergent");
+        this.missingDocuments = driftCounter(meterRegistry, "missing", "Produits absents de l'index");
+        this.staleDocuments = driftCounter(meterRegistry, "stale", "Documents dont le statut ou la date de mise à jour diffère");
+        this.orphanDocuments = driftCounter(meterRegistry, "orphan", "Documents indexés sans produit correspondant");
+        this.reconcileTimer = Timer.builder("products.index.reconcile.duration")
+                .description("Durée d'une réconciliation complète base / index")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.search.reconcile.initial-delay-ms:300000}",
+               fixedDelayString = "${app.search.reconcile.interval-ms:3600000}")
+    public void scheduledReconcile() {
+        if (enabled) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Compare toute la table à l'index et planifie la réparation des écarts
+     * @return Nombre de documents divergents, -1 si la réconciliation n'a pas eu lieu
+     */
+    public long reconcile() {
+        // Pendant une réindexation, l'alias change de cible : les écarts seraient faussés
+        if (productReindexJob.isRunning() || !runLock.tryLock()) {
+            return -1;
+        }
+        long start = System.nanoTime();
+        try {
+            long drift = 0;
+            int chunks = 0;
+            UUID afterId = null;
+            while (true) {
+                IndexChunkDigest databaseDigest = productRepository.digestNextChunk(afterId, chunkSize);
+                // Le dernier tronçon est ouvert vers le haut pour couvrir les documents orphelins en fin d'index
+                boolean lastChunk = databaseDigest.getLastId() == null || databaseDigest.getCount() < chunkSize;
+                UUID upToId = lastChunk ? null : databaseDigest.getLastId();
+
+                IndexChunkDigest indexDigest = productDocRepository.digestRange(afterId, upToId);
+                chunks++;
+                if (databaseDigest.matches(indexDigest)) {
+                    matchingChunks.increment();
+                } else {
+                    divergentChunks.increment();
+                    drift += repairChunk(afterId, upToId, indexDigest.getCount());
+                }
+
+                if (lastChunk) {
+                    break;
+                }
+                afterId = upToId;
+            }
+            lastRunDrift.set(drift);
+            log.info("Product index reconciled: {} chunks checked, {} divergent documents", chunks, drift);
+            return drift;
+        } catch (IOException | RuntimeException e) {
+            log.error("Error reconciling product index: {}", e.getMessage());
+            return -1;
+        } finally {
+            reconcileTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * Compare un tronçon divergent produit par produit et remet les écarts dans la boîte d'envoi
+     * @return Nombre de documents divergents
+     */
+    private long repairChunk(UUID afterId, UUID upToId, long indexCount) throws IOException {
+        Map<UUID, Long> databaseHashes = productRepository.findSyncHashes(afterId, upToId);
+        if (indexCount > MAX_INDEX_DOCUMENTS_PER_CHUNK) {
+            log.warn("Index chunk after {} holds {} documents, only {} compared this run",
+                    afterId, indexCount, MAX_INDEX_DOCUMENTS_PER_CHUNK);
+        }
+        Map<UUID, Long> indexHashes = productDocRepository.findSyncHashes(afterId, upToId,
+                (int) Math.min(Math.max(indexCount, 1), MAX_INDEX_DOCUMENTS_PER_CHUNK));
+
+        Set<UUID> missing = new HashSet<>();
+        Set<UUID> stale = new HashSet<>();
+        Set<UUID> orphans = new HashSet<>();
+        for (Map.Entry<UUID, Long> entry : databaseHashes.entrySet()) {
+            Long indexHash = indexHashes.get(entry.getKey());
+            if (indexHash == null) {
+                missing.add(entry.getKey());
+            } else if (!indexHash.equals(entry.getValue())) {
+                stale.add(entry.getKey());
+            }
+        }
+        for (UUID productId : indexHashes.keySet()) {
+            if (!databaseHashes.containsKey(productId)) {
+                orphans.add(productId);
+            }
+        }
+
+        // Les produits dont une opération attend déjà dans la boîte d'envoi sont en cours de propagation, pas en écart
+        List<UUID> divergent = new ArrayList<>(missing);
+        divergent.addAll(stale);
+        divergent.addAll(orphans);
+        if (divergent.isEmpty()) {
+            return 0;
+        }
+        List<UUID> pending = productIndexOutboxRepository.findPendingProductIds(divergent);
+        pending.forEach(missing::remove);
+        pending.forEach(stale::remove);
+        pending.forEach(orphans::remove);
+
+        List<UUID> toIndex = new ArrayList<>(missing);
+        toIndex.addAll(stale);
+        if (!toIndex.isEmpty()) {
+            productIndexService.indexProducts(toIndex);
+        }
+        if (!orphans.isEmpty()) {
+            productIndexService.deleteProductIndexes(orphans);
+        }
+
+        missingDocuments.increment(missing.size());
+        staleDocuments.increment(stale.size());
+        orphanDocuments.increment(orphans.size());
+        return toIndex.size() + orphans.size();
+    }
+
+    private static Counter chunkCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("products.index.reconcile.chunks")
+                .tag("result", result)
+                .description("Tronçons d'identifiants comparés entre la base et l'index")
+                .register(meterRegistry);
+    }
+
+    private static Counter driftCounter(MeterRegistry meterRegistry, String type, String description) {
+        return Counter.builder("products.index.drift.documents")
+                .tag("type", type)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
@@ -1,27 +1,59 @@
 package my.project.qri3a.services;
 
 import lombok.RequiredArgsConstructor;
-import my.project.qri3a.documents.ProductDoc;
 import my.project.qri3a.entities.Product;
-import my.project.qri3a.mappers.ProductMapper;
-import my.project.qri3a.repositories.search.ProductDocRepository;
+import my.project.qri3a.entities.ProductIndexOutbox;
+import my.project.qri3a.enums.IndexOperation;
+import my.project.qri3a.repositories.ProductIndexOutboxRepository;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.UUID;
 
+/**
+ * Point d'entrée de l'indexation des produits.
+ * Les opérations sont écrites dans la boîte d'envoi, dans la transaction de l'appelant ;
+ * {@link ProductBulkIndexer} les propage ensuite vers OpenSearch par lots.
+ */
 @Service
 @RequiredArgsConstructor
 public class ProductIndexService {
 
-    private final ProductDocRepository productDocRepository;
-    private final ProductMapper productMapper;
+    private final ProductIndexOutboxRepository productIndexOutboxRepository;
 
-    public void indexProduct(Product product,int nbOfImages) {
-        ProductDoc doc = productMapper.toProductDoc(product,nbOfImages);
-        productDocRepository.save(doc);
+    public void indexProduct(Product product) {
+        enqueue(product.getId(), IndexOperation.UPSERT);
     }
 
     public void deleteProductIndex(UUID productId) {
-        productDocRepository.deleteById(productId);
+        enqueue(productId, IndexOperation.DELETE);
+    }
+
+    public void deleteProductIndexes(Collection<UUID> productIds) {
+        enqueueAll(productIds, IndexOperation.DELETE);
+    }
+
+    public void indexProducts(Collection<UUID> productIds) {
+        enqueueAll(productIds, IndexOperation.UPSERT);
+    }
+
+    private void enqueueAll(Collection<UUID> productIds, IndexOperation operation) {
+        LocalDateTime now = LocalDateTime.now();
+        productIndexOutboxRepository.saveAll(productIds.stream()
+                .map(productId -> newEntry(productId, operation, now))
+                .toList());
+    }
+
+    private void enqueue(UUID productId, IndexOperation operation) {
+        productIndexOutboxRepository.save(newEntry(productId, operation, LocalDateTime.now()));
+    }
+
+    private static ProductIndexOutbox newEntry(UUID productId, IndexOperation operation, LocalDateTime now) {
+        return ProductIndexOutbox.builder()
+                .productId(productId)
+                .operation(operation)
+                .nextAttemptAt(now)
+                .build();
     }
 }
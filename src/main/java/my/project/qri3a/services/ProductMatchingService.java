@@ -23,9 +23,10 @@ public interface ProductMatchingService {
     List<User> findInterestedUsers(Product product);
 
     /**
-     * Notifie tous les utilisateurs intéressés par un produit
+     * Programme la notification de tous les utilisateurs intéressés par un produit, envoyée en arrière-plan
+     * après le commit de la transaction en cours
      * @param product Le produit à notifier
-     * @return Nombre de notifications envoyées
+     * @return Nombre de notifications programmées
      */
     int notifyInterestedUsers(Product product);
 }
\ No newline at end of file
@@ -0,0 +1,403 @@
+package my.project.qri3a.services;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opensearch.OpenSearchException;
+import org.opensearch.OpenSearchStatusException;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.bulk.BulkResponse;
+import org.opensearch.core.rest.RestStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.dtos.responses.ReindexStatusDTO;
+import my.project.qri3a.entities.ProductIndexOutbox;
+import my.project.qri3a.enums.IndexOperation;
+import my.project.qri3a.enums.ReindexState;
+import my.project.qri3a.exceptions.ResourceAlreadyExistsException;
+import my.project.qri3a.repositories.ProductIndexOutboxRepository;
+import my.project.qri3a.repositories.ProductRepository;
+import my.project.qri3a.repositories.search.ProductDocRepository;
+import my.project.qri3a.repositories.search.ProductIndexManager;
+
+/**
+ * Réindexation complète sans interruption de service.
+ * Un nouvel index versionné est rempli à partir d'un curseur PostgreSQL sur tous les produits (tous statuts,
+ * comme l'indexation courante), par lots bulk envoyés en parallèle, puis l'alias products_idx est basculé
+ * atomiquement. Pendant ce temps l'indexation courante continue sur l'ancien index ; les produits modifiés ou
+ * supprimés pendant le chargement sont remis dans la boîte d'envoi après la bascule. L'ancien index est conservé
+ * pendant une durée configurable (pour revenir en arrière en rebasculant l'alias), puis supprimé, y compris
+ * après un redémarrage.
+ */
+@Service
+@Slf4j
+public class ProductReindexJob {
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final int MAX_BULK_ATTEMPTS = 3;
+    // Marge couvrant les transactions commencées avant le démarrage mais validées après
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(1);
+
+    private final ProductRepository productRepository;
+    private final ProductDocRepository productDocRepository;
+    private final ProductIndexManager productIndexManager;
+    private final SearchResultCache searchResultCache;
+    private final ProductIndexOutboxRepository productIndexOutboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(namedThreads("product-reindex"));
+
+    private final int batchSize;
+    private final int parallelism;
+    private final int fetchSize;
+    private final long maxFailedDocuments;
+    private final Duration previousIndexRetention;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Set<UUID> deletedDuringRun = ConcurrentHashMap.newKeySet();
+    // Anciens index détachés de l'alias, avec l'instant à partir duquel ils peuvent être supprimés
+    private final Map<String, LocalDateTime> pendingDeletions = new ConcurrentHashMap<>();
+    private volatile Run currentRun;
+
+    public ProductReindexJob(ProductRepository productRepository,
+                             ProductDocRepository productDocRepository,
+                             ProductIndexManager productIndexManager,
+                             SearchResultCache searchResultCache,
+                             ProductIndexOutboxRepository productIndexOutboxRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.search.reindex.batch-size:1000}") int batchSize,
+                             @Value("${app.search.reindex.parallelism:4}") int parallelism,
+                             @Value("${app.search.reindex.fetch-size:1000}") int fetchSize,
+                             @Value("${app.search.reindex.max-failed-documents:0}") long maxFailedDocuments,
+                             @Value("${app.search.reindex.previous-index-retention-minutes:60}") long previousIndexRetentionMinutes) {
+        this.productRepository = productRepository;
+        this.productDocRepository = productDocRepository;
+        this.productIndexManager = productIndexManager;
+        this.searchResultCache = searchResultCache;
+        this.productIndexOutboxRepository = productIndexOutboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.batchSize = batchSize;
+        this.parallelism = Math.max(1, parallelism);
+        this.fetchSize = fetchSize;
+        this.maxFailedDocuments = maxFailedDocuments;
+        this.previousIndexRetention = Duration.ofMinutes(Math.max(0, previousIndexRetentionMinutes));
+    }
+
+    /**
+     * Démarre une réindexation en arrière-plan
+     * @return L'état initial de la tâche
+     * @throws ResourceAlreadyExistsException si une réindexation est déjà en cours
+     */
+    public ReindexStatusDTO start() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ResourceAlreadyExistsException("A reindex job is already running");
+        }
+        deletedDuringRun.clear();
+        Run run = new Run();
+        currentRun = run;
+        coordinator.execute(() -> execute(run));
+        return run.toStatus();
+    }
+
+    public ReindexStatusDTO getStatus() {
+        Run run = currentRun;
+        return run == null ? ReindexStatusDTO.builder().state(ReindexState.IDLE).errors(List.of()).build() : run.toStatus();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Mémorise les produits retirés de l'index pendant une réindexation, pour les retirer aussi du nouvel index
+     */
+    public void recordDeleted(Collection<UUID> productIds) {
+        if (running.get() && !productIds.isEmpty()) {
+            deletedDuringRun.addAll(productIds);
+        }
+    }
+
+    /**
+     * Reconstruit au démarrage la liste des anciens index à supprimer, qui n'est tenue qu'en mémoire : les index
+     * versionnés détachés de l'alias sont relus depuis le cluster, leur durée de conservation partant de la date de
+     * création la plus récente entre la leur et celle de la cible de l'alias
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restorePendingDeletions() {
+        try {
+            Map<String, Instant> detached = productIndexManager.findDetachedIndices();
+            detached.forEach((index, detachedAt) -> pendingDeletions.putIfAbsent(index,
+                    LocalDateTime.ofInstant(detachedAt, ZoneId.systemDefault()).plus(previousIndexRetention)));
+            if (!detached.isEmpty()) {
+                log.info("Previous OpenSearch indices scheduled for deletion: {}", detached.keySet());
+            }
+        } catch (IOException | OpenSearchException e) {
+            log.warn("Could not list previous OpenSearch indices, they will not be deleted: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Supprime les anciens index dont la durée de conservation est écoulée. Un index redevenu la cible de l'alias
+     * (retour en arrière manuel) est conservé et retiré de la liste.
+     */
+    @Scheduled(fixedDelayString = "${app.search.reindex.previous-index-cleanup-interval-ms:60000}")
+    public void deleteExpiredPreviousIndices() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<String, LocalDateTime> entry : pendingDeletions.entrySet()) {
+            if (entry.getValue().isAfter(now)) {
+                continue;
+            }
+            String index = entry.getKey();
+            try {
+                productIndexManager.deleteIndex(index);
+                pendingDeletions.remove(index);
+                log.info("Previous OpenSearch index {} deleted after reindex", index);
+            } catch (IllegalStateException e) {
+                pendingDeletions.remove(index);
+                log.warn("Previous OpenSearch index {} is the alias target again, keeping it", index);
+            } catch (OpenSearchStatusException e) {
+                if (e.status() == RestStatus.NOT_FOUND) {
+                    pendingDeletions.remove(index);
+                } else {
+                    log.error("Error deleting previous OpenSearch index {}: {}", index, e.getMessage());
+                }
+            } catch (IOException e) {
+                log.error("Error deleting previous OpenSearch index {}: {}", index, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    private void execute(Run run) {
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, namedThreads("product-reindex-bulk"));
+        try {
+            run.previousIndex = productIndexManager.resolveAliasTarget();
+            run.targetIndex = productIndexManager.createReindexTarget();
+            log.info("Reindex started: {} -> {}", run.previousIndex, run.targetIndex);
+
+            // Au plus deux lots en vol par worker : le curseur attend au lieu de tout charger en mémoire
+            Semaphore inFlight = new Semaphore(parallelism * 2);
+            List<ProductDoc> buffer = new ArrayList<>(batchSize);
+            readOnlyTransactionTemplate.executeWithoutResult(status ->
+                    productRepository.streamIndexDocuments(fetchSize, doc -> {
+                        run.read.incrementAndGet();
+                        buffer.add(doc);
+                        if (buffer.size() >= batchSize) {
+                            submit(run, workers, inFlight, new ArrayList<>(buffer));
+                            buffer.clear();
+                        }
+                    }));
+            if (!buffer.isEmpty()) {
+                submit(run, workers, inFlight, new ArrayList<>(buffer));
+            }
+
+            workers.shutdown();
+            if (!workers.awaitTermination(1, TimeUnit.HOURS)) {
+                throw new IllegalStateException("Bulk workers did not finish within one hour");
+            }
+
+            if (run.failed.get() > maxFailedDocuments) {
+                run.fail("Too many failed documents (" + run.failed.get() + "), alias left on " + run.previousIndex);
+                return;
+            }
+
+            productIndexManager.finishBulkLoad(run.targetIndex);
+            productIndexManager.swapAlias(run.targetIndex, run.previousIndex);
+            searchResultCache.bumpIndexVersion();
+            int caughtUp = enqueueCatchUp(run.startedAt.minus(CATCH_UP_MARGIN));
+
+            if (run.previousIndex != null) {
+                pendingDeletions.put(run.previousIndex, LocalDateTime.now().plus(previousIndexRetention));
+                if (previousIndexRetention.isZero()) {
+                    deleteExpiredPreviousIndices();
+                }
+            }
+
+            run.state = ReindexState.COMPLETED;
+            run.finishedAt = LocalDateTime.now();
+            log.info("Reindex completed: {} documents in {}, alias {} -> {}, {} products queued for catch-up",
+                    run.indexed.get(), Duration.between(run.startedAt, run.finishedAt), ProductIndexManager.INDEX_ALIAS,
+                    run.targetIndex, caughtUp);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail("Interrupted");
+        } catch (IOException | RuntimeException e) {
+            log.error("Reindex failed: {}", e.getMessage());
+            run.fail(e.getMessage());
+        } finally {
+            workers.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    private void submit(Run run, ExecutorService workers, Semaphore inFlight, List<ProductDoc> docs) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a bulk slot", e);
+        }
+        workers.execute(() -> {
+            try {
+                sendBatch(run, docs);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void sendBatch(Run run, List<ProductDoc> docs) {
+        BulkRequest bulkRequest = new BulkRequest();
+        try {
+            for (ProductDoc doc : docs) {
+                bulkRequest.add(productDocRepository.buildIndexRequest(run.targetIndex, doc));
+            }
+        } catch (IOException e) {
+            run.failed.addAndGet(docs.size());
+            run.addError("Serialization error: " + e.getMessage());
+            return;
+        }
+
+        for (int attempt = 1; attempt <= MAX_BULK_ATTEMPTS; attempt++) {
+            try {
+                BulkResponse response = productDocRepository.bulk(bulkRequest);
+                int failures = 0;
+                if (response.hasFailures()) {
+                    for (BulkItemResponse item : response.getItems()) {
+                        if (item.isFailed()) {
+                            failures++;
+                            run.addError(item.getId() + ": " + item.getFailureMessage());
+                        }
+                    }
+                }
+                run.batches.incrementAndGet();
+                run.indexed.addAndGet(docs.size() - failures);
+                run.failed.addAndGet(failures);
+                return;
+            } catch (IOException e) {
+                if (attempt == MAX_BULK_ATTEMPTS) {
+                    run.failed.addAndGet(docs.size());
+                    run.addError("Bulk request failed after " + attempt + " attempts: " + e.getMessage());
+                    return;
+                }
+                try {
+                    Thread.sleep(1000L << attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    run.failed.addAndGet(docs.size());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remet dans la boîte d'envoi les produits modifiés ou supprimés pendant le chargement,
+     * désormais appliqués au nouvel index via l'alias
+     */
+    private int enqueueCatchUp(LocalDateTime since) {
+        List<UUID> updated = productRepository.findIdsUpdatedSince(since);
+        List<UUID> deleted = new ArrayList<>(deletedDuringRun);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<ProductIndexOutbox> entries = new ArrayList<>(updated.size() + deleted.size());
+        for (UUID productId : updated) {
+            entries.add(ProductIndexOutbox.builder().productId(productId).operation(IndexOperation.UPSERT).nextAttemptAt(now).build());
+        }
+        for (UUID productId : deleted) {
+            entries.add(ProductIndexOutbox.builder().productId(productId).operation(IndexOperation.DELETE).nextAttemptAt(now).build());
+        }
+        transactionTemplate.executeWithoutResult(status -> productIndexOutboxRepository.saveAll(entries));
+        return entries.size();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Compteurs d'une exécution, mis à jour par les workers et lus par l'endpoint d'administration
+     */
+    private static final class Run {
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final List<String> errors = new CopyOnWriteArrayList<>();
+        private volatile ReindexState state = ReindexState.RUNNING;
+        private volatile String targetIndex;
+        private volatile String previousIndex;
+        private volatile LocalDateTime finishedAt;
+
+        private void addError(String error) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        private void fail(String error) {
+            addError(error);
+            state = ReindexState.FAILED;
+            finishedAt = LocalDateTime.now();
+        }
+
+        private ReindexStatusDTO toStatus() {
+            LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+            double seconds = Math.max(1, Duration.between(startedAt, end).toMillis()) / 1000.0;
+            return ReindexStatusDTO.builder()
+                    .state(state)
+                    .targetIndex(targetIndex)
+                    .previousIndex(previousIndex)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .documentsRead(read.get())
+                    .documentsIndexed(indexed.get())
+                    .documentsFailed(failed.get())
+                    .batchesSent(batches.get())
+                    .documentsPerSecond(indexed.get() / seconds)
+                    .errors(List.copyOf(errors))
+                    .build();
+        }
+    }
+}
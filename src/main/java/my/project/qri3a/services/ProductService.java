@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import my.project.qri3a.enums.ProductStatus;
 import org.springframework.data.domain.Page;
@@ -12,14 +13,26 @@ import org.springframework.security.core.Authentication;
 
 import my.project.qri3a.documents.ProductDoc;
 import my.project.qri3a.dtos.requests.ProductRequestDTO;
+import my.project.qri3a.dtos.responses.CursorPageDTO;
+import my.project.qri3a.dtos.responses.SearchCursorPageDTO;
 import my.project.qri3a.dtos.responses.ProductListingDTO;
 import my.project.qri3a.dtos.responses.ProductResponseDTO;
 import my.project.qri3a.exceptions.NotAuthorizedException;
 import my.project.qri3a.exceptions.ResourceNotFoundException;
 import my.project.qri3a.exceptions.ResourceNotValidException;
+import my.project.qri3a.utils.GeoDistanceFilter;
 
 public interface ProductService {
     Page<ProductListingDTO> getAllProducts(Pageable pageable, String category, String location, String condition, UUID sellerId, BigDecimal minPrice, BigDecimal maxPrice, String city) throws ResourceNotValidException;
+
+    /**
+     * Variante paginée par curseur de getAllProducts, triée par (viewsCount, id), sans requête COUNT
+     * @param cursor Le jeton renvoyé par la page précédente, null pour la première page
+     * @param size Nombre de produits par page
+     * @return La tranche de produits et le curseur de la page suivante
+     * @throws ResourceNotValidException si un filtre ou le curseur est invalide
+     */
+    CursorPageDTO<ProductListingDTO> getAllProductsByCursor(String cursor, int size, String category, String location, String condition, UUID sellerId, BigDecimal minPrice, BigDecimal maxPrice, String city) throws ResourceNotValidException;
     ProductResponseDTO getProductById(UUID productId, Authentication authentication) throws ResourceNotFoundException, NotAuthorizedException;
     ProductResponseDTO createProduct(ProductRequestDTO productRequestDTO, Authentication authentication) throws ResourceNotFoundException, ResourceNotValidException;
     ProductResponseDTO updateMyProduct(UUID productId, ProductRequestDTO productRequestDTO, Authentication authentication) throws ResourceNotFoundException, NotAuthorizedException;
@@ -39,13 +52,40 @@ public interface ProductService {
             BigDecimal maxPrice,
             String city
     );
+
+    /**
+     * Recherche SQL restreinte à un rayon autour d'une position ; la requête texte peut alors être vide
+     * @param geo Filtre par distance, null sans restriction géographique
+     */
+    Page<ProductListingDTO> searchProducts(String query, Pageable pageable, String category, String location, String condition,
+                                           BigDecimal minPrice, BigDecimal maxPrice, String city, GeoDistanceFilter geo);
     Page<ProductListingDTO> getProductsByUserId(UUID userId, Pageable pageable) throws ResourceNotFoundException;
 
-    Page<ProductDoc> searchProductsElastic(String query, Pageable pageable, String category, String location, String condition, BigDecimal minPrice, BigDecimal maxPrice, String city,  String delivery) ;
+    /**
+     * Recherche OpenSearch non bloquante ; bascule sur la recherche PostgreSQL si le cluster est indisponible,
+     * trop lent ou si le disjoncteur est ouvert
+     * @param geo Filtre par rayon autour d'une position (et tri par distance si demandé), null sans restriction
+     * @param withFacets Renvoie aussi les comptes par catégorie, ville, état, livraison et tranche de prix
+     *                   (FacetedPageDTO) ; le repli PostgreSQL n'en calcule pas
+     */
+    CompletableFuture<Page<ProductDoc>> searchProductsElastic(String query, Pageable pageable, String category, String location, String condition, BigDecimal minPrice, BigDecimal maxPrice, String city,  String delivery, GeoDistanceFilter geo, boolean withFacets) ;
+
+    /**
+     * Recherche OpenSearch paginée par curseur (point-in-time + search_after), pour le défilement infini
+     * @param cursor Jeton de la page précédente, null pour la première page
+     * @param size Nombre de produits par page
+     * @return La page, le curseur suivant et un total plafonné ; en échec avec SearchUnavailableException si le
+     *         cluster est indisponible
+     */
+    CompletableFuture<SearchCursorPageDTO<ProductDoc>> searchProductsElasticByCursor(String query, String cursor, int size, String category, String location, String condition,
+                                                                                    BigDecimal minPrice, BigDecimal maxPrice, String city, String delivery);
 
     Page<ProductDoc> findAll(Pageable pageable);
 
-    public List<ProductDoc> searchProductSuggestionsElastic(String query, String category, int limit);
+    /**
+     * Suggestions de saisie : trie en mémoire pour les préfixes courts, sinon OpenSearch sans bloquer le thread appelant
+     */
+    CompletableFuture<List<ProductDoc>> searchProductSuggestionsElastic(String query, String category, int limit);
 
     /**
      * Approves a product, changing its status to ACTIVE
@@ -169,6 +209,27 @@ public interface ProductService {
      */
     Page<ProductListingDTO> getProductsByMainCategory(String mainCategory, Pageable pageable);
 
+    /**
+     * Variante paginée par curseur de getProductsByMainCategory, triée par (viewsCount, id), sans requête COUNT
+     * @param mainCategory Le nom de la catégorie principale
+     * @param cursor Le jeton renvoyé par la page précédente, null pour la première page
+     * @param size Nombre de produits par page
+     * @return La tranche de produits et le curseur de la page suivante
+     */
+    CursorPageDTO<ProductListingDTO> getProductsByMainCategoryByCursor(String mainCategory, String cursor, int size);
+
+    /**
+     * Fil équitable servi depuis l'ordonnanceur d'exposition en mémoire : les produits les moins exposés
+     * d'abord, avec une rotation propre à chaque session
+     * @param category Catégorie ou catégorie principale, null pour toutes
+     * @param city Ville, null pour toutes
+     * @param seed Graine de session pour la première page, tirée au hasard si null
+     * @param cursor Le jeton renvoyé par la page précédente, null pour la première page
+     * @param size Nombre de produits par page
+     * @return La tranche de produits et le curseur de la page suivante
+     */
+    CursorPageDTO<ProductListingDTO> getFairFeed(String category, String city, Long seed, String cursor, int size);
+
     /**
      * Récupère un produit par son slug SEO-friendly
      * @param slug Le slug du produit à récupérer
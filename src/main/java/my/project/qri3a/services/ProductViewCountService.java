@@ -0,0 +1,244 @@
+package my.project.qri3a.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.enums.Role;
+import my.project.qri3a.repositories.ProductRepository;
+
+/**
+ * Compteur de vues en écriture différée (write-behind) pour l'algorithme de distribution équitable.
+ * Les pages de listing enregistrent uniquement les affichages en mémoire ; un flusher planifié
+ * applique périodiquement les incréments accumulés en une seule requête UPDATE.
+ */
+@Service
+@Slf4j
+public class ProductViewCountService {
+
+    // +5 pour les vendeurs standards, +1 pour les vendeurs premiums
+    private static final int STANDARD_INCREMENT = 5;
+    private static final int PREMIUM_INCREMENT = 1;
+
+    private final ProductRepository productRepository;
+    private final ConcurrentHashMap<UUID, PendingViews> pendingViews = new ConcurrentHashMap<>();
+    private final Cache<UUID, Boolean> premiumSellerByProduct;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final boolean flushOnShutdown;
+    private final Counter flushedViewsCounter;
+    private final Counter failedFlushesCounter;
+
+    public ProductViewCountService(ProductRepository productRepository,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.views.seller-tier-cache-ttl-minutes:10}") long sellerTierCacheTtlMinutes,
+                                   @Value("${app.views.seller-tier-cache-size:100000}") long sellerTierCacheSize,
+                                   @Value("${app.views.flush-on-shutdown:true}") boolean flushOnShutdown) {
+        this.productRepository = productRepository;
+        this.flushOnShutdown = flushOnShutdown;
+        this.premiumSellerByProduct = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(sellerTierCacheTtlMinutes))
+                .maximumSize(sellerTierCacheSize)
+                .build();
+
+        Gauge.builder("products.views.pending.deltas", this, ProductViewCountService::getPendingViews)
+                .description("Affichages enregistrés en mémoire et pas encore écrits en base")
+                .register(meterRegistry);
+        Gauge.builder("products.views.pending.products", pendingViews, Map::size)
+                .description("Nombre de produits ayant des affichages en attente")
+                .register(meterRegistry);
+        this.flushedViewsCounter = Counter.builder("products.views.flushed")
+                .description("Affichages écrits en base par le flusher")
+                .register(meterRegistry);
+        this.failedFlushesCounter = Counter.builder("products.views.flush.failures")
+                .description("Flushs échoués, les affichages sont remis en attente")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Enregistre un affichage pour chacun des produits d'une page de résultats.
+     * Aucun accès à la base n'est effectué ici.
+     */
+    public void recordImpressions(Collection<UUID> productIds) {
+        for (UUID productId : productIds) {
+            if (productId == null) {
+                continue;
+            }
+            PendingViews views = pendingViews.get(productId);
+            // Un compteur retiré par le flush entre la lecture et l'ajout refuse l'ajout : recommencer avec celui de la map
+            while (views == null || !views.add(1)) {
+                views = pendingViews.computeIfAbsent(productId, id -> new PendingViews());
+            }
+        }
+    }
+
+    /**
+     * Somme des affichages en attente d'écriture
+     */
+    public long getPendingViews() {
+        long total = 0;
+        for (PendingViews views : pendingViews.values()) {
+            total += views.pending();
+        }
+        return total;
+    }
+
+    @Scheduled(fixedDelayString = "${app.views.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * Vide les compteurs en mémoire et applique les incréments pondérés par le rôle du vendeur
+     * @return Nombre de produits mis à jour
+     */
+    public int flush() {
+        if (!flushLock.tryLock()) {
+            return 0;
+        }
+        try {
+            Map<UUID, Long> drained = drain();
+            if (drained.isEmpty()) {
+                return 0;
+            }
+
+            try {
+                Map<UUID, Boolean> premiumByProduct = resolveSellerTiers(drained.keySet());
+                Map<UUID, Integer> deltas = new HashMap<>(drained.size());
+                long views = 0;
+                for (Map.Entry<UUID, Long> entry : drained.entrySet()) {
+                    boolean premium = premiumByProduct.getOrDefault(entry.getKey(), false);
+                    long increment = entry.getValue() * (premium ? PREMIUM_INCREMENT : STANDARD_INCREMENT);
+                    deltas.put(entry.getKey(), (int) Math.min(increment, Integer.MAX_VALUE));
+                    views += entry.getValue();
+                }
+
+                int updated = productRepository.applyViewsCountDeltas(deltas);
+                flushedViewsCounter.increment(views);
+                log.debug("Flushed viewsCount for {} products ({} views)", updated, views);
+                return updated;
+            } catch (RuntimeException e) {
+                // Remettre les affichages en attente pour le prochain flush
+                // Un compteur présent dans la map n'est jamais retiré : l'ajout fait sous le verrou de la clé réussit
+                drained.forEach((id, count) -> pendingViews.compute(id, (k, views) -> {
+                    PendingViews restored = views != null ? views : new PendingViews();
+                    restored.add(count);
+                    return restored;
+                }));
+                failedFlushesCounter.increment();
+                log.error("Error flushing viewsCount for {} products: {}", drained.size(), e.getMessage());
+                return 0;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        long pending = getPendingViews();
+        if (!flushOnShutdown) {
+            if (pending > 0) {
+                log.warn("Discarding {} pending product views on shutdown", pending);
+            }
+            return;
+        }
+        log.info("Flushing {} pending product views before shutdown", pending);
+        // Attendre un éventuel flush planifié en cours avant le flush final
+        flushLock.lock();
+        try {
+            flush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private Map<UUID, Long> drain() {
+        Map<UUID, Long> drained = new HashMap<>();
+        for (Map.Entry<UUID, PendingViews> entry : pendingViews.entrySet()) {
+            long count = entry.getValue().drain();
+            if (count > 0) {
+                drained.put(entry.getKey(), count);
+            } else {
+                // Un compteur resté à zéro pendant tout un intervalle est retiré pour borner la mémoire. Le retrait ne
+                // réussit que si aucun affichage n'est arrivé depuis le drain ; un appelant qui tenait encore le compteur
+                // voit son ajout refusé et recommence avec un nouveau compteur
+                pendingViews.computeIfPresent(entry.getKey(), (id, views) -> views.retireIfIdle() ? null : views);
+            }
+        }
+        return drained;
+    }
+
+    private Map<UUID, Boolean> resolveSellerTiers(Collection<UUID> productIds) {
+        Map<UUID, Boolean> premiumByProduct = new HashMap<>(premiumSellerByProduct.getAllPresent(productIds));
+
+        List<UUID> missing = new ArrayList<>();
+        for (UUID productId : productIds) {
+            if (!premiumByProduct.containsKey(productId)) {
+                missing.add(productId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (Object[] row : productRepository.findSellerRolesByProductIds(missing)) {
+                UUID productId = (UUID) row[0];
+                boolean premium = row[1] == Role.PREMIUM;
+                premiumByProduct.put(productId, premium);
+                premiumSellerByProduct.put(productId, premium);
+            }
+        }
+        return premiumByProduct;
+    }
+
+    private static final class PendingViews {
+        // Valeur d'un compteur retiré de la map : plus aucun ajout n'y est accepté
+        private static final long RETIRED = Long.MIN_VALUE;
+
+        private final AtomicLong count = new AtomicLong();
+
+        /**
+         * @return false si le compteur a été retiré, l'ajout n'est alors pas compté
+         */
+        private boolean add(long delta) {
+            long current;
+            do {
+                current = count.get();
+                if (current == RETIRED) {
+                    return false;
+                }
+            } while (!count.compareAndSet(current, current + delta));
+            return true;
+        }
+
+        private long pending() {
+            long current = count.get();
+            return current == RETIRED ? 0 : current;
+        }
+
+        private long drain() {
+            return count.getAndSet(0);
+        }
+
+        private boolean retireIfIdle() {
+            return count.compareAndSet(0, RETIRED);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package my.project.qri3a.services;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.dtos.responses.FacetedPageDTO;
+import my.project.qri3a.utils.GeoDistanceFilter;
+import my.project.qri3a.utils.SearchTextNormalizer;
+
+/**
+ * Cache des résultats de recherche OpenSearch et des suggestions.
+ * La clé réunit la requête normalisée, les filtres, la page et la version de l'index ; l'indexeur incrémente cette
+ * version à chaque écriture, si bien que les pages calculées avant une modification ne sont plus jamais servies et
+ * sortent du cache par expiration ou par poids. Le poids d'une entrée est son nombre de documents, augmenté
+ * de ses facettes. Les facettes ne dépendant pas de l'utilisateur, une même recherche anonyme répétée est servie
+ * par le cache.
+ */
+@Service
+public class SearchResultCache {
+
+    private final AtomicLong indexVersion = new AtomicLong();
+    private final Cache<SearchKey, Page<ProductDoc>> searchPages;
+    private final Cache<SuggestionKey, List<ProductDoc>> suggestions;
+
+    public SearchResultCache(MeterRegistry meterRegistry,
+                             @Value("${app.search.cache.max-documents:50000}") long maxDocuments,
+                             @Value("${app.search.cache.search-ttl-seconds:30}") long searchTtlSeconds,
+                             @Value("${app.search.cache.suggestions-ttl-seconds:60}") long suggestionsTtlSeconds) {
+        this.searchPages = Caffeine.newBuilder()
+                .maximumWeight(maxDocuments)
+                .weigher((SearchKey key, Page<ProductDoc> page) -> Math.max(1, page.getNumberOfElements() + facetWeight(page)))
+                .expireAfterWrite(Duration.ofSeconds(searchTtlSeconds))
+                .recordStats()
+                .build();
+        this.suggestions = Caffeine.newBuilder()
+                .maximumWeight(maxDocuments)
+                .weigher((SuggestionKey key, List<ProductDoc> docs) -> Math.max(1, docs.size()))
+                .expireAfterWrite(Duration.ofSeconds(suggestionsTtlSeconds))
+                .recordStats()
+                .build();
+
+        // Expose hits, misses, évictions et taille : cache.gets{cache="search.results",result="hit|miss"}...
+        CaffeineCacheMetrics.monitor(meterRegistry, searchPages, "search.results");
+        CaffeineCacheMetrics.monitor(meterRegistry, suggestions, "search.suggestions");
+        Gauge.builder("search.cache.hit.ratio", searchPages, cache -> cache.stats().hitRate())
+                .tag("cache", "search.results")
+                .register(meterRegistry);
+        Gauge.builder("search.cache.hit.ratio", suggestions, cache -> cache.stats().hitRate())
+                .tag("cache", "search.suggestions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Appelé après chaque écriture dans l'index : les entrées existantes deviennent inaccessibles
+     */
+    public void bumpIndexVersion() {
+        indexVersion.incrementAndGet();
+    }
+
+    /**
+     * Clé d'une page de recherche, à former avant l'appel à OpenSearch pour qu'un résultat calculé pendant une
+     * écriture soit rangé sous l'ancienne version
+     */
+    public SearchKey searchKey(String query, String category, String location, String condition, BigDecimal minPrice,
+                               BigDecimal maxPrice, String city, String delivery, GeoDistanceFilter geo, Pageable pageable,
+                               boolean withFacets) {
+        return new SearchKey(indexVersion.get(), SearchTextNormalizer.normalize(query), trimToNull(category),
+                trimToNull(location), trimToNull(condition), normalizePrice(minPrice), normalizePrice(maxPrice),
+                trimToNull(city), trimToNull(delivery), geo, pageable.getPageNumber(), pageable.getPageSize(),
+                pageable.getSort().toString(), withFacets);
+    }
+
+    public Page<ProductDoc> getSearchPage(SearchKey key) {
+        return searchPages.getIfPresent(key);
+    }
+
+    public void putSearchPage(SearchKey key, Page<ProductDoc> page) {
+        searchPages.put(key, page);
+    }
+
+    public SuggestionKey suggestionKey(String query, String category) {
+        return new SuggestionKey(indexVersion.get(), SearchTextNormalizer.normalize(query), trimToNull(category));
+    }
+
+    public List<ProductDoc> getSuggestions(SuggestionKey key) {
+        return suggestions.getIfPresent(key);
+    }
+
+    public void putSuggestions(SuggestionKey key, List<ProductDoc> docs) {
+        suggestions.put(key, List.copyOf(docs));
+    }
+
+    // Les facettes pèsent leur nombre de valeurs, ramené à l'échelle d'un document
+    private static int facetWeight(Page<ProductDoc> page) {
+        return page instanceof FacetedPageDTO<ProductDoc> faceted && faceted.getFacets() != null
+                ? faceted.getFacets().bucketCount() / 10
+                : 0;
+    }
+
+    private static String trimToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    // 10 et 10.00 désignent le même filtre
+    private static BigDecimal normalizePrice(BigDecimal price) {
+        return price == null ? null : price.stripTrailingZeros();
+    }
+
+    public record SearchKey(long indexVersion, String query, String category, String location, String condition,
+                            BigDecimal minPrice, BigDecimal maxPrice, String city, String delivery, GeoDistanceFilter geo,
+                            int page, int size, String sort, boolean withFacets) {
+    }
+
+    public record SuggestionKey(long indexVersion, String query, String category) {
+    }
+}
@@ -0,0 +1,191 @@
+package my.project.qri3a.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.entities.SearchTerm;
+import my.project.qri3a.enums.ProductStatus;
+import my.project.qri3a.repositories.ProductRepository;
+import my.project.qri3a.repositories.SearchTermRepository;
+import my.project.qri3a.utils.SearchTextNormalizer;
+
+/**
+ * Suggestions de saisie servies en mémoire pour les préfixes courts.
+ * Un trie des titres des produits actifs les plus vus et des termes les plus recherchés est reconstruit
+ * périodiquement ; sa profondeur est limitée à la longueur de préfixe servie et chaque nœud porte directement
+ * ses meilleures suggestions, une recherche coûte donc autant de pas que de caractères saisis.
+ * Les préfixes plus longs, ou sans suggestion locale, partent sur OpenSearch.
+ */
+@Service
+@Slf4j
+public class SearchSuggestionTrie {
+
+    // Nombre maximal de suggestions conservées par nœud (limite de l'API)
+    private static final int SUGGESTIONS_PER_NODE = 10;
+    // Un titre est aussi accessible par ses premiers mots suivants : "iphone 13 pro" répond à "13" et "pro"
+    private static final int MAX_WORD_STARTS = 4;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private final ProductRepository productRepository;
+    private final SearchTermRepository searchTermRepository;
+    private final int maxPrefixLength;
+    private final int popularProducts;
+    private final int popularTerms;
+    private final Counter localHits;
+    private final Counter localMisses;
+
+    private volatile Node root;
+
+    public SearchSuggestionTrie(ProductRepository productRepository,
+                                SearchTermRepository searchTermRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.search.suggest.local-max-prefix:3}") int maxPrefixLength,
+                                @Value("${app.search.suggest.local-products:2000}") int popularProducts,
+                                @Value("${app.search.suggest.local-terms:2000}") int popularTerms) {
+        this.productRepository = productRepository;
+        this.searchTermRepository = searchTermRepository;
+        this.maxPrefixLength = maxPrefixLength;
+        this.popularProducts = popularProducts;
+        this.popularTerms = popularTerms;
+        this.localHits = Counter.builder("search.suggestions.local").tag("result", "hit").register(meterRegistry);
+        this.localMisses = Counter.builder("search.suggestions.local").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * Suggestion locale : produit (identifiant renseigné) ou terme de recherche populaire (identifiant nul)
+     */
+    public record Suggestion(UUID productId, String title, long score) {
+    }
+
+    /**
+     * Suggestions locales pour un préfixe
+     * @return Les meilleures suggestions, null si le préfixe est trop long ou si aucune suggestion locale ne convient
+     */
+    public List<Suggestion> lookup(String prefix, int limit) {
+        Node node = root;
+        String key = normalize(prefix);
+        if (node == null || key.isEmpty() || key.length() > maxPrefixLength) {
+            return null;
+        }
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null || node.suggestions.isEmpty()) {
+            localMisses.increment();
+            return null;
+        }
+        localHits.increment();
+        return node.suggestions.subList(0, Math.min(limit, node.suggestions.size()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.search.suggest.refresh-interval-ms:300000}",
+            fixedDelayString = "${app.search.suggest.refresh-interval-ms:300000}")
+    public void refresh() {
+        try {
+            long start = System.currentTimeMillis();
+            Map<String, Suggestion> entries = loadEntries();
+            root = build(entries.values());
+            log.info("Search suggestion trie rebuilt with {} entries in {} ms", entries.size(), System.currentTimeMillis() - start);
+        } catch (DataAccessException e) {
+            // On garde le trie précédent
+            log.warn("Could not rebuild search suggestion trie: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Titres populaires et termes recherchés, dédoublonnés sur leur forme normalisée (le plus populaire l'emporte)
+     */
+    private Map<String, Suggestion> loadEntries() {
+        Map<String, Suggestion> entries = new LinkedHashMap<>();
+        for (Object[] row : productRepository.findPopularTitlesByStatus(ProductStatus.ACTIVE, PageRequest.of(0, popularProducts))) {
+            String title = (String) row[1];
+            long views = row[2] == null ? 0 : ((Number) row[2]).longValue();
+            merge(entries, new Suggestion((UUID) row[0], title, views));
+        }
+        // Un même terme peut exister pour plusieurs catégories : les compteurs sont additionnés
+        Map<String, Long> termCounts = new HashMap<>();
+        Map<String, String> termLabels = new HashMap<>();
+        for (SearchTerm term : searchTermRepository.findTopSearchTerms(PageRequest.of(0, popularTerms))) {
+            String key = normalize(term.getTerm());
+            if (!key.isEmpty()) {
+                termCounts.merge(key, (long) term.getCount(), Long::sum);
+                termLabels.putIfAbsent(key, term.getTerm().trim());
+            }
+        }
+        termCounts.forEach((key, count) -> merge(entries, new Suggestion(null, termLabels.get(key), count)));
+        return entries;
+    }
+
+    private static void merge(Map<String, Suggestion> entries, Suggestion suggestion) {
+        String key = normalize(suggestion.title());
+        if (!key.isEmpty()) {
+            entries.merge(key, suggestion, (a, b) -> a.score() >= b.score() ? a : b);
+        }
+    }
+
+    private Node build(Iterable<Suggestion> suggestions) {
+        Node newRoot = new Node();
+        for (Suggestion suggestion : suggestions) {
+            String key = normalize(suggestion.title());
+            Set<Node> reached = new HashSet<>();
+            int starts = 0;
+            for (int start = 0; start < key.length() && starts < MAX_WORD_STARTS; start++) {
+                if (start > 0 && key.charAt(start - 1) != ' ') {
+                    continue;
+                }
+                starts++;
+                Node node = newRoot;
+                for (int i = start; i < key.length() && i - start < maxPrefixLength; i++) {
+                    node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+                    // Un titre dont deux mots partagent un préfixe n'apparaît qu'une fois par nœud
+                    if (reached.add(node)) {
+                        node.suggestions.add(suggestion);
+                    }
+                }
+            }
+        }
+        newRoot.trim();
+        return newRoot;
+    }
+
+    // Minuscules et sans accents, comme l'analyseur folding de l'index
+    private static String normalize(String text) {
+        String normalized = SearchTextNormalizer.normalize(text);
+        return DIACRITICS.matcher(Normalizer.normalize(normalized, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private List<Suggestion> suggestions = new ArrayList<>();
+
+        // Ne garder que les meilleures suggestions de chaque nœud, en listes immuables
+        private void trim() {
+            suggestions.sort(Comparator.comparingLong(Suggestion::score).reversed());
+            suggestions = List.copyOf(suggestions.subList(0, Math.min(SUGGESTIONS_PER_NODE, suggestions.size())));
+            for (Node child : children.values()) {
+                child.trim();
+            }
+        }
+    }
+}
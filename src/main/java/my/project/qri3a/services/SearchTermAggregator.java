@@ -0,0 +1,350 @@
+package my.project.qri3a.services;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.repositories.SearchTermRepository;
+import my.project.qri3a.repositories.SearchTermRepositoryCustom.TermDelta;
+import my.project.qri3a.utils.CountMinSketch;
+
+/**
+ * Compteurs des termes de recherche en écriture différée.
+ * Chaque recherche incrémente en mémoire le compteur de son couple (terme, catégorie), sans accès à la base ;
+ * un flusher planifié ajoute les compteurs accumulés par un seul INSERT ... ON CONFLICT DO UPDATE, l'incrément
+ * étant fait par la base, aucune recherche concurrente n'est perdue.
+ * Le nombre de couples suivis exactement est borné : au-delà, les fréquences sont estimées par une esquisse
+ * Count-Min, qui ne sert qu'à choisir les termes les plus fréquents de cette longue traîne (tas top-K). L'estimation
+ * n'est jamais écrite : un terme du tas compte exactement ses occurrences à partir de son entrée et seul ce compte
+ * est écrit, les occurrences antérieures étant perdues (écart par défaut, jamais par excès). Au flush, les termes du
+ * tas sont promus dans les compteurs exacts tant qu'il y a de la place.
+ * Les compteurs écrits alimentent aussi les tendances de {@link TrendingSearchService}.
+ */
+@Service
+@Slf4j
+public class SearchTermAggregator {
+
+    private final SearchTermRepository searchTermRepository;
+    private final TrendingSearchService trendingSearchService;
+    private final ConcurrentHashMap<TermKey, Tally> pendingTerms = new ConcurrentHashMap<>();
+    private final AtomicReference<CountMinSketch> overflowSketch;
+    private final PriorityQueue<HeavyHitter> heavyHitters;
+    private final Map<TermKey, HeavyHitter> heavyHittersByKey = new HashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final int maxTrackedTerms;
+    private final int maxHeavyHitters;
+    private final int sketchDepth;
+    private final int sketchWidth;
+    private final Counter flushedSearchesCounter;
+    private final Counter failedFlushesCounter;
+    private final Counter overflowSearchesCounter;
+
+    // Estimation minimale pour entrer dans le tas quand il est plein, lue sans verrou
+    private volatile long heavyHitterFloor;
+    private volatile boolean schemaReady;
+
+    public SearchTermAggregator(SearchTermRepository searchTermRepository,
+                                TrendingSearchService trendingSearchService,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.search.terms.max-tracked:10000}") int maxTrackedTerms,
+                                @Value("${app.search.terms.heavy-hitters:500}") int maxHeavyHitters,
+                                @Value("${app.search.terms.sketch-depth:4}") int sketchDepth,
+                                @Value("${app.search.terms.sketch-width:8192}") int sketchWidth) {
+        this.searchTermRepository = searchTermRepository;
+        this.trendingSearchService = trendingSearchService;
+        this.maxTrackedTerms = maxTrackedTerms;
+        this.maxHeavyHitters = maxHeavyHitters;
+        this.sketchDepth = sketchDepth;
+        this.sketchWidth = sketchWidth;
+        this.overflowSketch = new AtomicReference<>(new CountMinSketch(sketchDepth, sketchWidth));
+        this.heavyHitters = new PriorityQueue<>(maxHeavyHitters + 1, (a, b) -> Long.compare(a.estimate, b.estimate));
+
+        Gauge.builder("search.terms.pending.terms", pendingTerms, Map::size)
+                .description("Couples (terme, catégorie) suivis en mémoire et pas encore écrits en base")
+                .register(meterRegistry);
+        this.flushedSearchesCounter = Counter.builder("search.terms.flushed")
+                .description("Recherches écrites en base par le flusher")
+                .register(meterRegistry);
+        this.failedFlushesCounter = Counter.builder("search.terms.flush.failures")
+                .description("Flushs échoués, les compteurs sont remis en attente")
+                .register(meterRegistry);
+        this.overflowSearchesCounter = Counter.builder("search.terms.overflow")
+                .description("Recherches comptées par l'esquisse faute de place dans les compteurs exacts")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Vérifie que les index uniques du script db/search-terms.sql sont en place ; sinon les compteurs restent en
+     * mémoire et la vérification est refaite périodiquement, de sorte qu'une instance démarrée avant le script
+     * commence à écrire sans redémarrage.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepareSchema() {
+        try {
+            List<String> problems = searchTermRepository.findUpsertSchemaProblems();
+            if (!problems.isEmpty()) {
+                log.warn("Search term upsert schema unavailable, search terms will not be persisted ({}); " +
+                        "run db/search-terms.sql", String.join(", ", problems));
+                return;
+            }
+        } catch (DataAccessException e) {
+            log.warn("Search term upsert schema unavailable, search terms will not be persisted: {}", e.getMessage());
+            return;
+        }
+        // Avant le premier flush, pour ne pas compter deux fois ce qui est écrit pendant le rechargement
+        trendingSearchService.reload();
+        schemaReady = true;
+        log.info("Search term upsert schema ready");
+    }
+
+    @Scheduled(initialDelayString = "${app.search.terms.schema-check-interval-ms:60000}",
+            fixedDelayString = "${app.search.terms.schema-check-interval-ms:60000}")
+    public void recheckSchema() {
+        if (!schemaReady) {
+            prepareSchema();
+        }
+    }
+
+    /**
+     * Recharge les tendances depuis la base, où les autres instances écrivent aussi leurs agrégats.
+     * Le verrou du flush évite qu'un lot écrit pendant le rechargement soit compté deux fois.
+     */
+    @Scheduled(initialDelayString = "${app.search.trending.reload-interval-ms:900000}",
+            fixedDelayString = "${app.search.trending.reload-interval-ms:900000}")
+    public void reloadTrending() {
+        if (!schemaReady) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            trendingSearchService.reload();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Compte une recherche. Aucun accès à la base n'est effectué ici.
+     * @param term Terme normalisé
+     * @param category Catégorie, null si aucune
+     * @param location Localisation, null si aucune
+     */
+    public void record(String term, String category, String location) {
+        TermKey key = new TermKey(term, category);
+        Tally tally = pendingTerms.get(key);
+        while (tally != null || pendingTerms.size() < maxTrackedTerms) {
+            if (tally == null) {
+                tally = pendingTerms.computeIfAbsent(key, k -> new Tally());
+            }
+            if (tally.add(1)) {
+                if (location != null) {
+                    tally.location = location;
+                }
+                return;
+            }
+            // Compteur retiré par le flush entre la lecture et l'ajout : recommencer avec celui de la map
+            tally = pendingTerms.get(key);
+        }
+
+        // Longue traîne : seule une estimation est tenue, la clé n'est gardée que si elle fait partie des plus fréquentes
+        overflowSearchesCounter.increment();
+        long estimate = overflowSketch.get().addAndEstimate(key);
+        // Un terme du tas a une estimation supérieure au plancher : chacune de ses occurrences passe par le tas
+        if (estimate > heavyHitterFloor) {
+            offerHeavyHitter(key, location, estimate);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.terms.flush-interval-ms:10000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * Écrit les compteurs accumulés depuis le dernier flush
+     * @return Nombre de couples (terme, catégorie) écrits
+     */
+    public int flush() {
+        if (!schemaReady || !flushLock.tryLock()) {
+            return 0;
+        }
+        try {
+            Map<TermKey, TermDelta> drained = drain();
+            if (drained.isEmpty()) {
+                return 0;
+            }
+
+            try {
+                List<TermDelta> deltas = new ArrayList<>(drained.values());
+                LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+                int updated = searchTermRepository.upsertCounts(deltas, hour);
+                trendingSearchService.record(deltas, hour);
+                long searches = 0;
+                for (TermDelta delta : drained.values()) {
+                    searches += delta.count();
+                }
+                flushedSearchesCounter.increment(searches);
+                log.debug("Flushed {} search terms ({} searches)", updated, searches);
+                return updated;
+            } catch (DataAccessException e) {
+                // Remettre les compteurs en attente pour le prochain flush
+                // Un compteur présent dans la map n'est jamais retiré : l'ajout fait sous le verrou de la clé réussit
+                drained.forEach((key, delta) -> pendingTerms.compute(key, (k, tally) -> {
+                    Tally restored = tally != null ? tally : new Tally();
+                    restored.add(delta.count());
+                    if (restored.location == null) {
+                        restored.location = delta.location();
+                    }
+                    return restored;
+                }));
+                failedFlushesCounter.increment();
+                log.error("Error flushing {} search terms: {}", drained.size(), e.getMessage());
+                return 0;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        // Attendre un éventuel flush planifié en cours avant le flush final
+        flushLock.lock();
+        try {
+            flush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private synchronized void offerHeavyHitter(TermKey key, String location, long estimate) {
+        HeavyHitter existing = heavyHittersByKey.get(key);
+        if (existing != null) {
+            heavyHitters.remove(existing);
+            existing.estimate = estimate;
+            existing.count++;
+            if (location != null) {
+                existing.location = location;
+            }
+            heavyHitters.add(existing);
+        } else if (heavyHitters.size() < maxHeavyHitters || estimate > heavyHitters.peek().estimate) {
+            HeavyHitter hitter = new HeavyHitter(key, location, estimate);
+            heavyHitters.add(hitter);
+            heavyHittersByKey.put(key, hitter);
+            if (heavyHitters.size() > maxHeavyHitters) {
+                heavyHittersByKey.remove(heavyHitters.poll().key);
+            }
+        }
+        heavyHitterFloor = heavyHitters.size() < maxHeavyHitters ? 0 : heavyHitters.peek().estimate;
+    }
+
+    private Map<TermKey, TermDelta> drain() {
+        Map<TermKey, TermDelta> drained = new HashMap<>();
+        for (Map.Entry<TermKey, Tally> entry : pendingTerms.entrySet()) {
+            long count = entry.getValue().drain();
+            if (count > 0) {
+                TermKey key = entry.getKey();
+                drained.put(key, new TermDelta(key.term(), key.category(), entry.getValue().location, count));
+            } else {
+                // Un compteur resté à zéro pendant tout un intervalle est retiré pour libérer sa place. Le retrait ne
+                // réussit que si aucun ajout n'est arrivé depuis le drain ; un appelant qui tenait encore le compteur
+                // voit son ajout refusé et recommence avec un nouveau compteur
+                pendingTerms.computeIfPresent(entry.getKey(), (key, tally) -> tally.retireIfIdle() ? null : tally);
+            }
+        }
+
+        // La longue traîne repart d'une esquisse vide à chaque intervalle
+        overflowSketch.set(new CountMinSketch(sketchDepth, sketchWidth));
+        List<HeavyHitter> hitters;
+        synchronized (this) {
+            hitters = new ArrayList<>(heavyHitters);
+            heavyHitters.clear();
+            heavyHittersByKey.clear();
+            heavyHitterFloor = 0;
+        }
+        for (HeavyHitter hitter : hitters) {
+            drained.merge(hitter.key, new TermDelta(hitter.key.term(), hitter.key.category(), hitter.location, hitter.count),
+                    (a, b) -> new TermDelta(a.term(), a.category(), a.location() != null ? a.location() : b.location(),
+                            a.count() + b.count()));
+        }
+
+        // Les plus fréquents d'abord : ils seront comptés exactement dès leur première occurrence de l'intervalle
+        hitters.sort((a, b) -> Long.compare(b.estimate, a.estimate));
+        for (HeavyHitter hitter : hitters) {
+            if (pendingTerms.size() >= maxTrackedTerms) {
+                break;
+            }
+            Tally tally = new Tally();
+            tally.location = hitter.location;
+            pendingTerms.putIfAbsent(hitter.key, tally);
+        }
+        return drained;
+    }
+
+    private record TermKey(String term, String category) {
+    }
+
+    private static final class Tally {
+        // Valeur d'un compteur retiré de la map : plus aucun ajout n'y est accepté
+        private static final long RETIRED = Long.MIN_VALUE;
+
+        private final AtomicLong count = new AtomicLong();
+        private volatile String location;
+
+        /**
+         * @return false si le compteur a été retiré, l'ajout n'est alors pas compté
+         */
+        private boolean add(long delta) {
+            long current;
+            do {
+                current = count.get();
+                if (current == RETIRED) {
+                    return false;
+                }
+            } while (!count.compareAndSet(current, current + delta));
+            return true;
+        }
+
+        private long drain() {
+            return count.getAndSet(0);
+        }
+
+        private boolean retireIfIdle() {
+            return count.compareAndSet(0, RETIRED);
+        }
+    }
+
+    private static final class HeavyHitter {
+        private final TermKey key;
+        private String location;
+        private long estimate;
+        // Occurrences comptées depuis l'entrée dans le tas, seules écrites en base
+        private long count = 1;
+
+        private HeavyHitter(TermKey key, String location, long estimate) {
+            this.key = key;
+            this.location = location;
+            this.estimate = estimate;
+        }
+    }
+}
@@ -40,6 +40,15 @@ public interface SearchTermService {
      * @return Liste des termes les plus recherchés dans la catégorie
      */
     List<SearchTerm> getTopSearchTermsByCategory(String category, int limit);
+
+    /**
+     * Récupère les termes de recherche tendance (fenêtre glissante, décroissance exponentielle), servis depuis la mémoire
+     * 
+     * @param category La catégorie à filtrer, peut être null
+     * @param limit Nombre maximum de termes à récupérer
+     * @return Liste des termes tendance, les plus forts d'abord
+     */
+    List<String> getTrendingSearchTerms(String category, int limit);
     
     /**
      * Enregistre un terme de recherche dans l'historique de l'utilisateur
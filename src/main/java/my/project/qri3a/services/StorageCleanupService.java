@@ -0,0 +1,59 @@
+package my.project.qri3a.services;
+
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import my.project.qri3a.jobs.JobHandler;
+import my.project.qri3a.jobs.JobQueue;
+import my.project.qri3a.jobs.JobType;
+
+/**
+ * Suppression des fichiers S3 par la file de travaux, après le commit de la transaction qui retire leur référence :
+ * une transaction annulée ne laisse plus d'image pointant vers un fichier supprimé, et la requête n'attend plus S3.
+ * Supprimer un fichier absent ne fait rien, un travail rejoué est donc sans effet.
+ */
+@Service
+@RequiredArgsConstructor
+public class StorageCleanupService implements JobHandler<StorageCleanupService.FileDeletion> {
+
+    public static final JobType<FileDeletion> JOB = new JobType<>("storage-cleanup", FileDeletion.class);
+
+    private final S3Service s3Service;
+    private final JobQueue jobQueue;
+
+    /**
+     * @param keys Clés (noms des fichiers) dans le bucket
+     */
+    public record FileDeletion(List<String> keys) {
+    }
+
+    @Override
+    public JobType<FileDeletion> type() {
+        return JOB;
+    }
+
+    /**
+     * Programme la suppression d'un fichier après le commit de la transaction en cours
+     */
+    public void deleteFile(String key) {
+        deleteFiles(List.of(key));
+    }
+
+    /**
+     * Programme la suppression de plusieurs fichiers après le commit de la transaction en cours
+     */
+    public void deleteFiles(List<String> keys) {
+        if (!keys.isEmpty()) {
+            jobQueue.enqueueAfterCommit(JOB, new FileDeletion(List.copyOf(keys)));
+        }
+    }
+
+    @Override
+    public void handle(FileDeletion deletion) {
+        for (String key : deletion.keys()) {
+            s3Service.deleteFile(key);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package my.project.qri3a.services;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.entities.SearchTerm;
+import my.project.qri3a.enums.ProductCategory;
+import my.project.qri3a.repositories.SearchTermRepository;
+import my.project.qri3a.repositories.SearchTermRepositoryCustom.HourlyCount;
+import my.project.qri3a.repositories.SearchTermRepositoryCustom.TermDelta;
+
+/**
+ * Recherches tendance servies depuis la mémoire.
+ * Les compteurs écrits par {@link SearchTermAggregator} sont répartis en tranches horaires sur une fenêtre glissante,
+ * par catégorie et toutes catégories confondues ; le score d'un terme est la somme de ses tranches pondérées par une
+ * décroissance exponentielle (demi-vie configurable), un terme qui n'est plus recherché sort donc du classement.
+ * Les classements sont recalculés périodiquement et publiés d'un bloc : une lecture ne coûte que la copie des
+ * premiers termes. Au démarrage, la fenêtre est reconstruite depuis les agrégats horaires en base ; les rechargements
+ * suivants ne relisent que les heures à partir de celle du rechargement précédent, seules à avoir pu changer.
+ * Seules les catégories de produit connues ont un classement propre : toute autre valeur ne compte que dans le
+ * classement toutes catégories confondues.
+ */
+@Service
+@Slf4j
+public class TrendingSearchService {
+
+    // Clé du classement toutes catégories confondues
+    private static final String ALL_CATEGORIES = "";
+
+    private final SearchTermRepository searchTermRepository;
+    private final Map<String, Window> windows = new HashMap<>();
+    private final int windowHours;
+    private final double[] weightByAge;
+    private final int maxTermsPerBucket;
+    private final int maxCategories;
+    private final int rankingSize;
+
+    // Classements publiés, lus sans verrou
+    private volatile Map<String, List<String>> rankings = Map.of();
+    // Heure courante lors du dernier rechargement, Long.MIN_VALUE avant le premier
+    private long lastReloadHour = Long.MIN_VALUE;
+
+    public TrendingSearchService(SearchTermRepository searchTermRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.search.trending.window-hours:48}") int windowHours,
+                                 @Value("${app.search.trending.half-life-hours:6}") double halfLifeHours,
+                                 @Value("${app.search.trending.max-terms-per-bucket:5000}") int maxTermsPerBucket,
+                                 @Value("${app.search.trending.max-categories:100}") int maxCategories,
+                                 @Value("${app.search.trending.ranking-size:50}") int rankingSize) {
+        this.searchTermRepository = searchTermRepository;
+        this.windowHours = windowHours;
+        this.maxTermsPerBucket = maxTermsPerBucket;
+        this.maxCategories = maxCategories;
+        this.rankingSize = rankingSize;
+        this.weightByAge = new double[windowHours];
+        for (int age = 0; age < windowHours; age++) {
+            weightByAge[age] = Math.pow(0.5, age / halfLifeHours);
+        }
+
+        Gauge.builder("search.trending.categories", this, service -> service.rankings.size())
+                .description("Classements de recherches tendance publiés (dont toutes catégories)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Termes tendance, les plus forts d'abord. Aucun accès à la base n'est effectué.
+     * @param category Catégorie, null ou vide pour toutes les catégories
+     * @param limit Nombre maximal de termes (borné par la taille des classements)
+     */
+    public List<String> getTrendingTerms(String category, int limit) {
+        String key = ALL_CATEGORIES;
+        if (category != null && !category.trim().isEmpty()) {
+            ProductCategory productCategory = parseCategory(category);
+            if (productCategory == null) {
+                return List.of();
+            }
+            key = productCategory.name();
+        }
+        List<String> ranking = rankings.getOrDefault(key, List.of());
+        return ranking.subList(0, Math.max(0, Math.min(limit, ranking.size())));
+    }
+
+    /**
+     * Ajoute des compteurs écrits en base à la tranche de l'heure donnée
+     * @param hour Début de l'heure à laquelle les compteurs ont été attribués
+     */
+    public synchronized void record(List<TermDelta> deltas, LocalDateTime hour) {
+        long epochHour = toEpochHour(hour);
+        for (TermDelta delta : deltas) {
+            add(delta.term(), delta.category(), epochHour, delta.count());
+        }
+    }
+
+    /**
+     * Recharge la fenêtre depuis les agrégats horaires en base puis publie les classements.
+     * Après un premier chargement complet, seules les heures à partir de celle du rechargement précédent sont relues
+     * et remplacées : les heures antérieures sont closes et déjà en mémoire.
+     */
+    public void reload() {
+        long currentHour = toEpochHour(currentHour());
+        long since;
+        synchronized (this) {
+            since = lastReloadHour;
+        }
+        if (since == Long.MIN_VALUE || currentHour - since >= windowHours) {
+            reloadAll(currentHour);
+            return;
+        }
+        try {
+            List<HourlyCount> hourlyCounts = searchTermRepository.findHourlyCountsSince(
+                    fromEpochHour(since), maxTermsPerBucket * (int) (currentHour - since + 1));
+            synchronized (this) {
+                for (Window window : windows.values()) {
+                    for (long hour = since; hour <= currentHour; hour++) {
+                        window.clear(hour);
+                    }
+                }
+                for (HourlyCount hourlyCount : hourlyCounts) {
+                    add(hourlyCount.term(), hourlyCount.category(), toEpochHour(hourlyCount.hour()), hourlyCount.count());
+                }
+                publish(currentHour);
+                lastReloadHour = currentHour;
+            }
+            log.debug("Trending searches refreshed from {} hourly aggregates since {}", hourlyCounts.size(), fromEpochHour(since));
+        } catch (DataAccessException e) {
+            log.error("Error refreshing trending searches: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reconstruit toute la fenêtre. Sans aucun agrégat (premier démarrage), la fenêtre est amorcée avec les termes
+     * les plus recherchés depuis toujours, placés dans la tranche la plus ancienne : la moindre activité récente les
+     * dépasse.
+     */
+    private void reloadAll(long currentHour) {
+        long oldestHour = currentHour - windowHours + 1;
+        try {
+            List<HourlyCount> hourlyCounts = searchTermRepository.findHourlyCountsSince(
+                    fromEpochHour(oldestHour), maxTermsPerBucket * windowHours);
+            List<SearchTerm> seed = hourlyCounts.isEmpty()
+                    ? searchTermRepository.findTopSearchTerms(PageRequest.of(0, rankingSize * 4))
+                    : List.of();
+
+            synchronized (this) {
+                windows.clear();
+                for (HourlyCount hourlyCount : hourlyCounts) {
+                    add(hourlyCount.term(), hourlyCount.category(), toEpochHour(hourlyCount.hour()), hourlyCount.count());
+                }
+                for (SearchTerm term : seed) {
+                    add(term.getTerm(), term.getCategory(), oldestHour, term.getCount());
+                }
+                publish(currentHour);
+                lastReloadHour = currentHour;
+            }
+            log.info("Trending searches rebuilt from {} hourly aggregates ({} seeded terms)", hourlyCounts.size(), seed.size());
+        } catch (DataAccessException e) {
+            log.error("Error rebuilding trending searches: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.trending.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        publish(toEpochHour(currentHour()));
+    }
+
+    @Scheduled(initialDelayString = "${app.search.trending.purge-interval-ms:3600000}",
+            fixedDelayString = "${app.search.trending.purge-interval-ms:3600000}")
+    public void purgeExpiredAggregates() {
+        try {
+            int deleted = searchTermRepository.deleteHourlyCountsBefore(
+                    fromEpochHour(toEpochHour(currentHour()) - windowHours + 1));
+            log.debug("Purged {} expired hourly search aggregates", deleted);
+        } catch (DataAccessException e) {
+            log.error("Error purging hourly search aggregates: {}", e.getMessage());
+        }
+    }
+
+    private void add(String term, String category, long epochHour, long count) {
+        addToWindow(ALL_CATEGORIES, term, epochHour, count);
+        ProductCategory productCategory = category == null || category.isEmpty() ? null : parseCategory(category);
+        if (productCategory != null) {
+            addToWindow(productCategory.name(), term, epochHour, count);
+        }
+    }
+
+    /**
+     * @return La catégorie de produit correspondante, null pour une valeur inconnue
+     */
+    private static ProductCategory parseCategory(String category) {
+        try {
+            return ProductCategory.valueOf(category.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void addToWindow(String key, String term, long epochHour, long count) {
+        Window window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= maxCategories) {
+                return;
+            }
+            window = new Window(windowHours);
+            windows.put(key, window);
+        }
+        window.add(term, epochHour, count, maxTermsPerBucket);
+    }
+
+    private void publish(long currentHour) {
+        Map<String, List<String>> published = new HashMap<>();
+        Iterator<Map.Entry<String, Window>> iterator = windows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Window> entry = iterator.next();
+            List<String> ranking = entry.getValue().rank(currentHour, weightByAge, rankingSize);
+            if (ranking.isEmpty()) {
+                // Catégorie sans recherche dans la fenêtre : sa place est libérée
+                iterator.remove();
+            } else {
+                published.put(entry.getKey(), ranking);
+            }
+        }
+        rankings = Map.copyOf(published);
+    }
+
+    private static LocalDateTime currentHour() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static long toEpochHour(LocalDateTime hour) {
+        return Math.floorDiv(hour.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    private static LocalDateTime fromEpochHour(long epochHour) {
+        return LocalDateTime.ofEpochSecond(epochHour * 3600, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Fenêtre glissante d'une catégorie : une tranche par heure, réutilisée circulairement
+     */
+    private static final class Window {
+        private final Bucket[] buckets;
+
+        private Window(int hours) {
+            this.buckets = new Bucket[hours];
+            for (int i = 0; i < hours; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        /**
+         * Vide la tranche d'une heure avant de la recharger
+         */
+        private void clear(long epochHour) {
+            Bucket bucket = buckets[(int) Math.floorMod(epochHour, (long) buckets.length)];
+            if (bucket.hour == epochHour) {
+                bucket.counts.clear();
+            }
+        }
+
+        private void add(String term, long epochHour, long count, int maxTerms) {
+            Bucket bucket = buckets[(int) Math.floorMod(epochHour, (long) buckets.length)];
+            if (bucket.hour != epochHour) {
+                if (epochHour < bucket.hour) {
+                    return; // Heure sortie de la fenêtre
+                }
+                bucket.hour = epochHour;
+                bucket.counts.clear();
+            }
+            // La longue traîne d'une heure chargée n'entre pas dans les classements
+            if (bucket.counts.size() < maxTerms || bucket.counts.containsKey(term)) {
+                bucket.counts.merge(term, count, Long::sum);
+            }
+        }
+
+        private List<String> rank(long currentHour, double[] weightByAge, int size) {
+            Map<String, Double> scores = new HashMap<>();
+            for (Bucket bucket : buckets) {
+                long age = currentHour - bucket.hour;
+                if (age < 0 || age >= weightByAge.length) {
+                    continue;
+                }
+                double weight = weightByAge[(int) age];
+                bucket.counts.forEach((term, count) -> scores.merge(term, count * weight, Double::sum));
+            }
+
+            PriorityQueue<Map.Entry<String, Double>> top = new PriorityQueue<>(size + 1, Map.Entry.comparingByValue());
+            for (Map.Entry<String, Double> score : scores.entrySet()) {
+                top.add(score);
+                if (top.size() > size) {
+                    top.poll();
+                }
+            }
+            List<String> ranking = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                ranking.add(top.poll().getKey());
+            }
+            Collections.reverse(ranking);
+            return List.copyOf(ranking);
+        }
+    }
+
+    private static final class Bucket {
+        private long hour = Long.MIN_VALUE;
+        private final Map<String, Long> counts = new HashMap<>();
+    }
+}
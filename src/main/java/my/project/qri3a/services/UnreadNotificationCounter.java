@@ -0,0 +1,229 @@
+package my.project.qri3a.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.repositories.NotificationRepository;
+import my.project.qri3a.repositories.UserRepository;
+
+/**
+ * Compteurs de notifications non lues par utilisateur, tenus en mémoire.
+ * Un compteur est chargé par une requête au premier besoin, puis suivi par les créations et les lectures de
+ * notifications (toujours après le commit, pour ne compter que des données validées). Les écritures qui ne passent
+ * pas par ces chemins (suppressions en cascade, autres instances) sont rattrapées par un recalage périodique des
+ * compteurs en cache, par lots et en une requête par lot.
+ * Chaque compteur retient l'instant où sa requête de chargement est partie : un compteur chargé après le début de
+ * l'écriture d'une notification a pu la voir, il est alors rechargé au lieu d'être incrémenté.
+ */
+@Service
+@Slf4j
+public class UnreadNotificationCounter {
+
+    private final NotificationRepository notificationRepository;
+    private final UserRepository userRepository;
+    private final Cache<UUID, Count> counts;
+    private final Cache<String, UUID> userIdByEmail;
+    private final int reconcileBatchSize;
+    private final Counter loadsCounter;
+    private final Counter correctionsCounter;
+
+    public UnreadNotificationCounter(NotificationRepository notificationRepository,
+                                     UserRepository userRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.notifications.unread.cache-size:100000}") long cacheSize,
+                                     @Value("${app.notifications.unread.expire-after-access-minutes:60}") long expireAfterAccessMinutes,
+                                     @Value("${app.notifications.unread.reconcile-batch-size:1000}") int reconcileBatchSize) {
+        this.notificationRepository = notificationRepository;
+        this.userRepository = userRepository;
+        this.reconcileBatchSize = reconcileBatchSize;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterAccess(Duration.ofMinutes(expireAfterAccessMinutes))
+                .build();
+        this.userIdByEmail = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+
+        Gauge.builder("notifications.unread.cached", counts, Cache::estimatedSize)
+                .description("Compteurs de notifications non lues tenus en mémoire")
+                .register(meterRegistry);
+        this.loadsCounter = Counter.builder("notifications.unread.loads")
+                .description("Compteurs de notifications non lues chargés depuis la base")
+                .register(meterRegistry);
+        this.correctionsCounter = Counter.builder("notifications.unread.corrections")
+                .description("Compteurs corrigés par le recalage périodique")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Nombre de notifications non lues d'un utilisateur, chargé au premier appel
+     */
+    public long get(UUID userId) {
+        return counts.get(userId, this::load).value.get();
+    }
+
+    /**
+     * Nombre de notifications non lues de l'utilisateur authentifié, sans charger l'utilisateur
+     * @return Vide si aucun utilisateur ne porte cet email
+     */
+    public Optional<Long> getByEmail(String email) {
+        UUID userId = userIdByEmail.getIfPresent(email);
+        if (userId == null) {
+            Optional<UUID> found = userRepository.findIdByEmail(email);
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            userId = found.get();
+            userIdByEmail.put(email, userId);
+        }
+        return Optional.of(get(userId));
+    }
+
+    /**
+     * Compte une nouvelle notification non lue par utilisateur. À appeler après le commit : un compteur absent du
+     * cache, ou chargé depuis le début de l'écriture et qui a donc pu voir la notification, est rechargé depuis la
+     * base, qui l'inclut déjà, au lieu d'être incrémenté. Les compteurs à recharger le sont en une seule requête.
+     * @param writeStartedAt {@link System#nanoTime()} relevé avant l'écriture des notifications
+     * @return Nouveau nombre de notifications non lues de chaque utilisateur (absent si le chargement a échoué)
+     */
+    public Map<UUID, Long> increment(Collection<UUID> userIds, long writeStartedAt) {
+        Map<UUID, Long> result = new HashMap<>();
+        Set<UUID> toLoad = new LinkedHashSet<>();
+        for (UUID userId : userIds) {
+            Count count = counts.getIfPresent(userId);
+            if (count != null && count.loadedAt - writeStartedAt < 0) {
+                result.put(userId, count.value.incrementAndGet());
+            } else {
+                toLoad.add(userId);
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            long loadedAt = System.nanoTime();
+            Map<UUID, Long> loaded;
+            try {
+                loaded = loadAll(toLoad);
+            } catch (DataAccessException e) {
+                // Les notifications sont déjà enregistrées : elles partent sans compteur, rechargé au prochain besoin
+                log.warn("Error loading {} unread notification counters: {}", toLoad.size(), e.getMessage());
+                toLoad.forEach(counts::invalidate);
+                return result;
+            }
+            for (UUID userId : toLoad) {
+                Count fresh = new Count(loaded.getOrDefault(userId, 0L), loadedAt);
+                // Seul un compteur chargé depuis par une lecture est au moins aussi récent que celui-ci
+                Count count = counts.asMap().merge(userId, fresh,
+                        (current, reloaded) -> current.loadedAt - reloaded.loadedAt >= 0 ? current : reloaded);
+                result.put(userId, count.value.get());
+            }
+            loadsCounter.increment(toLoad.size());
+        }
+        return result;
+    }
+
+    /**
+     * Recale un compteur déjà en cache sur la valeur calculée par une autre instance ; un compteur absent n'est pas
+     * créé, il sera chargé au premier besoin
+     */
+    public void update(UUID userId, long unreadCount) {
+        Count count = counts.policy().getIfPresentQuietly(userId);
+        if (count != null) {
+            count.value.set(unreadCount);
+        }
+    }
+
+    /**
+     * Remet le compteur d'un utilisateur à zéro, après que toutes ses notifications ont été lues
+     */
+    public void reset(UUID userId) {
+        counts.put(userId, new Count(0, System.nanoTime()));
+    }
+
+    /**
+     * Oublie le compteur d'un utilisateur, rechargé depuis la base au prochain besoin
+     */
+    public void invalidate(UUID userId) {
+        counts.invalidate(userId);
+    }
+
+    /**
+     * Recale les compteurs en cache sur la base. Une création concurrente peut être écrasée par la valeur lue :
+     * l'écart est rattrapé au recalage suivant.
+     */
+    @Scheduled(initialDelayString = "${app.notifications.unread.reconcile-interval-ms:300000}",
+            fixedDelayString = "${app.notifications.unread.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        List<UUID> cached = new ArrayList<>(counts.asMap().keySet());
+        int corrected = 0;
+        try {
+            for (int from = 0; from < cached.size(); from += reconcileBatchSize) {
+                List<UUID> batch = cached.subList(from, Math.min(from + reconcileBatchSize, cached.size()));
+                long loadedAt = System.nanoTime();
+                Map<UUID, Long> loaded = loadAll(batch);
+                for (UUID userId : batch) {
+                    // Lecture sans effet sur l'expiration : le recalage ne garde pas en cache les utilisateurs inactifs
+                    Count count = counts.policy().getIfPresentQuietly(userId);
+                    long value = loaded.getOrDefault(userId, 0L);
+                    if (count == null) {
+                        continue;
+                    }
+                    // Daté avant la valeur : une incrémentation concurrente recharge plutôt que de compter deux fois
+                    count.loadedAt = loadedAt;
+                    if (count.value.getAndSet(value) != value) {
+                        corrected++;
+                    }
+                }
+            }
+        } catch (DataAccessException e) {
+            log.error("Error reconciling unread notification counters: {}", e.getMessage());
+        }
+        correctionsCounter.increment(corrected);
+        log.debug("Reconciled {} unread notification counters, {} corrected", cached.size(), corrected);
+    }
+
+    private Count load(UUID userId) {
+        loadsCounter.increment();
+        long loadedAt = System.nanoTime();
+        return new Count(notificationRepository.countUnreadByUserId(userId), loadedAt);
+    }
+
+    private Map<UUID, Long> loadAll(Collection<UUID> userIds) {
+        Map<UUID, Long> loaded = new HashMap<>();
+        for (Object[] row : notificationRepository.countUnreadByUserIds(userIds)) {
+            loaded.put((UUID) row[0], (Long) row[1]);
+        }
+        return loaded;
+    }
+
+    private static final class Count {
+        private final AtomicLong value;
+        // System.nanoTime() au départ de la requête dont la valeur est issue
+        private volatile long loadedAt;
+
+        private Count(long value, long loadedAt) {
+            this.value = new AtomicLong(value);
+            this.loadedAt = loadedAt;
+        }
+    }
+}
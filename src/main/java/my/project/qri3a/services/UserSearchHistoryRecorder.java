@@ -0,0 +1,203 @@
+package my.project.qri3a.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import my.project.qri3a.repositories.UserSearchHistoryRepository;
+import my.project.qri3a.repositories.UserSearchHistoryRepositoryCustom.HistoryRow;
+
+/**
+ * Historique de recherche des utilisateurs en écriture différée.
+ * La requête de recherche ne fait que déposer la recherche dans une file bornée (sans accès à la base) ;
+ * un écrivain planifié la vide par lots : écriture JDBC par lots avec remontée des termes déjà présents, chaque
+ * email étant résolu en utilisateur par l'instruction elle-même, puis limitation du nombre d'entrées par utilisateur.
+ * L'historique est une donnée de confort : si la file est pleine, la recherche est abandonnée et comptée.
+ */
+@Service
+@Slf4j
+public class UserSearchHistoryRecorder {
+
+    private final UserSearchHistoryRepository userSearchHistoryRepository;
+    private final BlockingQueue<PendingSearch> queue;
+    private final Cache<String, SearchSignature> lastSearchByEmail;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final int batchSize;
+    private final int maxEntriesPerUser;
+    private final Counter droppedCounter;
+    private final Counter deduplicatedCounter;
+    private final Counter writtenCounter;
+    private final Counter failedWritesCounter;
+
+    private volatile boolean schemaReady;
+
+    public UserSearchHistoryRecorder(UserSearchHistoryRepository userSearchHistoryRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.search.history.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${app.search.history.batch-size:500}") int batchSize,
+                                     @Value("${app.search.history.max-entries-per-user:50}") int maxEntriesPerUser,
+                                     @Value("${app.search.history.user-cache-size:50000}") long userCacheSize) {
+        this.userSearchHistoryRepository = userSearchHistoryRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxEntriesPerUser = maxEntriesPerUser;
+        this.lastSearchByEmail = Caffeine.newBuilder()
+                .maximumSize(userCacheSize)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+
+        Gauge.builder("search.history.queue.depth", queue, BlockingQueue::size)
+                .description("Recherches en attente d'écriture dans l'historique")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("search.history.dropped")
+                .description("Recherches abandonnées, file d'attente pleine")
+                .register(meterRegistry);
+        this.deduplicatedCounter = Counter.builder("search.history.deduplicated")
+                .description("Recherches identiques à la précédente du même utilisateur, non enregistrées")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("search.history.written")
+                .description("Entrées d'historique écrites en base")
+                .register(meterRegistry);
+        this.failedWritesCounter = Counter.builder("search.history.write.failures")
+                .description("Lots d'historique dont l'écriture a échoué (abandonnés)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Vérifie que l'index unique du script db/user-search-history.sql est en place ; sinon la vérification est
+     * refaite périodiquement, de sorte qu'une instance démarrée avant le script commence à écrire sans redémarrage.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepareSchema() {
+        try {
+            List<String> problems = userSearchHistoryRepository.findUpsertSchemaProblems();
+            if (problems.isEmpty()) {
+                schemaReady = true;
+                log.info("User search history upsert schema ready");
+            } else {
+                log.warn("User search history upsert schema unavailable, search history will not be recorded ({}); " +
+                        "run db/user-search-history.sql", String.join(", ", problems));
+            }
+        } catch (DataAccessException e) {
+            log.warn("User search history upsert schema unavailable, search history will not be recorded: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.search.history.schema-check-interval-ms:60000}",
+            fixedDelayString = "${app.search.history.schema-check-interval-ms:60000}")
+    public void recheckSchema() {
+        if (!schemaReady) {
+            prepareSchema();
+        }
+    }
+
+    /**
+     * Dépose une recherche dans la file, sans bloquer. Une recherche identique à la précédente du même utilisateur
+     * est ignorée.
+     * @param email Email de l'utilisateur authentifié
+     * @param term Terme normalisé
+     */
+    public void record(String email, String term, String category, String location) {
+        SearchSignature signature = new SearchSignature(term, category, location);
+        if (signature.equals(lastSearchByEmail.asMap().put(email, signature))) {
+            deduplicatedCounter.increment();
+            return;
+        }
+        if (!queue.offer(new PendingSearch(email, signature, LocalDateTime.now()))) {
+            droppedCounter.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.history.flush-interval-ms:2000}")
+    public void scheduledWrite() {
+        writePending();
+    }
+
+    /**
+     * Vide la file par lots
+     * @return Nombre d'entrées écrites
+     */
+    public int writePending() {
+        if (!schemaReady || !writeLock.tryLock()) {
+            return 0;
+        }
+        try {
+            int written = 0;
+            List<PendingSearch> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                written += writeBatch(batch);
+                batch.clear();
+            }
+            return written;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void writeOnShutdown() {
+        writeLock.lock();
+        try {
+            writePending();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int writeBatch(List<PendingSearch> batch) {
+        try {
+            // Dans un même lot, seule la dernière recherche d'un (utilisateur, terme) est écrite
+            Map<HistoryKey, HistoryRow> rows = new LinkedHashMap<>();
+            for (PendingSearch search : batch) {
+                SearchSignature signature = search.signature();
+                rows.put(new HistoryKey(search.email(), signature.term()), new HistoryRow(search.email(), signature.term(),
+                        signature.category(), signature.location(), search.searchedAt()));
+            }
+
+            int written = userSearchHistoryRepository.upsertAll(new ArrayList<>(rows.values()));
+            Set<String> touchedUsers = new HashSet<>();
+            rows.keySet().forEach(key -> touchedUsers.add(key.email()));
+            userSearchHistoryRepository.trimToLatest(touchedUsers, maxEntriesPerUser);
+
+            writtenCounter.increment(written);
+            log.debug("Wrote {} search history entries for {} users", written, touchedUsers.size());
+            return written;
+        } catch (DataAccessException e) {
+            failedWritesCounter.increment();
+            log.error("Error writing {} search history entries: {}", batch.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    private record SearchSignature(String term, String category, String location) {
+    }
+
+    private record PendingSearch(String email, SearchSignature signature, LocalDateTime searchedAt) {
+    }
+
+    private record HistoryKey(String email, String term) {
+    }
+}
@@ -13,9 +13,10 @@ import my.project.qri3a.exceptions.ResourceNotValidException;
 import my.project.qri3a.mappers.UserMapper;
 import my.project.qri3a.repositories.ProductRepository;
 import my.project.qri3a.repositories.UserRepository;
-import my.project.qri3a.repositories.search.ProductDocRepository;
 import my.project.qri3a.services.AdminService;
-import my.project.qri3a.services.S3Service;
+import my.project.qri3a.services.NotificationPreferenceMatcher;
+import my.project.qri3a.services.ProductIndexService;
+import my.project.qri3a.services.StorageCleanupService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -42,10 +43,11 @@ public class AdminServiceImpl implements AdminService {
 
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
-    private final ProductDocRepository productDocRepository;
+    private final ProductIndexService productIndexService;
+    private final NotificationPreferenceMatcher notificationPreferenceMatcher;
     private final PasswordEncoder passwordEncoder;
     private final UserMapper userMapper;
-    private final S3Service s3Service;
+    private final StorageCleanupService storageCleanupService;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -202,6 +204,7 @@ public class AdminServiceImpl implements AdminService {
         entityManager.createQuery("DELETE FROM NotificationPreference np WHERE np.user.id = :userId")
                 .setParameter("userId", userID)
                 .executeUpdate();
+        notificationPreferenceMatcher.onUserDeleted(userID);
 
         // d. Supprimer les rapports
         entityManager.createQuery("DELETE FROM Report r WHERE r.reporter.id = :userId OR r.reportedUser.id = :userId")
@@ -241,20 +244,14 @@ public class AdminServiceImpl implements AdminService {
         log.info("Admin Service: Deleting product indices with IDs: {}", productIds);
 
         // Supprimer les documents Elasticsearch
-        productDocRepository.deleteByIdIn(productIds);
+        productIndexService.deleteProductIndexes(productIds);
 
         log.info("Admin Service: User deleted with ID: {}", userID);
 
-        // 4. Supprimer les fichiers S3
-        for (String imageUrl : s3ImageUrls) {
-            try {
-                String filename = extractFileName(imageUrl);
-                s3Service.deleteFile(filename);
-                log.info("Admin Service: Deleted image from S3 with filename: {}", filename);
-            } catch (Exception e) {
-                log.error("Failed to delete S3 file: {}", imageUrl, e);
-            }
-        }
+        // 4. Supprimer les fichiers S3, en arrière-plan après le commit
+        List<String> filenames = s3ImageUrls.stream().map(this::extractFileName).toList();
+        storageCleanupService.deleteFiles(filenames);
+        log.info("Admin Service: Scheduled deletion of {} images from S3", filenames.size());
     }
 
     @Override
@@ -12,7 +12,7 @@ import my.project.qri3a.mappers.ContactMapper;
 import my.project.qri3a.repositories.ContactRepository;
 import my.project.qri3a.repositories.UserRepository;
 import my.project.qri3a.services.ContactService;
-import my.project.qri3a.services.EmailService;
+import my.project.qri3a.services.EmailJobService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
@@ -32,7 +32,7 @@ public class ContactServiceImpl implements ContactService {
     private final ContactRepository contactRepository;
     private final UserRepository userRepository;
     private final ContactMapper contactMapper;
-    private final EmailService emailService;
+    private final EmailJobService emailJobService;
 
     @Override
     public ContactResponseDTO submitContact(ContactRequestDTO contactRequestDTO, HttpServletRequest request, Authentication authentication) {
@@ -54,11 +54,8 @@ public class ContactServiceImpl implements ContactService {
         Contact savedContact = contactRepository.save(contact);
         log.info("Service: Contact form submitted with ID: {}", savedContact.getId());
 
-        // Envoyer notification par email (administrateur)
-        emailService.sendContactNotificationToAdmin(savedContact);
-
-        // Envoyer confirmation par email (utilisateur)
-        emailService.sendContactConfirmationEmail(savedContact);
+        // Envoyer notification (administrateur) et confirmation (utilisateur) par email, en arrière-plan après le commit
+        emailJobService.sendContactEmails(savedContact.getId());
 
         return contactMapper.toDTO(savedContact);
     }
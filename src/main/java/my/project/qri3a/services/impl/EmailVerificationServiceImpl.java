@@ -11,7 +11,7 @@ import lombok.extern.slf4j.Slf4j;
 import my.project.qri3a.entities.User;
 import my.project.qri3a.repositories.UserRepository;
 import my.project.qri3a.repositories.VerificationCodeRepository;
-import my.project.qri3a.services.EmailService;
+import my.project.qri3a.services.EmailJobService;
 import my.project.qri3a.services.EmailVerificationService;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
@@ -29,7 +29,7 @@ import java.util.UUID;
 public class EmailVerificationServiceImpl implements EmailVerificationService {
     private final UserRepository userRepository;
     private final VerificationCodeRepository verificationCodeRepository;
-    private final EmailService emailService;
+    private final EmailJobService emailJobService;
     private final CacheManager cacheManager;
 
     @Value("${app.verification-code.expiration-minutes:15}")
@@ -67,16 +67,11 @@ public class EmailVerificationServiceImpl implements EmailVerificationService {
         verificationCode.setUser(user);
         verificationCode.setExpiryDate(LocalDateTime.now().plusMinutes(expirationMinutes));
 
-        verificationCodeRepository.save(verificationCode);
+        verificationCode = verificationCodeRepository.save(verificationCode);
 
-        // Envoyer l'email
-        try {
-            emailService.sendVerificationEmail(user.getEmail(), code, user.getName());
-            log.info("Code de vérification envoyé à l'utilisateur ID: {}", user.getId());
-        } catch (Exception e) {
-            log.error("Erreur lors de l'envoi de l'email de vérification à l'utilisateur ID: {}", user.getId(), e);
-            throw new EmailVerificationException("Erreur lors de l'envoi de l'email de vérification: " + e.getMessage());
-        }
+        // Envoyer l'email, en arrière-plan après le commit ; le code est relu en base à l'envoi
+        emailJobService.sendVerificationEmail(verificationCode.getId());
+        log.info("Code de vérification programmé pour l'utilisateur ID: {}", user.getId());
     }
     /**
      * Vérifie le code et active le compte utilisateur
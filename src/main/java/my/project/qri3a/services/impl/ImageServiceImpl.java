@@ -25,6 +25,7 @@ import my.project.qri3a.repositories.ProductRepository;
 import my.project.qri3a.services.ImageService;
 import my.project.qri3a.services.ProductIndexService;
 import my.project.qri3a.services.S3Service;
+import my.project.qri3a.services.StorageCleanupService;
 
 @Service
 @RequiredArgsConstructor
@@ -35,6 +36,7 @@ public class ImageServiceImpl implements ImageService {
     private final ProductRepository productRepository;
     private final ImageRepository imageRepository;
     private final S3Service s3Service;
+    private final StorageCleanupService storageCleanupService;
     private final ImageMapper imageMapper;
     private final ProductIndexService productIndexService;
  
@@ -132,7 +134,7 @@ public class ImageServiceImpl implements ImageService {
         String filename = extractFileName(imageUrl);
 
         // Supprimer le fichier de S3
-        s3Service.deleteFile(filename);
+        storageCleanupService.deleteFile(filename);
 
         // Supprimer l'image de la base de données
         product.removeImage(image);
@@ -204,7 +206,7 @@ public class ImageServiceImpl implements ImageService {
         productRepository.save(product);
         log.info("Service: {} images uploaded successfully for product '{}'", uploadedImages.size(), productId);
         
-        this.productIndexService.indexProduct(product,files.size());
+        this.productIndexService.indexProduct(product);
         return uploadedImages;
     }
 
@@ -238,7 +240,7 @@ public class ImageServiceImpl implements ImageService {
         // Suppression physique des images sur S3
         for (Image image : imagesToDelete) {
             String filename = extractFileName(image.getUrl());
-            s3Service.deleteFile(filename);
+            storageCleanupService.deleteFile(filename);
             log.info("Deleted image with ID: {} and url {}", image.getId(), image.getUrl());
         }
 
@@ -306,7 +308,7 @@ public class ImageServiceImpl implements ImageService {
 
         // Sauvegarde du produit mis à jour et re-indexation si nécessaire
         productRepository.save(product);
-        productIndexService.indexProduct(product, nbOfImages);
+        productIndexService.indexProduct(product);
         log.info("Service: Images updated for product '{}'", productId);
 
         // Retourne la liste complète des images mises à jour sous forme de DTO
@@ -7,6 +7,7 @@ import my.project.qri3a.entities.User;
 import my.project.qri3a.exceptions.NotAuthorizedException;
 import my.project.qri3a.exceptions.ResourceNotFoundException;
 import my.project.qri3a.repositories.NotificationPreferenceRepository;
+import my.project.qri3a.services.NotificationPreferenceMatcher;
 import my.project.qri3a.services.NotificationPreferenceService;
 import my.project.qri3a.services.UserService;
 import org.springframework.security.core.Authentication;
@@ -24,6 +25,7 @@ public class NotificationPreferenceServiceImpl implements NotificationPreference
 
     private final NotificationPreferenceRepository notificationPreferenceRepository;
     private final UserService userService;
+    private final NotificationPreferenceMatcher notificationPreferenceMatcher;
 
     @Override
     public NotificationPreference createNotificationPreference(NotificationPreference notificationPreference, Authentication authentication)
@@ -35,6 +37,7 @@ public class NotificationPreferenceServiceImpl implements NotificationPreference
 
         notificationPreference.setUser(user);
         NotificationPreference savedPreference = notificationPreferenceRepository.save(notificationPreference);
+        notificationPreferenceMatcher.onSaved(savedPreference);
 
         log.info("Notification preference created with ID: {}", savedPreference.getId());
         return savedPreference;
@@ -65,6 +68,7 @@ public class NotificationPreferenceServiceImpl implements NotificationPreference
         existingPreference.setCity(notificationPreference.getCity());
 
         NotificationPreference updatedPreference = notificationPreferenceRepository.save(existingPreference);
+        notificationPreferenceMatcher.onSaved(updatedPreference);
         log.info("Notification preference updated with ID: {}", updatedPreference.getId());
 
         return updatedPreference;
@@ -88,6 +92,7 @@ public class NotificationPreferenceServiceImpl implements NotificationPreference
         }
 
         notificationPreferenceRepository.delete(preference);
+        notificationPreferenceMatcher.onDeleted(id);
         log.info("Notification preference deleted with ID: {}", id);
     }
 
@@ -6,12 +6,15 @@ import lombok.extern.slf4j.Slf4j;
 import my.project.qri3a.dtos.responses.NotificationResponseDTO;
 import my.project.qri3a.entities.Notification;
 import my.project.qri3a.entities.User;
+import my.project.qri3a.exceptions.ResourceNotFoundException;
 import my.project.qri3a.mappers.NotificationMapper;
 import my.project.qri3a.repositories.NotificationRepository;
+import my.project.qri3a.services.NotificationRelay;
 import my.project.qri3a.services.NotificationService;
+import my.project.qri3a.services.UnreadNotificationCounter;
+import my.project.qri3a.utils.TransactionHooks;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -25,24 +28,26 @@ import java.util.UUID;
 public class NotificationServiceImpl implements NotificationService {
 
     private final NotificationRepository notificationRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final NotificationRelay notificationRelay;
     private final NotificationMapper notificationMapper;  // Inject the mapper
+    private final UnreadNotificationCounter unreadNotificationCounter;
 
     @Override
     public Notification createNotification(Notification notification) {
         // Persist the notification
+        long writeStartedAt = System.nanoTime();
         Notification savedNotification = notificationRepository.save(notification);
 
         // Use the mapper to convert to a DTO
         NotificationResponseDTO dto = notificationMapper.toDTO(savedNotification);
 
-        // Envoyer la notification à l'utilisateur spécifique en utilisant son ID comme identifiant
-        String userId = notification.getUser().getId().toString();
-        messagingTemplate.convertAndSendToUser(
-                userId,
-                "/notifications",
-                dto
-        );
+        // Envoyer la notification à l'utilisateur spécifique en utilisant son ID comme identifiant,
+        // après le commit, avec son nouveau nombre de notifications non lues
+        UUID userId = notification.getUser().getId();
+        TransactionHooks.afterCommit(() -> {
+            dto.setUnreadCount(unreadNotificationCounter.increment(List.of(userId), writeStartedAt).get(userId));
+            notificationRelay.sendNotification(dto);
+        });
 
         return savedNotification;
     }
@@ -61,20 +66,33 @@ public class NotificationServiceImpl implements NotificationService {
     public Notification updateNotification(UUID id, Notification notification) {
         return notificationRepository.findById(id)
                 .map(existing -> {
+                    UUID previousUserId = existing.getUser().getId();
                     existing.setBody(notification.getBody());
                     existing.setCategory(notification.getCategory());
                     existing.setProduct(notification.getProduct());
                     existing.setUser(notification.getUser());
                     existing.setRead(notification.isRead());
                     // Do not update createdAt to preserve the original creation date
-                    return notificationRepository.save(existing);
+                    Notification saved = notificationRepository.save(existing);
+                    // Le statut de lecture ou le destinataire a pu changer : compteurs rechargés au prochain besoin
+                    TransactionHooks.afterCommit(() -> {
+                        unreadNotificationCounter.invalidate(previousUserId);
+                        unreadNotificationCounter.invalidate(saved.getUser().getId());
+                    });
+                    return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Notification non trouvée"));
     }
 
     @Override
     public void deleteNotification(UUID id) {
-        notificationRepository.deleteById(id);
+        notificationRepository.findById(id).ifPresent(notification -> {
+            notificationRepository.delete(notification);
+            if (!notification.isRead()) {
+                UUID userId = notification.getUser().getId();
+                TransactionHooks.afterCommit(() -> unreadNotificationCounter.invalidate(userId));
+            }
+        });
     }
 
 
@@ -85,11 +103,24 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     public long getUnreadCount(User user) {
-        return notificationRepository.countByUserAndReadFalse(user);
+        return unreadNotificationCounter.get(user.getId());
+    }
+
+    @Override
+    public long getUnreadCountByEmail(String email) {
+        return unreadNotificationCounter.getByEmail(email)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with email " + email));
     }
 
     @Override
     public void markAllAsSeen(User user) {
         notificationRepository.markAllAsSeenByUser(user);
+
+        // Les autres sessions de l'utilisateur mettent leur badge à jour sans interroger l'API
+        UUID userId = user.getId();
+        TransactionHooks.afterCommit(() -> {
+            unreadNotificationCounter.reset(userId);
+            notificationRelay.sendUnreadCount(userId, 0);
+        });
     }
 }
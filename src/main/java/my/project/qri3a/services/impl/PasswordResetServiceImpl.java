@@ -6,7 +6,7 @@ import my.project.qri3a.entities.User;
 import my.project.qri3a.exceptions.ResourceNotFoundException;
 import my.project.qri3a.repositories.PasswordResetTokenRepository;
 import my.project.qri3a.repositories.UserRepository;
-import my.project.qri3a.services.EmailService;
+import my.project.qri3a.services.EmailJobService;
 import my.project.qri3a.services.PasswordResetService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -23,7 +23,7 @@ public class PasswordResetServiceImpl implements PasswordResetService {
 
     private final UserRepository userRepository;
     private final PasswordResetTokenRepository tokenRepository;
-    private final EmailService emailService;
+    private final EmailJobService emailJobService;
     private final PasswordEncoder passwordEncoder;
 
     @Value("${app.reset-token.expiration-minutes:15}")
@@ -52,14 +52,10 @@ public class PasswordResetServiceImpl implements PasswordResetService {
             resetToken.setUser(user);
             resetToken.setExpiryDate(LocalDateTime.now().plusMinutes(expirationMinutes));
 
-            tokenRepository.save(resetToken);
+            resetToken = tokenRepository.save(resetToken);
 
-            // Envoyer l'email
-            try {
-                emailService.sendPasswordResetEmail(user.getEmail(), token, user.getName());
-            } catch (Exception e) {
-                throw new RuntimeException("Erreur lors de l'envoi de l'email: " + e.getMessage());
-            }
+            // Envoyer l'email, en arrière-plan après le commit ; le jeton est relu en base à l'envoi
+            emailJobService.sendPasswordResetEmail(resetToken.getId());
         } catch (DataIntegrityViolationException e) {
             // Si on rencontre encore une erreur de contrainte, c'est probablement un problème de timing
             // On peut retenter une fois après une courte attente
@@ -75,9 +71,9 @@ public class PasswordResetServiceImpl implements PasswordResetService {
                 resetToken.setUser(user);
                 resetToken.setExpiryDate(LocalDateTime.now().plusMinutes(expirationMinutes));
 
-                tokenRepository.save(resetToken);
+                resetToken = tokenRepository.save(resetToken);
 
-                emailService.sendPasswordResetEmail(user.getEmail(), token, user.getName());
+                emailJobService.sendPasswordResetEmail(resetToken.getId());
             } catch (Exception ex) {
                 throw new RuntimeException("Impossible de créer un token de réinitialisation: " + ex.getMessage());
             }
@@ -2,6 +2,8 @@ package my.project.qri3a.services.impl;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 import my.project.qri3a.entities.*;
@@ -9,6 +11,7 @@ import my.project.qri3a.enums.ProductStatus;
 import my.project.qri3a.repositories.UserPreferenceRepository;
 import my.project.qri3a.services.*;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -21,6 +24,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import my.project.qri3a.documents.ProductDoc;
 import my.project.qri3a.dtos.requests.ProductRequestDTO;
+import my.project.qri3a.dtos.responses.CursorPageDTO;
+import my.project.qri3a.dtos.responses.SearchCursorPageDTO;
 import my.project.qri3a.dtos.responses.ProductListingDTO;
 import my.project.qri3a.dtos.responses.ProductResponseDTO;
 import my.project.qri3a.enums.ProductCategory;
@@ -28,11 +33,16 @@ import my.project.qri3a.enums.ProductCondition;
 import my.project.qri3a.exceptions.NotAuthorizedException;
 import my.project.qri3a.exceptions.ResourceNotFoundException;
 import my.project.qri3a.exceptions.ResourceNotValidException;
+import my.project.qri3a.exceptions.SearchUnavailableException;
 import my.project.qri3a.mappers.ProductMapper;
 import my.project.qri3a.repositories.ProductRepository;
 import my.project.qri3a.repositories.UserRepository;
+import my.project.qri3a.repositories.search.OpenSearchGateway;
 import my.project.qri3a.repositories.search.ProductDocRepository;
 import my.project.qri3a.specifications.ProductSpecifications;
+import my.project.qri3a.utils.FairFeedCursor;
+import my.project.qri3a.utils.GeoDistanceFilter;
+import my.project.qri3a.utils.ViewsCountCursor;
 
 @Service
 @Transactional
@@ -40,23 +50,69 @@ import my.project.qri3a.specifications.ProductSpecifications;
 @Slf4j
 public class ProductServiceImpl implements ProductService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final String RELEVANCE_SORT = "relevance";
+    private static final Sort VIEWS_COUNT_KEYSET_SORT = Sort.by("viewsCount").ascending().and(Sort.by("id").ascending());
+
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final ProductMapper productMapper;
     private final UserService userService;
     private final ProductIndexService productIndexService;
     private final ProductDocRepository productDocRepository;
-    private final S3Service s3Service;
+    private final StorageCleanupService storageCleanupService;
     private final ProductMatchingService productMatchingService;
     private final NotificationService notificationService;
     private final UserPreferenceRepository userPreferenceRepository;
+    private final ProductViewCountService productViewCountService;
+    private final ProductExposureScheduler productExposureScheduler;
+    private final ProductFullTextSearchService productFullTextSearchService;
+    private final OpenSearchGateway openSearchGateway;
+    private final SearchResultCache searchResultCache;
+    private final SearchSuggestionTrie searchSuggestionTrie;
 
     @Override
     public Page<ProductListingDTO> getAllProducts(Pageable pageable, String category, String location, String condition, UUID sellerId, BigDecimal minPrice, BigDecimal maxPrice, String city) throws ResourceNotValidException {
         log.info("Service: Fetching all products with filters and equitable distribution - category: {}, location: {}, condition: {}, sellerId: {}, minPrice: {}, maxPrice: {}, city: {}",
                 category, location, condition, sellerId, minPrice, maxPrice, city);
 
-        // Créer une spécification en fonction des filtres
+        Specification<Product> spec = buildActiveListingSpecification(category, location, condition, sellerId, minPrice, maxPrice, city);
+
+        // Utiliser le tri par viewsCount croissant pour l'algorithme de distribution équitable
+        Pageable viewsCountPageable = PageRequest.of(
+            pageable.getPageNumber(),
+            pageable.getPageSize(),
+            Sort.by("viewsCount").ascending()
+        );
+        
+        // Récupérer les produits avec les filtres et triés par viewsCount
+        Page<Product> productsPage = productRepository.findAll(spec, viewsCountPageable);
+        log.info("Service: Found {} products with equitable distribution", productsPage.getTotalElements());
+        
+        // Extraire les IDs des produits affichés pour mettre à jour leur compteur de vues
+        List<UUID> displayedProductIds = productsPage.getContent().stream()
+                .map(Product::getId)
+                .collect(Collectors.toList());
+        
+        // Enregistrer les affichages, les compteurs de vues sont écrits en différé
+        productViewCountService.recordImpressions(displayedProductIds);
+        
+        return toListingPage(productsPage);
+    }
+
+    @Override
+    public CursorPageDTO<ProductListingDTO> getAllProductsByCursor(String cursor, int size, String category, String location, String condition, UUID sellerId, BigDecimal minPrice, BigDecimal maxPrice, String city) throws ResourceNotValidException {
+        log.info("Service: Fetching products by cursor with equitable distribution - category: {}, location: {}, condition: {}, sellerId: {}, minPrice: {}, maxPrice: {}, city: {}",
+                category, location, condition, sellerId, minPrice, maxPrice, city);
+
+        Specification<Product> spec = buildActiveListingSpecification(category, location, condition, sellerId, minPrice, maxPrice, city);
+        return findByViewsCountCursor(spec, cursor, size);
+    }
+
+    /**
+     * Construit la spécification des produits actifs à partir des filtres du listing
+     */
+    private Specification<Product> buildActiveListingSpecification(String category, String location, String condition, UUID sellerId, BigDecimal minPrice, BigDecimal maxPrice, String city) throws ResourceNotValidException {
         Specification<Product> spec = Specification.where(ProductSpecifications.hasStatus(ProductStatus.ACTIVE));
         
         if (category != null && !category.isEmpty()) {
@@ -102,64 +158,105 @@ public class ProductServiceImpl implements ProductService {
             log.error("minPrice {} is greater than maxPrice {}", minPrice, maxPrice);
             throw new ResourceNotValidException("minPrice cannot be greater than maxPrice");
         }
-        
-        // Utiliser le tri par viewsCount croissant pour l'algorithme de distribution équitable
-        Pageable viewsCountPageable = PageRequest.of(
-            pageable.getPageNumber(),
-            pageable.getPageSize(),
-            Sort.by("viewsCount").ascending()
-        );
-        
-        // Récupérer les produits avec les filtres et triés par viewsCount
-        Page<Product> productsPage = productRepository.findAll(spec, viewsCountPageable);
-        log.info("Service: Found {} products with equitable distribution", productsPage.getTotalElements());
-        
-        // Extraire les IDs des produits affichés pour mettre à jour leur compteur de vues
-        List<UUID> displayedProductIds = productsPage.getContent().stream()
-                .map(Product::getId)
-                .collect(Collectors.toList());
-        
-        // Mettre à jour les compteurs de vues en batch si des produits ont été trouvés
-        if (!displayedProductIds.isEmpty()) {
-            updateViewsCountsInBatch(displayedProductIds);
+
+        return spec;
+    }
+
+    /**
+     * Récupère une tranche de produits triés par (viewsCount, id) croissants, à partir du curseur donné.
+     * Aucune requête COUNT n'est exécutée : une ligne supplémentaire est lue pour savoir s'il reste une page.
+     */
+    private CursorPageDTO<ProductListingDTO> findByViewsCountCursor(Specification<Product> spec, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+
+        ViewsCountCursor after = ViewsCountCursor.decode(cursor);
+        if (after != null) {
+            spec = spec.and(ProductSpecifications.isAfterViewsCountCursor(after.getViewsCount(), after.getId()));
         }
-        
-        return productsPage.map(productMapper::toProductListingDTO);
+
+        List<Product> rows = productRepository.findBy(spec, query -> query
+                .sortBy(VIEWS_COUNT_KEYSET_SORT)
+                .limit(pageSize + 1)
+                .all());
+
+        boolean hasNext = rows.size() > pageSize;
+        List<Product> products = hasNext ? rows.subList(0, pageSize) : rows;
+
+        // Enregistrer les affichages, les compteurs de vues sont écrits en différé
+        productViewCountService.recordImpressions(products.stream().map(Product::getId).toList());
+
+        String nextCursor = null;
+        if (hasNext) {
+            Product last = products.get(products.size() - 1);
+            nextCursor = new ViewsCountCursor(last.getViewsCount(), last.getId()).encode();
+        }
+
+        List<ProductListingDTO> content = productRepository.findListingsByIds(products.stream().map(Product::getId).toList());
+        return new CursorPageDTO<>(content, content.size(), hasNext, nextCursor);
     }
 
     @Override
     public Page<ProductListingDTO> searchProducts(String query, Pageable pageable, String category, String location, String condition, BigDecimal minPrice, BigDecimal maxPrice, String city) {
-        log.info("Service: Recherche des produits avec le terme: {} et filtres - category: {}, location: {}, condition: {}, minPrice: {}, maxPrice: {}, city: {}",
-                query, category, location, condition, minPrice, maxPrice, city);
+        return searchProducts(query, pageable, category, location, condition, minPrice, maxPrice, city, null);
+    }
 
-        // Démarrer avec une spécification sur le texte (titre ou description)
-        Specification<Product> spec = Specification.where(ProductSpecifications.containsText(query));
+    @Override
+    public Page<ProductListingDTO> searchProducts(String query, Pageable pageable, String category, String location, String condition,
+                                                  BigDecimal minPrice, BigDecimal maxPrice, String city, GeoDistanceFilter geo) {
+        log.info("Service: Recherche des produits avec le terme: {} et filtres - category: {}, location: {}, condition: {}, minPrice: {}, maxPrice: {}, city: {}, geo: {}",
+                query, category, location, condition, minPrice, maxPrice, city, geo);
 
-        // Filtre sur la catégorie
+        ProductCategory categoryFilter = null;
         if (category != null && !category.isEmpty()) {
             try {
-                spec = spec.and(ProductSpecifications.hasCategory(ProductCategory.valueOf(category.toUpperCase())));
+                categoryFilter = ProductCategory.valueOf(category.toUpperCase());
             } catch (IllegalArgumentException ex) {
                 log.error("Invalid category: {}", category);
                 throw new ResourceNotValidException("Invalid category: " + category);
             }
         }
 
-        // Filtre sur la location (si vous avez une spécification associée)
-        if (location != null && !location.isEmpty()) {
-            spec = spec.and(ProductSpecifications.hasLocation(location));
-        }
-
-        // Filtre sur la condition
+        ProductCondition conditionFilter = null;
         if (condition != null && !condition.isEmpty()) {
             try {
-                spec = spec.and(ProductSpecifications.hasCondition(ProductCondition.valueOf(condition.toUpperCase())));
+                conditionFilter = ProductCondition.valueOf(condition.toUpperCase());
             } catch (IllegalArgumentException ex) {
                 log.error("Invalid condition: {}", condition);
                 throw new ResourceNotValidException("Invalid condition: " + condition);
             }
         }
 
+        // Vérifier que minPrice n'est pas supérieur à maxPrice
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            log.error("minPrice {} is greater than maxPrice {}", minPrice, maxPrice);
+            throw new ResourceNotValidException("minPrice cannot be greater than maxPrice");
+        }
+
+        // Recherche plein texte classée si le schéma PostgreSQL est en place
+        if (productFullTextSearchService.isAvailable()) {
+            Page<UUID> idsPage = productFullTextSearchService.search(query, categoryFilter, location, conditionFilter, minPrice, maxPrice, city, geo, pageable);
+            return new PageImpl<>(productRepository.findListingsByIds(idsPage.getContent()), pageable, idsPage.getTotalElements());
+        }
+
+        // Seules les annonces actives, comme dans l'index, puis le texte (titre ou description)
+        Specification<Product> spec = Specification.where(ProductSpecifications.hasStatus(ProductStatus.ACTIVE))
+                .and(ProductSpecifications.containsText(query));
+
+        // Filtre sur la catégorie
+        if (categoryFilter != null) {
+            spec = spec.and(ProductSpecifications.hasCategory(categoryFilter));
+        }
+
+        // Filtre sur la location (si vous avez une spécification associée)
+        if (location != null && !location.isEmpty()) {
+            spec = spec.and(ProductSpecifications.hasLocation(location));
+        }
+
+        // Filtre sur la condition
+        if (conditionFilter != null) {
+            spec = spec.and(ProductSpecifications.hasCondition(conditionFilter));
+        }
+
         // Filtre sur le prix minimum
         if (minPrice != null) {
             spec = spec.and(ProductSpecifications.hasMinPrice(minPrice));
@@ -170,19 +267,28 @@ public class ProductServiceImpl implements ProductService {
             spec = spec.and(ProductSpecifications.hasMaxPrice(maxPrice));
         }
 
+        // Sans la recherche plein texte, le rayon est approché par son rectangle englobant
+        if (geo != null) {
+            spec = spec.and(ProductSpecifications.isWithinBoundingBox(geo.minLat(), geo.maxLat(), geo.minLon(), geo.maxLon()));
+        }
+
         // Filtre sur la ville
         if (city != null && !city.isEmpty()) {
             spec = spec.and(ProductSpecifications.hasCity(city));
         }
 
-        // Vérifier que minPrice n'est pas supérieur à maxPrice
-        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
-            log.error("minPrice {} is greater than maxPrice {}", minPrice, maxPrice);
-            throw new ResourceNotValidException("minPrice cannot be greater than maxPrice");
-        }
+        Page<Product> productsPage = productRepository.findAll(spec, withoutRelevanceSort(pageable));
+        return toListingPage(productsPage);
+    }
 
-        Page<Product> productsPage = productRepository.findAll(spec, pageable);
-        return productsPage.map(productMapper::toProductListingDTO);
+    /**
+     * Le tri "relevance" n'existe qu'en recherche plein texte ; sur le chemin LIKE il est remplacé par createdAt DESC
+     */
+    private Pageable withoutRelevanceSort(Pageable pageable) {
+        if (pageable.getSort().getOrderFor(RELEVANCE_SORT) == null) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("createdAt").descending());
     }
 
 
@@ -283,7 +389,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("Service: Product created with ID: {}", savedProduct.getId());
         
         // Ajouter l'indexation pour le SEO
-        productIndexService.indexProduct(savedProduct, savedProduct.getImages().size());
+        productIndexService.indexProduct(savedProduct);
         log.info("Service: Product indexed for SEO with ID: {}", savedProduct.getId());
 
         return productMapper.toDTO(savedProduct);
@@ -326,7 +432,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("Service: Product updated with ID: {}", updatedProduct.getId());
 
         // Mettre à jour l'index Elasticsearch
-        productIndexService.indexProduct(updatedProduct, 0);
+        productIndexService.indexProduct(updatedProduct);
 
         return productMapper.toDTO(updatedProduct);
     }
@@ -340,10 +446,10 @@ public class ProductServiceImpl implements ProductService {
                     log.warn("Service : Product not found with ID: {}", productId);
                     return new ResourceNotFoundException("Product not found with ID " + productId);
                 });
-        // Delete all associated images from S3
+        // Delete all associated images from S3 once the deletion is committed
         for (Image image : product.getImages()) {
             String filename = image.getUrl().substring(image.getUrl().lastIndexOf('/') + 1);
-            s3Service.deleteFile(filename);
+            storageCleanupService.deleteFile(filename);
         }
         productRepository.delete(product);
         log.info("Service : Product deleted with ID: {}", productId);
@@ -357,7 +463,7 @@ public class ProductServiceImpl implements ProductService {
         User seller = userService.getUserByEmail(email);
         log.info("=> seller email: {}", seller.getEmail());
         Page<Product> productsPage = productRepository.findBySellerAndStatusOrderByCreatedAtDesc(seller, ProductStatus.ACTIVE, pageable);
-        return productsPage.map(productMapper::toProductListingDTO);
+        return toListingPage(productsPage);
     }
 
 
@@ -386,7 +492,7 @@ public class ProductServiceImpl implements ProductService {
         for (Image image : product.getImages()) {
            
             String filename = image.getUrl().substring(image.getUrl().lastIndexOf('/') + 1);
-            s3Service.deleteFile(filename);
+            storageCleanupService.deleteFile(filename);
         }
 
         productRepository.delete(product);
@@ -414,7 +520,7 @@ public class ProductServiceImpl implements ProductService {
         Page<Product> recommendedPage = productRepository.findRecommendedProducts(category, price, productId, pageable);
         log.info("Service: {} produits recommandés trouvés", recommendedPage.getTotalElements());
 
-        return recommendedPage.map(productMapper::toProductListingDTO);
+        return toListingPage(recommendedPage);
     }
 
 
@@ -423,8 +529,12 @@ public class ProductServiceImpl implements ProductService {
     @Override
     public Page<ProductListingDTO> searchProducts(String query, Pageable pageable) {
         log.info("Service: Recherche des produits pour le terme: {}", query);
-        Page<Product> products = productRepository.searchProducts(query, pageable);
-        return products.map(productMapper::toProductListingDTO);
+        if (productFullTextSearchService.isAvailable()) {
+            Page<UUID> idsPage = productFullTextSearchService.search(query, null, null, null, null, null, null, null, pageable);
+            return new PageImpl<>(productRepository.findListingsByIds(idsPage.getContent()), pageable, idsPage.getTotalElements());
+        }
+        Page<Product> products = productRepository.searchProducts(query, withoutRelevanceSort(pageable));
+        return toListingPage(products);
     }
 
     @Override
@@ -443,7 +553,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("Service: Found {} products for user ID: {}", productsPage.getTotalElements(), userId);
 
         // Convert entities to DTOs
-        return productsPage.map(productMapper::toProductListingDTO);
+        return toListingPage(productsPage);
     }
 
 
@@ -468,30 +578,72 @@ public class ProductServiceImpl implements ProductService {
     */
     // Interface
     @Override
-    public Page<ProductDoc> searchProductsElastic(String query, Pageable pageable, String category, String location, String condition, BigDecimal minPrice, BigDecimal maxPrice, String city, String delivery) {
+    public CompletableFuture<Page<ProductDoc>> searchProductsElastic(String query, Pageable pageable, String category, String location, String condition, BigDecimal minPrice, BigDecimal maxPrice, String city, String delivery, GeoDistanceFilter geo, boolean withFacets) {
         log.info("Service: Elasticsearch search with equitable distribution algorithm. Query: {}, Category: {}, Location: {}", 
                 query, category, location);
-        
-        // Extraire les résultats de recherche Elasticsearch
-        Page<ProductDoc> searchResults = productDocRepository.searchProductsElastic(
-                query, category, location, condition, minPrice, maxPrice, city, delivery, pageable);
-        
-        // Si nous avons des résultats, mettre à jour les compteurs de vues
-        if (searchResults.hasContent()) {
-            // Extraire les IDs des produits affichés
-            List<UUID> displayedProductIds = searchResults.getContent().stream()
-                    .map(ProductDoc::getId)
-                    .collect(Collectors.toList());
-            
-            // Mettre à jour les compteurs de vues en batch
-            updateViewsCountsInBatch(displayedProductIds);
-            
-            log.info("Updated viewsCount for {} products in search results", displayedProductIds.size());
-        }
-        
-        return searchResults;
+
+        SearchResultCache.SearchKey cacheKey = searchResultCache.searchKey(query, category, location, condition, minPrice, maxPrice, city, delivery, geo, pageable, withFacets);
+        Page<ProductDoc> cached = searchResultCache.getSearchPage(cacheKey);
+
+        // Disjoncteur ouvert : inutile de solliciter le cluster, la recherche part directement sur PostgreSQL.
+        // Seuls les résultats OpenSearch sont mis en cache, jamais ceux du repli.
+        CompletableFuture<Page<ProductDoc>> searchResults = cached != null
+                ? CompletableFuture.completedFuture(cached)
+                : openSearchGateway.isCircuitOpen()
+                ? CompletableFuture.supplyAsync(() -> searchProductsFallback(query, pageable, category, location, condition, minPrice, maxPrice, city, geo),
+                        openSearchGateway.callbackExecutor())
+                : productDocRepository.searchProductsElasticAsync(query, category, location, condition, minPrice, maxPrice, city, delivery, geo, pageable, withFacets)
+                        .thenApply(page -> {
+                            searchResultCache.putSearchPage(cacheKey, page);
+                            return page;
+                        })
+                        .exceptionallyAsync(error -> {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                            if (!(cause instanceof SearchUnavailableException)) {
+                                throw new CompletionException(cause);
+                            }
+                            log.warn("OpenSearch unavailable, falling back to SQL search: {}", cause.getMessage());
+                            return searchProductsFallback(query, pageable, category, location, condition, minPrice, maxPrice, city, geo);
+                        }, openSearchGateway.callbackExecutor());
+
+        // Si nous avons des résultats, enregistrer les affichages, les compteurs de vues sont écrits en différé
+        return searchResults.thenApply(results -> {
+            if (results.hasContent()) {
+                productViewCountService.recordImpressions(results.getContent().stream().map(ProductDoc::getId).toList());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Repli PostgreSQL de la recherche OpenSearch (plein texte si disponible, sinon LIKE) ;
+     * le filtre de livraison n'existe que côté index et n'est pas appliqué
+     */
+    private Page<ProductDoc> searchProductsFallback(String query, Pageable pageable, String category, String location, String condition,
+                                                    BigDecimal minPrice, BigDecimal maxPrice, String city, GeoDistanceFilter geo) {
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        return searchProducts(query, unsorted, category, location, condition, minPrice, maxPrice, city, geo)
+                .map(productMapper::toProductDoc);
     }
 
+    @Override
+    public CompletableFuture<SearchCursorPageDTO<ProductDoc>> searchProductsElasticByCursor(String query, String cursor, int size, String category, String location, String condition,
+                                                                                           BigDecimal minPrice, BigDecimal maxPrice, String city, String delivery) {
+        log.info("Service: Elasticsearch cursor search. Query: {}, Category: {}, Location: {}", query, category, location);
+
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new ResourceNotValidException("Page size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+
+        return productDocRepository.searchProductsElasticByCursor(
+                        query, category, location, condition, minPrice, maxPrice, city, delivery, cursor, size)
+                .thenApply(results -> {
+                    if (!results.getContent().isEmpty()) {
+                        productViewCountService.recordImpressions(results.getContent().stream().map(ProductDoc::getId).toList());
+                    }
+                    return results;
+                });
+    }
 
     @Override
     public Page<ProductDoc> findAll(Pageable pageable) {
@@ -505,66 +657,48 @@ public class ProductServiceImpl implements ProductService {
                 .map(Product::getId)
                 .collect(Collectors.toList());
         
-        // Mettre à jour les compteurs de vues en batch si des produits ont été trouvés
-        if (!displayedProductIds.isEmpty()) {
-            updateViewsCountsInBatch(displayedProductIds);
-        }
+        // Enregistrer les affichages, les compteurs de vues sont écrits en différé
+        productViewCountService.recordImpressions(displayedProductIds);
         
         // Convertir les produits en ProductDoc et retourner le résultat
         return productsPage.map(product -> productMapper.toProductDoc(product, product.getImages().size()));
     }
     
-    /**
-     * Méthode utilitaire pour mettre à jour les compteurs de vues des produits
-     * en différenciant les utilisateurs standard et premium
-     */
-    private void updateViewsCountsInBatch(List<UUID> productIds) {
-        if (productIds.isEmpty()) return;
-        
-        // Récupérer les produits pour vérifier le rôle du vendeur
-        List<Product> products = productRepository.findAllById(productIds);
-        
-        // Séparer les IDs des produits par type de vendeur
-        List<UUID> standardProductIds = new ArrayList<>();
-        List<UUID> premiumProductIds = new ArrayList<>();
-        
-        for (Product product : products) {
-            // Vérifier si le vendeur est premium
-            if (product.getSeller().getRole().name().equals("PREMIUM")) {
-                premiumProductIds.add(product.getId());
-            } else {
-                standardProductIds.add(product.getId());
-            }
-        }
-        
-        // Mettre à jour les compteurs en batch avec la valeur appropriée
-        if (!standardProductIds.isEmpty()) {
-            productRepository.incrementViewsCount(standardProductIds, 5); // +5 pour les vendeurs standards
-        }
-        
-        if (!premiumProductIds.isEmpty()) {
-            productRepository.incrementViewsCount(premiumProductIds, 1); // +1 pour les vendeurs premiums
-        }
-        
-        log.info("Updated viewsCount for {} products ({} standard, {} premium)", 
-                productIds.size(), standardProductIds.size(), premiumProductIds.size());
-    }
-
     @Override
-    public List<ProductDoc> searchProductSuggestionsElastic(String query, String category, int limit) {
+    public CompletableFuture<List<ProductDoc>> searchProductSuggestionsElastic(String query, String category, int limit) {
         log.info("Service: Recherche des suggestions de produits pour le terme: {} - Using Elastic Search", query);
 
         // Validation de l'entrée
         if (query == null || query.trim().isEmpty()) {
-            return Collections.emptyList();
+            return CompletableFuture.completedFuture(Collections.emptyList());
         }
 
         // Limiter le nombre de résultats
         int maxResults = Math.min(limit, 10);
 
-        // Rechercher les produits via Elasticsearch avec la catégorie spécifiée
-        List<ProductDoc> productDocs = productDocRepository.findTop10ByTitleOrDescription(query, category);
-        return productDocs;
+        // Préfixe court sans catégorie : réponse du trie en mémoire, sans appel réseau
+        if (category == null || category.isBlank()) {
+            List<SearchSuggestionTrie.Suggestion> local = searchSuggestionTrie.lookup(query, maxResults);
+            if (local != null) {
+                return CompletableFuture.completedFuture(local.stream()
+                        .map(suggestion -> ProductDoc.builder().id(suggestion.productId()).title(suggestion.title()).build())
+                        .toList());
+            }
+        }
+
+        SearchResultCache.SuggestionKey cacheKey = searchResultCache.suggestionKey(query, category);
+        List<ProductDoc> cached = searchResultCache.getSuggestions(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // Rechercher les produits via le champ search_as_you_type du titre, avec la catégorie spécifiée ;
+        // une erreur OpenSearch remonte en 503, une liste vide est donc un vrai résultat
+        return productDocRepository.findSuggestions(query, category, maxResults)
+                .thenApply(productDocs -> {
+                    searchResultCache.putSuggestions(cacheKey, productDocs);
+                    return productDocs;
+                });
     }
 
     @Override
@@ -583,7 +717,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("Service: Product approved with ID: {}", updatedProduct.getId());
 
         // Update the Elasticsearch index
-        productIndexService.indexProduct(updatedProduct, 0);
+        productIndexService.indexProduct(updatedProduct);
 
         notifyUser(updatedProduct);
 
@@ -623,7 +757,7 @@ public class ProductServiceImpl implements ProductService {
                 productRepository.save(product);
                 
                 // Mettre à jour l'index Elasticsearch
-                productIndexService.indexProduct(product, 0);
+                productIndexService.indexProduct(product);
                 
                 // Notifier l'utilisateur
                 notifyUser(product);
@@ -725,7 +859,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("Service: Product rejected with ID: {}", updatedProduct.getId());
 
         // Update the Elasticsearch index
-        productIndexService.indexProduct(updatedProduct, 0);
+        productIndexService.indexProduct(updatedProduct);
 
         return productMapper.toDTO(updatedProduct);
     }
@@ -737,7 +871,7 @@ public class ProductServiceImpl implements ProductService {
         Page<Product> productsPage = productRepository.findByStatusOrderByCreatedAtDesc(status, pageable);
         log.info("Service: Found {} products with status {}", productsPage.getTotalElements(), status);
 
-        return productsPage.map(productMapper::toProductListingDTO);
+        return toListingPage(productsPage);
     }
 
     @Override
@@ -767,7 +901,7 @@ public class ProductServiceImpl implements ProductService {
         Page<Product> productsPage = productRepository.findBySellerAndStatusOrderByCreatedAtDesc(seller, ProductStatus.ACTIVE, pageable);
         log.info("Service: Found {} active products for user {}", productsPage.getTotalElements(), seller.getEmail());
 
-        return productsPage.map(productMapper::toProductListingDTO);
+        return toListingPage(productsPage);
     }
 
     @Override
@@ -779,7 +913,7 @@ public class ProductServiceImpl implements ProductService {
         Page<Product> productsPage = productRepository.findBySellerAndStatusOrderByCreatedAtDesc(seller, ProductStatus.MODERATION, pageable);
         log.info("Service: Found {} products in moderation for user {}", productsPage.getTotalElements(), seller.getEmail());
 
-        return productsPage.map(productMapper::toProductListingDTO);
+        return toListingPage(productsPage);
     }
 
     @Override
@@ -791,7 +925,7 @@ public class ProductServiceImpl implements ProductService {
         Page<Product> productsPage = productRepository.findBySellerAndStatusOrderByCreatedAtDesc(seller, ProductStatus.REJECTED, pageable);
         log.info("Service: Found {} rejected products for user {}", productsPage.getTotalElements(), seller.getEmail());
 
-        return productsPage.map(productMapper::toProductListingDTO);
+        return toListingPage(productsPage);
     }
 
     @Override
@@ -832,7 +966,7 @@ public class ProductServiceImpl implements ProductService {
         Page<Product> productsPage = productRepository.findBySellerAndStatusOrderByCreatedAtDesc(seller, ProductStatus.DEACTIVATED, pageable);
         log.info("Service: Found {} deactivated products for user {}", productsPage.getTotalElements(), seller.getEmail());
 
-        return productsPage.map(productMapper::toProductListingDTO);
+        return toListingPage(productsPage);
     }
 
     @Override
@@ -861,7 +995,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("Service: Product deactivated with ID: {}", updatedProduct.getId());
 
         // Update the Elasticsearch index
-        productIndexService.indexProduct(updatedProduct, 0);
+        productIndexService.indexProduct(updatedProduct);
 
         return productMapper.toDTO(updatedProduct);
     }
@@ -892,7 +1026,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("Service: Product activated with ID: {}", updatedProduct.getId());
 
         // Update the Elasticsearch index
-        productIndexService.indexProduct(updatedProduct, 0);
+        productIndexService.indexProduct(updatedProduct);
 
         return productMapper.toDTO(updatedProduct);
     }
@@ -977,23 +1111,7 @@ public class ProductServiceImpl implements ProductService {
                 return Page.empty(pageable);
             }
 
-            // Utiliser la spécification pour filtrer par statut ACTIVE et par les sous-catégories
-            Specification<Product> spec = ProductSpecifications.hasStatus(ProductStatus.ACTIVE);
-
-            // Ajouter les sous-catégories à la spécification avec des OR
-            Specification<Product> categorySpec = null;
-            for (ProductCategory category : subCategories) {
-                if (categorySpec == null) {
-                    categorySpec = ProductSpecifications.hasCategory(category);
-                } else {
-                    categorySpec = categorySpec.or(ProductSpecifications.hasCategory(category));
-                }
-            }
-
-            // Combiner les spécifications
-            if (categorySpec != null) {
-                spec = spec.and(categorySpec);
-            }
+            Specification<Product> spec = buildMainCategorySpecification(subCategories);
 
             // Exécuter la requête, triée par viewsCount (priorité aux moins vus)
             Page<Product> productsPage = productRepository.findAll(
@@ -1013,16 +1131,105 @@ public class ProductServiceImpl implements ProductService {
                     .map(Product::getId)
                     .collect(Collectors.toList());
             
-            // Mettre à jour les compteurs de vues en batch si des produits ont été trouvés
-            if (!displayedProductIds.isEmpty()) {
-                updateViewsCountsInBatch(displayedProductIds);
-            }
+            // Enregistrer les affichages, les compteurs de vues sont écrits en différé
+            productViewCountService.recordImpressions(displayedProductIds);
+
+            return toListingPage(productsPage);
+        } catch (IllegalArgumentException e) {
+            log.error("Service: Invalid main category: {}", mainCategory);
+            throw new ResourceNotValidException("Invalid main category: " + mainCategory);
+        }
+    }
+
+    @Override
+    public CursorPageDTO<ProductListingDTO> getProductsByMainCategoryByCursor(String mainCategory, String cursor, int size) {
+        log.info("Service: Fetching products by cursor for main category: {} with equitable distribution", mainCategory);
 
-            return productsPage.map(productMapper::toProductListingDTO);
+        ProductCategory mainCat;
+        try {
+            mainCat = ProductCategory.valueOf(mainCategory.toUpperCase());
         } catch (IllegalArgumentException e) {
             log.error("Service: Invalid main category: {}", mainCategory);
             throw new ResourceNotValidException("Invalid main category: " + mainCategory);
         }
+
+        List<ProductCategory> subCategories = getSubcategoriesForMainCategory(mainCat);
+        if (subCategories.isEmpty()) {
+            return new CursorPageDTO<>(Collections.emptyList(), 0, false, null);
+        }
+
+        return findByViewsCountCursor(buildMainCategorySpecification(subCategories), cursor, size);
+    }
+
+    @Override
+    public CursorPageDTO<ProductListingDTO> getFairFeed(String category, String city, Long seed, String cursor, int size) {
+        log.info("Service: Fetching fair feed - category: {}, city: {}, seed: {}", category, city, seed);
+
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new ResourceNotValidException("Page size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+
+        List<ProductCategory> categories = null;
+        if (category != null && !category.isEmpty()) {
+            ProductCategory productCategory;
+            try {
+                productCategory = ProductCategory.valueOf(category.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.error("Service: Invalid category: {}", category);
+                throw new ResourceNotValidException("Invalid category: " + category);
+            }
+            // Une catégorie principale couvre toutes ses sous-catégories
+            List<ProductCategory> subCategories = getSubcategoriesForMainCategory(productCategory);
+            categories = subCategories.isEmpty() ? List.of(productCategory) : subCategories;
+        }
+
+        ProductExposureScheduler.Window window = productExposureScheduler.nextWindow(
+                categories, city, FairFeedCursor.decode(cursor), seed, size);
+
+        // Charger les lignes de listing de la fenêtre dans l'ordre choisi par l'ordonnanceur
+        List<ProductListingDTO> content = productRepository.findListingsByIds(window.getProductIds()).stream()
+                .filter(listing -> listing.getStatus() == ProductStatus.ACTIVE)
+                .toList();
+
+        productViewCountService.recordImpressions(content.stream().map(ProductListingDTO::getId).toList());
+
+        return new CursorPageDTO<>(content, content.size(), window.isHasNext(), window.getNextCursor());
+    }
+
+    /**
+     * Convertit une page d'entités en page de listing. Les lignes sont relues par la projection de listing
+     * afin de ne jamais parcourir la collection d'images de chaque produit.
+     */
+    private Page<ProductListingDTO> toListingPage(Page<Product> productsPage) {
+        List<UUID> productIds = productsPage.getContent().stream()
+                .map(Product::getId)
+                .toList();
+        return new PageImpl<>(productRepository.findListingsByIds(productIds), productsPage.getPageable(), productsPage.getTotalElements());
+    }
+
+    /**
+     * Construit la spécification des produits actifs appartenant à l'une des sous-catégories
+     */
+    private Specification<Product> buildMainCategorySpecification(List<ProductCategory> subCategories) {
+        // Utiliser la spécification pour filtrer par statut ACTIVE et par les sous-catégories
+        Specification<Product> spec = ProductSpecifications.hasStatus(ProductStatus.ACTIVE);
+
+        // Ajouter les sous-catégories à la spécification avec des OR
+        Specification<Product> categorySpec = null;
+        for (ProductCategory category : subCategories) {
+            if (categorySpec == null) {
+                categorySpec = ProductSpecifications.hasCategory(category);
+            } else {
+                categorySpec = categorySpec.or(ProductSpecifications.hasCategory(category));
+            }
+        }
+
+        // Combiner les spécifications
+        if (categorySpec != null) {
+            spec = spec.and(categorySpec);
+        }
+
+        return spec;
     }
 
     /**
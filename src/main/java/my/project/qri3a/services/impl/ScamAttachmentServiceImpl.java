@@ -8,6 +8,7 @@ import my.project.qri3a.exceptions.ResourceNotFoundException;
 import my.project.qri3a.repositories.ScamAttachmentRepository;
 import my.project.qri3a.repositories.ScamRepository;
 import my.project.qri3a.services.S3Service;
+import my.project.qri3a.services.StorageCleanupService;
 import my.project.qri3a.services.ScamAttachmentService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -28,6 +29,7 @@ public class ScamAttachmentServiceImpl implements ScamAttachmentService {
     private final ScamRepository scamRepository;
     private final ScamAttachmentRepository attachmentRepository;
     private final S3Service s3Service;
+    private final StorageCleanupService storageCleanupService;
 
     @Override
     public ScamAttachment uploadAttachment(UUID scamId, MultipartFile file, String attachmentType) throws IOException {
@@ -96,12 +98,8 @@ public class ScamAttachmentServiceImpl implements ScamAttachmentService {
         // Extraire le nom du fichier S3 à partir de l'URL
         String s3Key = attachment.getFileUrl().substring(attachment.getFileUrl().indexOf("scams/"));
         
-        // Supprimer le fichier de S3
-        try {
-            s3Service.deleteFile(s3Key);
-        } catch (Exception e) {
-            log.error("Error deleting file from S3: {}", e.getMessage());
-        }
+        // Supprimer le fichier de S3, en arrière-plan après le commit
+        storageCleanupService.deleteFile(s3Key);
         
         // Supprimer l'entité de la base de données
         attachmentRepository.deleteById(attachmentId);
@@ -115,15 +113,10 @@ public class ScamAttachmentServiceImpl implements ScamAttachmentService {
         // Récupérer toutes les pièces jointes pour le signalement
         List<ScamAttachment> attachments = attachmentRepository.findByScamId(scamId);
         
-        // Supprimer chaque fichier de S3
-        for (ScamAttachment attachment : attachments) {
-            String s3Key = attachment.getFileUrl().substring(attachment.getFileUrl().indexOf("scams/"));
-            try {
-                s3Service.deleteFile(s3Key);
-            } catch (Exception e) {
-                log.error("Error deleting file from S3: {}", e.getMessage());
-            }
-        }
+        // Supprimer les fichiers de S3, en arrière-plan après le commit
+        storageCleanupService.deleteFiles(attachments.stream()
+                .map(attachment -> attachment.getFileUrl().substring(attachment.getFileUrl().indexOf("scams/")))
+                .toList());
         
         // Supprimer toutes les pièces jointes de la base de données
         attachmentRepository.deleteByScamId(scamId);
@@ -20,6 +20,7 @@ import my.project.qri3a.repositories.ProductRepository;
 import my.project.qri3a.repositories.ScamRepository;
 import my.project.qri3a.repositories.UserRepository;
 import my.project.qri3a.services.NotificationService;
+import my.project.qri3a.services.ProductIndexService;
 import my.project.qri3a.services.ScamService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -42,6 +43,7 @@ public class ScamServiceImpl implements ScamService {
     private final ProductRepository productRepository;
     private final ScamMapper scamMapper;
     private final NotificationService notificationService;
+    private final ProductIndexService productIndexService;
 
     @Override
     public ScamResponseDTO reportScam(ScamReportRequestDTO dto)
@@ -208,6 +210,7 @@ public class ScamServiceImpl implements ScamService {
                     // Marquer le produit comme REJECTED
                     product.setStatus(ProductStatus.REJECTED);
                     productRepository.save(product);
+                    productIndexService.indexProduct(product);
                     
                     log.info("Service: Product with ID {} has been blocked due to confirmed scam", product.getId());
                 } else {
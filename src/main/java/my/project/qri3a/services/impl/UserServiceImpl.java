@@ -16,16 +16,16 @@ import my.project.qri3a.exceptions.ResourceAlreadyExistsException;
 import my.project.qri3a.exceptions.ResourceNotFoundException;
 import my.project.qri3a.exceptions.ResourceNotValidException;
 import my.project.qri3a.mappers.ImageMapper;
-import my.project.qri3a.mappers.ProductMapper;
 import my.project.qri3a.mappers.UserMapper;
 import my.project.qri3a.repositories.ImageRepository;
 import my.project.qri3a.repositories.ProductRepository;
 import my.project.qri3a.repositories.UserRepository;
 import my.project.qri3a.repositories.VerificationCodeRepository;
-import my.project.qri3a.repositories.search.ProductDocRepository;
 import my.project.qri3a.services.ImageService;
+import my.project.qri3a.services.NotificationPreferenceMatcher;
 import my.project.qri3a.services.ProductIndexService;
 import my.project.qri3a.services.S3Service;
+import my.project.qri3a.services.StorageCleanupService;
 import my.project.qri3a.services.UserService;
 import org.springframework.data.domain.*;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -50,18 +50,19 @@ public class UserServiceImpl implements UserService {
     private final ProductRepository productRepository;
     private final PasswordEncoder passwordEncoder;
     private final UserMapper userMapper;
-    private final ProductMapper productMapper;
     private static final Set<String> ALLOWED_SORT_PROPERTIES = Arrays.stream(User.class.getDeclaredFields())
             .map(Field::getName)
             .collect(Collectors.toSet());
     private final S3Service s3Service;
+    private final StorageCleanupService storageCleanupService;
     private final ImageService imageService;
     private final ImageRepository imageRepository;
     private final ImageMapper imageMapper;
     private final VerificationCodeRepository verificationCodeRepository;
     @PersistenceContext
     private EntityManager entityManager;
-    private final ProductDocRepository productDocRepository;
+    private final ProductIndexService productIndexService;
+    private final NotificationPreferenceMatcher notificationPreferenceMatcher;
 
 //    @Override
 //    public Page<User> getAllUsers(Pageable pageable) throws ResourceNotValidException {
@@ -128,7 +129,7 @@ public class UserServiceImpl implements UserService {
             // Si l'utilisateur a déjà une photo de profil, supprimer l'ancienne
             if (userToUpdate.getProfileImage() != null && !userToUpdate.getProfileImage().isEmpty()) {
                 String filename = extractFileName(userToUpdate.getProfileImage());
-                s3Service.deleteFile(filename);
+                storageCleanupService.deleteFile(filename);
                 log.info("Old profile image deleted: {}", filename);
             }
 
@@ -147,7 +148,7 @@ public class UserServiceImpl implements UserService {
             // Vérifier si l'utilisateur a une image de profil à supprimer
             if (userToUpdate.getProfileImage() != null && !userToUpdate.getProfileImage().isEmpty()) {
                 String filename = extractFileName(userToUpdate.getProfileImage());
-                s3Service.deleteFile(filename);
+                storageCleanupService.deleteFile(filename);
                 log.info("Profile image deleted without replacement: {}", filename);
 
                 // Réinitialiser l'URL de l'image de profil
@@ -265,13 +266,13 @@ public class UserServiceImpl implements UserService {
                     return new ResourceNotFoundException("User not found with ID " + userId);
                 });
 
-        // Fetch paginated wishlist products directly from the repository
-        Page<Product> wishlistPage = productRepository.findWishlistByUserId(userId, pageable);
+        // Fetch the paginated wishlist product IDs, then the listing rows in a single query
+        Page<UUID> wishlistPage = productRepository.findWishlistProductIdsByUserId(userId, pageable);
         log.info("Service: User with ID {} has {} products in wishlist (Total: {})",
                 userId, wishlistPage.getNumberOfElements(), wishlistPage.getTotalElements());
 
-        // Map entities to DTOs
-        return wishlistPage.map(productMapper::toProductListingDTO);
+        List<ProductListingDTO> listings = productRepository.findListingsByIds(wishlistPage.getContent());
+        return new PageImpl<>(listings, wishlistPage.getPageable(), wishlistPage.getTotalElements());
     }
 
 
@@ -343,6 +344,7 @@ public class UserServiceImpl implements UserService {
         entityManager.createQuery("DELETE FROM NotificationPreference np WHERE np.user.id = :userId")
                 .setParameter("userId", userId)
                 .executeUpdate();
+        notificationPreferenceMatcher.onUserDeleted(userId);
 
         // d. Supprimer les rapports
         entityManager.createQuery("DELETE FROM Report r WHERE r.reporter.id = :userId OR r.reportedUser.id = :userId")
@@ -383,20 +385,14 @@ public class UserServiceImpl implements UserService {
 
         log.info("**** Service: Deleting user with IDs: {}", ids);
 
-        productDocRepository.deleteByIdIn(ids);
+        productIndexService.deleteProductIndexes(ids);
 
         log.info("Service : User deleted with ID: {}", userId);
 
-        // 4. Supprimer les fichiers S3
-        for (String imageUrl : s3ImageUrls) {
-            try {
-                String filename = extractFileName(imageUrl);
-                s3Service.deleteFile(filename);
-                log.info("Service: Deleted image from S3 with filename: {}", filename);
-            } catch (Exception e) {
-                log.error("Failed to delete S3 file: {}", imageUrl, e);
-            }
-        }
+        // 4. Supprimer les fichiers S3, en arrière-plan après le commit
+        List<String> filenames = s3ImageUrls.stream().map(this::extractFileName).toList();
+        storageCleanupService.deleteFiles(filenames);
+        log.info("Service: Scheduled deletion of {} images from S3", filenames.size());
     }
 
     private String extractFileName(String imageUrl) {
@@ -67,4 +67,33 @@ public class ProductSpecifications {
                 criteriaBuilder.equal(root.get("status"), status);
     }
 
+    /**
+     * Crée une spécification qui ne garde que les produits situés après le curseur
+     * dans l'ordre (viewsCount ASC, id ASC)
+     * @param viewsCount Le viewsCount du dernier produit de la page précédente
+     * @param id L'identifiant du dernier produit de la page précédente
+     * @return Une spécification pour la pagination par clé
+     */
+    public static Specification<Product> isAfterViewsCountCursor(int viewsCount, UUID id) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.or(
+                criteriaBuilder.greaterThan(root.get("viewsCount"), viewsCount),
+                criteriaBuilder.and(
+                        criteriaBuilder.equal(root.get("viewsCount"), viewsCount),
+                        criteriaBuilder.greaterThan(root.get("id"), id)
+                )
+        );
+    }
+
+    /**
+     * Crée une spécification qui ne garde que les produits situés dans un rectangle de coordonnées,
+     * résolu par l'index (geo_lat, geo_lon)
+     * @return Une spécification pour filtrer par position
+     */
+    public static Specification<Product> isWithinBoundingBox(double minLat, double maxLat, double minLon, double maxLon) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.and(
+                criteriaBuilder.between(root.get("geoLat"), minLat, maxLat),
+                criteriaBuilder.between(root.get("geoLon"), minLon, maxLon)
+        );
+    }
+
 }
@@ -0,0 +1,57 @@
+package my.project.qri3a.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Esquisse Count-Min sans verrou : estimation, par excès uniquement, de la fréquence d'un grand nombre de clés
+ * dans une mémoire fixe de depth x width compteurs. L'erreur est d'au plus total * e / width avec une probabilité
+ * 1 - exp(-depth).
+ */
+public class CountMinSketch {
+
+    // Multiplicateurs impairs distincts, un par ligne
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F, 0x165667B1, 0xD3A2646D, 0xFD7046C5, 0xB55A4F09};
+
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray counts;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length || width < 1) {
+            throw new IllegalArgumentException("depth must be between 1 and " + SEEDS.length + " and width positive");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counts = new AtomicLongArray(depth * width);
+    }
+
+    /**
+     * Compte une occurrence de la clé
+     * @return La fréquence estimée de la clé, occurrence comprise
+     */
+    public long addAndEstimate(Object key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.incrementAndGet(row * width + index(row, hash)));
+        }
+        return estimate;
+    }
+
+    public long estimate(Object key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(row * width + index(row, hash)));
+        }
+        return estimate;
+    }
+
+    private int index(int row, int hash) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return (h & Integer.MAX_VALUE) % width;
+    }
+}
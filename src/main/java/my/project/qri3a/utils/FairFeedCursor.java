@@ -0,0 +1,71 @@
+package my.project.qri3a.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import my.project.qri3a.exceptions.ResourceNotValidException;
+
+/**
+ * Curseur opaque du fil équitable : version de l'instantané, graine de session et position dans le parcours.
+ * Tant que l'instantané est conservé, la même graine produit exactement les mêmes pages.
+ */
+public final class FairFeedCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final long snapshotVersion;
+    private final long seed;
+    private final int position;
+
+    public FairFeedCursor(long snapshotVersion, long seed, int position) {
+        this.snapshotVersion = snapshotVersion;
+        this.seed = seed;
+        this.position = position;
+    }
+
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Encode le curseur en jeton Base64 URL-safe
+     */
+    public String encode() {
+        String raw = snapshotVersion + SEPARATOR + seed + SEPARATOR + position;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un jeton reçu du client
+     * @param token Le jeton, peut être null ou vide pour la première page
+     * @return Le curseur, ou null pour la première page
+     * @throws ResourceNotValidException si le jeton est malformé
+     */
+    public static FairFeedCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Unexpected cursor format");
+            }
+            int position = Integer.parseInt(parts[2]);
+            if (position < 0) {
+                throw new IllegalArgumentException("Negative cursor position");
+            }
+            return new FairFeedCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]), position);
+        } catch (IllegalArgumentException e) {
+            throw new ResourceNotValidException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package my.project.qri3a.utils;
+
+import my.project.qri3a.exceptions.ResourceNotValidException;
+
+/**
+ * Filtre de recherche par rayon autour d'un point (coordonnées WGS84, distance en kilomètres).
+ * Fournit aussi le rectangle englobant du cercle, utilisé comme préfiltre indexé côté PostgreSQL
+ * avant le calcul exact de la distance.
+ * @param sortByDistance Classe les résultats du plus proche au plus éloigné
+ */
+public record GeoDistanceFilter(double lat, double lon, double radiusKm, boolean sortByDistance) {
+
+    public static final double DEFAULT_RADIUS_KM = 25;
+    public static final double MAX_RADIUS_KM = 500;
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    // Longueur d'un degré de latitude sur la sphère de la distance exacte (haversine), sans quoi le rectangle serait
+    // plus étroit que le cercle ; celle d'un degré de longitude est multipliée par cos(latitude)
+    private static final double KM_PER_DEGREE = EARTH_RADIUS_KM * Math.PI / 180;
+
+    /**
+     * Construit le filtre à partir des paramètres de la requête
+     * @return Le filtre, null si aucune position n'est fournie
+     * @throws ResourceNotValidException si la position est incomplète, hors limites ou si le rayon est invalide
+     */
+    public static GeoDistanceFilter of(Double lat, Double lon, Double radiusKm, boolean sortByDistance) {
+        if (lat == null && lon == null) {
+            if (radiusKm != null || sortByDistance) {
+                throw new ResourceNotValidException("lat and lon are required for a distance search");
+            }
+            return null;
+        }
+        if (lat == null || lon == null) {
+            throw new ResourceNotValidException("lat and lon must be provided together");
+        }
+        if (!isValid(lat, 90) || !isValid(lon, 180)) {
+            throw new ResourceNotValidException("Invalid coordinates: " + lat + "," + lon);
+        }
+        double radius = radiusKm == null ? DEFAULT_RADIUS_KM : radiusKm;
+        if (!(radius > 0) || radius > MAX_RADIUS_KM) {
+            throw new ResourceNotValidException("radiusKm must be greater than 0 and at most " + MAX_RADIUS_KM);
+        }
+        return new GeoDistanceFilter(lat, lon, radius, sortByDistance);
+    }
+
+    /**
+     * Latitude saisie sous forme de texte (colonne historique products.latitude)
+     * @return La valeur, null si elle est absente, illisible ou hors limites
+     */
+    public static Double parseLatitude(String value) {
+        return parse(value, 90);
+    }
+
+    /**
+     * Longitude saisie sous forme de texte (colonne historique products.longitude)
+     * @return La valeur, null si elle est absente, illisible ou hors limites
+     */
+    public static Double parseLongitude(String value) {
+        return parse(value, 180);
+    }
+
+    public double minLat() {
+        return Math.max(-90, lat - radiusKm / KM_PER_DEGREE);
+    }
+
+    public double maxLat() {
+        return Math.min(90, lat + radiusKm / KM_PER_DEGREE);
+    }
+
+    public double minLon() {
+        return Math.max(-180, lon - lonDelta());
+    }
+
+    public double maxLon() {
+        return Math.min(180, lon + lonDelta());
+    }
+
+    // Le cercle est le plus large du côté du pôle : on prend le cosinus de la latitude extrême du rectangle
+    private double lonDelta() {
+        double cos = Math.cos(Math.toRadians(Math.max(Math.abs(minLat()), Math.abs(maxLat()))));
+        return cos < 1e-6 ? 180 : Math.min(180, radiusKm / (KM_PER_DEGREE * cos));
+    }
+
+    private static boolean isValid(double value, double limit) {
+        return Double.isFinite(value) && Math.abs(value) <= limit;
+    }
+
+    private static Double parse(String value, double limit) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            return isValid(parsed, limit) ? parsed : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
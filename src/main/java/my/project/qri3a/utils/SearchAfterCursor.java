@@ -0,0 +1,72 @@
+package my.project.qri3a.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import my.project.qri3a.exceptions.ResourceNotValidException;
+
+/**
+ * Curseur opaque de la recherche OpenSearch : point-in-time (absent tant qu'aucun n'a été ouvert) et valeurs de tri
+ * (_score, createdAt, id) du dernier résultat renvoyé, passées en search_after pour la page suivante.
+ */
+public final class SearchAfterCursor {
+
+    // Absent des identifiants de point-in-time (Base64) comme des UUID
+    private static final String SEPARATOR = "|";
+
+    private final String pitId;
+    private final float score;
+    private final long createdAt;
+    private final String id;
+
+    public SearchAfterCursor(String pitId, float score, long createdAt, String id) {
+        this.pitId = pitId;
+        this.score = score;
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    /**
+     * @return Point-in-time, null si la page précédente a été lue directement sur l'index
+     */
+    public String getPitId() {
+        return pitId;
+    }
+
+    /**
+     * Valeurs de tri à passer telles quelles à search_after
+     */
+    public Object[] getSortValues() {
+        return new Object[]{score, createdAt, id};
+    }
+
+    /**
+     * Encode le curseur en jeton Base64 URL-safe
+     */
+    public String encode() {
+        String raw = (pitId == null ? "" : pitId) + SEPARATOR + score + SEPARATOR + createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un jeton reçu du client
+     * @param token Le jeton, peut être null ou vide pour la première page
+     * @return Le curseur, ou null pour la première page
+     * @throws ResourceNotValidException si le jeton est malformé
+     */
+    public static SearchAfterCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            if (parts.length != 4 || parts[3].isEmpty()) {
+                throw new ResourceNotValidException("Invalid cursor: " + token);
+            }
+            return new SearchAfterCursor(parts[0].isEmpty() ? null : parts[0], Float.parseFloat(parts[1]), Long.parseLong(parts[2]), parts[3]);
+        } catch (IllegalArgumentException e) {
+            throw new ResourceNotValidException("Invalid cursor: " + token);
+        }
+    }
+}
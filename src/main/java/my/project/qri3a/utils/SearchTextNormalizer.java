@@ -0,0 +1,39 @@
+package my.project.qri3a.utils;
+
+/**
+ * Normalisation du texte saisi dans les recherches OpenSearch.
+ * Sert à la fois à construire les requêtes et à former les clés du cache de résultats :
+ * deux saisies qui ne diffèrent que par la casse ou les espaces partagent la même entrée.
+ */
+public final class SearchTextNormalizer {
+
+    private static final int MAX_QUERY_LENGTH = 100;
+
+    private SearchTextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        // Vérification des entrées nulles ou vides
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+
+        // Limiter la longueur maximale de la recherche
+        if (text.length() > MAX_QUERY_LENGTH) {
+            text = text.substring(0, MAX_QUERY_LENGTH);
+        }
+
+        // Convertir en minuscules
+        text = text.toLowerCase();
+
+        // Supprimer uniquement les caractères dangereux pour Elasticsearch
+        // Ne PAS échapper les chiffres ou autres caractères normaux
+        String cleaned = text.replaceAll("[\\p{Cntrl}]", "");
+
+        // Normaliser les espaces multiples
+        cleaned = cleaned.replaceAll("\\s+", " ");
+
+        // Enlever les espaces de début et de fin
+        return cleaned.trim();
+    }
+}
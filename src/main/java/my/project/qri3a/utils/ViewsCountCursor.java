@@ -0,0 +1,61 @@
+package my.project.qri3a.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import my.project.qri3a.exceptions.ResourceNotValidException;
+
+/**
+ * Curseur opaque pour la pagination par clé (keyset) sur (views_count, id).
+ * Le client ne fait que renvoyer le jeton reçu pour obtenir la page suivante.
+ */
+public final class ViewsCountCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final int viewsCount;
+    private final UUID id;
+
+    public ViewsCountCursor(int viewsCount, UUID id) {
+        this.viewsCount = viewsCount;
+        this.id = id;
+    }
+
+    public int getViewsCount() {
+        return viewsCount;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Encode le curseur en jeton Base64 URL-safe
+     */
+    public String encode() {
+        String raw = viewsCount + String.valueOf(SEPARATOR) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un jeton reçu du client
+     * @param token Le jeton, peut être null ou vide pour la première page
+     * @return Le curseur, ou null pour la première page
+     * @throws ResourceNotValidException si le jeton est malformé
+     */
+    public static ViewsCountCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separatorIndex = raw.indexOf(SEPARATOR);
+            int viewsCount = Integer.parseInt(raw.substring(0, separatorIndex));
+            UUID id = UUID.fromString(raw.substring(separatorIndex + 1));
+            return new ViewsCountCursor(viewsCount, id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ResourceNotValidException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+-- Schema de la recherche plein texte PostgreSQL (colonne tsvector generee + index GIN / pg_trgm).
+--
+-- Script a executer une seule fois, hors demarrage de l'application (il n'y a pas d'outil de migration) :
+--     psql "$DATABASE_URL" -v ON_ERROR_STOP=1 -f src/main/resources/db/fulltext-search.sql
+-- Il doit passer par psql en mode autocommit : CREATE/DROP INDEX CONCURRENTLY refusent un bloc de transaction.
+-- L'application verifie seulement au demarrage que la colonne et des index valides sont en place ; sinon la
+-- recherche SQL reste sur les LIKE historiques.
+--
+-- Le script est rejouable : apres une creation d'index interrompue (index laisse INVALID, que IF NOT EXISTS
+-- sauterait), il le supprime puis le recree.
+
+-- 1. Extension trigramme
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- 2. Colonne generee. ATTENTION : l'ajout d'une colonne STORED reecrit toute la table sous verrou ACCESS
+-- EXCLUSIVE (lectures et ecritures bloquees pendant la reecriture) : a lancer dans une fenetre de maintenance.
+-- lock_timeout evite de bloquer la table en attendant une longue transaction ; relancer le script si besoin.
+SET lock_timeout = '5s';
+ALTER TABLE products ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('french'::regconfig, coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('english'::regconfig, coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('arabic'::regconfig, coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('french'::regconfig, coalesce(description, '')), 'B') ||
+    setweight(to_tsvector('english'::regconfig, coalesce(description, '')), 'B') ||
+    setweight(to_tsvector('arabic'::regconfig, coalesce(description, '')), 'B')
+) STORED;
+RESET lock_timeout;
+
+-- 3. Suppression des index laisses INVALID par une creation concurrente interrompue
+SELECT format('DROP INDEX CONCURRENTLY IF EXISTS %I', c.relname)
+FROM pg_index i
+JOIN pg_class c ON c.oid = i.indexrelid
+WHERE NOT i.indisvalid
+  AND c.relname IN ('idx_product_search_vector', 'idx_product_title_trgm')
+\gexec
+
+-- 4. Index, crees sans bloquer les ecritures
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_product_search_vector ON products USING GIN (search_vector);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_product_title_trgm ON products USING GIN (lower(title) gin_trgm_ops);
@@ -0,0 +1,40 @@
+-- Index uniques utilises par l'ecriture par lots des compteurs de recherche (INSERT ... ON CONFLICT).
+--
+-- Script a executer une seule fois, hors demarrage de l'application (il n'y a pas d'outil de migration) :
+--     psql "$DATABASE_URL" -v ON_ERROR_STOP=1 -f src/main/resources/db/search-terms.sql
+-- Il doit passer par psql en mode autocommit : CREATE/DROP INDEX CONCURRENTLY refusent un bloc de transaction.
+-- La table search_term_hourly est creee par Hibernate (entite SearchTermHourly) : lancer le script apres le
+-- premier demarrage de cette version. L'application verifie seulement que les index sont en place et valides ;
+-- tant qu'ils ne le sont pas, les compteurs restent en memoire et la verification est refaite periodiquement.
+--
+-- NULLS NOT DISTINCT fait d'une categorie nulle une valeur comme les autres (PostgreSQL 15+).
+-- Le script est rejouable : si un doublon est insere entre la fusion et la creation de l'index, celle-ci echoue
+-- et laisse un index INVALID, supprime au passage suivant.
+
+-- 1. Fusion des doublons (terme, categorie) crees par l'ancien enregistrement (lecture puis ecriture concurrentes),
+-- sur la ligne au plus fort compteur
+BEGIN;
+UPDATE search_terms SET category = NULL WHERE category = '';
+UPDATE search_terms s SET count = r.total, last_searched = r.last
+FROM (SELECT id, SUM(count) OVER w AS total, MAX(last_searched) OVER w AS last,
+             row_number() OVER (PARTITION BY term, category ORDER BY count DESC, id) AS rn
+      FROM search_terms WINDOW w AS (PARTITION BY term, category)) r
+WHERE s.id = r.id AND r.rn = 1 AND s.count <> r.total;
+DELETE FROM search_terms s USING (
+    SELECT id, row_number() OVER (PARTITION BY term, category ORDER BY count DESC, id) AS rn FROM search_terms
+) r WHERE s.id = r.id AND r.rn > 1;
+COMMIT;
+
+-- 2. Suppression des index laisses INVALID par une creation concurrente interrompue
+SELECT format('DROP INDEX CONCURRENTLY IF EXISTS %I', c.relname)
+FROM pg_index i
+JOIN pg_class c ON c.oid = i.indexrelid
+WHERE NOT i.indisvalid
+  AND c.relname IN ('uk_search_term_term_category', 'uk_search_term_hourly_term_category_hour')
+\gexec
+
+-- 3. Index uniques, crees sans bloquer les ecritures
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_search_term_term_category
+    ON search_terms (term, category) NULLS NOT DISTINCT;
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_search_term_hourly_term_category_hour
+    ON search_term_hourly (term, category, hour) NULLS NOT DISTINCT;
@@ -0,0 +1,29 @@
+-- Index unique utilise par l'ecriture par lots de l'historique de recherche (INSERT ... ON CONFLICT).
+--
+-- Script a executer une seule fois, hors demarrage de l'application (il n'y a pas d'outil de migration) :
+--     psql "$DATABASE_URL" -v ON_ERROR_STOP=1 -f src/main/resources/db/user-search-history.sql
+-- Il doit passer par psql en mode autocommit : CREATE/DROP INDEX CONCURRENTLY refusent un bloc de transaction.
+-- L'application verifie seulement que l'index est en place et valide ; tant qu'il ne l'est pas, l'historique
+-- n'est pas enregistre et la verification est refaite periodiquement.
+--
+-- Le script est rejouable : si un doublon est insere entre la suppression et la creation de l'index, celle-ci
+-- echoue et laisse un index INVALID, supprime au passage suivant.
+
+-- 1. Suppression des doublons (utilisateur, terme) crees par l'ancien enregistrement (lecture puis ecriture) :
+-- seule l'entree la plus recente est gardee
+DELETE FROM user_search_history h USING (
+    SELECT id, row_number() OVER (PARTITION BY user_id, search_term ORDER BY created_at DESC NULLS LAST, id) AS rn
+    FROM user_search_history
+) r WHERE h.id = r.id AND r.rn > 1;
+
+-- 2. Suppression de l'index laisse INVALID par une creation concurrente interrompue
+SELECT format('DROP INDEX CONCURRENTLY IF EXISTS %I', c.relname)
+FROM pg_index i
+JOIN pg_class c ON c.oid = i.indexrelid
+WHERE NOT i.indisvalid
+  AND c.relname = 'uk_user_search_history_user_term'
+\gexec
+
+-- 3. Index unique, cree sans bloquer les ecritures
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_user_search_history_user_term
+    ON user_search_history (user_id, search_term);
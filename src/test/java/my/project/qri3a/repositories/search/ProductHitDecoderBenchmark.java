@@ -0,0 +1,115 @@
+package my.project.qri3a.repositories.search;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.opensearch.common.xcontent.XContentType;
+import org.opensearch.core.xcontent.DeprecationHandler;
+import org.opensearch.core.xcontent.NamedXContentRegistry;
+import org.opensearch.core.xcontent.XContentParser;
+import org.opensearch.search.SearchHit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import my.project.qri3a.documents.GeoLocation;
+import my.project.qri3a.documents.ProductDoc;
+
+/**
+ * Compare le décodage d'un résultat de recherche en {@link ProductDoc} : l'ancien chemin
+ * (getSourceAsString puis ObjectMapper) et celui de {@link ProductHitDecoder} (ObjectReader sur les octets du _source).
+ * Le résultat est lu depuis le JSON d'un hit par SearchHit.fromXContent, comme le fait le client.
+ * Lancement, hors de la suite de tests :
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main ProductHitDecoderBenchmark -prof gc
+ * </pre>
+ * Mesures (JDK 17.0.9, 1 vCPU ; gc.alloc.rate.norm, stable d'une exécution à l'autre, le temps l'est beaucoup moins) :
+ * <pre>
+ * source  chemin                     temps (us/op)    gc.alloc.rate.norm (B/op)
+ * list    sourceAsString             7,66 ± 0,12       4256
+ * list    objectReaderOverBytesRef   3,88 ± 2,28       2280
+ * full    sourceAsString            13,38 ± 3,10      10936
+ * full    objectReaderOverBytesRef   9,02 ± 3,78       3904
+ * </pre>
+ * Ancien chemin en production (full + sourceAsString) contre le nouveau (list + objectReaderOverBytesRef) :
+ * 10936 puis 2280 octets alloués par document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductHitDecoderBenchmark {
+
+    // list : champs des vues de liste ; full : _source complet avec la description, comme avant le filtrage
+    @Param({"list", "full"})
+    public String source;
+
+    private ObjectMapper objectMapper;
+    private ProductHitDecoder decoder;
+    private SearchHit hit;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        decoder = new ProductHitDecoder(objectMapper);
+
+        ProductDoc.ProductDocBuilder doc = ProductDoc.builder()
+                .id(UUID.randomUUID())
+                .title("iPhone 13 Pro Max 256 Go bleu alpin, très bon état")
+                .slug("iphone-13-pro-max-256-go-bleu-alpin-tres-bon-etat")
+                .price(new BigDecimal("7499.00"))
+                .location("Maarif")
+                .city("casablanca")
+                .category("SMARTPHONES_AND_TELEPHONES")
+                .condition("USED")
+                .status("ACTIVE")
+                .createdAt("2025-01-15T10:30:00")
+                .firstImageUrl("https://qri3a.s3.eu-north-1.amazonaws.com/products/" + UUID.randomUUID() + ".webp")
+                .numberOfImages(6)
+                .delivery("YES")
+                .deliveryFee(new BigDecimal("35.00"))
+                .deliveryAllMorocco(true)
+                .deliveryZones("Casablanca,Rabat,Mohammedia")
+                .deliveryTime("24-48h")
+                .geoLocation(new GeoLocation(33.5731, -7.5898));
+        if ("full".equals(source)) {
+            doc.description("Téléphone acheté en 2022, batterie à 89 %, toujours sous coque et verre trempé. ".repeat(20))
+                    .syncHash(1234567890L);
+        }
+
+        String json = "{\"_index\":\"products_idx_v4\",\"_id\":\"" + UUID.randomUUID() + "\",\"_score\":1.0,\"_source\":"
+                + objectMapper.writeValueAsString(doc.build()) + "}";
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+            parser.nextToken();
+            hit = SearchHit.fromXContent(parser);
+        }
+    }
+
+    @Benchmark
+    public ProductDoc sourceAsString() throws IOException {
+        return objectMapper.readValue(hit.getSourceAsString(), ProductDoc.class);
+    }
+
+    @Benchmark
+    public ProductDoc objectReaderOverBytesRef() {
+        return decoder.decode(hit);
+    }
+}
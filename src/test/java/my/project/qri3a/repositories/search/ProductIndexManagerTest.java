@@ -0,0 +1,68 @@
+package my.project.qri3a.repositories.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.IndicesClient;
+import org.opensearch.client.RequestOptions;
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.client.indices.GetIndexRequest;
+import org.opensearch.client.indices.GetIndexResponse;
+import org.opensearch.common.xcontent.XContentType;
+import org.opensearch.core.xcontent.DeprecationHandler;
+import org.opensearch.core.xcontent.NamedXContentRegistry;
+import org.opensearch.core.xcontent.XContentParser;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class ProductIndexManagerTest {
+
+    @Test
+    void detachedIndicesExcludeTheAliasTargetAndIndicesStillLoading() throws IOException {
+        // v4_1000 : ancien index ; v4_2000 : cible de l'alias ; v4_3000 : réindexation en cours ; v4_4000 : retour
+        // en arrière manuel, plus récent que la cible
+        String json = "{"
+                + index("products_idx_v4_1000", 1000, false, null) + ","
+                + index("products_idx_v4_2000", 2000, true, null) + ","
+                + index("products_idx_v4_3000", 3000, false, "-1") + ","
+                + index("products_idx_v4_4000", 4000, false, null)
+                + "}";
+
+        assertThat(manager(json).findDetachedIndices()).containsOnly(
+                entry("products_idx_v4_1000", Instant.ofEpochMilli(2000)),
+                entry("products_idx_v4_4000", Instant.ofEpochMilli(4000)));
+    }
+
+    @Test
+    void nothingIsDetachedWithoutAlias() throws IOException {
+        String json = "{" + index("products_idx_v4_1000", 1000, false, null) + "}";
+
+        assertThat(manager(json).findDetachedIndices()).isEmpty();
+    }
+
+    private static String index(String name, long creationDate, boolean aliased, String refreshInterval) {
+        return "\"" + name + "\":{\"aliases\":{" + (aliased ? "\"products_idx\":{\"is_write_index\":true}" : "") + "},"
+                + "\"mappings\":{},\"settings\":{\"index\":{\"creation_date\":\"" + creationDate + "\""
+                + (refreshInterval != null ? ",\"refresh_interval\":\"" + refreshInterval + "\"" : "") + "}}}";
+    }
+
+    private static ProductIndexManager manager(String json) throws IOException {
+        GetIndexResponse response;
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+            response = GetIndexResponse.fromXContent(parser);
+        }
+        RestHighLevelClient client = mock(RestHighLevelClient.class);
+        IndicesClient indices = mock(IndicesClient.class);
+        when(client.indices()).thenReturn(indices);
+        when(indices.get(any(GetIndexRequest.class), any(RequestOptions.class))).thenReturn(response);
+        return new ProductIndexManager(client, new ObjectMapper(), false, false, 30);
+    }
+}
@@ -0,0 +1,78 @@
+package my.project.qri3a.repositories.search.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensearch.action.search.SearchRequest;
+import org.opensearch.client.Cancellable;
+import org.opensearch.client.RequestOptions;
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.core.action.ActionListener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import my.project.qri3a.exceptions.SearchUnavailableException;
+import my.project.qri3a.repositories.search.OpenSearchGateway;
+import my.project.qri3a.repositories.search.ProductHitDecoder;
+
+class ProductDocRepositoryCustomImplTest {
+
+    private RestHighLevelClient openSearchClient;
+    private OpenSearchGateway openSearchGateway;
+    private ProductDocRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        openSearchClient = mock(RestHighLevelClient.class);
+        // Cluster injoignable : le client signale une IOException à l'écouteur
+        doAnswer(invocation -> {
+            ActionListener<?> listener = invocation.getArgument(2);
+            listener.onFailure(new IOException("Connection refused"));
+            return mock(Cancellable.class);
+        }).when(openSearchClient).searchAsync(any(SearchRequest.class), any(RequestOptions.class), any());
+
+        openSearchGateway = new OpenSearchGateway(openSearchClient, new SimpleMeterRegistry(), 2000, 2, 30000, 1, 10);
+        repository = new ProductDocRepositoryCustomImpl(openSearchClient, openSearchGateway,
+                new ProductHitDecoder(new ObjectMapper()), 1000, 1, 500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        openSearchGateway.shutdown();
+    }
+
+    @Test
+    void cursorSearchFailsAsUnavailableInsteadOfReturningAnEmptyPage() {
+        assertThatThrownBy(() -> repository.searchProductsElasticByCursor("iphone", null, null, null, null, null,
+                null, null, null, 20).join())
+                .isInstanceOf(CompletionException.class)
+                .cause().isInstanceOf(SearchUnavailableException.class);
+    }
+
+    @Test
+    void suggestionsAndTopResultsGoThroughTheCircuitBreaker() {
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> repository.findSuggestions("iph", null, 5).join())
+                    .cause().isInstanceOf(SearchUnavailableException.class);
+        }
+        assertThat(openSearchGateway.isCircuitOpen()).isTrue();
+
+        // Disjoncteur ouvert : échec immédiat, sans contacter le cluster
+        assertThatThrownBy(() -> repository.findTop10ByTitleOrDescription("iphone", null).join())
+                .cause().isInstanceOf(SearchUnavailableException.class)
+                .hasMessageContaining("circuit breaker is open");
+        verify(openSearchClient, times(2)).searchAsync(any(SearchRequest.class), any(RequestOptions.class), any());
+    }
+}
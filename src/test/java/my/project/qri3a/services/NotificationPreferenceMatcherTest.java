@@ -0,0 +1,142 @@
+package my.project.qri3a.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import my.project.qri3a.entities.NotificationPreference;
+import my.project.qri3a.entities.Product;
+import my.project.qri3a.entities.User;
+import my.project.qri3a.enums.ProductCategory;
+import my.project.qri3a.enums.ProductCondition;
+import my.project.qri3a.repositories.NotificationPreferenceRepository;
+
+class NotificationPreferenceMatcherTest {
+
+    private static final ProductCategory[] CATEGORIES = {null, ProductCategory.LAPTOPS, ProductCategory.SMARTPHONES_AND_TELEPHONES};
+    private static final ProductCondition[] CONDITIONS = {null, ProductCondition.NEW, ProductCondition.USED, ProductCondition.BOTH};
+    private static final String[] CITIES = {null, " ", "Casablanca", "casablanca ", "Rabat"};
+
+    private final List<Object[]> rows = new ArrayList<>();
+    private NotificationPreferenceRepository repository;
+    private NotificationPreferenceMatcher matcher;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(NotificationPreferenceRepository.class);
+        when(repository.findAllCriteria()).thenReturn(rows);
+        matcher = new NotificationPreferenceMatcher(repository, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void priceRangesMatchInclusivelyWithOpenBounds() {
+        UUID between = preference(null, null, "100", "200", null);
+        UUID from = preference(null, null, "200", null, null);
+        UUID upTo = preference(null, null, null, "99.99", null);
+        UUID any = preference(null, null, null, null, null);
+        matcher.reload();
+
+        assertThat(matcher.findInterestedUserIds(product(null, null, "100", null))).containsExactlyInAnyOrder(between, any);
+        assertThat(matcher.findInterestedUserIds(product(null, null, "200", null))).containsExactlyInAnyOrder(between, from, any);
+        assertThat(matcher.findInterestedUserIds(product(null, null, "50", null))).containsExactlyInAnyOrder(upTo, any);
+        // Comme en SQL, un produit sans prix ne correspond qu'aux préférences sans fourchette
+        assertThat(matcher.findInterestedUserIds(product(null, null, null, null))).containsExactly(any);
+    }
+
+    @Test
+    void matchesTheSameUsersAsAFullScan() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2_000; i++) {
+            Integer min = random.nextInt(3) == 0 ? null : random.nextInt(1_000);
+            Integer max = random.nextInt(3) == 0 ? null : (min == null ? 0 : min) + random.nextInt(500);
+            preference(pick(random, CATEGORIES), pick(random, CONDITIONS), min == null ? null : min.toString(),
+                    max == null ? null : max.toString(), pick(random, CITIES));
+        }
+        matcher.reload();
+
+        for (int i = 0; i < 500; i++) {
+            Product product = product(pick(random, CATEGORIES), pick(random, CONDITIONS),
+                    random.nextInt(20) == 0 ? null : String.valueOf(random.nextInt(1_600)), pick(random, CITIES));
+            assertThat(matcher.findInterestedUserIds(product)).isEqualTo(scan(product));
+        }
+    }
+
+    @Test
+    void changesAppliedDuringAReloadSurviveTheSwap() {
+        preference(null, null, null, null, null);
+        UUID deletedUserId = preference(null, null, null, null, null);
+        UUID deletedPreferenceId = (UUID) rows.get(1)[0];
+        UUID savedUserId = UUID.randomUUID();
+        // Lecture antérieure aux deux commits : elle contient la préférence supprimée, pas la nouvelle
+        List<Object[]> snapshot = List.copyOf(rows);
+        when(repository.findAllCriteria()).thenAnswer(invocation -> {
+            matcher.onSaved(NotificationPreference.builder()
+                    .id(UUID.randomUUID())
+                    .user(User.builder().id(savedUserId).build())
+                    .build());
+            matcher.onDeleted(deletedPreferenceId);
+            return snapshot;
+        });
+
+        matcher.reload();
+
+        Set<UUID> interested = matcher.findInterestedUserIds(product(null, null, "10", null));
+        assertThat(interested).contains(savedUserId).doesNotContain(deletedUserId).hasSize(2);
+    }
+
+    /**
+     * Règles de {@link NotificationPreferenceRepository#findInterestedUsersByProductCriteria}, appliquées à chaque préférence
+     */
+    private Set<UUID> scan(Product product) {
+        Set<UUID> userIds = new HashSet<>();
+        for (Object[] row : rows) {
+            ProductCondition condition = (ProductCondition) row[3];
+            BigDecimal min = (BigDecimal) row[4];
+            BigDecimal max = (BigDecimal) row[5];
+            String city = (String) row[6];
+            boolean categoryMatches = row[2] == null || row[2] == product.getCategory();
+            boolean conditionMatches = condition == null || condition == ProductCondition.BOTH || condition == product.getCondition();
+            boolean cityMatches = city == null || city.isBlank()
+                    || (product.getCity() != null && city.trim().equalsIgnoreCase(product.getCity().trim()));
+            boolean priceMatches = product.getPrice() == null
+                    ? min == null && max == null
+                    : (min == null || min.compareTo(product.getPrice()) <= 0) && (max == null || max.compareTo(product.getPrice()) >= 0);
+            if (categoryMatches && conditionMatches && cityMatches && priceMatches) {
+                userIds.add((UUID) row[1]);
+            }
+        }
+        return userIds;
+    }
+
+    private UUID preference(ProductCategory category, ProductCondition condition, String min, String max, String city) {
+        UUID userId = UUID.randomUUID();
+        rows.add(new Object[]{UUID.randomUUID(), userId, category, condition,
+                min == null ? null : new BigDecimal(min), max == null ? null : new BigDecimal(max), city});
+        return userId;
+    }
+
+    private static Product product(ProductCategory category, ProductCondition condition, String price, String city) {
+        return Product.builder()
+                .category(category)
+                .condition(condition)
+                .price(price == null ? null : new BigDecimal(price))
+                .city(city)
+                .build();
+    }
+
+    private static <T> T pick(Random random, T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
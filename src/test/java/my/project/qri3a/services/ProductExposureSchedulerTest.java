@@ -0,0 +1,52 @@
+package my.project.qri3a.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import my.project.qri3a.enums.ProductCategory;
+import my.project.qri3a.enums.ProductStatus;
+import my.project.qri3a.repositories.ProductRepository;
+
+class ProductExposureSchedulerTest {
+
+    private final UUID casablanca = UUID.randomUUID();
+    private final UUID rabat = UUID.randomUUID();
+    private ProductExposureScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findExposureRowsByStatus(ProductStatus.ACTIVE)).thenReturn(List.of(
+                new Object[]{casablanca, ProductCategory.LAPTOPS, "Casablanca", 3},
+                new Object[]{rabat, ProductCategory.LAPTOPS, "Rabat", 1}));
+        scheduler = new ProductExposureScheduler(productRepository, new SimpleMeterRegistry(), 200, 100);
+        scheduler.reconcile();
+    }
+
+    @Test
+    void cityFilterIsCaseInsensitive() {
+        assertThat(scheduler.nextWindow(null, " casablanca ", null, 1L, 10).getProductIds()).containsExactly(casablanca);
+    }
+
+    @Test
+    void noCityReturnsTheWholeFeed() {
+        assertThat(scheduler.nextWindow(null, null, null, 1L, 10).getProductIds()).containsExactlyInAnyOrder(casablanca, rabat);
+    }
+
+    @Test
+    void cityWithoutActiveListingsReturnsAnEmptyWindow() {
+        ProductExposureScheduler.Window window = scheduler.nextWindow(null, "Tanger", null, 1L, 10);
+
+        assertThat(window.getProductIds()).isEmpty();
+        assertThat(window.isHasNext()).isFalse();
+        assertThat(window.getNextCursor()).isNull();
+    }
+}
@@ -0,0 +1,109 @@
+package my.project.qri3a.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import my.project.qri3a.documents.IndexChunkDigest;
+import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.enums.ProductStatus;
+import my.project.qri3a.repositories.ProductIndexOutboxRepository;
+import my.project.qri3a.repositories.ProductRepository;
+import my.project.qri3a.repositories.search.ProductDocRepository;
+
+class ProductIndexReconcilerTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2025, 1, 15, 10, 30);
+
+    private final UUID active = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private final UUID moderation = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private final UUID rejected = UUID.fromString("00000000-0000-0000-0000-000000000003");
+    private final UUID deactivated = UUID.fromString("00000000-0000-0000-0000-000000000004");
+
+    private ProductRepository productRepository;
+    private ProductDocRepository productDocRepository;
+    private ProductIndexOutboxRepository productIndexOutboxRepository;
+    private ProductIndexService productIndexService;
+    private ProductIndexReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        productDocRepository = mock(ProductDocRepository.class);
+        productIndexOutboxRepository = mock(ProductIndexOutboxRepository.class);
+        productIndexService = mock(ProductIndexService.class);
+        ProductReindexJob productReindexJob = mock(ProductReindexJob.class);
+        when(productIndexOutboxRepository.findPendingProductIds(anyCollection())).thenReturn(List.of());
+        reconciler = new ProductIndexReconciler(productRepository, productDocRepository, productIndexOutboxRepository,
+                productIndexService, productReindexJob, new SimpleMeterRegistry(), true, 10);
+    }
+
+    @Test
+    void mixedStatusChunkIndexedWithEveryStatusHasNoDrift() throws Exception {
+        Map<UUID, Long> hashes = mixedStatusHashes();
+        givenChunk(hashes, hashes);
+
+        assertThat(reconciler.reconcile()).isZero();
+        verify(productIndexService, never()).indexProducts(anyCollection());
+        verify(productIndexService, never()).deleteProductIndexes(anyCollection());
+    }
+
+    @Test
+    void mixedStatusChunkReportsOnlyRealDifferences() throws Exception {
+        Map<UUID, Long> databaseHashes = mixedStatusHashes();
+        Map<UUID, Long> indexHashes = new HashMap<>(databaseHashes);
+        // Produit désactivé absent de l'index, produit rejeté indexé avec son ancien statut, document orphelin
+        indexHashes.remove(deactivated);
+        indexHashes.put(rejected, ProductDoc.syncHash(rejected, ProductStatus.MODERATION.name(), UPDATED_AT));
+        UUID orphan = UUID.fromString("00000000-0000-0000-0000-000000000005");
+        indexHashes.put(orphan, ProductDoc.syncHash(orphan, ProductStatus.ACTIVE.name(), UPDATED_AT));
+        givenChunk(databaseHashes, indexHashes);
+
+        assertThat(reconciler.reconcile()).isEqualTo(3);
+        verify(productIndexService).indexProducts(argThat(ids -> Set.copyOf(ids).equals(Set.of(deactivated, rejected))));
+        verify(productIndexService).deleteProductIndexes(argThat(ids -> Set.copyOf(ids).equals(Set.of(orphan))));
+    }
+
+    private Map<UUID, Long> mixedStatusHashes() {
+        Map<UUID, Long> hashes = new HashMap<>();
+        hashes.put(active, ProductDoc.syncHash(active, ProductStatus.ACTIVE.name(), UPDATED_AT));
+        hashes.put(moderation, ProductDoc.syncHash(moderation, ProductStatus.MODERATION.name(), UPDATED_AT));
+        hashes.put(rejected, ProductDoc.syncHash(rejected, ProductStatus.REJECTED.name(), UPDATED_AT));
+        hashes.put(deactivated, ProductDoc.syncHash(deactivated, ProductStatus.DEACTIVATED.name(), UPDATED_AT));
+        return hashes;
+    }
+
+    /**
+     * Un seul tronçon, plus court que la taille de tronçon : c'est aussi le dernier
+     */
+    private void givenChunk(Map<UUID, Long> databaseHashes, Map<UUID, Long> indexHashes) throws Exception {
+        when(productRepository.digestNextChunk(isNull(), anyInt()))
+                .thenReturn(new IndexChunkDigest(deactivated, databaseHashes.size(), sum(databaseHashes.values())));
+        when(productDocRepository.digestRange(isNull(), isNull()))
+                .thenReturn(new IndexChunkDigest(null, indexHashes.size(), sum(indexHashes.values())));
+        when(productRepository.findSyncHashes(isNull(), isNull())).thenReturn(databaseHashes);
+        when(productDocRepository.findSyncHashes(isNull(), isNull(), anyInt())).thenReturn(indexHashes);
+    }
+
+    private static long sum(Collection<Long> values) {
+        return values.stream().mapToLong(Long::longValue).sum();
+    }
+}
@@ -0,0 +1,52 @@
+package my.project.qri3a.services;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import my.project.qri3a.repositories.ProductIndexOutboxRepository;
+import my.project.qri3a.repositories.ProductRepository;
+import my.project.qri3a.repositories.search.ProductDocRepository;
+import my.project.qri3a.repositories.search.ProductIndexManager;
+
+class ProductReindexJobTest {
+
+    private final ProductIndexManager productIndexManager = mock(ProductIndexManager.class);
+    private final ProductReindexJob job = new ProductReindexJob(mock(ProductRepository.class), mock(ProductDocRepository.class),
+            productIndexManager, mock(SearchResultCache.class), mock(ProductIndexOutboxRepository.class),
+            mock(PlatformTransactionManager.class), 1000, 1, 1000, 0, 60);
+
+    @Test
+    void previousIndicesFoundAtStartupAreDeletedOnceTheirRetentionHasElapsed() throws IOException {
+        Instant now = Instant.now();
+        when(productIndexManager.findDetachedIndices()).thenReturn(Map.of(
+                "products_idx_v4_1", now.minus(Duration.ofHours(2)),
+                "products_idx_v4_2", now.minus(Duration.ofMinutes(10))));
+
+        job.restorePendingDeletions();
+        job.deleteExpiredPreviousIndices();
+
+        verify(productIndexManager).deleteIndex("products_idx_v4_1");
+        verify(productIndexManager, never()).deleteIndex("products_idx_v4_2");
+    }
+
+    @Test
+    void nothingIsDeletedWhenTheClusterCannotBeListed() throws IOException {
+        when(productIndexManager.findDetachedIndices()).thenThrow(new IOException("connection refused"));
+
+        job.restorePendingDeletions();
+        job.deleteExpiredPreviousIndices();
+
+        verify(productIndexManager, never()).deleteIndex(anyString());
+    }
+}
@@ -0,0 +1,66 @@
+package my.project.qri3a.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import my.project.qri3a.repositories.ProductRepository;
+
+class ProductViewCountServiceTest {
+
+    @Test
+    void noImpressionIsLostWhileIdleCountersAreRetired() throws InterruptedException {
+        AtomicLong flushedDeltas = new AtomicLong();
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findSellerRolesByProductIds(any())).thenReturn(List.of());
+        when(productRepository.applyViewsCountDeltas(any())).thenAnswer(invocation -> {
+            Map<UUID, Integer> deltas = invocation.getArgument(0);
+            deltas.values().forEach(flushedDeltas::addAndGet);
+            return deltas.size();
+        });
+        ProductViewCountService service = new ProductViewCountService(productRepository, new SimpleMeterRegistry(), 10, 1000, true);
+
+        List<UUID> products = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        int threads = 4;
+        int pagesPerThread = 20_000;
+        AtomicBoolean done = new AtomicBoolean();
+        // Des flushs en continu retirent les compteurs à zéro pendant que les affichages arrivent
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                service.flush();
+            }
+        });
+        flusher.start();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < pagesPerThread; i++) {
+                    service.recordImpressions(List.of(products.get(i % products.size())));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        flusher.join();
+        service.flush();
+
+        // Vendeurs standards : +5 par affichage
+        assertThat(flushedDeltas.get()).isEqualTo(5L * threads * pagesPerThread);
+        assertThat(service.getPendingViews()).isZero();
+    }
+}
@@ -0,0 +1,129 @@
+package my.project.qri3a.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import my.project.qri3a.repositories.SearchTermRepository;
+import my.project.qri3a.repositories.SearchTermRepositoryCustom.TermDelta;
+
+class SearchTermAggregatorTest {
+
+    private final List<Map<String, Long>> flushes = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private SearchTermRepository searchTermRepository;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        searchTermRepository = mock(SearchTermRepository.class);
+        when(searchTermRepository.upsertCounts(any(), any())).thenAnswer(invocation -> {
+            List<TermDelta> deltas = invocation.getArgument(0);
+            Map<String, Long> counts = new HashMap<>();
+            deltas.forEach(delta -> counts.put(delta.term(), delta.count()));
+            flushes.add(counts);
+            return deltas.size();
+        });
+    }
+
+    @Test
+    void heavyHittersPersistTheirExactCountNotTheSketchEstimate() {
+        // Une esquisse d'une seule case : chaque estimation vaut le total de la longue traîne
+        SearchTermAggregator aggregator = aggregator(1, 2, 1, 1);
+        aggregator.record("tracked", null, null);
+        for (String term : List.of("b", "c", "b", "c", "b")) {
+            aggregator.record(term, null, null);
+        }
+
+        aggregator.flush();
+
+        assertThat(flushes).containsExactly(Map.of("tracked", 1L, "b", 3L, "c", 2L));
+    }
+
+    @Test
+    void heavyHittersArePromotedToExactCountersWhenRoomIsFreed() {
+        SearchTermAggregator aggregator = aggregator(2, 2, 2, 64);
+        aggregator.record("x", null, null);
+        aggregator.record("y", null, null);
+        aggregator.flush();
+        for (String term : List.of("b", "b", "c")) {
+            aggregator.record(term, null, null);
+        }
+        // x et y, restés à zéro pendant l'intervalle, libèrent leur place pour b et c
+        aggregator.flush();
+
+        aggregator.record("b", null, null);
+        aggregator.record("c", null, null);
+        aggregator.flush();
+
+        assertThat(flushes).containsExactly(Map.of("x", 1L, "y", 1L), Map.of("b", 2L, "c", 1L), Map.of("b", 1L, "c", 1L));
+        assertThat(meterRegistry.counter("search.terms.overflow").count()).isEqualTo(3);
+    }
+
+    @Test
+    void countersStayInMemoryUntilTheUpsertIndexesExist() {
+        when(searchTermRepository.findUpsertSchemaProblems())
+                .thenReturn(List.of("index uk_search_term_term_category is missing"), List.of());
+        SearchTermAggregator aggregator = aggregator(10, 2, 2, 64);
+        aggregator.record("x", null, null);
+
+        assertThat(aggregator.flush()).isZero();
+        // Le script a été lancé entre-temps : la vérification périodique débloque l'écriture
+        aggregator.recheckSchema();
+        aggregator.flush();
+
+        assertThat(flushes).containsExactly(Map.of("x", 1L));
+    }
+
+    @Test
+    void noSearchIsLostWhileIdleCountersAreRetired() throws InterruptedException {
+        SearchTermAggregator aggregator = aggregator(100, 2, 2, 64);
+        int threads = 4;
+        int searchesPerThread = 20_000;
+        AtomicBoolean done = new AtomicBoolean();
+        // Des flushs en continu retirent les compteurs à zéro pendant que les recherches arrivent
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                aggregator.flush();
+            }
+        });
+        flusher.start();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < searchesPerThread; i++) {
+                    aggregator.record("term" + (i % 3), null, null);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        flusher.join();
+        aggregator.flush();
+
+        long flushed = flushes.stream().flatMap(counts -> counts.values().stream()).mapToLong(Long::longValue).sum();
+        assertThat(flushed).isEqualTo((long) threads * searchesPerThread);
+    }
+
+    private SearchTermAggregator aggregator(int maxTracked, int heavyHitters, int sketchDepth, int sketchWidth) {
+        SearchTermAggregator aggregator = new SearchTermAggregator(searchTermRepository, mock(TrendingSearchService.class),
+                meterRegistry, maxTracked, heavyHitters, sketchDepth, sketchWidth);
+        aggregator.prepareSchema();
+        return aggregator;
+    }
+}
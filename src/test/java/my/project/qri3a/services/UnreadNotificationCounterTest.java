@@ -0,0 +1,66 @@
+package my.project.qri3a.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import my.project.qri3a.repositories.NotificationRepository;
+import my.project.qri3a.repositories.UserRepository;
+
+class UnreadNotificationCounterTest {
+
+    private final UUID userId = UUID.randomUUID();
+    private NotificationRepository notificationRepository;
+    private UnreadNotificationCounter counter;
+
+    @BeforeEach
+    void setUp() {
+        notificationRepository = mock(NotificationRepository.class);
+        counter = new UnreadNotificationCounter(notificationRepository, mock(UserRepository.class),
+                new SimpleMeterRegistry(), 100, 60, 100);
+    }
+
+    @Test
+    void counterLoadedBeforeTheWriteIsIncremented() {
+        when(notificationRepository.countUnreadByUserId(userId)).thenReturn(2L);
+        assertThat(counter.get(userId)).isEqualTo(2);
+
+        long writeStartedAt = System.nanoTime();
+        assertThat(counter.increment(List.of(userId), writeStartedAt)).containsEntry(userId, 3L);
+        verify(notificationRepository, never()).countUnreadByUserIds(anyCollection());
+        assertThat(counter.get(userId)).isEqualTo(3);
+    }
+
+    @Test
+    void counterLoadedDuringTheWriteIsReloadedInsteadOfIncremented() {
+        long writeStartedAt = System.nanoTime();
+        // Une lecture concurrente a chargé le compteur après l'insertion : la notification y est déjà
+        when(notificationRepository.countUnreadByUserId(userId)).thenReturn(3L);
+        assertThat(counter.get(userId)).isEqualTo(3);
+
+        when(notificationRepository.countUnreadByUserIds(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{userId, 3L}));
+        assertThat(counter.increment(List.of(userId), writeStartedAt)).containsEntry(userId, 3L);
+        assertThat(counter.get(userId)).isEqualTo(3);
+    }
+
+    @Test
+    void missingCounterIsLoadedWithTheNewNotification() {
+        when(notificationRepository.countUnreadByUserIds(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{userId, 1L}));
+
+        assertThat(counter.increment(List.of(userId), System.nanoTime())).containsEntry(userId, 1L);
+        assertThat(counter.get(userId)).isEqualTo(1);
+        verify(notificationRepository, never()).countUnreadByUserId(userId);
+    }
+}
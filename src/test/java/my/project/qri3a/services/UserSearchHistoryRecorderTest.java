@@ -0,0 +1,66 @@
+package my.project.qri3a.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import my.project.qri3a.repositories.UserSearchHistoryRepository;
+import my.project.qri3a.repositories.UserSearchHistoryRepositoryCustom.HistoryRow;
+
+class UserSearchHistoryRecorderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserSearchHistoryRepository repository;
+    private UserSearchHistoryRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        repository = mock(UserSearchHistoryRepository.class);
+        recorder = new UserSearchHistoryRecorder(repository, meterRegistry, 100, 50, 50, 100);
+        recorder.prepareSchema();
+    }
+
+    @Test
+    void deletedUserSkipsOnlyItsOwnRows() {
+        // La base n'écrit que les lignes dont l'email correspond encore à un utilisateur
+        when(repository.upsertAll(anyList())).thenReturn(2);
+        recorder.record("alice@example.com", "velo", null, null);
+        recorder.record("deleted@example.com", "table", null, null);
+        recorder.record("bob@example.com", "iphone", null, "Rabat");
+
+        assertThat(recorder.writePending()).isEqualTo(2);
+
+        ArgumentCaptor<List<HistoryRow>> rows = ArgumentCaptor.forClass(List.class);
+        verify(repository).upsertAll(rows.capture());
+        assertThat(rows.getValue()).extracting(HistoryRow::email)
+                .containsExactly("alice@example.com", "deleted@example.com", "bob@example.com");
+        verify(repository).trimToLatest(Set.of("alice@example.com", "deleted@example.com", "bob@example.com"), 50);
+        assertThat(meterRegistry.counter("search.history.written").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("search.history.write.failures").count()).isZero();
+    }
+
+    @Test
+    void onlyTheLatestSearchOfATermIsWrittenPerBatch() {
+        when(repository.upsertAll(anyList())).thenReturn(1);
+        recorder.record("alice@example.com", "velo", null, "Casablanca");
+        recorder.record("alice@example.com", "velo", null, "Rabat");
+
+        recorder.writePending();
+
+        ArgumentCaptor<List<HistoryRow>> rows = ArgumentCaptor.forClass(List.class);
+        verify(repository).upsertAll(rows.capture());
+        assertThat(rows.getValue()).singleElement().extracting(HistoryRow::location).isEqualTo("Rabat");
+        verify(repository).trimToLatest(Set.of("alice@example.com"), 50);
+    }
+}
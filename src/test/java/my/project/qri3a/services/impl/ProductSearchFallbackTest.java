@@ -0,0 +1,92 @@
+package my.project.qri3a.services.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import my.project.qri3a.documents.ProductDoc;
+import my.project.qri3a.entities.Product;
+import my.project.qri3a.enums.ProductStatus;
+import my.project.qri3a.mappers.ProductMapper;
+import my.project.qri3a.repositories.ProductRepository;
+import my.project.qri3a.repositories.impl.ProductRepositoryCustomImpl;
+import my.project.qri3a.repositories.search.OpenSearchGateway;
+import my.project.qri3a.services.ProductFullTextSearchService;
+import my.project.qri3a.services.SearchResultCache;
+
+/**
+ * Repli PostgreSQL de la recherche OpenSearch (disjoncteur ouvert) : aucune annonce non active ne doit en sortir
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductSearchFallbackTest {
+
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private ProductMapper productMapper;
+    @Mock
+    private ProductFullTextSearchService productFullTextSearchService;
+    @Mock
+    private OpenSearchGateway openSearchGateway;
+    @Mock
+    private SearchResultCache searchResultCache;
+    @InjectMocks
+    private ProductServiceImpl productService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void likeFallbackOnlyMatchesActiveListings() {
+        when(openSearchGateway.isCircuitOpen()).thenReturn(true);
+        when(openSearchGateway.callbackExecutor()).thenReturn(Runnable::run);
+        when(productFullTextSearchService.isAvailable()).thenReturn(false);
+        ArgumentCaptor<Specification<Product>> spec = ArgumentCaptor.forClass(Specification.class);
+        when(productRepository.findAll(spec.capture(), any(Pageable.class))).thenReturn(Page.empty());
+
+        Page<ProductDoc> results = productService.searchProductsElastic("iphone", PageRequest.of(0, 20), null, null, null,
+                null, null, null, null, null, false).join();
+
+        assertThat(results).isEmpty();
+        Root<Product> root = mock(Root.class);
+        Path<Object> status = mock(Path.class);
+        when(root.get(anyString())).thenReturn(mock(Path.class));
+        when(root.get("status")).thenReturn(status);
+        CriteriaBuilder criteriaBuilder = mock(CriteriaBuilder.class);
+        spec.getValue().toPredicate(root, mock(CriteriaQuery.class), criteriaBuilder);
+        verify(criteriaBuilder).equal(status, ProductStatus.ACTIVE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fullTextFallbackQueryOnlyMatchesActiveListings() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        when(jdbcTemplate.query(sql.capture(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        new ProductRepositoryCustomImpl(jdbcTemplate).searchIdsByFullText("iphone", null, null, null, null, null, null,
+                null, PageRequest.of(0, 20));
+
+        assertThat(sql.getValue()).contains("WHERE p.status = 'ACTIVE' AND ");
+    }
+}
@@ -0,0 +1,59 @@
+package my.project.qri3a.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimateNeverUnderCountsAndStaysWithinBoundForAlmostAllKeys() {
+        int depth = 4;
+        int width = 512;
+        CountMinSketch sketch = new CountMinSketch(depth, width);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        long total = 0;
+        // Distribution de type Zipf : quelques termes très fréquents et une longue traîne
+        for (int i = 0; i < 50_000; i++) {
+            String key = "term-" + (int) Math.floor(Math.pow(random.nextDouble(), 3) * 5_000);
+            exact.merge(key, 1L, Long::sum);
+            sketch.addAndEstimate(key);
+            total++;
+        }
+
+        double bound = total * Math.E / width;
+        int withinBound = 0;
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertThat(estimate).isGreaterThanOrEqualTo(entry.getValue());
+            if (estimate - entry.getValue() <= bound) {
+                withinBound++;
+            }
+        }
+        // Garantie par clé : 1 - exp(-depth), soit plus de 98 % pour depth = 4
+        assertThat((double) withinBound / exact.size()).isGreaterThanOrEqualTo(1 - Math.exp(-depth));
+    }
+
+    @Test
+    void addAndEstimateCountsTheCurrentOccurrence() {
+        CountMinSketch sketch = new CountMinSketch(2, 64);
+
+        assertThat(sketch.estimate("a")).isZero();
+        assertThat(sketch.addAndEstimate("a")).isEqualTo(1);
+        assertThat(sketch.addAndEstimate("a")).isEqualTo(2);
+        assertThat(sketch.estimate("a")).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsInvalidDimensions() {
+        assertThatThrownBy(() -> new CountMinSketch(0, 64)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountMinSketch(9, 64)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountMinSketch(4, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,54 @@
+package my.project.qri3a.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class GeoDistanceFilterTest {
+
+    private static final double RADIUS_KM = 25;
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0, 33.5731, -33.9, 60, 80})
+    void boundingBoxContainsThePointAtTheRadiusDueNorth(double lat) {
+        GeoDistanceFilter geo = new GeoDistanceFilter(lat, -7.5898, RADIUS_KM, false);
+        double[] north = destination(lat, -7.5898, 0);
+
+        assertThat(haversineKm(lat, -7.5898, north[0], north[1])).isCloseTo(RADIUS_KM, offset(1e-9));
+        assertThat(north[0]).isBetween(geo.minLat(), geo.maxLat());
+        assertThat(north[1]).isBetween(geo.minLon(), geo.maxLon());
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0, 33.5731, -33.9, 60, 80})
+    void boundingBoxContainsThePointAtTheRadiusDueEast(double lat) {
+        GeoDistanceFilter geo = new GeoDistanceFilter(lat, -7.5898, RADIUS_KM, false);
+        double[] east = destination(lat, -7.5898, 90);
+
+        assertThat(haversineKm(lat, -7.5898, east[0], east[1])).isCloseTo(RADIUS_KM, offset(1e-9));
+        assertThat(east[0]).isBetween(geo.minLat(), geo.maxLat());
+        assertThat(east[1]).isBetween(geo.minLon(), geo.maxLon());
+    }
+
+    /**
+     * Point atteint en suivant le grand cercle sur RADIUS_KM depuis (lat, lon), selon le cap donné en degrés
+     */
+    private static double[] destination(double lat, double lon, double bearing) {
+        double delta = RADIUS_KM / GeoDistanceFilter.EARTH_RADIUS_KM;
+        double phi = Math.toRadians(lat);
+        double theta = Math.toRadians(bearing);
+        double phi2 = Math.asin(Math.sin(phi) * Math.cos(delta) + Math.cos(phi) * Math.sin(delta) * Math.cos(theta));
+        double lambda2 = Math.toRadians(lon) + Math.atan2(Math.sin(theta) * Math.sin(delta) * Math.cos(phi),
+                Math.cos(delta) - Math.sin(phi) * Math.sin(phi2));
+        return new double[]{Math.toDegrees(phi2), Math.toDegrees(lambda2)};
+    }
+
+    // Même formule que la distance exacte calculée par PostgreSQL
+    private static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double a = Math.pow(Math.sin(Math.toRadians(lat2 - lat1) / 2), 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.pow(Math.sin(Math.toRadians(lon2 - lon1) / 2), 2);
+        return 2 * GeoDistanceFilter.EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}